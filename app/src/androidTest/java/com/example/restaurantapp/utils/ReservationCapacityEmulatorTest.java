@@ -0,0 +1,136 @@
+package com.example.restaurantapp.utils;
+
+import android.os.Bundle;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Books the same slot from many concurrent clients against the Firestore emulator and checks that
+ * the capacity ledger admits exactly as many guests as the restaurant seats.
+ * Skipped unless the emulator's address is passed as an instrumentation argument, e.g.
+ * {@code ./gradlew connectedAndroidTest -Pandroid.testInstrumentationRunnerArguments.firestoreEmulator=10.0.2.2:8080}
+ * with {@code firebase emulators:start --only firestore} running on the host.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ReservationCapacityEmulatorTest
+{
+    /**
+     * Number of diners booking the slot at the same moment.
+     */
+    private static final int BOOKERS = 100;
+    /**
+     * Number of guests the restaurant seats at once.
+     */
+    private static final int MAX_CAPACITY = 10;
+    /**
+     * Maximum number of rounds in which bookings aborted by contention are attempted again.
+     */
+    private static final int MAX_ROUNDS = 20;
+
+    /**
+     * Points Firestore at the emulator, or skips the test if no emulator was given.
+     */
+    @BeforeClass
+    public static void useEmulator()
+    {
+        Bundle arguments = InstrumentationRegistry.getArguments();
+        String emulator = arguments.getString("firestoreEmulator");
+        assumeTrue("No firestoreEmulator argument given", emulator != null);
+
+        String[] hostAndPort = emulator.split(":");
+        FirebaseFirestore.getInstance().useEmulator(hostAndPort[0], Integer.parseInt(hostAndPort[1]));
+    }
+
+    /**
+     * {@link #BOOKERS} diners book one guest each for the same slot; exactly {@link #MAX_CAPACITY}
+     * bookings succeed, every other one fails with a {@link ReservationCapacity.SlotFullException},
+     * and the ledger and the stored reservations agree with the successful bookings.
+     *
+     * @throws Exception If a task does not complete in time.
+     */
+    @Test
+    public void concurrentBookingsNeverExceedCapacity() throws Exception
+    {
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        String restaurantID = "capacity-test-" + UUID.randomUUID();
+        CollectionReference reservations = db.collection("Restaurants").document(restaurantID).collection("Reservations");
+        long tomorrowNoon = (System.currentTimeMillis() / 86_400_000L + 1) * 86_400_000L + 12 * 3_600_000L;
+        Date date = new Date(tomorrowNoon);
+
+        int admitted = 0;
+        int rejected = 0;
+        int pending = BOOKERS;
+        for(int round = 0; round < MAX_ROUNDS && pending > 0; round++)
+        {
+            List<Task<Void>> bookings = new ArrayList<>();
+            for(int i = 0; i < pending; i++)
+            {
+                Map<String, Object> reservation = new HashMap<>();
+                reservation.put("date", date);
+                reservation.put("guests", "1");
+                bookings.add(ReservationCapacity.reserve(restaurantID, date, 1, MAX_CAPACITY, transaction ->
+                {
+                    transaction.set(reservations.document(), reservation);
+                    return null;
+                }));
+            }
+            Tasks.await(Tasks.whenAllComplete(bookings), 2, TimeUnit.MINUTES);
+
+            pending = 0;
+            for(Task<Void> booking : bookings)
+            {
+                Exception e = booking.getException();
+                if(e == null)
+                {
+                    admitted++;
+                } else if(e instanceof ReservationCapacity.SlotFullException)
+                {
+                    rejected++;
+                } else
+                {
+                    // Transactions give up after a few attempts under heavy contention; book again
+                    assertTrue("Unexpected failure: " + e, e instanceof FirebaseFirestoreException);
+                    pending++;
+                }
+            }
+        }
+
+        assertEquals("Bookings still aborted after " + MAX_ROUNDS + " rounds", 0, pending);
+        assertEquals(MAX_CAPACITY, admitted);
+        assertEquals(BOOKERS - MAX_CAPACITY, rejected);
+        assertEquals(MAX_CAPACITY, Tasks.await(reservations.get(), 1, TimeUnit.MINUTES).size());
+
+        long day = ReservationCapacity.dayOf(ReservationCapacity.firstSlot(date));
+        DocumentSnapshot ledger = Tasks.await(db.collection("Restaurants").document(restaurantID)
+                .collection("Capacity").document(String.valueOf(day)).get(), 1, TimeUnit.MINUTES);
+        long firstSlot = ReservationCapacity.firstSlot(date);
+        for(long slot = firstSlot; slot < firstSlot + ReservationCapacity.SEATING_SLOTS; slot++)
+        {
+            assertEquals(Long.valueOf(MAX_CAPACITY), ledger.getLong("slots." + ReservationCapacity.slotKey(slot)));
+        }
+    }
+}
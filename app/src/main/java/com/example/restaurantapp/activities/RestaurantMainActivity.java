@@ -23,6 +23,7 @@ import com.example.restaurantapp.fragments.ManageMenuFragment;
 import com.example.restaurantapp.fragments.ReservationsTabLayoutFragment;
 import com.example.restaurantapp.fragments.RestaurantSettingsFragment;
 import com.example.restaurantapp.fragments.RestaurantInfoFragment;
+import com.example.restaurantapp.utils.RestaurantBackfill;
 import com.example.restaurantapp.utils.SettingsUtils;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.android.material.snackbar.Snackbar;
@@ -108,6 +109,8 @@ public class RestaurantMainActivity extends AppCompatActivity
         SettingsUtils.loadUserSettings(this);
         super.onCreate(savedInstanceState);
         EdgeToEdge.enable(this);
+        // Add fields introduced by later versions to this owner's restaurant document
+        RestaurantBackfill.runForOwnRestaurant(this);
         setContentView(R.layout.activity_restaurant_main);
 
         bottomNavMenu = findViewById(R.id.bottom_navigation);
@@ -0,0 +1,94 @@
+package com.example.restaurantapp.adapters;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.text.TextUtils;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.request.RequestOptions;
+import com.example.restaurantapp.R;
+import com.example.restaurantapp.models.MenuItem;
+import com.example.restaurantapp.models.Restaurant;
+import com.example.restaurantapp.utils.ImageRenditions;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Glide requests for the images shown in list rows.
+ * Rows bind and preload their images through {@link #request(Context, String)}, so a preloaded
+ * image is found in the cache under the same key when its row is bound.
+ * List images are opaque WebP renditions, so they are decoded as RGB_565, which halves their
+ * memory footprint; Glide still decodes images with transparency as ARGB_8888. Both the
+ * downloaded and the resized image are kept on disk, so an image scrolled back into view is
+ * decoded from a file of its displayed size.
+ */
+class ListImages
+{
+    /**
+     * Number of restaurant rows ahead of the scroll position whose images are preloaded.
+     */
+    static final int RESTAURANT_ROWS_AHEAD = 6;
+    /**
+     * Number of menu rows ahead of the scroll position whose banner and item images are preloaded.
+     */
+    static final int MENU_ROWS_AHEAD = 2;
+    /**
+     * Options shared by every list image request.
+     */
+    private static final RequestOptions OPTIONS = new RequestOptions()
+            .format(DecodeFormat.PREFER_RGB_565)
+            .diskCacheStrategy(DiskCacheStrategy.ALL)
+            .placeholder(R.drawable.image_placeholder) // Clears the image of a recycled row while loading
+            .error(R.drawable.image_placeholder)
+            .fallback(R.drawable.image_placeholder)
+            .lock();
+
+    /**
+     * Returns the request loading a list image.
+     *
+     * @param context The context of the list.
+     * @param url     The URL of the image, may be null, in which case the placeholder is shown.
+     * @return The request, to be loaded into an ImageView or preloaded.
+     */
+    static RequestBuilder<Drawable> request(Context context, String url)
+    {
+        return Glide.with(context).load(url).apply(OPTIONS);
+    }
+
+    /**
+     * Returns the URL of the image shown in a restaurant's row.
+     *
+     * @param restaurant The restaurant.
+     * @return The card rendition, or the full image if there is none.
+     */
+    static String cardURL(Restaurant restaurant)
+    {
+        return ImageRenditions.pick(restaurant.getCardImageURL(), restaurant.getImageURL());
+    }
+
+    /**
+     * Returns the URL of the image shown in a menu item's grid cell.
+     *
+     * @param item The menu item.
+     * @return The thumbnail rendition, or the full image if there is none.
+     */
+    static String thumbnailURL(MenuItem item)
+    {
+        return ImageRenditions.pick(item.getThumbnailImageURL(), item.getImageURL());
+    }
+
+    /**
+     * Returns the images to preload for a row showing a single image.
+     *
+     * @param url The URL of the image, may be null or empty.
+     * @return A list holding the URL, or an empty list if there is no image.
+     */
+    static List<String> preloadList(String url)
+    {
+        return TextUtils.isEmpty(url) ? Collections.emptyList() : Collections.singletonList(url);
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.restaurantapp.adapters;
 
-import android.util.Log;
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -8,19 +10,26 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.bumptech.glide.Glide;
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.integration.recyclerview.RecyclerViewPreloader;
+import com.bumptech.glide.util.ViewPreloadSizeProvider;
 import com.example.restaurantapp.R;
 import com.example.restaurantapp.models.Menu;
 import com.example.restaurantapp.models.MenuItem;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.example.restaurantapp.utils.ImageRenditions;
+import com.example.restaurantapp.utils.MenuSearchIndex;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 import java.util.HashSet;
 
@@ -29,17 +38,86 @@ import java.util.HashSet;
  * Each menu item in the list can display its name, a banner image, and a nested RecyclerView
  * showing its {@link MenuItem}s. This adapter supports filtering of menus based on a search query,
  * which can match either menu names or the names of items within those menus.
+ * The displayed rows are rebuilt by {@link #refresh()} and diffed on a background thread by menu ID;
+ * only menus whose name, banner or displayed items changed are rebound, and a row whose items
+ * changed only passes them on to its nested adapter, which in turn rebinds just the changed items.
+ * All nested item lists draw their rows from one shared {@link RecyclerView.RecycledViewPool}, so an
+ * item row released by one menu is reused by the next instead of being inflated again.
+ * The adapter also tells a {@link RecyclerViewPreloader} which banners and item images lie ahead of
+ * the scroll position, see {@link #createPreloader(Fragment)}.
  */
 public class MenuAdapter extends RecyclerView.Adapter<MenuAdapter.MenuViewHolder>
+        implements ListPreloader.PreloadModelProvider<String>
 {
+    /**
+     * Payload marking a row whose displayed items changed while the menu itself did not.
+     */
+    private static final Object PAYLOAD_ITEMS = new Object();
+    /**
+     * Payload marking a row whose item prices have to be rebound because discounts changed.
+     */
+    private static final Object PAYLOAD_DISCOUNTS = new Object();
+    /**
+     * Number of columns of the nested item grids.
+     */
+    private static final int ITEM_COLUMNS = 3;
+    /**
+     * Number of item rows kept in {@link #itemViewPool}; enough for several menus' worth of items.
+     */
+    private static final int MAX_POOLED_ITEM_VIEWS = ITEM_COLUMNS * 10;
+
+    /**
+     * Matches rows by menu ID and compares the snapshot each row was built from.
+     */
+    private static final DiffUtil.ItemCallback<MenuRow> DIFF_CALLBACK = new DiffUtil.ItemCallback<MenuRow>()
+    {
+        @Override
+        public boolean areItemsTheSame(@NonNull MenuRow oldRow, @NonNull MenuRow newRow)
+        {
+            return Objects.equals(oldRow.menu.getMenuID(), newRow.menu.getMenuID());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull MenuRow oldRow, @NonNull MenuRow newRow)
+        {
+            return oldRow.hasSameMenu(newRow) && oldRow.hasSameItems(newRow);
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull MenuRow oldRow, @NonNull MenuRow newRow)
+        {
+            return oldRow.hasSameMenu(newRow) ? PAYLOAD_ITEMS : null;
+        }
+    };
+
     /**
      * The complete list of all menus available.
      */
     private List<Menu> allMenuList;
     /**
-     * The list of menus currently displayed to the user, which may be a filtered subset of {@link #allMenuList}.
+     * Holds the rows currently displayed to the user, which may be a filtered subset of {@link #allMenuList}.
+     */
+    private final AsyncListDiffer<MenuRow> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+    /**
+     * Stable item IDs keyed on menu ID.
+     */
+    private final StableIds stableIds = new StableIds();
+    /**
+     * Pool of item rows shared by the nested item lists of all menus.
+     */
+    private final RecyclerView.RecycledViewPool itemViewPool = new RecyclerView.RecycledViewPool();
+    /**
+     * Size of the menu banners, measured on the first row and used for preloading.
      */
-    private List<Menu> displayMenuList;
+    private final ViewPreloadSizeProvider<String> bannerSizeProvider = new ViewPreloadSizeProvider<>();
+    /**
+     * Size of the item images of the nested lists, measured on the first item and used for preloading.
+     */
+    private final ViewPreloadSizeProvider<String> itemImageSizeProvider = new ViewPreloadSizeProvider<>();
+    /**
+     * Context the preload requests are made in, set by {@link #createPreloader(Fragment)}.
+     */
+    private Context preloadContext;
     /**
      * Listener for click events on an entire menu.
      */
@@ -49,7 +127,7 @@ public class MenuAdapter extends RecyclerView.Adapter<MenuAdapter.MenuViewHolder
      */
     private MenuItemAdapter.OnItemClickListener onItemClickListener;
     /**
-     * The ID of the restaurant whose menus are being displayed, used for fetching menu items.
+     * The ID of the restaurant whose menus are being displayed.
      */
     private String restaurantID;
 
@@ -70,9 +148,77 @@ public class MenuAdapter extends RecyclerView.Adapter<MenuAdapter.MenuViewHolder
      */
     private HashMap<String, List<MenuItem>> allMenuItems = new HashMap<>();
     /**
-     * The current search query string used for filtering.
+     * The items whose names match the current search query. Used during filtering.
      */
-    private String currentSearchQuery = "";
+    private Set<MenuItem> matchedItems = new HashSet<>();
+
+    /**
+     * One displayed menu: the menu together with the items shown under it.
+     * The menu's displayed fields are copied when the row is built, since the hosting fragment
+     * updates {@link Menu} objects in place when it reloads them.
+     */
+    static class MenuRow
+    {
+        /**
+         * The displayed menu.
+         */
+        final Menu menu;
+        /**
+         * The menu's name when the row was built.
+         */
+        final String name;
+        /**
+         * The URL of the menu's banner when the row was built: its card rendition, or the full image
+         * if it has none.
+         */
+        final String imageURL;
+        /**
+         * The items shown under the menu.
+         */
+        final List<MenuItem> items;
+
+        /**
+         * Constructs a new {@code MenuRow}.
+         *
+         * @param menu  The displayed menu.
+         * @param items The items shown under the menu.
+         */
+        MenuRow(Menu menu, List<MenuItem> items)
+        {
+            this.menu = menu;
+            this.name = menu.getName();
+            this.imageURL = ImageRenditions.pick(menu.getCardImageURL(), menu.getImageURL());
+            this.items = items;
+        }
+
+        /**
+         * Returns whether another row shows the same menu name and banner.
+         *
+         * @param other The other row.
+         * @return True if name and banner URL are equal, false otherwise.
+         */
+        boolean hasSameMenu(MenuRow other)
+        {
+            return Objects.equals(name, other.name) && Objects.equals(imageURL, other.imageURL);
+        }
+
+        /**
+         * Returns whether another row shows the same item objects in the same order.
+         * Reloaded items are new objects, so an unchanged object is an unchanged item.
+         *
+         * @param other The other row.
+         * @return True if both rows hold the same items, false otherwise.
+         */
+        boolean hasSameItems(MenuRow other)
+        {
+            if(items.size() != other.items.size()) return false;
+            for(int i = 0; i < items.size(); i++)
+            {
+                if(items.get(i) != other.items.get(i)) return false;
+            }
+            return true;
+        }
+    }
 
     /**
      * Interface definition for a callback to be invoked when a menu is clicked.
@@ -99,44 +245,44 @@ public class MenuAdapter extends RecyclerView.Adapter<MenuAdapter.MenuViewHolder
                        MenuItemAdapter.OnItemClickListener itemClickListener, String restaurantID)
     {
         this.allMenuList = menuList;
-        this.displayMenuList = new ArrayList<>(menuList); // Initialize with all menus
         this.onMenuClickListener = menuClickListener;
         this.onItemClickListener = itemClickListener;
         this.restaurantID = restaurantID;
+        setHasStableIds(true);
+        itemViewPool.setMaxRecycledViews(0, MAX_POOLED_ITEM_VIEWS); // MenuItemAdapter has a single view type
+        refresh(); // Initialize with all menus
     }
 
     /**
      * Sets the data used for filtering the list of menus.
-     * This method updates the internal sets of matching menu IDs and triggers an update
-     * of the displayed list.
+     * This method takes over the matching menu IDs and items of a {@link MenuSearchIndex} query
+     * and triggers an update of the displayed list.
      *
-     * @param menuMatchIds     A set of menu IDs whose names directly match the search query.
-     *                         If null, an empty set is used.
-     * @param itemMatchMenuIds A set of menu IDs that contain items matching the search query.
-     *                         If null, an empty set is used.
+     * @param matches The result of {@link MenuSearchIndex#search(String)} for the current query.
      */
-    public void setFilterData(Set<String> menuMatchIds, Set<String> itemMatchMenuIds)
+    public void setFilterData(MenuSearchIndex.Matches matches)
     {
-        this.menuMatchIds = menuMatchIds != null ? menuMatchIds : new HashSet<>();
-        this.itemMatchMenuIds = itemMatchMenuIds != null ? itemMatchMenuIds : new HashSet<>();
+        this.menuMatchIds = matches.menuMatchIds;
+        this.itemMatchMenuIds = matches.itemMatchMenuIds;
+        this.matchedItems = matches.matchedItems;
 
         // Set filtering flag based on whether we have any matches
         this.isFiltering = !this.menuMatchIds.isEmpty() || !this.itemMatchMenuIds.isEmpty();
 
         // Update display list
-        updateDisplayList();
+        refresh();
     }
 
     /**
-     * Updates the {@link #displayMenuList} based on the current filtering state
-     * ({@link #isFiltering}, {@link #menuMatchIds}, {@link #itemMatchMenuIds}).
+     * Rebuilds the displayed rows from {@link #allMenuList} and the cached items, based on the current
+     * filtering state ({@link #isFiltering}, {@link #menuMatchIds}, {@link #itemMatchMenuIds}).
      * If filtering is active, only menus matching the criteria are included.
      * Otherwise, all menus from {@link #allMenuList} are displayed.
-     * Notifies the adapter that the data set has changed.
+     * Must be called after the menus or their items changed; the new rows are diffed against the displayed ones.
      */
-    private void updateDisplayList()
+    public void refresh()
     {
-        displayMenuList.clear();
+        List<MenuRow> rows = new ArrayList<>();
 
         if(isFiltering)
         {
@@ -149,36 +295,84 @@ public class MenuAdapter extends RecyclerView.Adapter<MenuAdapter.MenuViewHolder
                     String menuID = menu.getMenuID();
                     if(menuMatchIds.contains(menuID) || itemMatchMenuIds.contains(menuID))
                     {
-                        displayMenuList.add(menu);
+                        rows.add(new MenuRow(menu, itemsToDisplay(menuID)));
                     }
                 }
             }
-            // If no matches, displayMenuList remains empty - showing no results
+            // If no matches, no rows are displayed - showing no results
         } else
         {
             // Show all menus when not filtering
-            displayMenuList.addAll(allMenuList);
+            for(Menu menu : allMenuList)
+            {
+                rows.add(new MenuRow(menu, itemsToDisplay(menu.getMenuID())));
+            }
         }
 
-        notifyDataSetChanged();
+        differ.submitList(rows);
+    }
+
+    /**
+     * Returns the items to show under a menu.
+     * If the menu itself is in {@link #menuMatchIds}, all its items are shown.
+     * Otherwise, if {@link #isFiltering} is true, only the items in {@link #matchedItems} are shown.
+     * A menu whose items are not cached yet is shown empty until the fragment refreshes the adapter.
+     *
+     * @param menuID The ID of the menu.
+     * @return The items to display, in order.
+     */
+    private List<MenuItem> itemsToDisplay(String menuID)
+    {
+        List<MenuItem> itemList = allMenuItems.get(menuID);
+        if(itemList == null)
+        {
+            return new ArrayList<>(); // Not loaded yet
+        }
+        if(!isFiltering || menuMatchIds.contains(menuID))
+        {
+            // No filtering, or the menu itself matches: show all its items
+            return new ArrayList<>(itemList);
+        }
+
+        // If the menu doesn't match directly, but filtering is on (meaning items within might match)
+        // Show only the items the search index matched
+        List<MenuItem> itemsToDisplay = new ArrayList<>();
+        for(MenuItem item : itemList)
+        {
+            if(matchedItems.contains(item))
+            {
+                itemsToDisplay.add(item);
+            }
+        }
+        return itemsToDisplay;
+    }
+
+    /**
+     * Rebinds the prices of every displayed item, e.g. after a discount started or ended.
+     * Menus are not rebound and item images are not reloaded.
+     */
+    public void refreshDiscounts()
+    {
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_DISCOUNTS);
     }
 
     /**
      * Clears all active filtering criteria.
-     * Resets {@link #menuMatchIds}, {@link #itemMatchMenuIds}, sets {@link #isFiltering} to false,
-     * clears {@link #currentSearchQuery}, and updates the display list to show all menus.
+     * Resets {@link #menuMatchIds}, {@link #itemMatchMenuIds} and {@link #matchedItems}, sets
+     * {@link #isFiltering} to false, and updates the display list to show all menus.
      */
     public void clearFiltering()
     {
-        this.menuMatchIds.clear();
-        this.itemMatchMenuIds.clear();
+        this.menuMatchIds = new HashSet<>();
+        this.itemMatchMenuIds = new HashSet<>();
+        this.matchedItems = new HashSet<>();
         this.isFiltering = false;
-        this.currentSearchQuery = "";
-        updateDisplayList();
+        refresh();
     }
 
     /**
      * Stores a list of {@link MenuItem}s in the cache ({@link #allMenuItems}) for a specific menu ID.
+     * Takes effect on the next {@link #refresh()}.
      *
      * @param menuID The ID of the menu to which the items belong.
      * @param items  The list of {@link MenuItem}s to cache.
@@ -189,14 +383,54 @@ public class MenuAdapter extends RecyclerView.Adapter<MenuAdapter.MenuViewHolder
     }
 
     /**
-     * Sets the current search query string. This query is used by the ViewHolder
-     * when filtering items within a menu if the menu itself didn't match the query directly.
+     * Creates a scroll listener that preloads the banners and item images of the next menus while
+     * the list is scrolled, each at the size of the views that show it.
      *
-     * @param query The search query string.
+     * @param fragment The fragment showing the list, whose lifecycle the preloads follow.
+     * @return The listener, to be added to the list with {@link RecyclerView#addOnScrollListener}.
      */
-    public void setCurrentSearchQuery(String query)
+    public RecyclerViewPreloader<String> createPreloader(Fragment fragment)
     {
-        this.currentSearchQuery = query;
+        preloadContext = fragment.requireContext();
+        return new RecyclerViewPreloader<>(fragment, this,
+                (url, position, perItemPosition) -> url.equals(differ.getCurrentList().get(position).imageURL)
+                        ? bannerSizeProvider.getPreloadSize(url, position, perItemPosition)
+                        : itemImageSizeProvider.getPreloadSize(url, position, perItemPosition),
+                ListImages.MENU_ROWS_AHEAD);
+    }
+
+    /**
+     * Returns the images of the row at the given position, for preloading: the menu's banner
+     * followed by the images of the items shown under it.
+     *
+     * @param position The position of the row.
+     * @return The URLs of the row's images; empty if it has none.
+     */
+    @NonNull
+    @Override
+    public List<String> getPreloadItems(int position)
+    {
+        MenuRow row = differ.getCurrentList().get(position);
+        List<String> urls = new ArrayList<>();
+        if(!TextUtils.isEmpty(row.imageURL)) urls.add(row.imageURL);
+        for(MenuItem item : row.items)
+        {
+            String url = ListImages.thumbnailURL(item);
+            if(!TextUtils.isEmpty(url)) urls.add(url);
+        }
+        return urls;
+    }
+
+    /**
+     * Returns the request preloading an image, the same request a bound row makes.
+     *
+     * @param url The URL of the image.
+     * @return The request.
+     */
+    @Override
+    public RequestBuilder<Drawable> getPreloadRequestBuilder(@NonNull String url)
+    {
+        return ListImages.request(preloadContext, url);
     }
 
     @NonNull
@@ -210,18 +444,52 @@ public class MenuAdapter extends RecyclerView.Adapter<MenuAdapter.MenuViewHolder
     @Override
     public void onBindViewHolder(@NonNull MenuViewHolder holder, int position)
     {
-        if(position < displayMenuList.size())
+        holder.bind(differ.getCurrentList().get(position), onMenuClickListener);
+    }
+
+    /**
+     * Binds a row partially when only its items or their discounts changed, and fully otherwise.
+     *
+     * @param holder   The ViewHolder to update.
+     * @param position The position of the row within the adapter's data set.
+     * @param payloads The payloads of the pending change notifications; empty for a full bind.
+     */
+    @Override
+    public void onBindViewHolder(@NonNull MenuViewHolder holder, int position, @NonNull List<Object> payloads)
+    {
+        if(payloads.isEmpty())
         {
-            Menu menu = displayMenuList.get(position);
-            holder.bind(menu, onMenuClickListener, onItemClickListener, restaurantID,
-                    isFiltering, menuMatchIds, currentSearchQuery, allMenuItems);
+            onBindViewHolder(holder, position);
+            return;
+        }
+        for(Object payload : payloads)
+        {
+            if(payload == PAYLOAD_ITEMS)
+            {
+                holder.loadMenuItems(differ.getCurrentList().get(position));
+            } else if(payload == PAYLOAD_DISCOUNTS)
+            {
+                holder.itemAdapter.notifyItemRangeChanged(0, holder.itemAdapter.getItemCount());
+            }
         }
     }
 
     @Override
     public int getItemCount()
     {
-        return displayMenuList.size();
+        return differ.getCurrentList().size();
+    }
+
+    /**
+     * Returns the stable ID of the row at the given position, derived from its menu ID.
+     *
+     * @param position The position of the row.
+     * @return The stable ID of the row.
+     */
+    @Override
+    public long getItemId(int position)
+    {
+        return stableIds.get(differ.getCurrentList().get(position).menu.getMenuID());
     }
 
     /**
@@ -243,6 +511,14 @@ public class MenuAdapter extends RecyclerView.Adapter<MenuAdapter.MenuViewHolder
          * Nested RecyclerView for displaying the items within this menu.
          */
         RecyclerView recyclerViewItems;
+        /**
+         * Adapter of {@link #recyclerViewItems}, kept for the lifetime of this ViewHolder.
+         */
+        final MenuItemAdapter itemAdapter;
+        /**
+         * ID of the menu whose items {@link #itemAdapter} currently holds.
+         */
+        private String boundMenuID;
 
         /**
          * Constructs a new {@code MenuViewHolder}.
@@ -256,42 +532,35 @@ public class MenuAdapter extends RecyclerView.Adapter<MenuAdapter.MenuViewHolder
             txtMenuName = itemView.findViewById(R.id.txtMenuName);
             recyclerViewItems = itemView.findViewById(R.id.recyclerViewItems);
             // Set up the layout manager for the nested RecyclerView displaying menu items.
-            recyclerViewItems.setLayoutManager(new GridLayoutManager(itemView.getContext(), 3));
+            GridLayoutManager layoutManager = new GridLayoutManager(itemView.getContext(), ITEM_COLUMNS);
+            layoutManager.setInitialPrefetchItemCount(ITEM_COLUMNS * 2); // First two rows while the menu scrolls into view
+            layoutManager.setRecycleChildrenOnDetach(true); // Return item rows to the shared pool with the menu row
+            recyclerViewItems.setLayoutManager(layoutManager);
+            recyclerViewItems.setRecycledViewPool(itemViewPool);
+            itemAdapter = new MenuItemAdapter(new ArrayList<>(), onItemClickListener, itemImageSizeProvider);
+            bannerSizeProvider.setView(imgMenuBanner);
+            recyclerViewItems.setAdapter(itemAdapter);
         }
 
         /**
-         * Binds a {@link Menu} object to this ViewHolder.
+         * Binds a {@link MenuRow} to this ViewHolder.
          * Sets the menu name, loads the banner image using Glide, and sets up an
          * OnClickListener for the menu. It then calls {@link #loadMenuItems} to populate
-         * the nested RecyclerView with items from this menu, applying filtering logic if active.
+         * the nested RecyclerView with the row's items.
          *
-         * @param menu               The {@link Menu} object to bind.
-         * @param menuClickListener  Listener for click events on the entire menu.
-         * @param itemClickListener  Listener for click events on individual items within the menu.
-         * @param restaurantID       The ID of the restaurant.
-         * @param filtering          True if filtering is active, false otherwise.
-         * @param menuMatchIds       Set of menu IDs that directly match the search query.
-         * @param currentSearchQuery The current search query string.
-         * @param allMenuItems       Cache of menu items.
+         * @param row               The {@link MenuRow} to bind.
+         * @param menuClickListener Listener for click events on the entire menu.
          */
-        public void bind(Menu menu, OnMenuClickListener menuClickListener,
-                         MenuItemAdapter.OnItemClickListener itemClickListener,
-                         String restaurantID, boolean filtering,
-                         Set<String> menuMatchIds, String currentSearchQuery,
-                         HashMap<String, List<MenuItem>> allMenuItems)
+        public void bind(MenuRow row, OnMenuClickListener menuClickListener)
         {
-            String menuID = menu.getMenuID();
-            txtMenuName.setText(menu.getName());
+            Menu menu = row.menu;
+            txtMenuName.setText(row.name);
 
             // Load image with Glide and set placeholder if URL is empty or null
-            String imageUrl = menu.getImageURL();
+            String imageUrl = row.imageURL;
             if(imageUrl != null && !imageUrl.isEmpty())
             {
-                Glide.with(imgMenuBanner.getContext())
-                        .load(imageUrl)
-                        .placeholder(R.drawable.image_placeholder) // Placeholder image
-                        .error(R.drawable.image_placeholder) // Error image if loading fails
-                        .into(imgMenuBanner);
+                ListImages.request(imgMenuBanner.getContext(), imageUrl).into(imgMenuBanner);
             } else
             {
                 imgMenuBanner.setImageResource(R.drawable.image_placeholder); // Default image
@@ -300,180 +569,26 @@ public class MenuAdapter extends RecyclerView.Adapter<MenuAdapter.MenuViewHolder
             itemView.setOnClickListener(v -> menuClickListener.onMenuClick(menu));
 
             // Load menu items for this menu
-            loadMenuItems(menuID, restaurantID, filtering, menuMatchIds,
-                    currentSearchQuery, allMenuItems, itemClickListener);
+            loadMenuItems(row);
         }
 
         /**
-         * Loads and displays {@link MenuItem}s for a given menu ID into the nested {@link #recyclerViewItems}.
-         * It first checks a local cache ({@code allMenuItems}). If items are found, they are displayed,
-         * applying filtering based on {@code filtering}, {@code menuMatchIds}, and {@code currentSearchQuery}.
-         * If the menu itself ({@code menuID}) is in {@code menuMatchIds}, all its items are shown.
-         * Otherwise, if {@code filtering} is true, only items whose names contain {@code currentSearchQuery} are shown.
-         * If items are not cached, they are fetched from Firestore, then cached and displayed with the same filtering logic.
-         * Images for the items are loaded using Glide.
+         * Displays the {@link MenuItem}s of a row in the nested {@link #recyclerViewItems}.
+         * When the row shows the same menu as before, the items are diffed against the displayed ones
+         * so only changed items are rebound; a recycled ViewHolder showing another menu is cleared first
+         * and shows the new items immediately. Item images are loaded when the item rows are bound.
          *
-         * @param menuID             The ID of the menu whose items are to be loaded.
-         * @param restaurantID       The ID of the restaurant, used for Firestore queries.
-         * @param filtering          True if filtering is active, false otherwise.
-         * @param menuMatchIds       Set of menu IDs that directly match the search query.
-         * @param currentSearchQuery The current search query string, used to filter items if the menu itself doesn't match.
-         * @param allMenuItems       Cache containing pre-loaded menu items.
-         * @param itemClickListener  Listener for click events on individual menu items.
+         * @param row The row whose items are to be displayed.
          */
-        private void loadMenuItems(String menuID, String restaurantID,
-                                   boolean filtering, Set<String> menuMatchIds,
-                                   String currentSearchQuery,
-                                   HashMap<String, List<MenuItem>> allMenuItems,
-                                   MenuItemAdapter.OnItemClickListener itemClickListener)
+        private void loadMenuItems(MenuRow row)
         {
-            // Use cached items if available
-            if(allMenuItems.containsKey(menuID))
+            String menuID = row.menu.getMenuID();
+            if(!Objects.equals(menuID, boundMenuID))
             {
-                List<MenuItem> itemList = allMenuItems.get(menuID);
-                List<MenuItem> itemsToDisplay;
-
-                if(filtering)
-                {
-                    if(menuMatchIds.contains(menuID))
-                    {
-                        // If the menu itself matches, show all its items
-                        itemsToDisplay = new ArrayList<>(itemList);
-                    } else
-                    {
-                        // If the menu doesn't match directly, but filtering is on (meaning items within might match)
-                        // Filter items based on the currentSearchQuery
-                        itemsToDisplay = new ArrayList<>();
-                        if(itemList != null && currentSearchQuery != null && !currentSearchQuery.isEmpty())
-                        {
-                            for(MenuItem item : itemList)
-                            {
-                                if(item.getName() != null && item.getName().toLowerCase().contains(currentSearchQuery.toLowerCase()))
-                                {
-                                    itemsToDisplay.add(item);
-                                }
-                            }
-                        }
-                    }
-                } else
-                {
-                    // No filtering, show all items for this menu
-                    itemsToDisplay = new ArrayList<>(itemList);
-                }
-
-                MenuItemAdapter itemAdapter = new MenuItemAdapter(itemsToDisplay, itemClickListener);
-                recyclerViewItems.setAdapter(itemAdapter);
-
-                // Post a runnable to load images for visible items after layout
-                recyclerViewItems.post(() ->
-                {
-                    if(itemsToDisplay == null) return;
-                    for(int i = 0; i < recyclerViewItems.getChildCount(); i++)
-                    {
-                        View childView = recyclerViewItems.getChildAt(i);
-                        RecyclerView.ViewHolder rvViewHolder = recyclerViewItems.getChildViewHolder(childView);
-                        if(rvViewHolder instanceof MenuItemAdapter.ItemViewHolder)
-                        {
-                            MenuItemAdapter.ItemViewHolder viewHolder = (MenuItemAdapter.ItemViewHolder) rvViewHolder;
-                            int adapterPosition = viewHolder.getAdapterPosition(); // Use adapter position for safety
-                            if(adapterPosition != RecyclerView.NO_POSITION && adapterPosition < itemsToDisplay.size())
-                            {
-                                MenuItem item = itemsToDisplay.get(adapterPosition);
-                                if(item.getImageURL() != null && !item.getImageURL().isEmpty())
-                                {
-                                    Glide.with(childView.getContext()).load(item.getImageURL())
-                                            .placeholder(R.drawable.image_placeholder)
-                                            .error(R.drawable.image_placeholder)
-                                            .into(viewHolder.itemImage);
-                                } else
-                                {
-                                    viewHolder.itemImage.setImageResource(R.drawable.image_placeholder);
-                                }
-                            }
-                        }
-                    }
-                });
-                return;
+                itemAdapter.submitList(null); // Don't animate one menu's items into another's
+                boundMenuID = menuID;
             }
-
-            // Load from Firebase if not cached
-            FirebaseFirestore db = FirebaseFirestore.getInstance();
-            List<MenuItem> fetchedItemList = new ArrayList<>();
-
-            db.collection("Restaurants").document(restaurantID)
-                    .collection("Menus").document(menuID)
-                    .collection("Items")
-                    .orderBy("orderIndex") // Assuming items have an orderIndex field
-                    .get()
-                    .addOnSuccessListener(snapshot ->
-                    {
-                        for(QueryDocumentSnapshot doc : snapshot)
-                        {
-                            MenuItem item = doc.toObject(MenuItem.class);
-                            fetchedItemList.add(item);
-                        }
-                        // Cache the fetched items
-                        allMenuItems.put(menuID, new ArrayList<>(fetchedItemList));
-
-                        List<MenuItem> itemsToDisplay;
-                        if(filtering)
-                        {
-                            if(menuMatchIds.contains(menuID))
-                            {
-                                itemsToDisplay = new ArrayList<>(fetchedItemList);
-                            } else
-                            {
-                                itemsToDisplay = new ArrayList<>();
-                                if(currentSearchQuery != null && !currentSearchQuery.isEmpty())
-                                {
-                                    for(MenuItem item : fetchedItemList)
-                                    {
-                                        if(item.getName() != null && item.getName().toLowerCase().contains(currentSearchQuery.toLowerCase()))
-                                        {
-                                            itemsToDisplay.add(item);
-                                        }
-                                    }
-                                }
-                            }
-                        } else
-                        {
-                            itemsToDisplay = new ArrayList<>(fetchedItemList);
-                        }
-
-                        MenuItemAdapter itemAdapter = new MenuItemAdapter(itemsToDisplay, itemClickListener);
-                        recyclerViewItems.setAdapter(itemAdapter);
-
-                        // Post a runnable to load images for visible items after layout
-                        recyclerViewItems.post(() ->
-                        {
-                            if(itemsToDisplay == null) return;
-                            for(int i = 0; i < recyclerViewItems.getChildCount(); i++)
-                            {
-                                View childView = recyclerViewItems.getChildAt(i);
-                                RecyclerView.ViewHolder rvViewHolder = recyclerViewItems.getChildViewHolder(childView);
-                                if(rvViewHolder instanceof MenuItemAdapter.ItemViewHolder)
-                                {
-                                    MenuItemAdapter.ItemViewHolder viewHolder = (MenuItemAdapter.ItemViewHolder) rvViewHolder;
-                                    int adapterPosition = viewHolder.getAdapterPosition();
-                                    if(adapterPosition != RecyclerView.NO_POSITION && adapterPosition < itemsToDisplay.size())
-                                    {
-                                        MenuItem item = itemsToDisplay.get(adapterPosition);
-                                        if(item.getImageURL() != null && !item.getImageURL().isEmpty())
-                                        {
-                                            Glide.with(childView.getContext()).load(item.getImageURL())
-                                                    .placeholder(R.drawable.image_placeholder)
-                                                    .error(R.drawable.image_placeholder)
-                                                    .into(viewHolder.itemImage);
-                                        } else
-                                        {
-                                            viewHolder.itemImage.setImageResource(R.drawable.image_placeholder);
-                                        }
-                                    }
-                                }
-                            }
-                        });
-                    })
-                    .addOnFailureListener(e -> Log.e("MenuAdapter", "Error loading items for menu " + menuID + ": " + e.getMessage()));
+            itemAdapter.submitList(row.items);
         }
     }
-}
\ No newline at end of file
+}
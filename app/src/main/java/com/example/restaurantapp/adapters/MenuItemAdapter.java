@@ -8,13 +8,17 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.bumptech.glide.Glide;
+import com.bumptech.glide.util.ViewPreloadSizeProvider;
 import com.example.restaurantapp.R;
 import com.example.restaurantapp.models.MenuItem;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 import com.example.restaurantapp.utils.DiscountUtils;
 
@@ -22,17 +26,45 @@ import com.example.restaurantapp.utils.DiscountUtils;
  * Adapter for displaying a list of {@link MenuItem} objects in a RecyclerView.
  * Each item in the list shows its image, name, and price.
  * It utilizes {@link DiscountUtils} to potentially modify the display of prices and show discount information.
+ * New item lists are diffed on a background thread by item ID. Items are loaded as new objects
+ * whenever their data changes, so an item that is the same object in both lists is left as it is.
  */
 public class MenuItemAdapter extends RecyclerView.Adapter<MenuItemAdapter.ItemViewHolder>
 {
     /**
-     * The list of menu items to be displayed by this adapter.
+     * Matches rows by item ID; a row needs rebinding only if its item was replaced by another object.
      */
-    private List<MenuItem> menuItemList;
+    private static final DiffUtil.ItemCallback<MenuItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<MenuItem>()
+    {
+        @Override
+        public boolean areItemsTheSame(@NonNull MenuItem oldItem, @NonNull MenuItem newItem)
+        {
+            return Objects.equals(oldItem.getItemID(), newItem.getItemID());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull MenuItem oldItem, @NonNull MenuItem newItem)
+        {
+            return oldItem == newItem;
+        }
+    };
+
+    /**
+     * Holds the list of menu items displayed by this adapter and diffs each new list against it.
+     */
+    private final AsyncListDiffer<MenuItem> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+    /**
+     * Stable item IDs keyed on item ID.
+     */
+    private final StableIds stableIds = new StableIds();
     /**
      * Listener for click events on individual menu items.
      */
     private OnItemClickListener onItemClickListener;
+    /**
+     * Receives the size of the item image views for preloading, null if the list is not preloaded.
+     */
+    private final ViewPreloadSizeProvider<String> imageSizeProvider;
 
     /**
      * Interface definition for a callback to be invoked when a menu item is clicked.
@@ -55,8 +87,57 @@ public class MenuItemAdapter extends RecyclerView.Adapter<MenuItemAdapter.ItemVi
      */
     public MenuItemAdapter(List<MenuItem> menuItemList, OnItemClickListener listener)
     {
-        this.menuItemList = menuItemList;
+        this(menuItemList, listener, null);
+    }
+
+    /**
+     * Constructs a new {@code MenuItemAdapter} that reports the size of its item images,
+     * so that the images of items not yet shown can be preloaded at that size.
+     *
+     * @param menuItemList      The list of {@link MenuItem} objects to display.
+     * @param listener          The listener that will handle item clicks.
+     * @param imageSizeProvider Receives the size of the item image views, may be null.
+     */
+    MenuItemAdapter(List<MenuItem> menuItemList, OnItemClickListener listener, ViewPreloadSizeProvider<String> imageSizeProvider)
+    {
         this.onItemClickListener = listener;
+        this.imageSizeProvider = imageSizeProvider;
+        setHasStableIds(true);
+        submitList(menuItemList);
+    }
+
+    /**
+     * Replaces the displayed items. The new list is diffed against the displayed one in the
+     * background, unless nothing is displayed, in which case it is shown immediately.
+     *
+     * @param menuItemList The items to display, or null to clear the list immediately.
+     */
+    public void submitList(List<MenuItem> menuItemList)
+    {
+        differ.submitList(menuItemList != null ? new ArrayList<>(menuItemList) : null); // Copy, the differ must own its list
+    }
+
+    /**
+     * Returns the item displayed at the given position.
+     *
+     * @param position The position of the row.
+     * @return The displayed {@link MenuItem}.
+     */
+    MenuItem getItem(int position)
+    {
+        return differ.getCurrentList().get(position);
+    }
+
+    /**
+     * Returns the stable ID of the row at the given position, derived from its item ID.
+     *
+     * @param position The position of the row.
+     * @return The stable ID of the row.
+     */
+    @Override
+    public long getItemId(int position)
+    {
+        return stableIds.get(getItem(position).getItemID());
     }
 
     /**
@@ -74,7 +155,9 @@ public class MenuItemAdapter extends RecyclerView.Adapter<MenuItemAdapter.ItemVi
     public ItemViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType)
     {
         View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_menu_item, parent, false);
-        return new ItemViewHolder(view);
+        ItemViewHolder holder = new ItemViewHolder(view);
+        if(imageSizeProvider != null) imageSizeProvider.setView(holder.itemImage);
+        return holder;
     }
 
     /**
@@ -89,7 +172,7 @@ public class MenuItemAdapter extends RecyclerView.Adapter<MenuItemAdapter.ItemVi
     @Override
     public void onBindViewHolder(@NonNull ItemViewHolder holder, int position)
     {
-        holder.bind(menuItemList.get(position));
+        holder.bind(getItem(position));
     }
 
     /**
@@ -100,7 +183,7 @@ public class MenuItemAdapter extends RecyclerView.Adapter<MenuItemAdapter.ItemVi
     @Override
     public int getItemCount()
     {
-        return menuItemList.size();
+        return differ.getCurrentList().size();
     }
 
     /**
@@ -150,8 +233,11 @@ public class MenuItemAdapter extends RecyclerView.Adapter<MenuItemAdapter.ItemVi
         /**
          * Binds a {@link MenuItem} object's data to the views in this ViewHolder.
          * Sets the item's name and initially sets its price text to the original price.
-         * Loads the item's image using Glide if a URL is available; otherwise, sets a placeholder image.
+         * Loads the item's image through {@link ListImages} if a URL is available, showing a placeholder while it loads
+         * or if it fails; otherwise, sets a placeholder image.
          * It then calls {@link DiscountUtils#applyActiveDiscounts} to process and display any applicable discounts.
+         * When the restaurant's {@link com.example.restaurantapp.utils.DiscountIndex} is loaded, the callback runs
+         * synchronously during the bind; discount views are reset first since rows are recycled.
          * The callback provided to {@code applyActiveDiscounts} receives parameters indicating the discount status:
          * <ul>
          *     <li>If the {@code hasDiscount} parameter (from the callback) is true:
@@ -178,12 +264,13 @@ public class MenuItemAdapter extends RecyclerView.Adapter<MenuItemAdapter.ItemVi
         {
             itemName.setText(item.getName());
             itemPrice.setText(String.format("$%.2f", item.getPrice())); // Show original price by default
+            oldPrice.setVisibility(View.GONE); // Reset state left over from a recycled row
+            discountBadge.setVisibility(View.GONE);
 
-            if(item.getImageURL() != null) // Checks if imageURL is not null
+            String imageUrl = ListImages.thumbnailURL(item); // Grid cell
+            if(imageUrl != null && !imageUrl.isEmpty())
             {
-                Glide.with(itemView.getContext())
-                        .load(item.getImageURL())
-                        .into(itemImage);
+                ListImages.request(itemView.getContext(), imageUrl).into(itemImage);
             } else
             {
                 itemImage.setImageResource(R.drawable.image_placeholder);
@@ -11,6 +11,8 @@ import android.widget.Button;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.restaurantapp.R;
@@ -18,9 +20,11 @@ import com.example.restaurantapp.fragments.UpcomingReservationsFragment;
 import com.example.restaurantapp.models.Reservation;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 
 /**
  * Adapter for displaying a list of {@link Reservation} objects in a RecyclerView.
@@ -28,14 +32,45 @@ import java.util.Locale;
  * and whether the view is for a restaurant user or a regular user. It supports displaying
  * reservation details such as date, time, status, guest count, special requests,
  * and provides a cancel button for upcoming reservations.
+ * New lists are diffed on a background thread by reservation ID, so changing the date filters
+ * only adds and removes the affected rows.
  */
 public class ReservationAdapter extends RecyclerView.Adapter<ReservationAdapter.ReservationViewHolder>
 {
 
     /**
-     * The list of {@link Reservation} objects to be displayed.
+     * Matches rows by reservation ID and compares the fields shown in a row.
      */
-    private final List<Reservation> reservationList;
+    private static final DiffUtil.ItemCallback<Reservation> DIFF_CALLBACK = new DiffUtil.ItemCallback<Reservation>()
+    {
+        @Override
+        public boolean areItemsTheSame(@NonNull Reservation oldItem, @NonNull Reservation newItem)
+        {
+            return Objects.equals(oldItem.getReservationID(), newItem.getReservationID());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Reservation oldItem, @NonNull Reservation newItem)
+        {
+            return Objects.equals(oldItem.getDate(), newItem.getDate())
+                    && Objects.equals(oldItem.getTime(), newItem.getTime())
+                    && Objects.equals(oldItem.getStatus(), newItem.getStatus())
+                    && Objects.equals(oldItem.getGuests(), newItem.getGuests())
+                    && Objects.equals(oldItem.getSpecialRequests(), newItem.getSpecialRequests())
+                    && Objects.equals(oldItem.getName(), newItem.getName())
+                    && Objects.equals(oldItem.getPhoneNumber(), newItem.getPhoneNumber())
+                    && Objects.equals(oldItem.getRestaurantName(), newItem.getRestaurantName());
+        }
+    };
+
+    /**
+     * Holds the displayed list of {@link Reservation} objects and diffs each new list against it.
+     */
+    private final AsyncListDiffer<Reservation> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+    /**
+     * Stable item IDs keyed on reservation ID.
+     */
+    private final StableIds stableIds = new StableIds();
     /**
      * The context in which the adapter is operating.
      */
@@ -70,14 +105,15 @@ public class ReservationAdapter extends RecyclerView.Adapter<ReservationAdapter.
      * in SharedPreferences.
      *
      * @param context         The current context.
-     * @param reservationList The list of {@link Reservation} objects to display.
+     * @param reservationList The initial list of {@link Reservation} objects to display.
      * @param isUpcoming      True if the reservations are upcoming, false otherwise.
      */
     public ReservationAdapter(Context context, List<Reservation> reservationList, boolean isUpcoming)
     {
         this.context = context;
-        this.reservationList = reservationList;
         this.isUpcoming = isUpcoming;
+        setHasStableIds(true);
+        submitList(reservationList);
 
         // Check if parent is an UpcomingReservationsFragment
         if(context instanceof androidx.fragment.app.FragmentActivity)
@@ -100,7 +136,7 @@ public class ReservationAdapter extends RecyclerView.Adapter<ReservationAdapter.
      * This is useful if the fragment reference cannot be reliably obtained from the context.
      *
      * @param context         The current context.
-     * @param reservationList The list of {@link Reservation} objects to display.
+     * @param reservationList The initial list of {@link Reservation} objects to display.
      * @param isUpcoming      True if the reservations are upcoming, false otherwise.
      * @param fragment        A direct reference to the {@link UpcomingReservationsFragment} for handling cancellations.
      */
@@ -110,6 +146,29 @@ public class ReservationAdapter extends RecyclerView.Adapter<ReservationAdapter.
         this.fragment = fragment; // Overrides or sets the fragment reference
     }
 
+    /**
+     * Replaces the displayed reservations. The new list is copied and diffed against the displayed
+     * one in the background; only rows that were added, removed or changed are rebound.
+     *
+     * @param reservations The reservations to display.
+     */
+    public void submitList(List<Reservation> reservations)
+    {
+        differ.submitList(new ArrayList<>(reservations));
+    }
+
+    /**
+     * Returns the stable ID of the row at the given position, derived from its reservation ID.
+     *
+     * @param position The position of the row.
+     * @return The stable ID of the row.
+     */
+    @Override
+    public long getItemId(int position)
+    {
+        return stableIds.get(differ.getCurrentList().get(position).getReservationID());
+    }
+
     /**
      * Called when RecyclerView needs a new {@link ReservationViewHolder} of the given type to represent
      * an item.
@@ -144,7 +203,7 @@ public class ReservationAdapter extends RecyclerView.Adapter<ReservationAdapter.
     @Override
     public void onBindViewHolder(@NonNull ReservationViewHolder holder, int position)
     {
-        Reservation reservation = reservationList.get(position);
+        Reservation reservation = differ.getCurrentList().get(position);
 
         // Date and Time
         String dateTimeText = displayDateFormat.format(reservation.getDate()) + " at " + reservation.getTime();
@@ -204,12 +263,13 @@ public class ReservationAdapter extends RecyclerView.Adapter<ReservationAdapter.
             holder.bottomSpacer.setVisibility(View.VISIBLE);
             holder.cancelButton.setVisibility(View.VISIBLE);
             // Set up cancel button click listener
-            final int pos = position; // effectively final for use in lambda
             holder.cancelButton.setOnClickListener(v ->
             {
+                int pos = holder.getAdapterPosition(); // Rows can move after binding as the list is diffed
+                if(pos == RecyclerView.NO_POSITION) return;
                 if(fragment != null)
                 {
-                    fragment.cancelReservation(reservation, pos);
+                    fragment.cancelReservation(differ.getCurrentList().get(pos), pos);
                 } else
                 {
                     Log.e("ReservationAdapter", "Fragment is null, cannot cancel reservation for item at position " + pos);
@@ -230,7 +290,7 @@ public class ReservationAdapter extends RecyclerView.Adapter<ReservationAdapter.
     @Override
     public int getItemCount()
     {
-        return reservationList.size();
+        return differ.getCurrentList().size();
     }
 
     /**
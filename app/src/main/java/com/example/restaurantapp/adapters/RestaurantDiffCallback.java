@@ -0,0 +1,48 @@
+package com.example.restaurantapp.adapters;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+
+import com.example.restaurantapp.models.Restaurant;
+
+import java.util.Objects;
+
+/**
+ * {@link DiffUtil.ItemCallback} for lists of {@link Restaurant} rows.
+ * Rows are the same restaurant when their restaurant IDs match, and need rebinding only when
+ * one of the fields shown in a restaurant row has changed.
+ */
+class RestaurantDiffCallback extends DiffUtil.ItemCallback<Restaurant>
+{
+    /**
+     * Returns whether two rows show the same restaurant.
+     *
+     * @param oldItem The row in the old list.
+     * @param newItem The row in the new list.
+     * @return True if both have the same restaurant ID, false otherwise.
+     */
+    @Override
+    public boolean areItemsTheSame(@NonNull Restaurant oldItem, @NonNull Restaurant newItem)
+    {
+        return Objects.equals(oldItem.getRestaurantID(), newItem.getRestaurantID());
+    }
+
+    /**
+     * Returns whether a row would be displayed identically for both versions of a restaurant.
+     *
+     * @param oldItem The row in the old list.
+     * @param newItem The row in the new list.
+     * @return True if every displayed field is equal, false otherwise.
+     */
+    @Override
+    public boolean areContentsTheSame(@NonNull Restaurant oldItem, @NonNull Restaurant newItem)
+    {
+        return Objects.equals(oldItem.getName(), newItem.getName())
+                && Objects.equals(oldItem.getAddress(), newItem.getAddress())
+                && Objects.equals(oldItem.getImageURL(), newItem.getImageURL())
+                && Objects.equals(oldItem.getCardImageURL(), newItem.getCardImageURL())
+                && Objects.equals(oldItem.getTags(), newItem.getTags())
+                && oldItem.getAverageRating() == newItem.getAverageRating()
+                && oldItem.getPriceLevel() == newItem.getPriceLevel();
+    }
+}
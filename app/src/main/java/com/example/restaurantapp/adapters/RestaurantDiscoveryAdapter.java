@@ -1,6 +1,7 @@
 package com.example.restaurantapp.adapters;
 
 import android.content.Context;
+import android.graphics.drawable.Drawable;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -8,12 +9,18 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.AsyncListDiffer;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.bumptech.glide.Glide;
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.integration.recyclerview.RecyclerViewPreloader;
+import com.bumptech.glide.util.ViewPreloadSizeProvider;
 import com.example.restaurantapp.R;
 import com.example.restaurantapp.models.Restaurant;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
@@ -22,14 +29,27 @@ import java.util.Locale;
  * typically used in a discovery or browsing context.
  * Each item displays the restaurant's image, name, address, average rating,
  * price level, and tags. It also handles click events on items.
+ * List updates are diffed on a background thread by restaurant ID, so only rows that were added,
+ * removed, moved or changed are rebound.
+ * The adapter also tells a {@link RecyclerViewPreloader} which images lie ahead of the scroll position,
+ * see {@link #createPreloader(Fragment)}.
  */
 public class RestaurantDiscoveryAdapter extends RecyclerView.Adapter<RestaurantDiscoveryAdapter.ViewHolder>
+        implements ListPreloader.PreloadModelProvider<String>
 {
 
     /**
-     * The list of {@link Restaurant} objects to be displayed.
+     * Holds the displayed list of {@link Restaurant} objects and diffs each new list against it.
      */
-    private List<Restaurant> restaurants;
+    private final AsyncListDiffer<Restaurant> differ = new AsyncListDiffer<>(this, new RestaurantDiffCallback());
+    /**
+     * Stable item IDs keyed on restaurant ID.
+     */
+    private final StableIds stableIds = new StableIds();
+    /**
+     * Size of the restaurant image views, measured on the first row and used for preloading.
+     */
+    private final ViewPreloadSizeProvider<String> preloadSizeProvider = new ViewPreloadSizeProvider<>();
     /**
      * The context in which the adapter is operating.
      */
@@ -61,23 +81,72 @@ public class RestaurantDiscoveryAdapter extends RecyclerView.Adapter<RestaurantD
      */
     public RestaurantDiscoveryAdapter(List<Restaurant> restaurants, Context context, OnRestaurantClickListener listener)
     {
-        this.restaurants = restaurants;
         this.context = context;
         this.listener = listener;
+        setHasStableIds(true);
+        differ.submitList(new ArrayList<>(restaurants));
     }
 
     /**
      * Updates the data in the adapter with a new list of restaurants.
-     * Clears the existing list and adds all items from the new list, then notifies
-     * the adapter that the data set has changed.
+     * The new list is diffed against the displayed one in the background; when a page was appended
+     * only the appended range is inserted, and switching between the feed and "near me" only
+     * rebinds the restaurants whose rows differ.
      *
      * @param newRestaurants The new list of {@link Restaurant} objects to display.
      */
     public void updateData(List<Restaurant> newRestaurants)
     {
-        this.restaurants.clear();
-        this.restaurants.addAll(newRestaurants);
-        notifyDataSetChanged();
+        differ.submitList(new ArrayList<>(newRestaurants)); // Copy, the differ must own its list
+    }
+
+    /**
+     * Returns the stable ID of the row at the given position, derived from its restaurant ID.
+     *
+     * @param position The position of the row.
+     * @return The stable ID of the row.
+     */
+    @Override
+    public long getItemId(int position)
+    {
+        return stableIds.get(differ.getCurrentList().get(position).getRestaurantID());
+    }
+
+    /**
+     * Creates a scroll listener that preloads the images of the next rows while the list is scrolled,
+     * at the size of the rows' image views.
+     *
+     * @param fragment The fragment showing the list, whose lifecycle the preloads follow.
+     * @return The listener, to be added to the list with {@link RecyclerView#addOnScrollListener}.
+     */
+    public RecyclerViewPreloader<String> createPreloader(Fragment fragment)
+    {
+        return new RecyclerViewPreloader<>(fragment, this, preloadSizeProvider, ListImages.RESTAURANT_ROWS_AHEAD);
+    }
+
+    /**
+     * Returns the image of the row at the given position, for preloading.
+     *
+     * @param position The position of the row.
+     * @return The URL of the row's image, or an empty list if it has none.
+     */
+    @NonNull
+    @Override
+    public List<String> getPreloadItems(int position)
+    {
+        return ListImages.preloadList(ListImages.cardURL(differ.getCurrentList().get(position)));
+    }
+
+    /**
+     * Returns the request preloading an image, the same request a bound row makes.
+     *
+     * @param url The URL of the image.
+     * @return The request.
+     */
+    @Override
+    public RequestBuilder<Drawable> getPreloadRequestBuilder(@NonNull String url)
+    {
+        return ListImages.request(context, url);
     }
 
     /**
@@ -94,7 +163,9 @@ public class RestaurantDiscoveryAdapter extends RecyclerView.Adapter<RestaurantD
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType)
     {
         View view = LayoutInflater.from(context).inflate(R.layout.item_discovery_restaurant, parent, false);
-        return new ViewHolder(view);
+        ViewHolder holder = new ViewHolder(view);
+        preloadSizeProvider.setView(holder.restaurantImage);
+        return holder;
     }
 
     /**
@@ -103,7 +174,7 @@ public class RestaurantDiscoveryAdapter extends RecyclerView.Adapter<RestaurantD
      * position.
      * It sets the restaurant's name (defaulting to "Unknown" if null), address (defaulting to empty if null),
      * average rating (formatted to one decimal place, or "N/A" if rating is not positive),
-     * and loads the restaurant's image using Glide with placeholders.
+     * and loads the restaurant's image through {@link ListImages} with placeholders.
      * It also formats and displays the price level and joins the tags into a comma-separated string.
      * An OnClickListener is set on the itemView to trigger {@link OnRestaurantClickListener#onRestaurantClick(Restaurant)}
      * if the listener is not null.
@@ -115,7 +186,7 @@ public class RestaurantDiscoveryAdapter extends RecyclerView.Adapter<RestaurantD
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position)
     {
-        Restaurant restaurant = restaurants.get(position);
+        Restaurant restaurant = differ.getCurrentList().get(position);
 
         holder.restaurantName.setText(restaurant.getName() != null ? restaurant.getName() : "Unknown");
         holder.restaurantAddress.setText(restaurant.getAddress() != null ? restaurant.getAddress() : "");
@@ -123,11 +194,7 @@ public class RestaurantDiscoveryAdapter extends RecyclerView.Adapter<RestaurantD
         double rating = restaurant.getAverageRating();
         holder.restaurantRating.setText(rating > 0 ? String.format(Locale.getDefault(), "%.1f", rating) : "N/A");
 
-        Glide.with(context)
-                .load(restaurant.getImageURL())
-                .placeholder(R.drawable.image_placeholder)
-                .error(R.drawable.image_placeholder)
-                .into(holder.restaurantImage);
+        ListImages.request(context, ListImages.cardURL(restaurant)).into(holder.restaurantImage);
 
         // Bind price level
         String priceLevelText = getPriceLevelText(restaurant.getPriceLevel());
@@ -145,9 +212,11 @@ public class RestaurantDiscoveryAdapter extends RecyclerView.Adapter<RestaurantD
 
         holder.itemView.setOnClickListener(v ->
         {
-            if(listener != null)
+            // Rows with unchanged contents are not rebound, so look up the current restaurant
+            int currentPosition = holder.getAdapterPosition();
+            if(listener != null && currentPosition != RecyclerView.NO_POSITION)
             {
-                listener.onRestaurantClick(restaurant);
+                listener.onRestaurantClick(differ.getCurrentList().get(currentPosition));
             }
         });
     }
@@ -160,7 +229,7 @@ public class RestaurantDiscoveryAdapter extends RecyclerView.Adapter<RestaurantD
     @Override
     public int getItemCount()
     {
-        return restaurants.size();
+        return differ.getCurrentList().size();
     }
 
     /**
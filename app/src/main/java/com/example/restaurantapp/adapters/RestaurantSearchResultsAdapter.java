@@ -1,8 +1,7 @@
 package com.example.restaurantapp.adapters;
 
-import android.Manifest;
 import android.content.Context;
-import android.content.pm.PackageManager;
+import android.graphics.drawable.Drawable;
 import android.location.Location;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -12,32 +11,41 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
-import androidx.core.app.ActivityCompat;
+import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.AsyncListDiffer;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.bumptech.glide.Glide;
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.integration.recyclerview.RecyclerViewPreloader;
+import com.bumptech.glide.util.ViewPreloadSizeProvider;
 import com.example.restaurantapp.R;
 import com.example.restaurantapp.models.Restaurant;
-import com.google.android.gms.location.CurrentLocationRequest;
-import com.google.android.gms.location.FusedLocationProviderClient;
-import com.google.android.gms.location.LocationServices;
-import com.google.android.gms.location.Priority;
-import com.google.android.gms.maps.model.LatLng;
-import com.google.android.gms.tasks.Task;
+import com.example.restaurantapp.utils.GeoHashUtils;
 import com.google.firebase.firestore.GeoPoint;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Adapter for displaying a list of {@link Restaurant} objects in a RecyclerView,
  * typically used to show search results.
- * Each item displays the restaurant's image, name, average rating, tags, and calculated distance
- * from the user's current location. It also provides a navigation button and handles click events
+ * Each item displays the restaurant's image, name, average rating, tags, and distance
+ * from the user's location. Distances are computed for the whole list at once whenever the list
+ * or the user's location changes, never while binding a row. It also provides a navigation button and handles click events
  * on both the item itself and the navigation button.
+ * New result lists are diffed on a background thread by restaurant ID, so refining a query only
+ * rebinds the rows that were added or changed; a location change only rebinds the distances.
+ * The adapter also tells a {@link RecyclerViewPreloader} which images lie ahead of the scroll position,
+ * see {@link #createPreloader(Fragment)}.
  */
 public class RestaurantSearchResultsAdapter
         extends RecyclerView.Adapter<RestaurantSearchResultsAdapter.ViewHolder>
+        implements ListPreloader.PreloadModelProvider<String>
 {
 
     /**
@@ -61,9 +69,31 @@ public class RestaurantSearchResultsAdapter
     }
 
     /**
-     * The list of {@link Restaurant} objects to be displayed.
+     * Payload marking a row whose distance, and nothing else, has to be rebound.
      */
-    private List<Restaurant> restaurants;
+    private static final Object PAYLOAD_DISTANCE = new Object();
+
+    /**
+     * Holds the displayed list of {@link Restaurant} objects and diffs each new list against it.
+     * A restaurant whose location moved is rebound too, since its distance changes.
+     */
+    private final AsyncListDiffer<Restaurant> differ = new AsyncListDiffer<>(this, new RestaurantDiffCallback()
+    {
+        @Override
+        public boolean areContentsTheSame(@NonNull Restaurant oldItem, @NonNull Restaurant newItem)
+        {
+            return super.areContentsTheSame(oldItem, newItem)
+                    && Objects.equals(oldItem.getLocation(), newItem.getLocation());
+        }
+    });
+    /**
+     * Stable item IDs keyed on restaurant ID.
+     */
+    private final StableIds stableIds = new StableIds();
+    /**
+     * Size of the restaurant image views, measured on the first row and used for preloading.
+     */
+    private final ViewPreloadSizeProvider<String> preloadSizeProvider = new ViewPreloadSizeProvider<>();
     /**
      * The context in which the adapter is operating.
      */
@@ -72,6 +102,14 @@ public class RestaurantSearchResultsAdapter
      * Listener for click events on items and navigation buttons.
      */
     private final OnItemClickListener listener;
+    /**
+     * The user's location the distances are measured from, null if unknown.
+     */
+    private Location userLocation;
+    /**
+     * Distance in kilometers to each displayed restaurant by restaurant ID; -1 where unknown.
+     */
+    private Map<String, Double> distancesKm = new HashMap<>();
 
     /**
      * Constructs a new {@code RestaurantSearchResultsAdapter}.
@@ -85,23 +123,113 @@ public class RestaurantSearchResultsAdapter
             Context context,
             OnItemClickListener listener)
     {
-        this.restaurants = restaurants;
         this.context = context;
         this.listener = listener;
+        setHasStableIds(true);
+        updateData(restaurants);
     }
 
     /**
      * Updates the data in the adapter with a new list of restaurants.
-     * Clears the existing list and adds all items from the new list, then notifies
-     * the adapter that the data set has changed.
+     * The distances of the new list are computed up front and take effect together with the list,
+     * once it has been diffed against the displayed one in the background.
      *
      * @param newRestaurants The new list of {@link Restaurant} objects to display.
      */
     public void updateData(List<Restaurant> newRestaurants)
     {
-        this.restaurants.clear();
-        this.restaurants.addAll(newRestaurants);
-        notifyDataSetChanged();
+        List<Restaurant> submitted = new ArrayList<>(newRestaurants); // Copy, the differ must own its list
+        Map<String, Double> distances = computeDistances(submitted);
+        differ.submitList(submitted, () -> distancesKm = distances);
+    }
+
+    /**
+     * Sets the user's location and recomputes the distances of all listed restaurants from it.
+     * Only the distance of each row is rebound.
+     *
+     * @param location The user's location, or null if unknown.
+     */
+    public void setUserLocation(Location location)
+    {
+        this.userLocation = location;
+        List<Restaurant> restaurants = differ.getCurrentList();
+        if(restaurants.isEmpty()) return;
+        distancesKm = computeDistances(restaurants);
+        notifyItemRangeChanged(0, restaurants.size(), PAYLOAD_DISTANCE);
+    }
+
+    /**
+     * Computes the distance from {@link #userLocation} to every given restaurant in one pass,
+     * rounded to one decimal place of a kilometer.
+     *
+     * @param restaurants The restaurants.
+     * @return The distance in kilometers by restaurant ID; -1 where unknown.
+     */
+    private Map<String, Double> computeDistances(List<Restaurant> restaurants)
+    {
+        Map<String, Double> distances = new HashMap<>();
+        for(Restaurant restaurant : restaurants)
+        {
+            GeoPoint geoPoint = restaurant.getLocation();
+            if(userLocation == null || geoPoint == null)
+            {
+                distances.put(restaurant.getRestaurantID(), -1.0);
+                continue;
+            }
+            double meters = GeoHashUtils.distanceMeters(userLocation.getLatitude(), userLocation.getLongitude(),
+                    geoPoint.getLatitude(), geoPoint.getLongitude());
+            distances.put(restaurant.getRestaurantID(), Math.round((meters / 1000.0) * 10.0) / 10.0); // Convert to km, one decimal place
+        }
+        return distances;
+    }
+
+    /**
+     * Returns the stable ID of the row at the given position, derived from its restaurant ID.
+     *
+     * @param position The position of the row.
+     * @return The stable ID of the row.
+     */
+    @Override
+    public long getItemId(int position)
+    {
+        return stableIds.get(differ.getCurrentList().get(position).getRestaurantID());
+    }
+
+    /**
+     * Creates a scroll listener that preloads the images of the next rows while the list is scrolled,
+     * at the size of the rows' image views.
+     *
+     * @param fragment The fragment showing the list, whose lifecycle the preloads follow.
+     * @return The listener, to be added to the list with {@link RecyclerView#addOnScrollListener}.
+     */
+    public RecyclerViewPreloader<String> createPreloader(Fragment fragment)
+    {
+        return new RecyclerViewPreloader<>(fragment, this, preloadSizeProvider, ListImages.RESTAURANT_ROWS_AHEAD);
+    }
+
+    /**
+     * Returns the image of the row at the given position, for preloading.
+     *
+     * @param position The position of the row.
+     * @return The URL of the row's image, or an empty list if it has none.
+     */
+    @NonNull
+    @Override
+    public List<String> getPreloadItems(int position)
+    {
+        return ListImages.preloadList(ListImages.cardURL(differ.getCurrentList().get(position)));
+    }
+
+    /**
+     * Returns the request preloading an image, the same request a bound row makes.
+     *
+     * @param url The URL of the image.
+     * @return The request.
+     */
+    @Override
+    public RequestBuilder<Drawable> getPreloadRequestBuilder(@NonNull String url)
+    {
+        return ListImages.request(context, url);
     }
 
     /**
@@ -119,7 +247,9 @@ public class RestaurantSearchResultsAdapter
     {
         View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.item_search_restaurant, parent, false);
-        return new ViewHolder(view);
+        ViewHolder holder = new ViewHolder(view);
+        preloadSizeProvider.setView(holder.restaurantImage);
+        return holder;
     }
 
     /**
@@ -128,9 +258,8 @@ public class RestaurantSearchResultsAdapter
      * position.
      * It sets the restaurant's name (defaulting to "Unknown" if null), average rating (formatted to
      * one decimal place, or "N/A" if not positive), and tags (using {@code toString()} on the list,
-     * or "No tags" if null). The restaurant's image is loaded using Glide.
-     * The distance to the restaurant is calculated asynchronously via {@link #getDistance(Restaurant, DistanceCallback)}
-     * and displayed as "X km" or "N/A".
+     * or "No tags" if null). The restaurant's image is loaded through {@link ListImages}.
+     * The precomputed distance to the restaurant is displayed as "X km", or "N/A" if it is unknown.
      * Click listeners are set for the entire item view (triggering {@link OnItemClickListener#onItemClick(Restaurant)})
      * and the navigation button (triggering {@link OnItemClickListener#onNavigateClick(Restaurant)}).
      *
@@ -141,7 +270,7 @@ public class RestaurantSearchResultsAdapter
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position)
     {
-        Restaurant restaurant = restaurants.get(position);
+        Restaurant restaurant = differ.getCurrentList().get(position);
 
         // Bind the fields
         holder.nameTextView.setText(restaurant.getName() != null ? restaurant.getName() : "Unknown");
@@ -152,35 +281,60 @@ public class RestaurantSearchResultsAdapter
                 ? restaurant.getTags().toString() // Note: This will include brackets and commas from List.toString()
                 : "No tags");
 
-        Glide.with(context)
-                .load(restaurant.getImageURL())
-                .placeholder(R.drawable.image_placeholder)
-                .error(R.drawable.image_placeholder)
-                .into(holder.restaurantImage);
+        ListImages.request(context, ListImages.cardURL(restaurant)).into(holder.restaurantImage); // Card-sized row
+
+        bindDistance(holder, restaurant);
 
-        // Bind distance (if needed)
-        if(restaurant.getLocation() != null)
+        // Rows with unchanged contents are not rebound, so the click listeners look up the current restaurant
+        // Item click listener
+        holder.itemView.setOnClickListener(v ->
         {
-            getDistance(restaurant, distance ->
+            int currentPosition = holder.getAdapterPosition();
+            if(currentPosition != RecyclerView.NO_POSITION)
             {
-                if(distance != -1)
-                {
-                    holder.distanceTextView.setText(distance + " km");
-                } else
-                {
-                    holder.distanceTextView.setText("N/A");
-                }
-            });
-        } else
+                listener.onItemClick(differ.getCurrentList().get(currentPosition));
+            }
+        });
+
+        // Navigation button click listener
+        holder.navButton.setOnClickListener(v ->
         {
-            holder.distanceTextView.setText("N/A"); // If restaurant location is null
-        }
+            int currentPosition = holder.getAdapterPosition();
+            if(currentPosition != RecyclerView.NO_POSITION)
+            {
+                listener.onNavigateClick(differ.getCurrentList().get(currentPosition));
+            }
+        });
+    }
 
-        // Item click listener
-        holder.itemView.setOnClickListener(v -> listener.onItemClick(restaurant));
+    /**
+     * Binds a row partially when only its distance changed, and fully otherwise.
+     *
+     * @param holder   The ViewHolder to update.
+     * @param position The position of the item within the adapter's data set.
+     * @param payloads The payloads of the pending change notifications; empty for a full bind.
+     */
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position, @NonNull List<Object> payloads)
+    {
+        if(!payloads.isEmpty() && payloads.stream().allMatch(payload -> payload == PAYLOAD_DISTANCE))
+        {
+            bindDistance(holder, differ.getCurrentList().get(position));
+            return;
+        }
+        onBindViewHolder(holder, position);
+    }
 
-        // Navigation button click listener
-        holder.navButton.setOnClickListener(v -> listener.onNavigateClick(restaurant));
+    /**
+     * Displays the precomputed distance to a restaurant as "X km", or "N/A" if it is unknown.
+     *
+     * @param holder     The ViewHolder to update.
+     * @param restaurant The restaurant shown by the row.
+     */
+    private void bindDistance(ViewHolder holder, Restaurant restaurant)
+    {
+        Double distance = distancesKm.get(restaurant.getRestaurantID());
+        holder.distanceTextView.setText(distance != null && distance != -1 ? distance + " km" : "N/A");
     }
 
     /**
@@ -191,7 +345,7 @@ public class RestaurantSearchResultsAdapter
     @Override
     public int getItemCount()
     {
-        return restaurants.size();
+        return differ.getCurrentList().size();
     }
 
     /**
@@ -244,85 +398,4 @@ public class RestaurantSearchResultsAdapter
             navButton = itemView.findViewById(R.id.navButton);
         }
     }
-
-    /**
-     * Asynchronously calculates the distance from the user's current location to the given restaurant.
-     * It uses {@link FusedLocationProviderClient} to get the current location.
-     * Location permissions ({@link Manifest.permission#ACCESS_FINE_LOCATION} and
-     * {@link Manifest.permission#ACCESS_COARSE_LOCATION}) are checked before attempting to get the location.
-     * If permissions are granted and the current location is successfully obtained, it calculates
-     * the distance to the restaurant's {@link GeoPoint} location. The distance is converted to kilometers,
-     * rounded to one decimal place, and passed to the {@link DistanceCallback}.
-     * If permissions are not granted, or if fetching the current location fails, or if the restaurant's
-     * location is null, the callback receives -1.
-     *
-     * @param restaurant The {@link Restaurant} to calculate the distance to.
-     * @param callback   The {@link DistanceCallback} to be invoked with the calculated distance or -1 on failure.
-     */
-    public void getDistance(Restaurant restaurant, DistanceCallback callback)
-    {
-        FusedLocationProviderClient fusedLocationClient = LocationServices.getFusedLocationProviderClient(context);
-
-        if(ActivityCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED &&
-                ActivityCompat.checkSelfPermission(context, Manifest.permission.ACCESS_COARSE_LOCATION) == PackageManager.PERMISSION_GRANTED)
-        {
-
-            CurrentLocationRequest currentLocationRequest = new CurrentLocationRequest.Builder()
-                    .setDurationMillis(5000) // Request location for up to 5 seconds
-                    .setMaxUpdateAgeMillis(0)  // Request a fresh location
-                    .setPriority(Priority.PRIORITY_HIGH_ACCURACY)
-                    .build();
-
-            Task<Location> locationTask = fusedLocationClient.getCurrentLocation(currentLocationRequest, null);
-
-            locationTask.addOnCompleteListener(task ->
-            {
-                if(task.isSuccessful() && task.getResult() != null)
-                {
-                    Location location = task.getResult();
-                    LatLng currentLatLng = new LatLng(location.getLatitude(), location.getLongitude());
-                    GeoPoint geoPoint = restaurant.getLocation(); // Assumes restaurant.getLocation() is not null here, checked in onBindViewHolder
-                    if(geoPoint != null)
-                    { // Defensive check
-                        LatLng restaurantLatLng = new LatLng(geoPoint.getLatitude(), geoPoint.getLongitude());
-
-                        float[] results = new float[1];
-                        Location.distanceBetween(
-                                currentLatLng.latitude, currentLatLng.longitude,
-                                restaurantLatLng.latitude, restaurantLatLng.longitude,
-                                results
-                        );
-                        // Convert meters to kilometers and round to one decimal place
-                        double distance = Math.round((results[0] / 1000.0) * 10.0) / 10.0;
-                        callback.onDistanceCalculated(distance);
-                    } else
-                    {
-                        callback.onDistanceCalculated(-1); // Restaurant GeoPoint is null
-                    }
-                } else
-                {
-                    // Handle failure to get current location
-                    callback.onDistanceCalculated(-1);
-                }
-            });
-        } else
-        {
-            // Handle permission not granted case
-            callback.onDistanceCalculated(-1);
-        }
-    }
-
-    /**
-     * Interface definition for a callback to be invoked when the distance calculation is complete.
-     */
-    public interface DistanceCallback
-    {
-        /**
-         * Called when the distance to a restaurant has been calculated or if calculation failed.
-         *
-         * @param distance The calculated distance in kilometers, or -1 if the calculation failed
-         *                 (e.g., permissions denied, location unavailable, restaurant location null).
-         */
-        void onDistanceCalculated(double distance);
-    }
-}
\ No newline at end of file
+}
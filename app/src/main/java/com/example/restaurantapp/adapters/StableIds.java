@@ -0,0 +1,38 @@
+package com.example.restaurantapp.adapters;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns stable {@code long} item IDs to the string document IDs of an adapter's rows.
+ * Each document ID gets the next free number the first time it is seen and keeps it for the
+ * lifetime of the adapter, so a row keeps its ID across list updates and RecyclerView can match
+ * views to rows without comparing strings.
+ */
+class StableIds
+{
+    /**
+     * The ID assigned to each document ID.
+     */
+    private final Map<String, Long> ids = new HashMap<>();
+
+    /**
+     * Returns the stable ID of a document ID, assigning one if it has none yet.
+     *
+     * @param documentID The document ID, may be null.
+     * @return The stable ID, or {@link RecyclerView#NO_ID} for a null document ID.
+     */
+    long get(String documentID)
+    {
+        if(documentID == null) return RecyclerView.NO_ID;
+        Long id = ids.get(documentID);
+        if(id == null)
+        {
+            id = (long) ids.size();
+            ids.put(documentID, id);
+        }
+        return id;
+    }
+}
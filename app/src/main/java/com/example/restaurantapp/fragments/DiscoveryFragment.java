@@ -5,6 +5,7 @@ import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.fragment.app.Fragment;
@@ -14,20 +15,20 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.restaurantapp.R;
 import com.example.restaurantapp.adapters.RestaurantDiscoveryAdapter;
-import com.example.restaurantapp.models.Restaurant;
+import com.example.restaurantapp.utils.LocationProvider;
+import com.example.restaurantapp.viewmodels.DiscoveryViewModel;
 import com.example.restaurantapp.viewmodels.RestaurantViewModel;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.android.material.chip.Chip;
 
 import java.util.ArrayList;
-import java.util.List;
 
 /**
  * A {@link Fragment} subclass responsible for displaying a list of restaurants for discovery.
- * It fetches restaurant data from Firestore and displays it using a {@link RecyclerView}
- * with a {@link RestaurantDiscoveryAdapter}. Users can click on a restaurant to navigate
+ * It pages through restaurant data from Firestore with a {@link DiscoveryViewModel} and displays it
+ * using a {@link RecyclerView} with a {@link RestaurantDiscoveryAdapter}. Users can click on a restaurant to navigate
  * to its details page ({@link RestaurantInfoFragment}). The fragment uses a
  * {@link RestaurantViewModel} to share the selected restaurant's data.
+ * The "Near me" chip switches the list to the restaurants closest to the user's last known location.
  */
 public class DiscoveryFragment extends Fragment
 {
@@ -44,6 +45,18 @@ public class DiscoveryFragment extends Fragment
      * ViewModel for managing and sharing restaurant data.
      */
     private RestaurantViewModel viewModel;
+    /**
+     * ViewModel holding the pages of the discovery feed loaded so far.
+     */
+    private DiscoveryViewModel discoveryViewModel;
+    /**
+     * Chip toggling between the paged feed and the restaurants nearest to the user.
+     */
+    private Chip nearMeChip;
+    /**
+     * Number of remaining items below the last visible one at which the next page is requested.
+     */
+    private static final int PREFETCH_DISTANCE = 5;
 
     /**
      * Required empty public constructor for Fragment instantiation.
@@ -60,7 +73,9 @@ public class DiscoveryFragment extends Fragment
      * the {@link RestaurantDiscoveryAdapter}. The adapter's item click listener
      * handles navigation to the {@link RestaurantInfoFragment} upon clicking a restaurant,
      * passing the selected restaurant data via the ViewModel.
-     * It also initiates the first fetch of restaurant data by calling {@link #fetchAllRestaurants()}.
+     * The feed is observed from the {@link DiscoveryViewModel}; the first page is requested only if
+     * none has been loaded yet, and further pages are requested as the user scrolls near the end.
+     * Only the list of the active mode (paged feed or "near me") is shown in the adapter.
      *
      * @param inflater           The LayoutInflater object that can be used to inflate
      *                           any views in the fragment.
@@ -78,6 +93,7 @@ public class DiscoveryFragment extends Fragment
         View view = inflater.inflate(R.layout.fragment_discovery, container, false);
 
         viewModel = new ViewModelProvider(requireActivity()).get(RestaurantViewModel.class);
+        discoveryViewModel = new ViewModelProvider(requireActivity()).get(DiscoveryViewModel.class);
 
         restaurantRecyclerView = view.findViewById(R.id.restaurantRecyclerView);
         restaurantRecyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
@@ -99,68 +115,83 @@ public class DiscoveryFragment extends Fragment
             }
         });
         restaurantRecyclerView.setAdapter(restaurantAdapter);
+        restaurantRecyclerView.addOnScrollListener(restaurantAdapter.createPreloader(this)); // Fetch images of the next rows
 
-        // Fetch all restaurants from Firestore
-        fetchAllRestaurants();
-        return view;
-    }
+        // Prefetch the next page when the user nears the end of the list
+        restaurantRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener()
+        {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy)
+            {
+                LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+                if(dy > 0 && !discoveryViewModel.isNearMe() && layoutManager != null
+                        && layoutManager.findLastVisibleItemPosition() >= restaurantAdapter.getItemCount() - PREFETCH_DISTANCE)
+                {
+                    discoveryViewModel.loadNextPage();
+                }
+            }
+        });
 
-    /**
-     * Called when the fragment is visible to the user and actively running.
-     * This lifecycle method is overridden to call {@link #fetchAllRestaurants()}
-     * to ensure the list of restaurants is refreshed or re-fetched when the fragment
-     * becomes active, for instance, when returning from another fragment.
-     */
-    @Override
-    public void onResume()
-    {
-        super.onResume();
-        fetchAllRestaurants(); // Refresh data when fragment resumes
+        discoveryViewModel.getRestaurants().observe(getViewLifecycleOwner(), restaurants ->
+        {
+            if(discoveryViewModel.isNearMe()) return;
+            Log.d("DiscoveryFragment", "Showing " + restaurants.size() + " restaurants");
+            restaurantAdapter.updateData(restaurants);
+        });
+        discoveryViewModel.getNearbyRestaurants().observe(getViewLifecycleOwner(), restaurants ->
+        {
+            if(!discoveryViewModel.isNearMe()) return;
+            Log.d("DiscoveryFragment", "Showing " + restaurants.size() + " nearby restaurants");
+            restaurantAdapter.updateData(restaurants);
+        });
+
+        nearMeChip = view.findViewById(R.id.nearMeChip);
+        nearMeChip.setChecked(discoveryViewModel.isNearMe());
+        nearMeChip.setOnCheckedChangeListener((chip, isChecked) ->
+        {
+            if(isChecked)
+            {
+                showNearbyRestaurants();
+            } else
+            {
+                discoveryViewModel.clearNearMe();
+                restaurantAdapter.updateData(discoveryViewModel.getRestaurants().getValue());
+            }
+        });
+
+        // Pages already loaded are kept in the ViewModel; only fetch the first page once
+        if(!discoveryViewModel.hasLoaded())
+        {
+            discoveryViewModel.loadNextPage();
+        }
+        return view;
     }
 
     /**
-     * Fetches all restaurant documents from the "Restaurants" collection in Firestore,
-     * ordered by name.
-     * On successful retrieval, it converts each document to a {@link Restaurant} object,
-     * populates a list, and updates the {@link #restaurantAdapter} with this new list.
-     * Logs the number of fetched restaurants or a warning if no restaurants are found.
-     * On failure, it logs an error. It also includes a general try-catch block for
-     * unexpected exceptions during the fetch operation.
+     * Switches the list to the restaurants nearest to the user's location from the shared {@link LocationProvider}.
+     * If the location permission is missing or no location is available, a toast is shown
+     * and the chip is unchecked again.
      */
-    private void fetchAllRestaurants()
+    private void showNearbyRestaurants()
     {
-        try
+        LocationProvider locationProvider = LocationProvider.getInstance(requireContext());
+        if(!locationProvider.hasPermission())
         {
-            Log.d("DiscoveryFragment", "Starting to fetch restaurants");
-
-            FirebaseFirestore db = FirebaseFirestore.getInstance();
-            db.collection("Restaurants")
-                    .orderBy("name") // Order restaurants by name
-                    .get()
-                    .addOnSuccessListener(querySnapshot ->
-                    {
-                        List<Restaurant> restaurantList = new ArrayList<>();
-                        for(QueryDocumentSnapshot document : querySnapshot)
-                        {
-                            Restaurant restaurant = document.toObject(Restaurant.class);
-                            restaurantList.add(restaurant);
-                        }
-                        Log.d("DiscoveryFragment", "Fetched " + restaurantList.size() + " restaurants");
-                        if(restaurantList.isEmpty())
-                        {
-                            Log.w("DiscoveryFragment", "No restaurants found in Firestore");
-                            // Consider showing an empty state UI here
-                        }
-                        restaurantAdapter.updateData(restaurantList); // Update adapter with fetched data
-                    })
-                    .addOnFailureListener(e ->
-                    {
-                        Log.e("Firestore", "Error fetching restaurants: ", e);
-                        // Consider showing an error state UI here
-                    });
-        } catch(Exception e)
-        {
-            Log.e("DiscoveryFragment", "Exception in fetchAllRestaurants", e);
+            Toast.makeText(getContext(), "Location permission is required to find restaurants near you", Toast.LENGTH_SHORT).show();
+            nearMeChip.setChecked(false);
+            return;
         }
+
+        locationProvider.getLocation(LocationProvider.DEFAULT_MAX_AGE_MILLIS, location ->
+        {
+            if(!isAdded() || !nearMeChip.isChecked()) return; // Chip was unchecked while waiting
+            if(location == null)
+            {
+                Toast.makeText(getContext(), "Could not determine your location", Toast.LENGTH_SHORT).show();
+                nearMeChip.setChecked(false);
+                return;
+            }
+            discoveryViewModel.loadNearby(location.getLatitude(), location.getLongitude());
+        });
     }
-}
\ No newline at end of file
+}
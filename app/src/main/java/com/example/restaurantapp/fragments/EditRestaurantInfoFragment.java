@@ -7,7 +7,6 @@ import android.app.Activity;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
-import android.graphics.Matrix;
 import android.location.Address;
 import android.location.Geocoder;
 import android.net.Uri;
@@ -21,7 +20,6 @@ import androidx.core.content.ContextCompat;
 import androidx.core.content.FileProvider;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
-import androidx.exifinterface.media.ExifInterface; // For reading image orientation
 
 import android.provider.MediaStore;
 import android.text.TextUtils;
@@ -41,6 +39,10 @@ import android.widget.Toast;
 import com.bumptech.glide.Glide;
 import com.example.restaurantapp.R;
 import com.example.restaurantapp.models.Restaurant;
+import com.example.restaurantapp.utils.GeoHashUtils;
+import com.example.restaurantapp.utils.ImageProcessor;
+import com.example.restaurantapp.utils.ImageUploadQueue;
+import com.example.restaurantapp.utils.RestaurantSearchIndex;
 import com.example.restaurantapp.viewmodels.RestaurantViewModel;
 import com.google.android.material.bottomsheet.BottomSheetDialog;
 import com.google.android.material.slider.Slider;
@@ -48,19 +50,13 @@ import com.google.android.material.switchmaterial.SwitchMaterial;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.GeoPoint;
-import com.google.firebase.storage.FirebaseStorage;
-import com.google.firebase.storage.StorageReference;
-import com.google.firebase.storage.UploadTask;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.URL;
@@ -164,21 +160,17 @@ public class EditRestaurantInfoFragment extends Fragment
      */
     private Uri photoUri;
     /**
-     * Bitmap representation of the image selected or taken, used for display and upload.
+     * Bitmap representation of the image selected or taken, downscaled and upright, used for display.
      */
     private Bitmap bitmap;
     /**
-     * Reference to the current Firebase Storage upload task, if any.
+     * The image selected or taken, encoded with its renditions by {@link ImageProcessor} for upload.
      */
-    private UploadTask currentUploadTask;
+    private ImageProcessor.ProcessedImage processedImage;
     /**
      * Flag indicating whether the restaurant's image has been edited by the user.
      */
     private boolean imageEdited = false;
-    /**
-     * Flag indicating whether an image upload is currently in progress.
-     */
-    private boolean isUploading = false; // Note: This field is declared but not directly used to control UI flow in the provided code.
     /**
      * Flag indicating if a validation error has occurred during the save process.
      */
@@ -204,14 +196,6 @@ public class EditRestaurantInfoFragment extends Fragment
      * The currently authenticated FirebaseUser.
      */
     private FirebaseUser currentUser;
-    /**
-     * Reference to the root of Firebase Storage.
-     */
-    private StorageReference storageRef;
-    /**
-     * Instance of FirebaseStorage.
-     */
-    private FirebaseStorage storage;
 
 
     /**
@@ -220,7 +204,7 @@ public class EditRestaurantInfoFragment extends Fragment
      * finds UI views, and sets up the {@link RestaurantViewModel} to observe the current restaurant data.
      * When restaurant data is available, {@link #populateRestaurantViews(Restaurant)} is called.
      * It sets up click listeners for the cancel button (navigates back to {@link RestaurantInfoFragment}),
-     * the save button (initiates image upload if needed, then calls {@link #saveRestaurantChanges()}),
+     * the save button (calls {@link #saveRestaurantChanges()}, which queues the new image for upload if needed),
      * and the restaurant logo ImageView (calls {@link #editImage()}).
      * It also registers a custom {@link OnBackPressedCallback} to navigate back to
      * {@link RestaurantInfoFragment} when the system back button is pressed.
@@ -242,8 +226,6 @@ public class EditRestaurantInfoFragment extends Fragment
         db = FirebaseFirestore.getInstance();
         auth = FirebaseAuth.getInstance();
         currentUser = auth.getCurrentUser();
-        storage = FirebaseStorage.getInstance();
-        storageRef = storage.getReference();
 
         editRestaurantLogo = view.findViewById(R.id.editRestaurantLogo);
 
@@ -290,16 +272,7 @@ public class EditRestaurantInfoFragment extends Fragment
             }
         });
 
-        saveButton.setOnClickListener(v ->
-        {
-            if(imageEdited)
-            {
-                uploadImageToFirebase(bitmap);
-            } else
-            {
-                saveRestaurantChanges();
-            }
-        });
+        saveButton.setOnClickListener(v -> saveRestaurantChanges());
 
         editRestaurantLogo.setOnClickListener(v -> editImage());
 
@@ -408,9 +381,11 @@ public class EditRestaurantInfoFragment extends Fragment
      * for asynchronous validation. If any validation fails, an error is set on the respective field,
      * {@link #hasError} is set to true, and the method returns.
      * If all validations pass, it constructs a {@code Map} of the restaurant's data,
-     * attempts to geocode the address to obtain a {@link GeoPoint}, and includes contact information.
+     * including the search keywords from {@link RestaurantSearchIndex#buildKeywords(String, String, List, String, String)},
+     * attempts to geocode the address to obtain a {@link GeoPoint} and its geohash, and includes contact information.
      * Finally, it updates the restaurant's document in the "Restaurants" collection in Firestore.
-     * On success, a toast is shown, the progress bar is hidden, and it navigates back to
+     * On success, a new image, if any, is queued for upload through {@link #queueImageUpload()},
+     * a toast is shown, the progress bar is hidden, and it navigates back to
      * {@link RestaurantInfoFragment}. On failure, an error toast is shown, and the progress bar is hidden.
      */
     private void saveRestaurantChanges()
@@ -563,6 +538,7 @@ public class EditRestaurantInfoFragment extends Fragment
         restaurantMap.put("maxCapacity", maxCapacity);
         restaurantMap.put("reservable", reservable);
         restaurantMap.put("offersPickup", offersPickup);
+        restaurantMap.put(RestaurantSearchIndex.FIELD, RestaurantSearchIndex.buildKeywords(name, type, tags, address, description));
         restaurantMap.put("lastUpdated", FieldValue.serverTimestamp());
 
         // Try to get GeoPoint from address
@@ -575,6 +551,7 @@ public class EditRestaurantInfoFragment extends Fragment
                 Address loc = locations.get(0);
                 GeoPoint location = new GeoPoint(loc.getLatitude(), loc.getLongitude());
                 restaurantMap.put("location", location);
+                restaurantMap.put("geohash", GeoHashUtils.encode(loc.getLatitude(), loc.getLongitude(), GeoHashUtils.STORED_PRECISION));
             }
         } catch(IOException e)
         {
@@ -600,6 +577,7 @@ public class EditRestaurantInfoFragment extends Fragment
                 .update(restaurantMap)
                 .addOnSuccessListener(unused ->
                 {
+                    queueImageUpload();
                     Toast.makeText(requireContext(), "Restaurant updated", Toast.LENGTH_SHORT).show();
                     progressBar.setVisibility(View.GONE);
                     if(getActivity() != null)
@@ -960,10 +938,8 @@ public class EditRestaurantInfoFragment extends Fragment
      * ActivityResultLauncher for handling the result from the camera intent.
      * If the result code is {@link Activity#RESULT_OK} and the fragment is still attached,
      * it re-checks camera and storage permissions.
-     * If permissions are granted and {@link #photoUri} is not null, it attempts to load the
-     * captured image as a {@link Bitmap}, fixes its orientation using {@link #fixImageOrientation(Uri, Bitmap)},
-     * displays it in {@link #editRestaurantLogo}, and sets {@link #imageEdited} to true.
-     * Handles potential {@link IOException} during image processing.
+     * If permissions are granted and {@link #photoUri} is not null, the captured image is processed
+     * in the background by {@link #processImage(Uri, String)}.
      */
     private final ActivityResultLauncher<Intent> cameraLauncher = registerForActivityResult(
             new ActivityResultContracts.StartActivityForResult(),
@@ -988,21 +964,8 @@ public class EditRestaurantInfoFragment extends Fragment
                     {
                         if(photoUri != null)
                         {
-                            try
-                            {
-                                // Load and display the image
-                                bitmap = MediaStore.Images.Media.getBitmap(
-                                        requireActivity().getContentResolver(), photoUri);
-                                bitmap = fixImageOrientation(photoUri, bitmap); // Correct orientation
-
-                                editRestaurantLogo.setImageBitmap(bitmap);
-                                imageEdited = true; // Mark image as edited
-                            } catch(IOException e)
-                            {
-                                Log.e(TAG, "Error processing camera image", e);
-                                Toast.makeText(requireContext(),
-                                        "Error processing image from camera.", Toast.LENGTH_SHORT).show();
-                            }
+                            // Process and display the image
+                            processImage(photoUri, "Error processing image from camera.");
                         } else
                         {
                             Log.e(TAG, "photoUri is null after camera result.");
@@ -1025,10 +988,8 @@ public class EditRestaurantInfoFragment extends Fragment
      * ActivityResultLauncher for handling the result from the gallery image picker intent.
      * If the result code is {@link Activity#RESULT_OK}, data is not null, and the fragment is still attached,
      * it checks for storage permissions.
-     * If permissions are granted and an image URI is obtained from the result data, it attempts to
-     * load the image as a {@link Bitmap}, fixes its orientation using {@link #fixImageOrientation(Uri, Bitmap)},
-     * displays it in {@link #editRestaurantLogo}, and sets {@link #imageEdited} to true.
-     * Handles potential {@link IOException} during image loading. If permissions are denied,
+     * If permissions are granted and an image URI is obtained from the result data, the image is
+     * processed in the background by {@link #processImage(Uri, String)}. If permissions are denied,
      * it shows a toast and calls {@link #requestPermissions()}.
      */
     private final ActivityResultLauncher<Intent> imagePickerLauncher = registerForActivityResult(
@@ -1052,21 +1013,8 @@ public class EditRestaurantInfoFragment extends Fragment
                         Uri imageUri = result.getData().getData();
                         if(imageUri != null)
                         {
-                            try
-                            {
-                                // Display the image
-                                bitmap = MediaStore.Images.Media.getBitmap(
-                                        requireActivity().getContentResolver(), imageUri);
-                                bitmap = fixImageOrientation(imageUri, bitmap); // Correct orientation
-
-                                editRestaurantLogo.setImageBitmap(bitmap);
-                                imageEdited = true; // Mark image as edited
-                            } catch(IOException e)
-                            {
-                                Log.e(TAG, "Error loading image from gallery", e);
-                                Toast.makeText(requireContext(),
-                                        "Failed to load image from gallery.", Toast.LENGTH_SHORT).show();
-                            }
+                            // Process and display the image
+                            processImage(imageUri, "Failed to load image from gallery.");
                         } else
                         {
                             Log.e(TAG, "Image URI from gallery is null.");
@@ -1111,296 +1059,54 @@ public class EditRestaurantInfoFragment extends Fragment
     }
 
     /**
-     * Corrects the orientation of a given {@link Bitmap} based on EXIF data from its {@link Uri}.
-     * Reads the orientation tag from the image's EXIF metadata. If the orientation indicates
-     * rotation (90, 180, or 270 degrees), it applies the corresponding rotation to the bitmap
-     * using a {@link Matrix}.
+     * Decodes, downscales and encodes a captured or selected image and its renditions in the background
+     * through {@link ImageProcessor}. Once done, displays it in {@link #editRestaurantLogo}, keeps the encoded
+     * image for upload and sets {@link #imageEdited} to true.
      *
-     * @param imageUri The URI of the image, used to read EXIF data.
-     * @param bitmap   The original bitmap to be potentially rotated.
-     * @return The orientation-corrected bitmap, or the original bitmap if an error occurs or no rotation is needed.
+     * @param imageUri     The URI of the image.
+     * @param errorMessage The message shown if the image cannot be processed.
      */
-    private Bitmap fixImageOrientation(Uri imageUri, Bitmap bitmap)
+    private void processImage(Uri imageUri, String errorMessage)
     {
-        try
-        {
-            // Read EXIF data to determine orientation
-            androidx.exifinterface.media.ExifInterface exif = null;
-            try(InputStream inputStream = requireContext().getContentResolver().openInputStream(imageUri))
-            {
-                if(inputStream != null)
-                {
-                    exif = new ExifInterface(inputStream);
-                }
-            }
-
-            int orientation = androidx.exifinterface.media.ExifInterface.ORIENTATION_NORMAL;
-            if(exif != null)
-            {
-                orientation = exif.getAttributeInt(
-                        androidx.exifinterface.media.ExifInterface.TAG_ORIENTATION,
-                        androidx.exifinterface.media.ExifInterface.ORIENTATION_NORMAL
-                );
-            }
-
-            // Rotate bitmap based on orientation
-            Matrix matrix = new Matrix();
-            switch(orientation)
-            {
-                case androidx.exifinterface.media.ExifInterface.ORIENTATION_ROTATE_90:
-                    matrix.postRotate(90);
-                    break;
-                case androidx.exifinterface.media.ExifInterface.ORIENTATION_ROTATE_180:
-                    matrix.postRotate(180);
-                    break;
-                case androidx.exifinterface.media.ExifInterface.ORIENTATION_ROTATE_270:
-                    matrix.postRotate(270);
-                    break;
-                // No default needed as matrix is identity if orientation is normal or undefined
-            }
-
-            return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
-        } catch(Exception e) // Catch broad exception for robustness
-        {
-            Log.e(TAG, "Error fixing image orientation for URI: " + imageUri, e);
-            return bitmap; // Return original if rotation fails
-        }
-    }
-
-    /**
-     * Uploads the provided {@link Bitmap} image to Firebase Storage.
-     * If the bitmap is null or the fragment is not attached, it returns early.
-     * Shows a toast indicating "Uploading image...". Checks if a user is logged in.
-     * Creates a unique filename under "restaurant_images/{restaurantID}/" path.
-     * Compresses the bitmap to JPEG format (80% quality) and converts it to a byte array.
-     * Initiates the upload using {@code imageRef.putBytes(imageData)}.
-     * Handles success by getting the download URL, then calling {@link #deleteOldImage(String)}
-     * followed by {@link #updateImageWithImageUrl(String)}.
-     * Handles failure by showing an error toast. Also logs upload progress.
-     *
-     * @param bitmap The {@link Bitmap} image to upload.
-     */
-    private void uploadImageToFirebase(Bitmap bitmap)
-    {
-        if(bitmap == null)
-        {
-            Log.e(TAG, "Cannot upload null bitmap.");
-            // Optionally, inform the user or proceed to save other changes without image.
-            saveRestaurantChanges(); // Proceed to save other changes if bitmap is null
-            return;
-        }
-
-        if(!isAdded() || getActivity() == null || getActivity().isFinishing())
-        {
-            Log.w(TAG, "Upload attempt while fragment not attached or finishing.");
-            return;  // Fragment is no longer attached
-        }
-
-        // Show a loading indicator
-        Toast.makeText(requireContext(), "Uploading image...", Toast.LENGTH_SHORT).show();
-        progressBar.setVisibility(View.VISIBLE); // Show progress bar during upload
-
-        // Get the current user ID
-        if(currentUser == null)
-        {
-            Log.e(TAG, "No user is currently logged in for image upload.");
-            Toast.makeText(requireContext(),
-                    "You must be logged in to upload an image.", Toast.LENGTH_SHORT).show();
-            progressBar.setVisibility(View.GONE);
-            return;
-        }
-
-        // Create a unique filename for the image
-        String filename = "restaurant_images/" + restaurantID + "/" + UUID.randomUUID().toString() + ".jpg";
-        StorageReference imageRef = storageRef.child(filename);
-
-        // Compress the image before uploading
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        bitmap.compress(Bitmap.CompressFormat.JPEG, 80, baos); // Compress to 80% quality
-        byte[] imageData = baos.toByteArray();
-
-        // Start the upload
-        isUploading = true; // This flag is set but not used to prevent other actions in this code.
-        currentUploadTask = imageRef.putBytes(imageData);
-        currentUploadTask.addOnSuccessListener(taskSnapshot ->
-        {
-            isUploading = false;
-            currentUploadTask = null;
-
-            if(isAdded() && getActivity() != null && !getActivity().isFinishing())
-            {
-                imageRef.getDownloadUrl().addOnSuccessListener(downloadUri ->
-                {
-                    if(isAdded() && getActivity() != null && !getActivity().isFinishing())
-                    {
-                        Log.d(TAG, "Image upload successful, URL: " + downloadUri.toString());
-                        // After getting new URL, delete old image then update Firestore with new URL
-                        deleteOldImage(downloadUri.toString());
-                        // Note: updateImageWithImageUrl will then call saveRestaurantChanges
-                    }
-                }).addOnFailureListener(e ->
+        ImageProcessor.processWithRenditions(requireContext(), imageUri,
+                new ImageProcessor.OnImageProcessedListener()
                 {
-                    if(isAdded() && getActivity() != null && !getActivity().isFinishing())
+                    @Override
+                    public void onImageProcessed(ImageProcessor.ProcessedImage image)
                     {
-                        Log.e(TAG, "Failed to get download URL after upload.", e);
-                        Toast.makeText(requireContext(),
-                                "Failed to get image URL: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                        progressBar.setVisibility(View.GONE);
-                        // Consider if saveRestaurantChanges should be called here with old image URL or error handling
+                        if(!isAdded()) return;
+                        bitmap = image.bitmap;
+                        processedImage = image;
+                        editRestaurantLogo.setImageBitmap(bitmap);
+                        imageEdited = true; // Mark image as edited
                     }
-                });
-            }
-        }).addOnFailureListener(e ->
-        {
-            isUploading = false;
-            currentUploadTask = null;
-            if(isAdded() && getActivity() != null && !getActivity().isFinishing())
-            {
-                Log.e(TAG, "Image upload failed.", e);
-                Toast.makeText(requireContext(),
-                        "Image upload failed: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                progressBar.setVisibility(View.GONE);
-                // Consider if saveRestaurantChanges should be called here with old image URL or error handling
-            }
-        }).addOnProgressListener(taskSnapshot ->
-        {
-            // Calculate and show upload progress if needed
-            double progress = (100.0 * taskSnapshot.getBytesTransferred()) / taskSnapshot.getTotalByteCount();
-            Log.d(TAG, "Upload progress: " + progress + "%");
-            // Update a progress bar UI element here if desired
-        });
-    }
-
-    /**
-     * Deletes the old restaurant image from Firebase Storage if one exists and is different from the new image URL.
-     * It first fetches the current restaurant document to get the {@code imageURL}.
-     * If an old URL exists and differs from {@code newImageURL}, it parses the old URL to extract
-     * the storage path, creates a {@link StorageReference} to the old image, and attempts to delete it.
-     * On successful deletion of the old image, it calls {@link #updateImageWithImageUrl(String)} with the new URL.
-     * Logs errors if fetching the document or deleting the old image fails.
-     *
-     * @param newImageURL The URL of the newly uploaded image.
-     */
-    private void deleteOldImage(String newImageURL)
-    {
-        // currentUser is already checked in uploadImageToFirebase, but good practice to ensure it's still valid
-        if(currentUser != null && restaurantID != null)
-        {
-            DocumentReference docRef = db.collection("Restaurants").document(restaurantID);
-
-            docRef.get().addOnSuccessListener(documentSnapshot ->
-            {
-                if(documentSnapshot.exists())
-                {
-                    String oldImageURL = documentSnapshot.getString("imageURL");
 
-                    if(oldImageURL != null && !oldImageURL.isEmpty() && !newImageURL.equals(oldImageURL))
+                    @Override
+                    public void onError(Exception e)
                     {
-                        try
-                        {
-                            // Extract path from Firebase Storage URL. Example: gs://<bucket>/path/to/image.jpg
-                            // Or from HTTPS URL: https://firebasestorage.googleapis.com/v0/b/<bucket>/o/path%2Fto%2Fimage.jpg?alt=media...
-                            // This parsing logic assumes HTTPS URL structure.
-                            if(oldImageURL.contains("/o/"))
-                            {
-                                String urlPath = oldImageURL.split("/o/")[1];
-                                if(urlPath.contains("?"))
-                                {
-                                    urlPath = urlPath.split("\\?")[0]; // Remove query parameters
-                                }
-                                String decodedPath = java.net.URLDecoder.decode(urlPath, "UTF-8");
-
-                                StorageReference oldImageRef = storage.getReference().child(decodedPath);
-                                oldImageRef.delete().addOnSuccessListener(aVoid ->
-                                {
-                                    Log.d(TAG, "Old image deleted successfully: " + oldImageURL);
-                                    updateImageWithImageUrl(newImageURL); // Proceed to update Firestore with new URL
-                                }).addOnFailureListener(e ->
-                                {
-                                    Log.e(TAG, "Error deleting old image: " + oldImageURL, e);
-                                    // Even if old image deletion fails, proceed to update with new URL
-                                    updateImageWithImageUrl(newImageURL);
-                                });
-                            } else
-                            {
-                                Log.w(TAG, "Old image URL format not recognized for deletion: " + oldImageURL);
-                                updateImageWithImageUrl(newImageURL); // Proceed without deleting if format is unknown
-                            }
-                        } catch(Exception e)
-                        {
-                            Log.e(TAG, "Error parsing or deleting old image URL: " + oldImageURL, e);
-                            updateImageWithImageUrl(newImageURL); // Proceed on error
-                        }
-                    } else
-                    {
-                        // No old image, or old image is same as new, or old image URL is empty
-                        updateImageWithImageUrl(newImageURL);
+                        if(!isAdded()) return;
+                        Log.e(TAG, "Error processing image: " + imageUri, e);
+                        Toast.makeText(requireContext(), errorMessage, Toast.LENGTH_SHORT).show();
                     }
-                } else
-                {
-                    // Document doesn't exist, which shouldn't happen if we are editing
-                    Log.w(TAG, "Restaurant document not found when trying to delete old image.");
-                    updateImageWithImageUrl(newImageURL);
-                }
-            }).addOnFailureListener(e ->
-            {
-                Log.e(TAG, "Error fetching restaurant document to delete old image.", e);
-                updateImageWithImageUrl(newImageURL); // Proceed on error
-            });
-        } else
-        {
-            Log.w(TAG, "User or restaurantID is null in deleteOldImage.");
-            updateImageWithImageUrl(newImageURL); // Proceed if user/ID is null, though this indicates an issue
-        }
+                });
     }
 
     /**
-     * Updates the {@code imageURL} field in the restaurant's Firestore document with the provided URL.
-     * After successfully updating the Firestore document, it calls {@link #saveRestaurantChanges()}
-     * to save any other (non-image) modifications made to the restaurant's details.
-     * Shows a toast on success or failure of the Firestore update.
-     *
-     * @param imageURL The new image URL to save to Firestore.
+     * Queues the edited image and its renditions for upload to the restaurant document.
+     * The upload and its follow-up steps (pointing the document at the image and deleting the image
+     * it replaces) run in {@link ImageUploadQueue}, so they complete after this screen is closed.
+     * Does nothing if the image was not edited.
      */
-    private void updateImageWithImageUrl(String imageURL)
+    private void queueImageUpload()
     {
-        if(restaurantID == null)
-        {
-            Log.e(TAG, "restaurantID is null in updateImageWithImageUrl. Cannot update Firestore.");
-            progressBar.setVisibility(View.GONE);
-            return;
-        }
-        DocumentReference docRef = db.collection("Restaurants").document(restaurantID);
-        Log.d(TAG, "Updating Firestore with new imageURL: " + imageURL + " for restaurantID: " + restaurantID);
+        if(!imageEdited || processedImage == null) return;
 
-        Map<String, Object> updates = new HashMap<>();
-        updates.put("imageURL", imageURL);
+        String filename = "restaurant_images/" + restaurantID + "/" + UUID.randomUUID().toString() + ImageProcessor.FILE_EXTENSION;
+        ImageUploadQueue.getInstance(requireContext())
+                .enqueue(processedImage, filename, "Restaurants/" + restaurantID, "imageURL", null);
+        Log.d(TAG, "Queued image upload for restaurant: " + restaurantID);
 
-        docRef.update(updates)
-                .addOnSuccessListener(aVoid ->
-                {
-                    if(isAdded() && getActivity() != null && !getActivity().isFinishing())
-                    {
-                        Toast.makeText(requireContext(),
-                                "Image URL updated in Firestore.", Toast.LENGTH_SHORT).show();
-                        Log.d(TAG, "Firestore imageURL updated successfully.");
-                        // Now that image is handled, save other changes
-                        imageEdited = false; // Reset flag as image part is done
-                        saveRestaurantChanges();
-                    }
-                })
-                .addOnFailureListener(e ->
-                {
-                    if(isAdded() && getActivity() != null && !getActivity().isFinishing())
-                    {
-                        Log.e(TAG, "Error updating Firestore with image URL.", e);
-                        Toast.makeText(requireContext(),
-                                "Failed to update image URL in database: " + e.getMessage(),
-                                Toast.LENGTH_SHORT).show();
-                        progressBar.setVisibility(View.GONE);
-                        // Decide if we should still try to save other changes or stop.
-                        // Current flow: if image URL update fails, other changes are not saved via this path.
-                    }
-                });
+        imageEdited = false;
+        processedImage = null;
     }
 }
\ No newline at end of file
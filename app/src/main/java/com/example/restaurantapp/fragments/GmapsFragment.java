@@ -6,7 +6,6 @@ import android.Manifest;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.location.Location;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
@@ -24,7 +23,6 @@ import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.appcompat.widget.SearchView;
-import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentTransaction;
@@ -36,12 +34,12 @@ import com.example.restaurantapp.BuildConfig; // Note: BuildConfig is imported b
 import com.example.restaurantapp.R;
 import com.example.restaurantapp.adapters.RestaurantSearchResultsAdapter;
 import com.example.restaurantapp.models.Restaurant;
+import com.example.restaurantapp.utils.LocationProvider;
+import com.example.restaurantapp.utils.RestaurantMapLayer;
+import com.example.restaurantapp.utils.RestaurantSearchIndex;
+import com.example.restaurantapp.utils.SearchResultCache;
 import com.example.restaurantapp.viewmodels.RestaurantViewModel;
 import com.google.android.gms.common.api.ApiException;
-import com.google.android.gms.location.CurrentLocationRequest;
-import com.google.android.gms.location.FusedLocationProviderClient;
-import com.google.android.gms.location.LocationServices;
-import com.google.android.gms.location.Priority;
 import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.GoogleMapOptions;
@@ -73,7 +71,8 @@ import java.util.List;
  * and see restaurant locations on the map. Users can click on search results to view
  * restaurant details or navigate to a restaurant using an external navigation app.
  * The fragment handles location permissions, fetches the user's current location,
- * and initializes the Google Places API.
+ * and initializes the Google Places API. Restaurants in and around the visible map area are
+ * loaded incrementally and shown as clustered markers by a {@link RestaurantMapLayer}.
  */
 public class GmapsFragment extends Fragment
 {
@@ -86,9 +85,17 @@ public class GmapsFragment extends Fragment
      */
     private GoogleMap mMap;
     /**
-     * Client for accessing Google Play services location APIs.
+     * Listener on the shared location stream, keeping {@link #lastKnownLatLng} and the result distances current.
      */
-    private FusedLocationProviderClient fusedLocationClient;
+    private final LocationProvider.OnLocationListener locationListener = location ->
+    {
+        if(location == null) return;
+        lastKnownLatLng = new LatLng(location.getLatitude(), location.getLongitude());
+        if(restaurantSearchResultsAdapter != null)
+        {
+            restaurantSearchResultsAdapter.setUserLocation(location);
+        }
+    };
     /**
      * TextView displayed when no search results are found.
      */
@@ -133,6 +140,34 @@ public class GmapsFragment extends Fragment
      * Marker for the currently searched location or first search result.
      */
     private Marker currentSearchMarker;
+    /**
+     * Map layer showing the restaurants of the visible area as clustered markers.
+     */
+    private RestaurantMapLayer restaurantMapLayer;
+    /**
+     * Maximum number of candidates fetched per search before ranking.
+     */
+    private static final int SEARCH_CANDIDATE_LIMIT = 100;
+    /**
+     * Delay after the last keystroke before an as-you-type search runs, in milliseconds.
+     */
+    private static final long SEARCH_DEBOUNCE_MILLIS = 300;
+    /**
+     * Minimum query length for as-you-type searches; shorter queries only run on submit.
+     */
+    private static final int MIN_INSTANT_QUERY_LENGTH = 2;
+    /**
+     * Pending debounced search, null if none is scheduled.
+     */
+    private Runnable searchRunnable;
+    /**
+     * Incremented for every search and whenever the query is cleared; results of older searches are ignored.
+     */
+    private int searchGeneration = 0;
+    /**
+     * The user's last known location, used to order search results by distance; null until obtained.
+     */
+    private LatLng lastKnownLatLng;
 
     /**
      * Required empty public constructor for Fragment instantiation.
@@ -170,12 +205,34 @@ public class GmapsFragment extends Fragment
         return view;
     }
 
+    /**
+     * Called when the fragment becomes visible.
+     * Subscribes to the shared location stream so result distances follow the user.
+     */
+    @Override
+    public void onStart()
+    {
+        super.onStart();
+        LocationProvider.getInstance(requireContext()).requestUpdates(locationListener);
+    }
+
+    /**
+     * Called when the fragment is no longer visible.
+     * Unsubscribes from the shared location stream.
+     */
+    @Override
+    public void onStop()
+    {
+        super.onStop();
+        LocationProvider.getInstance(requireContext()).removeUpdates(locationListener);
+    }
+
     /**
      * Called when the view previously created by {@link #onCreateView} has
      * been detached from the fragment.
-     * Removes any pending callbacks for {@link #mapLoadRunnable} to prevent
-     * issues if the fragment is destroyed before the map loads.
-     * Sets {@link #placesClient} to null.
+     * Removes any pending callbacks for {@link #mapLoadRunnable} and {@link #searchRunnable} to prevent
+     * issues if the fragment is destroyed before they run.
+     * Sets {@link #placesClient} to null and releases the {@link #restaurantMapLayer}.
      */
     @Override
     public void onDestroyView()
@@ -183,6 +240,12 @@ public class GmapsFragment extends Fragment
         super.onDestroyView();
         // Remove the delayed runnable if the fragment is destroyed
         handler.removeCallbacks(mapLoadRunnable);
+        handler.removeCallbacks(searchRunnable);
+        if(restaurantMapLayer != null)
+        {
+            restaurantMapLayer.release(); // Markers belong to the destroyed map
+            restaurantMapLayer = null;
+        }
         if(placesClient != null)
         {
             placesClient = null; // Release PlacesClient
@@ -222,16 +285,7 @@ public class GmapsFragment extends Fragment
                     public void onItemClick(Restaurant restaurant)
                     {
                         Log.d("GmapsFragment", "Item clicked: " + restaurant.getName());
-                        viewModel.setCurrentRestaurant(restaurant);
-                        RestaurantInfoFragment restaurantInfoFragment = new RestaurantInfoFragment();
-                        if(getActivity() != null)
-                        {
-                            getActivity().getSupportFragmentManager().beginTransaction()
-                                    .replace(R.id.fragmentContainer, restaurantInfoFragment) // Assumes R.id.fragmentContainer is the main container
-                                    .addToBackStack(null)
-                                    .commit();
-                            Log.d("GmapsFragment", "Navigated to RestaurantInfoFragment"); // Corrected log message
-                        }
+                        openRestaurantInfo(restaurant);
                     }
 
                     @Override
@@ -256,6 +310,7 @@ public class GmapsFragment extends Fragment
                 }
         );
         recyclerView.setAdapter(restaurantSearchResultsAdapter);
+        recyclerView.addOnScrollListener(restaurantSearchResultsAdapter.createPreloader(this)); // Fetch images of the next rows
 
         searchView = view.findViewById(R.id.searchBar);
         searchView.setOnClickListener(v -> searchView.setIconified(false)); // Expand search view on click
@@ -264,7 +319,8 @@ public class GmapsFragment extends Fragment
             @Override
             public boolean onQueryTextSubmit(String query)
             {
-                performSearch(query);
+                handler.removeCallbacks(searchRunnable);
+                performSearch(query, true);
                 // Hide keyboard
                 InputMethodManager imm = (InputMethodManager) requireContext()
                         .getSystemService(Context.INPUT_METHOD_SERVICE);
@@ -278,12 +334,18 @@ public class GmapsFragment extends Fragment
             @Override
             public boolean onQueryTextChange(String newText)
             {
+                handler.removeCallbacks(searchRunnable); // Debounce: restart the delay on every keystroke
                 if(newText.isEmpty())
                 {
                     // Clear results and hide bottom sheet if query is empty
+                    searchGeneration++; // Ignore searches still in flight
                     recyclerView.setVisibility(View.GONE);
                     noResultsTextView.setVisibility(View.GONE);
                     bottomSheetBehavior.setState(BottomSheetBehavior.STATE_HIDDEN);
+                } else if(newText.trim().length() >= MIN_INSTANT_QUERY_LENGTH)
+                {
+                    searchRunnable = () -> performSearch(newText, false);
+                    handler.postDelayed(searchRunnable, SEARCH_DEBOUNCE_MILLIS);
                 }
                 // Remove previous search marker if text changes
                 if(currentSearchMarker != null)
@@ -311,38 +373,75 @@ public class GmapsFragment extends Fragment
 
     /**
      * Performs a search for restaurants in Firestore based on the provided query string.
-     * Searches the "Restaurants" collection, ordering by name, and matching names that
-     * start with the query. On success, calls {@link #updateSearchResults(List)} with the results.
-     * Logs an error on failure.
+     * Queries the "Restaurants" collection for documents whose search keywords contain the
+     * query's most selective word (see {@link RestaurantSearchIndex}), so any word of the name, type,
+     * tags, address or description can match regardless of case and accents. The candidates are
+     * filtered by the remaining words and ranked with {@link RestaurantSearchIndex#rank(List, String, double, double)},
+     * then passed to {@link #updateSearchResults(List, boolean)}.
+     * Candidates are kept in the {@link SearchResultCache}; when it already holds the keyword or a
+     * complete result for one of its prefixes, they are filtered locally without querying Firestore.
+     * Results arriving after a newer search has started are ignored. Logs an error on failure.
      *
-     * @param query The search query string.
+     * @param query            The search query string.
+     * @param focusFirstResult True to mark the first result on the map and move the camera to it.
      */
-    private void performSearch(String query)
+    private void performSearch(String query, boolean focusFirstResult)
     {
-        if(!query.isEmpty())
+        String keyword = RestaurantSearchIndex.queryKeyword(query);
+        if(keyword == null) return;
+        int generation = ++searchGeneration;
+
+        SearchResultCache cache = SearchResultCache.getInstance();
+        List<Restaurant> cached = cache.get(keyword);
+        if(cached != null)
         {
-            FirebaseFirestore db = FirebaseFirestore.getInstance();
-            db.collection("Restaurants")
-                    .orderBy("name")
-                    .startAt(query)
-                    .endAt(query + "\uf8ff") // \uf8ff is a high Unicode character for prefix matching
-                    .get()
-                    .addOnSuccessListener(querySnapshot ->
+            showRankedResults(cached, query, focusFirstResult);
+            return;
+        }
+
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        db.collection("Restaurants")
+                .whereArrayContains(RestaurantSearchIndex.FIELD, keyword)
+                .limit(SEARCH_CANDIDATE_LIMIT)
+                .get()
+                .addOnSuccessListener(querySnapshot ->
+                {
+                    List<Restaurant> candidates = new ArrayList<>();
+                    for(QueryDocumentSnapshot document : querySnapshot)
                     {
-                        List<Restaurant> results = new ArrayList<>();
-                        for(QueryDocumentSnapshot document : querySnapshot)
-                        {
-                            Restaurant restaurant = document.toObject(Restaurant.class);
-                            results.add(restaurant);
-                        }
-                        updateSearchResults(results);
-                    })
-                    .addOnFailureListener(e ->
+                        Restaurant restaurant = document.toObject(Restaurant.class);
+                        restaurant.setRestaurantID(document.getId()); // Ensure ID is set
+                        candidates.add(restaurant);
+                    }
+                    cache.put(keyword, candidates, candidates.size() < SEARCH_CANDIDATE_LIMIT);
+
+                    if(generation != searchGeneration || !isAdded()) return; // A newer search has started
+                    showRankedResults(candidates, query, focusFirstResult);
+                })
+                .addOnFailureListener(e ->
+                {
+                    Log.e("SearchError", "Error performing search for query: " + query, e);
+                    if(generation == searchGeneration && isAdded())
                     {
-                        Log.e("SearchError", "Error performing search for query: " + query, e);
                         Toast.makeText(getContext(), "Search failed. Please try again.", Toast.LENGTH_SHORT).show();
-                    });
-        }
+                    }
+                });
+    }
+
+    /**
+     * Ranks search candidates against the query, nearer restaurants first among equally relevant ones,
+     * and shows them with {@link #updateSearchResults(List, boolean)}.
+     *
+     * @param candidates       The candidate restaurants.
+     * @param query            The search query string.
+     * @param focusFirstResult True to mark the first result on the map and move the camera to it.
+     */
+    private void showRankedResults(List<Restaurant> candidates, String query, boolean focusFirstResult)
+    {
+        List<Restaurant> results = lastKnownLatLng != null
+                ? RestaurantSearchIndex.rank(candidates, query, lastKnownLatLng.latitude, lastKnownLatLng.longitude)
+                : RestaurantSearchIndex.rank(candidates, query);
+        updateSearchResults(results, focusFirstResult);
     }
 
     /**
@@ -350,13 +449,16 @@ public class GmapsFragment extends Fragment
      * If results are empty, it shows {@link #noResultsTextView} and hides the {@link #recyclerView}.
      * Otherwise, it updates the {@link #restaurantSearchResultsAdapter} with the new data,
      * shows the RecyclerView, and hides the no results text.
-     * If results are found, it adds a marker on the map for the first restaurant in the list
-     * (removing any previous search marker) and animates the camera to its location.
+     * The adapter computes the distances of all results in one pass when the list is set.
+     * If results are found and {@code focusFirstResult} is set, it adds a marker on the map for the
+     * first restaurant in the list (removing any previous search marker) and animates the camera to
+     * its location; as-you-type results leave the map alone.
      * Finally, it makes the bottom sheet visible and sets its state to collapsed.
      *
-     * @param results The list of {@link Restaurant} objects found by the search.
+     * @param results          The list of {@link Restaurant} objects found by the search, already ranked.
+     * @param focusFirstResult True to mark the first result on the map and move the camera to it.
      */
-    private void updateSearchResults(List<Restaurant> results)
+    private void updateSearchResults(List<Restaurant> results, boolean focusFirstResult)
     {
         if(results.isEmpty())
         {
@@ -372,7 +474,7 @@ public class GmapsFragment extends Fragment
             // Show marker for the first result on the map
             Restaurant firstResult = results.get(0);
             GeoPoint geoPoint = firstResult.getLocation();
-            if(geoPoint != null && mMap != null)
+            if(focusFirstResult && geoPoint != null && mMap != null)
             {
                 LatLng latLng = new LatLng(geoPoint.getLatitude(), geoPoint.getLongitude());
 
@@ -392,6 +494,26 @@ public class GmapsFragment extends Fragment
         bottomSheetBehavior.setState(BottomSheetBehavior.STATE_COLLAPSED);
     }
 
+    /**
+     * Shows the details of a restaurant by setting it on the {@link RestaurantViewModel}
+     * and navigating to {@link RestaurantInfoFragment}.
+     *
+     * @param restaurant The {@link Restaurant} to show.
+     */
+    private void openRestaurantInfo(Restaurant restaurant)
+    {
+        viewModel.setCurrentRestaurant(restaurant);
+        RestaurantInfoFragment restaurantInfoFragment = new RestaurantInfoFragment();
+        if(getActivity() != null)
+        {
+            getActivity().getSupportFragmentManager().beginTransaction()
+                    .replace(R.id.fragmentContainer, restaurantInfoFragment) // Assumes R.id.fragmentContainer is the main container
+                    .addToBackStack(null)
+                    .commit();
+            Log.d("GmapsFragment", "Navigated to RestaurantInfoFragment"); // Corrected log message
+        }
+    }
+
     /**
      * Fetches the user's current place using the Google Places API.
      * This method requires {@link Manifest.permission#ACCESS_FINE_LOCATION}.
@@ -538,6 +660,8 @@ public class GmapsFragment extends Fragment
      * Calls {@link #setCurrentCameraPosition()} to move the camera to the user's current location.
      * Enables UI settings like compass, zoom controls, "My Location" button (if permission granted),
      * and rotate gestures.
+     * Attaches a {@link RestaurantMapLayer} to the camera idle and marker click events and registers
+     * an info window click listener that opens the tapped restaurant.
      *
      * @param googleMap    The {@link GoogleMap} instance to configure.
      * @param placesClient The {@link PlacesClient} for location-related operations.
@@ -561,6 +685,22 @@ public class GmapsFragment extends Fragment
         }
         mMap.getUiSettings().setMyLocationButtonEnabled(true); // Show "My Location" button
         mMap.getUiSettings().setRotateGesturesEnabled(true);
+
+        // Load and cluster restaurants for the visible area whenever the camera settles
+        if(restaurantMapLayer != null)
+        {
+            restaurantMapLayer.release();
+        }
+        restaurantMapLayer = new RestaurantMapLayer(requireContext(), mMap);
+        mMap.setOnCameraIdleListener(restaurantMapLayer::onCameraIdle);
+        mMap.setOnMarkerClickListener(restaurantMapLayer::onMarkerClick);
+        mMap.setOnInfoWindowClickListener(marker ->
+        {
+            if(marker.getTag() instanceof Restaurant)
+            {
+                openRestaurantInfo((Restaurant) marker.getTag());
+            }
+        });
     }
 
     /**
@@ -646,12 +786,10 @@ public class GmapsFragment extends Fragment
     }
 
     /**
-     * Fetches the user's current GPS location using {@link FusedLocationProviderClient}
-     * and moves the map camera to focus on this location.
-     * Requires {@link Manifest.permission#ACCESS_FINE_LOCATION} and
-     * {@link Manifest.permission#ACCESS_COARSE_LOCATION}.
-     * If permissions are granted and location is successfully obtained, it calls
-     * {@link #focusOnLocation(GoogleMap, LatLng)}.
+     * Gets the user's location from the shared {@link LocationProvider} and moves the map camera to it.
+     * A fix up to {@link LocationProvider#DEFAULT_MAX_AGE_MILLIS} old is reused instead of requesting a new one.
+     * If a location is obtained, it is passed to {@link #locationListener} and
+     * {@link #focusOnLocation(GoogleMap, LatLng)} is called.
      */
     private void setCurrentCameraPosition()
     {
@@ -660,42 +798,17 @@ public class GmapsFragment extends Fragment
             Log.e("GmapsFragment", "Context is null in setCurrentCameraPosition.");
             return;
         }
-        fusedLocationClient = LocationServices.getFusedLocationProviderClient(requireActivity().getApplicationContext());
-        if(ActivityCompat.checkSelfPermission(requireActivity().getApplicationContext(), Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED &&
-                ActivityCompat.checkSelfPermission(requireActivity().getApplicationContext(), Manifest.permission.ACCESS_COARSE_LOCATION) == PackageManager.PERMISSION_GRANTED)
+        LocationProvider.getInstance(requireContext()).getLocation(LocationProvider.DEFAULT_MAX_AGE_MILLIS, location ->
         {
-            CurrentLocationRequest currentLocationRequest = new CurrentLocationRequest.Builder()
-                    .setDurationMillis(5000)      // How long to actively listen for updates
-                    .setMaxUpdateAgeMillis(0)     // Request a fresh location
-                    .setPriority(Priority.PRIORITY_HIGH_ACCURACY)
-                    .build();
-
-            Task<Location> locationTask = fusedLocationClient.getCurrentLocation(currentLocationRequest, null);
-            locationTask.addOnCompleteListener(task ->
+            if(location != null)
             {
-                if(task.isSuccessful())
-                {
-                    Location location = task.getResult();
-                    if(location != null)
-                    {
-                        LatLng currentLatLng = new LatLng(location.getLatitude(), location.getLongitude());
-                        focusOnLocation(mMap, currentLatLng);
-                    } else
-                    {
-                        Log.w("GmapsFragment", "FusedLocationProvider returned null location.");
-                        // Optionally, show a toast or default to a known location
-                    }
-                } else
-                {
-                    Log.e("GmapsFragment", "Failed to get current location for camera.", task.getException());
-                    // Optionally, show a toast
-                }
-            });
-        } else
-        {
-            Log.w("GmapsFragment", "Location permissions not granted for setCurrentCameraPosition.");
-            // Permissions should have been requested earlier, but this is a fallback log.
-        }
+                locationListener.onLocation(location); // Also updates lastKnownLatLng and the result distances
+                focusOnLocation(mMap, lastKnownLatLng);
+            } else
+            {
+                Log.w("GmapsFragment", "No location available for the camera.");
+            }
+        });
     }
 
     /**
@@ -5,9 +5,7 @@ import android.app.Activity;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
-import android.graphics.Matrix;
 import android.graphics.Paint;
-import android.media.ExifInterface;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
@@ -49,9 +47,17 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.bumptech.glide.Glide;
 import com.example.restaurantapp.R;
 import com.example.restaurantapp.adapters.MenuAdapter;
+import com.example.restaurantapp.models.Discount;
 import com.example.restaurantapp.models.Menu;
 import com.example.restaurantapp.models.MenuItem;
+import com.example.restaurantapp.utils.DiscountIndex;
+import com.example.restaurantapp.utils.DiscountSchedule;
 import com.example.restaurantapp.utils.DiscountUtils;
+import com.example.restaurantapp.utils.ImageProcessor;
+import com.example.restaurantapp.utils.ImageRenditions;
+import com.example.restaurantapp.utils.ImageUploadQueue;
+import com.example.restaurantapp.utils.MenuRepository;
+import com.example.restaurantapp.utils.MenuSearchIndex;
 import com.google.android.gms.tasks.Task;
 import com.google.android.gms.tasks.Tasks;
 import com.google.android.material.bottomsheet.BottomSheetDialog;
@@ -66,24 +72,18 @@ import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
 import com.google.firebase.firestore.WriteBatch;
 import com.google.firebase.storage.FirebaseStorage;
-import com.google.firebase.storage.StorageReference;
-import com.google.firebase.storage.UploadTask;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Fragment for managing restaurant menus and menu items.
@@ -113,6 +113,10 @@ public class ManageMenuFragment extends Fragment
      * List of all {@link MenuItem} objects across all menus for the current restaurant.
      */
     private List<MenuItem> menuItemList = new ArrayList<>();
+    /**
+     * Search index over {@code menuList} and {@code menuItemList}, rebuilt whenever the menu is loaded.
+     */
+    private MenuSearchIndex menuSearchIndex;
     /**
      * List of {@link Menu} objects after filtering by search query. (Note: Not directly used for display, adapter handles filtering)
      */
@@ -391,10 +395,6 @@ public class ManageMenuFragment extends Fragment
      * The currently authenticated FirebaseUser.
      */
     private FirebaseUser currentUser;
-    /**
-     * Reference to the root of Firebase Storage.
-     */
-    private StorageReference storageRef;
     /**
      * Instance of FirebaseStorage.
      */
@@ -420,10 +420,6 @@ public class ManageMenuFragment extends Fragment
      * String indicating the type of discount being applied ("Percentage" or "Flat").
      */
     private String discountType;
-    /**
-     * Flag indicating if an image upload is in progress.
-     */
-    private boolean isUploading = false;
     /**
      * Flag indicating if an existing entity (menu/item) is being edited (true) or a new one is being created (false).
      */
@@ -448,22 +444,64 @@ public class ManageMenuFragment extends Fragment
      * Flag indicating if a new menu is being created.
      */
     private boolean newMenu = false;
-    /**
-     * Flag indicating if an image deletion operation is in progress.
-     */
-    boolean deleteMode = false;
     /**
      * Uri of the photo taken by camera or selected from gallery.
      */
     private Uri photoUri;
     /**
-     * Bitmap representation of the image selected/taken.
+     * Bitmap representation of the image selected/taken, downscaled and upright.
      */
     private Bitmap bitmap;
     /**
-     * Reference to the current Firebase Storage upload task.
+     * The image selected/taken, encoded with its renditions by {@link ImageProcessor} for upload.
+     */
+    private ImageProcessor.ProcessedImage processedImage;
+    /**
+     * Reloads the menu once a queued image of one of the restaurant's menus or items has been
+     * uploaded and written to its document, and reports images that could not be uploaded.
+     */
+    private final ImageUploadQueue.OnUploadFinishedListener uploadFinishedListener = new ImageUploadQueue.OnUploadFinishedListener()
+    {
+        @Override
+        public void onUploadFinished(String documentPath, String imageURL)
+        {
+            if(isMenuDocument(documentPath)) loadMenuData();
+        }
+
+        @Override
+        public void onUploadFailed(String documentPath, Exception e)
+        {
+            if(isMenuDocument(documentPath) && isAdded())
+            {
+                Toast.makeText(requireContext(), "Image upload failed: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            }
+        }
+    };
+    /**
+     * Refreshes the displayed prices and reconciles the items' discount summaries whenever the
+     * restaurant's {@link DiscountIndex} receives new discounts or a discount starts or ends.
+     */
+    private final DiscountIndex.OnDiscountsChangedListener discountsChangedListener = () ->
+    {
+        if(menuAdapter != null)
+        {
+            menuAdapter.refreshDiscounts();
+        }
+        reconcileDiscountSummaries();
+        publishMenuBundleIfDirty();
+    };
+    /**
+     * Flag indicating that the menu changed since the restaurant's menu bundle was last published.
+     */
+    private boolean menuBundleDirty = false;
+    /**
+     * Flag indicating that {@code menuList} and {@code menuItemList} hold a complete loaded menu.
      */
-    private UploadTask currentUploadTask;
+    private boolean menuLoaded = false;
+    /**
+     * Maximum number of writes committed in a single {@link WriteBatch} (Firestore allows 500).
+     */
+    private static final int MAX_BATCH_WRITES = 450;
     /**
      * Tag for logging purposes.
      */
@@ -511,7 +549,6 @@ public class ManageMenuFragment extends Fragment
         auth = FirebaseAuth.getInstance();
         currentUser = auth.getCurrentUser();
         storage = FirebaseStorage.getInstance();
-        storageRef = storage.getReference();
 
         if(currentUser != null)
         {
@@ -541,7 +578,33 @@ public class ManageMenuFragment extends Fragment
 
                                 recyclerViewMenus.setLayoutManager(new LinearLayoutManager(getContext()));
                                 recyclerViewMenus.setAdapter(menuAdapter);
+                                recyclerViewMenus.addOnScrollListener(menuAdapter.createPreloader(this)); // Fetch images of the next menus
+                                DiscountIndex.attach(restaurantID, discountsChangedListener);
+                                ImageUploadQueue.getInstance(requireContext()).addListener(uploadFinishedListener);
                                 loadMenuData();
+
+                                // Publish a first bundle for restaurants that never had one, and make items and
+                                // discounts created before their collection-group queries visible to them
+                                db.collection("Restaurants").document(restaurantID).get()
+                                        .addOnSuccessListener(restaurantSnapshot ->
+                                        {
+                                            Long menuVersion = restaurantSnapshot.getLong("menuVersion");
+                                            if(menuVersion == null || menuVersion == 0)
+                                            {
+                                                menuBundleDirty = true;
+                                                publishMenuBundleIfDirty();
+                                            }
+                                            if(!Boolean.TRUE.equals(restaurantSnapshot.getBoolean(MenuRepository.ITEMS_INDEXED_FIELD)))
+                                            {
+                                                MenuRepository.indexLegacyItems(restaurantSnapshot.getId())
+                                                        .addOnFailureListener(e -> Log.e(TAG, "Failed to index legacy menu items", e));
+                                            }
+                                            if(!Boolean.TRUE.equals(restaurantSnapshot.getBoolean(DiscountIndex.DISCOUNTS_INDEXED_FIELD)))
+                                            {
+                                                DiscountIndex.indexLegacyDiscounts(restaurantSnapshot.getId())
+                                                        .addOnFailureListener(e -> Log.e(TAG, "Failed to index legacy discounts", e));
+                                            }
+                                        });
                             } else
                             {
                                 Toast.makeText(getContext(), "No restaurant assigned to user", Toast.LENGTH_SHORT).show();
@@ -643,6 +706,24 @@ public class ManageMenuFragment extends Fragment
         return view;
     }
 
+    /**
+     * Called when the view previously created by {@link #onCreateView} has
+     * been detached from the fragment.
+     * Detaches from the restaurant's {@link DiscountIndex} so its snapshot listener
+     * can be released once no screen needs it anymore, and stops listening for finished uploads;
+     * queued uploads continue without the fragment.
+     */
+    @Override
+    public void onDestroyView()
+    {
+        super.onDestroyView();
+        if(restaurantID != null)
+        {
+            DiscountIndex.detach(restaurantID, discountsChangedListener);
+        }
+        ImageUploadQueue.getInstance(requireContext()).removeListener(uploadFinishedListener);
+    }
+
     /**
      * Sets up listeners for various UI components in the fragment.
      * This includes search bar, add buttons, save/cancel buttons for edit overlays,
@@ -1047,10 +1128,10 @@ public class ManageMenuFragment extends Fragment
     }
 
     /**
-     * Loads all menus for the current restaurant from Firestore, ordered by their index.
-     * Updates the local {@code menuList} and notifies the {@code menuAdapter}.
-     * After loading menus, it calls {@link #loadAllMenuItems()} to fetch items for these menus.
-     * If a search query was active, it reapplies the filter.
+     * Loads all menus and menu items for the current restaurant through {@link MenuRepository},
+     * which fetches every item of the restaurant in one collection-group query.
+     * Updates the local {@code menuList} (preserving existing {@link Menu} instances),
+     * then hands the grouped items to {@link #applyMenuItems(Map)}.
      */
     private void loadMenuData()
     {
@@ -1059,157 +1140,146 @@ public class ManageMenuFragment extends Fragment
             Toast.makeText(getContext(), "Invalid restaurant ID", Toast.LENGTH_SHORT).show();
             return;
         }
-        //showLoading(true);
 
-        db.collection("Restaurants").document(restaurantID)
-                .collection("Menus")
-                .orderBy("menuIndex")
-                .get()
-                .addOnSuccessListener(snapshot ->
+        MenuRepository.loadMenu(restaurantID, new MenuRepository.OnMenuLoadedListener()
+        {
+            @Override
+            public void onMenuLoaded(List<Menu> menus, Map<String, List<MenuItem>> itemsByMenu)
+            {
+                if(!isAdded()) return;
+
+                // Map current menuList by menuID for quick lookup
+                HashMap<String, Menu> currentMenusMap = new HashMap<>();
+                for(Menu menu : menuList)
                 {
-                    // Map current menuList by menuID for quick lookup
-                    HashMap<String, Menu> currentMenusMap = new HashMap<>();
-                    for(Menu menu : menuList)
-                    {
-                        currentMenusMap.put(menu.getMenuID(), menu);
-                    }
+                    currentMenusMap.put(menu.getMenuID(), menu);
+                }
 
-                    List<Menu> updatedMenus = new ArrayList<>();
+                List<Menu> updatedMenus = new ArrayList<>();
 
-                    for(QueryDocumentSnapshot doc : snapshot)
+                for(Menu menu : menus)
+                {
+                    Menu existingMenu = currentMenusMap.get(menu.getMenuID());
+                    if(existingMenu != null)
                     {
-                        String menuID = doc.getId();
-                        Menu menu = doc.toObject(Menu.class);
-                        menu.setMenuID(menuID);
-
-                        if(currentMenusMap.containsKey(menuID))
-                        {
-                            // Preserve the existing instance (to maintain index)
-                            Menu existingMenu = currentMenusMap.get(menuID);
-                            existingMenu.setName(menu.getName());
-                            existingMenu.setImageURL(menu.getImageURL()); // Load image URL
-                            existingMenu.setMenuIndex(menu.getMenuIndex());
-                            updatedMenus.add(existingMenu);
-                        } else
-                        {
-                            // New menu item, add it to the list
-                            updatedMenus.add(menu);
-                        }
+                        // Preserve the existing instance (to maintain index)
+                        existingMenu.setName(menu.getName());
+                        existingMenu.setImageURL(menu.getImageURL()); // Load image URL
+                        existingMenu.setMenuIndex(menu.getMenuIndex());
+                        updatedMenus.add(existingMenu);
+                    } else
+                    {
+                        // New menu item, add it to the list
+                        updatedMenus.add(menu);
                     }
+                }
 
-                    // Update the main lists
-                    menuList.clear();
-                    menuList.addAll(updatedMenus);
+                // Update the main lists
+                menuList.clear();
+                menuList.addAll(updatedMenus);
 
-                    // Update RecyclerView adapter
-                    if(menuAdapter != null)
-                    {
-                        menuAdapter.clearFiltering(); // Clear any existing filters
-                        menuAdapter.notifyDataSetChanged();
-                    }
+                // Update RecyclerView adapter
+                if(menuAdapter != null)
+                {
+                    menuAdapter.clearFiltering(); // Clear any existing filters
+                }
+
+                applyMenuItems(itemsByMenu);
+            }
 
-                    // Load all menu items for search functionality
-                    loadAllMenuItems();
+            @Override
+            public void onError(Exception e)
+            {
+                if(isAdded())
+                    Toast.makeText(getContext(), "Failed to load menus: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
 
-                    //showLoading(false);
+    /**
+     * Marks the published menu bundle as outdated and reloads the menu.
+     * Called after every save, delete or discount write; the bundle is republished once the
+     * reload completes (see {@link #publishMenuBundleIfDirty()}).
+     */
+    private void reloadAfterMenuChange()
+    {
+        menuBundleDirty = true;
+        loadMenuData();
+    }
 
-                    // If there was an active search, reapply it
-                    if(searchBar != null && !TextUtils.isEmpty(searchBar.getQuery()))
-                    {
-                        filterResults(searchBar.getQuery().toString());
-                    }
-                })
+    /**
+     * Publishes a new version of the restaurant's {@link com.example.restaurantapp.models.MenuBundle}
+     * if the menu changed since the last publish. {@link MenuRepository} reads the stored menu itself
+     * and orders this publish after any other publish of the restaurant, such as one after an image upload.
+     * A menu too large for a bundle is served to diners item by item instead; any other failure is
+     * retried on the next reload.
+     */
+    private void publishMenuBundleIfDirty()
+    {
+        if(!menuBundleDirty || !menuLoaded || restaurantID == null) return;
+
+        menuBundleDirty = false;
+        MenuRepository.publishMenuBundle(restaurantID)
                 .addOnFailureListener(e ->
                 {
-                    //showLoading(false);
-                    Toast.makeText(getContext(), "Failed to load menus: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                    if(e instanceof MenuRepository.BundleTooLargeException)
+                    {
+                        if(isAdded())
+                        {
+                            Toast.makeText(getContext(), "Menu is too large to publish as one bundle; diners will load it directly", Toast.LENGTH_LONG).show();
+                        }
+                        return;
+                    }
+                    menuBundleDirty = true; // Retry on the next reload
+                    if(isAdded())
+                    {
+                        Toast.makeText(getContext(), "Failed to publish menu: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                    }
                 });
     }
 
     /**
-     * Loads all menu items for all menus in the {@code menuList} from Firestore.
-     * Stores the fetched items in the {@code menuAdapter} and the local {@code menuItemList}.
-     * Notifies the adapter after all items are loaded or if a search query was active, reapplies the filter.
+     * Stores the loaded menu items in the {@code menuAdapter} and the local {@code menuItemList},
+     * reconciles their discount summaries and refreshes the display.
+     * The {@link MenuSearchIndex} is rebuilt and, if a search query is active, the filter is reapplied.
+     *
+     * @param itemsByMenu The items of each menu keyed by menu ID.
      */
-    private void loadAllMenuItems()
+    private void applyMenuItems(Map<String, List<MenuItem>> itemsByMenu)
     {
         if(menuAdapter == null)
             return;
 
         menuItemList.clear();
-
-        // Track completed menu loads
-        AtomicInteger pendingMenuLoads = new AtomicInteger(menuList.size());
-        boolean hasActiveSearch = searchBar != null && !TextUtils.isEmpty(searchBar.getQuery());
-        final String searchQuery = hasActiveSearch ? searchBar.getQuery().toString() : "";
-
-        // If there are no menus, handle this case explicitly
-        if(menuList.isEmpty())
-        {
-            // Notify adapter data changed or handle empty state
-            menuAdapter.notifyDataSetChanged();
-            return;
-        }
-
         for(Menu menu : menuList)
         {
-            db.collection("Restaurants").document(restaurantID)
-                    .collection("Menus").document(menu.getMenuID())
-                    .collection("Items")
-                    .orderBy("orderIndex")
-                    .get()
-                    .addOnSuccessListener(snapshot ->
-                    {
-                        List<MenuItem> menuItems = new ArrayList<>();
-
-                        for(QueryDocumentSnapshot doc : snapshot)
-                        {
-                            MenuItem item = doc.toObject(MenuItem.class);
-                            item.setMenuID(menu.getMenuID());
-                            menuItems.add(item);
-                            menuItemList.add(item);
-                        }
+            List<MenuItem> menuItems = itemsByMenu.get(menu.getMenuID());
+            if(menuItems == null) continue;
 
-                        // Store the menu items in the adapter
-                        menuAdapter.setMenuItems(menu.getMenuID(), menuItems);
+            menuAdapter.setMenuItems(menu.getMenuID(), menuItems);
+            menuItemList.addAll(menuItems);
+        }
 
-                        // If this was the last menu to load
-                        if(pendingMenuLoads.decrementAndGet() == 0)
-                        {
-                            if(hasActiveSearch)
-                            {
-                                filterResults(searchQuery);
-                            } else
-                            {
-                                // Notify adapter to refresh display even without search
-                                menuAdapter.notifyDataSetChanged();
-                            }
-                        }
-                    })
-                    .addOnFailureListener(e ->
-                    {
-                        Log.e("RestaurantMenuFragment", "Error loading items for menu " +
-                                menu.getName() + ": " + e.getMessage());
+        menuSearchIndex = new MenuSearchIndex(menuList, menuItemList);
+        menuLoaded = true;
+        reconcileDiscountSummaries();
+        publishMenuBundleIfDirty();
 
-                        // Still decrement and check if all loads (successful or not) are done
-                        if(pendingMenuLoads.decrementAndGet() == 0)
-                        {
-                            if(hasActiveSearch)
-                            {
-                                filterResults(searchQuery);
-                            } else
-                            {
-                                menuAdapter.notifyDataSetChanged();
-                            }
-                        }
-                    });
+        if(searchBar != null && !TextUtils.isEmpty(searchBar.getQuery()))
+        {
+            filterResults(searchBar.getQuery().toString());
+        } else
+        {
+            // Refresh the display even without search
+            menuAdapter.refresh();
         }
     }
 
     /**
      * Filters the displayed menus and items based on the provided query string.
      * If the query is empty, clears the filter and shows all menus and items.
-     * Otherwise, searches for matches in menu names and item names (case-insensitive).
+     * Otherwise, looks up menus and items whose names contain the query in the {@link MenuSearchIndex},
+     * ignoring case and accents.
      * Updates the {@code menuAdapter} with the filter results and shows/hides a "no results" message.
      *
      * @param query The search query string.
@@ -1231,40 +1301,20 @@ public class ManageMenuFragment extends Fragment
             return;
         }
 
-        String lowerQuery = query.toLowerCase();
-        Set<String> menuMatchIds = new HashSet<>();
-        Set<String> itemMatchMenuIds = new HashSet<>();
-
-        // First pass: Find menus whose names match the query
-        for(Menu menu : menuList)
+        if(menuSearchIndex == null)
         {
-            if(menu.getName().toLowerCase().contains(lowerQuery))
-            {
-                menuMatchIds.add(menu.getMenuID());
-            }
+            menuSearchIndex = new MenuSearchIndex(menuList, menuItemList); // Searched before the first load completed
         }
+        MenuSearchIndex.Matches matches = menuSearchIndex.search(query);
 
-        // Second pass: Find items whose names match the query
-        for(MenuItem item : menuItemList)
-        {
-            if(item.getName().toLowerCase().contains(lowerQuery))
-            {
-                itemMatchMenuIds.add(item.getMenuID());
-            }
-        }
-
-        // Store search query and set filter data
+        // Set filter data
         if(menuAdapter != null)
         {
-            menuAdapter.setCurrentSearchQuery(lowerQuery);
-            menuAdapter.setFilterData(menuMatchIds, itemMatchMenuIds);
+            menuAdapter.setFilterData(matches);
         }
 
         // Show a "No results" message if no matches found
-        boolean noMenuMatch = menuMatchIds.isEmpty();
-        boolean noItemMatch = itemMatchMenuIds.isEmpty();
-
-        if(noMenuMatch && noItemMatch)
+        if(matches.isEmpty())
         {
             // Display a "No results found" message
             noResults.setVisibility(View.VISIBLE);
@@ -1594,27 +1644,16 @@ public class ManageMenuFragment extends Fragment
         // Inputs are valid, continue
         toggleOverlay(itemEditOverlay, false);
 
+        // A new image is queued for upload once the item is saved, see queueImageUpload()
         if(isEditMode && currentMenuItem != null)
         {
             newItem = false;
-            if(imageEdited)
-            {
-                uploadImageToFirebase(bitmap);
-            } else
-            {
-                proceedWithItemUpdate(currentMenuItem.getImageURL());
-            }
+            proceedWithItemUpdate(imageEdited ? processedImage : null);
         } else
         {
             newItem = true;
             showLoading(true);
-            if(imageEdited)
-            {
-                uploadImageToFirebase(bitmap);
-            } else
-            {
-                proceedWithItemSave(null);
-            }
+            proceedWithItemSave(imageEdited ? processedImage : null);
         }
     }
 
@@ -1649,9 +1688,9 @@ public class ManageMenuFragment extends Fragment
      * Handles cases where the item is moved to a different menu, which involves
      * deleting the item from the old menu, adding it to the new menu, and shifting item indexes.
      *
-     * @param imageURL The URL of the item's image (can be existing or new).
+     * @param newImage The newly picked image, queued for upload once the item is saved, or null to keep the current one.
      */
-    private void proceedWithItemUpdate(String imageURL)
+    private void proceedWithItemUpdate(ImageProcessor.ProcessedImage newImage)
     {
         // Get input values
         String name = editItemName.getText().toString().trim();
@@ -1704,12 +1743,13 @@ public class ManageMenuFragment extends Fragment
                 currentMenuItem.setAvailability(isAvailable);
                 currentMenuItem.setAllergens(allergensList);
                 currentMenuItem.setOrderIndex(itemCount);
-                currentMenuItem.setImageURL(imageURL);
+                DiscountUtils.applySummary(currentMenuItem, buildDiscountSummary(currentMenuItem.getItemID(), price, null));
 
 
                 newItemRef.set(currentMenuItem)
                         .addOnSuccessListener(aVoid ->
                         {
+                            queueImageUpload(newImage, newItemRef, "menuItem_images");
                             // 2. Delete old item AFTER saving to new menu
                             db.collection("Restaurants").document(restaurantID)
                                     .collection("Menus").document(currentMenuID)
@@ -1721,7 +1761,7 @@ public class ManageMenuFragment extends Fragment
                             shiftIndexesDown(currentMenuID, oldIndex, () ->
                             {
                                 Toast.makeText(getContext(), "Item moved successfully", Toast.LENGTH_SHORT).show();
-                                loadMenuData();
+                                reloadAfterMenuChange();
                                 filterResults(searchBar.getQuery().toString());
                                 toggleOverlay(itemEditOverlay, false);
                             });
@@ -1745,13 +1785,14 @@ public class ManageMenuFragment extends Fragment
             currentMenuItem.setCategory(category);
             currentMenuItem.setAvailability(isAvailable);
             currentMenuItem.setAllergens(allergensList);
-            currentMenuItem.setImageURL(imageURL);
+            DiscountUtils.applySummary(currentMenuItem, buildDiscountSummary(currentMenuItem.getItemID(), price, null));
 
             itemRef.set(currentMenuItem)
                     .addOnSuccessListener(aVoid ->
                     {
                         Toast.makeText(getContext(), "Item updated successfully", Toast.LENGTH_SHORT).show();
-                        loadMenuData();
+                        queueImageUpload(newImage, itemRef, "menuItem_images");
+                        reloadAfterMenuChange();
                         filterResults(searchBar.getQuery().toString());
                         showLoading(false);
                     })
@@ -1767,9 +1808,9 @@ public class ManageMenuFragment extends Fragment
      * Proceeds with saving a new menu item to Firestore.
      * Determines the item's {@code orderIndex} based on the current number of items in the selected menu.
      *
-     * @param imageURL The URL of the item's image (can be null if no image was added).
+     * @param newImage The newly picked image, queued for upload once the item is saved, or null to keep the current one.
      */
-    private void proceedWithItemSave(String imageURL)
+    private void proceedWithItemSave(ImageProcessor.ProcessedImage newImage)
     {
         // Get input values
         String name = editItemName.getText().toString().trim();
@@ -1802,18 +1843,9 @@ public class ManageMenuFragment extends Fragment
         getItemAmount(selectedMenuID, itemCount ->
         {
             // Create new item
-            DocumentReference itemRef = null;
-            if(imageURL == null) // If no image was uploaded, generate a new ID
-            {
-                itemRef = db.collection("Restaurants").document(restaurantID)
-                        .collection("Menus").document(selectedMenuID)
-                        .collection("Items").document();
-            } else // If an image was uploaded, currentMenuItem.getItemID() was set in generateFileName()
-            {
-                itemRef = db.collection("Restaurants").document(restaurantID)
-                        .collection("Menus").document(selectedMenuID)
-                        .collection("Items").document(currentMenuItem.getItemID());
-            }
+            DocumentReference itemRef = db.collection("Restaurants").document(restaurantID)
+                    .collection("Menus").document(selectedMenuID)
+                    .collection("Items").document();
 
             String newItemID = itemRef.getId(); // Get the generated ID first
 
@@ -1828,15 +1860,16 @@ public class ManageMenuFragment extends Fragment
             newItem.setOrderIndex(itemCount);
             newItem.setRestaurantID(restaurantID);
             newItem.setMenuID(selectedMenuID);
-            newItem.setImageURL(imageURL);
+            newItem.setEffectivePrice(price); // New items have no discounts yet
 
 
             itemRef.set(newItem)
                     .addOnSuccessListener(aVoid ->
                     {
                         Toast.makeText(getContext(), "Item added successfully", Toast.LENGTH_SHORT).show();
+                        queueImageUpload(newImage, itemRef, "menuItem_images");
                         menuItemList.add(newItem);
-                        loadMenuData();
+                        reloadAfterMenuChange();
                         filterResults(searchBar.getQuery().toString());
                         showLoading(false);
                     })
@@ -1921,37 +1954,26 @@ public class ManageMenuFragment extends Fragment
 
         toggleOverlay(menuEditOverlay, false);
 
+        // A new image is queued for upload once the menu is saved, see queueImageUpload()
         if(isEditMode && currentMenu != null)
         {
             newMenu = false;
             currentMenu.setName(name);
-            if(imageEdited)
-            {
-                uploadImageToFirebase(bitmap);
-            } else
-            {
-                proceedWithMenuUpdate(currentMenu.getImageURL());
-            }
+            proceedWithMenuUpdate(imageEdited ? processedImage : null);
         } else
         {
             showLoading(true);
             newMenu = true;
-            if(imageEdited)
-            {
-                uploadImageToFirebase(bitmap);
-            } else
-            {
-                proceedWithMenuSave(null);
-            }
+            proceedWithMenuSave(imageEdited ? processedImage : null);
         }
     }
 
     /**
      * Proceeds with updating an existing menu in Firestore.
      *
-     * @param imageURL The URL of the menu's image (can be existing or new).
+     * @param newImage The newly picked image, queued for upload once the menu is saved, or null to keep the current one.
      */
-    private void proceedWithMenuUpdate(String imageURL)
+    private void proceedWithMenuUpdate(ImageProcessor.ProcessedImage newImage)
     {
         String name = editMenuName.getText().toString().trim();
 
@@ -1969,15 +1991,15 @@ public class ManageMenuFragment extends Fragment
 
         // Update existing menu
         currentMenu.setName(name);
-        currentMenu.setImageURL(imageURL);
 
-        db.collection("Restaurants").document(restaurantID)
-                .collection("Menus").document(currentMenu.getMenuID())
-                .set(currentMenu)
+        DocumentReference menuRef = db.collection("Restaurants").document(restaurantID)
+                .collection("Menus").document(currentMenu.getMenuID());
+        menuRef.set(currentMenu)
                 .addOnSuccessListener(aVoid ->
                 {
                     Toast.makeText(getContext(), "Menu updated successfully", Toast.LENGTH_SHORT).show();
-                    loadMenuData();
+                    queueImageUpload(newImage, menuRef, "menu_images");
+                    reloadAfterMenuChange();
                     filterResults(searchBar.getQuery().toString());
                     loadMenusForSpinner(spinnerMenuSelection);
                     showLoading(false);
@@ -1995,9 +2017,9 @@ public class ManageMenuFragment extends Fragment
      * Proceeds with saving a new menu to Firestore.
      * Determines the menu's {@code menuIndex} based on the current number of menus.
      *
-     * @param imageURL The URL of the menu's image (can be null if no image was added).
+     * @param newImage The newly picked image, queued for upload once the menu is saved, or null to keep the current one.
      */
-    private void proceedWithMenuSave(String imageURL)
+    private void proceedWithMenuSave(ImageProcessor.ProcessedImage newImage)
     {
         String name = editMenuName.getText().toString().trim();
 
@@ -2013,16 +2035,8 @@ public class ManageMenuFragment extends Fragment
             return;
         }
         // Create new menu
-        DocumentReference menuRef = null;
-        if(imageURL == null) // If no image was uploaded, generate a new ID
-        {
-            menuRef = db.collection("Restaurants").document(restaurantID)
-                    .collection("Menus").document();
-        } else // If an image was uploaded, currentMenu.getMenuID() was set in generateFileName()
-        {
-            menuRef = db.collection("Restaurants").document(restaurantID)
-                    .collection("Menus").document(currentMenu.getMenuID());
-        }
+        DocumentReference menuRef = db.collection("Restaurants").document(restaurantID)
+                .collection("Menus").document();
 
 
         Menu newMenu = new Menu();
@@ -2031,16 +2045,16 @@ public class ManageMenuFragment extends Fragment
         newMenu.setRestaurantID(restaurantID);
         newMenu.setTimeCreated(Timestamp.now());
         newMenu.setMenuIndex(menuList.size());
-        newMenu.setImageURL(imageURL);
 
         menuRef.set(newMenu)
                 .addOnSuccessListener(aVoid ->
                 {
                     Toast.makeText(getContext(), "Menu added successfully", Toast.LENGTH_SHORT).show();
+                    queueImageUpload(newImage, menuRef, "menu_images");
                     menuList.add(newMenu);
                     filteredMenus.add(newMenu);
-                    menuAdapter.notifyDataSetChanged();
-                    loadMenuData();
+                    menuAdapter.refresh();
+                    reloadAfterMenuChange();
                     filterResults(searchBar.getQuery().toString());
                     loadMenusForSpinner(spinnerMenuSelection);
                     showLoading(false);
@@ -2072,8 +2086,7 @@ public class ManageMenuFragment extends Fragment
                 .setMessage("Are you sure you want to delete this item?")
                 .setPositiveButton("Delete", (dialog, which) ->
                 {
-                    deleteMode = true;
-                    deleteOldImage(null); // Pass null to indicate deletion without new image
+                    ImageRenditions.deleteFiles(storage, item.getImageURL(), item.getCardImageURL(), item.getThumbnailImageURL());
                     int index = item.getOrderIndex();
 
                     db.collection("Restaurants")
@@ -2090,7 +2103,7 @@ public class ManageMenuFragment extends Fragment
                                     Toast.makeText(getContext(), "Item deleted successfully", Toast.LENGTH_SHORT).show();
                                     menuItemList.remove(item);
                                     filteredItems.remove(item);
-                                    loadMenuData();
+                                    reloadAfterMenuChange();
                                 });
                             })
                             .addOnFailureListener(e ->
@@ -2142,8 +2155,7 @@ public class ManageMenuFragment extends Fragment
                                 // Execute batch deletion
                                 batch.commit().addOnSuccessListener(aVoid ->
                                 {
-                                    deleteMode = true;
-                                    deleteOldImage(null); // Pass null for deletion
+                                    ImageRenditions.deleteFiles(storage, menu.getImageURL(), menu.getCardImageURL(), menu.getThumbnailImageURL());
                                     // Now delete the menu itself
                                     db.collection("Restaurants")
                                             .document(restaurantID)
@@ -2155,8 +2167,8 @@ public class ManageMenuFragment extends Fragment
                                                 Toast.makeText(getContext(), "Menu and Items deleted successfully", Toast.LENGTH_SHORT).show();
                                                 menuList.remove(menu);
                                                 filteredMenus.remove(menu);
-                                                menuAdapter.notifyDataSetChanged();
-                                                loadMenuData();
+                                                menuAdapter.refresh();
+                                                reloadAfterMenuChange();
                                                 loadMenusForSpinner(spinnerMenuSelection);
                                             })
                                             .addOnFailureListener(e ->
@@ -2469,22 +2481,8 @@ public class ManageMenuFragment extends Fragment
                     {
                         if(photoUri != null)
                         {
-                            try
-                            {
-                                // Load and display the image
-                                bitmap = MediaStore.Images.Media.getBitmap(
-                                        requireActivity().getContentResolver(), photoUri);
-                                bitmap = fixImageOrientation(photoUri, bitmap);
-
-                                // Update edit image
-                                updateEditImageWithCurrentImage(bitmap);
-
-                            } catch(IOException e)
-                            {
-                                Log.e(TAG, "Error processing camera image", e);
-                                Toast.makeText(requireContext(),
-                                        "Error processing image", Toast.LENGTH_SHORT).show();
-                            }
+                            // Process and display the image
+                            processImage(photoUri, "Error processing image");
                         }
                     } else
                     {
@@ -2521,21 +2519,8 @@ public class ManageMenuFragment extends Fragment
                         Uri imageUri = result.getData().getData();
                         if(imageUri != null)
                         {
-                            try
-                            {
-                                // Display the image
-                                bitmap = MediaStore.Images.Media.getBitmap(
-                                        requireActivity().getContentResolver(), imageUri);
-                                bitmap = fixImageOrientation(imageUri, bitmap);
-
-                                // Update edit image
-                                updateEditImageWithCurrentImage(bitmap);
-                            } catch(IOException e)
-                            {
-                                Log.e(TAG, "Error loading image from gallery", e);
-                                Toast.makeText(requireContext(),
-                                        "Failed to load image", Toast.LENGTH_SHORT).show();
-                            }
+                            // Process and display the image
+                            processImage(imageUri, "Failed to load image");
                         }
                     } else
                     {
@@ -2573,379 +2558,85 @@ public class ManageMenuFragment extends Fragment
     }
 
     /**
-     * Updates the appropriate ImageView (for menu or menu item) in the edit overlay
-     * with the newly selected/captured image.
-     *
-     * @param bitmap The {@link Bitmap} of the image to display.
-     */
-    private void updateEditImageWithCurrentImage(Bitmap bitmap)
-    {
-        if("Menu".equals(currentType))
-        {
-            menuEditImage.setImageBitmap(bitmap);
-            imageEdited = true;
-        } else if("MenuItem".equals(currentType))
-        {
-            itemEditImage.setImageBitmap(bitmap);
-            imageEdited = true;
-        }
-    }
-
-    /**
-     * Uploads the given Bitmap image to Firebase Storage.
-     * Generates a unique filename based on whether it's a new or existing menu/item.
-     * After successful upload, proceeds to save/update the Firestore document with the new image URL.
+     * Decodes, downscales and encodes a captured or selected image and its renditions in the background
+     * through {@link ImageProcessor}, then shows it in the edit overlay and keeps it for upload.
      *
-     * @param bitmap The {@link Bitmap} image to upload.
+     * @param imageUri     The URI of the image.
+     * @param errorMessage The message shown if the image cannot be processed.
      */
-    private void uploadImageToFirebase(Bitmap bitmap)
+    private void processImage(Uri imageUri, String errorMessage)
     {
-        if(bitmap == null)
-        {
-            Log.e(TAG, "Cannot upload null bit map");
-            return;
-        }
-
-        if(!isAdded() || getActivity() == null || getActivity().isFinishing())
-        {
-            return;  // Fragment is no longer attached
-        }
-
-        Toast.makeText(requireContext(), "Uploading image...", Toast.LENGTH_SHORT).show();
-
-        // Get the current user ID
-        FirebaseUser currentUser = auth.getCurrentUser();
-        if(currentUser == null)
-        {
-            Log.e(TAG, "No user is currently logged in");
-            Toast.makeText(requireContext(),
-                    "You must be logged in to upload an image", Toast.LENGTH_SHORT).show();
-            return;
-        }
-
-        // Create a unique filename for the image
-        String filename = generateFileName();
-
-        StorageReference imageRef = storageRef.child(filename);
-
-        // Compress the image before uploading
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        bitmap.compress(Bitmap.CompressFormat.JPEG, 80, baos);
-        byte[] imageData = baos.toByteArray();
-
-        // Start the upload
-        isUploading = true;
-        currentUploadTask = imageRef.putBytes(imageData);
-        currentUploadTask.addOnSuccessListener(taskSnapshot ->
-        {
-            isUploading = false;
-            currentUploadTask = null;
-
-            // Only proceed if fragment is still attached
-            if(isAdded() && getActivity() != null && !getActivity().isFinishing())
-            {
-                // Image uploaded successfully, now get the download URL
-                imageRef.getDownloadUrl().addOnSuccessListener(downloadUri ->
+        ImageProcessor.processWithRenditions(requireContext(), imageUri,
+                new ImageProcessor.OnImageProcessedListener()
                 {
-                    if(isAdded() && getActivity() != null && !getActivity().isFinishing())
+                    @Override
+                    public void onImageProcessed(ImageProcessor.ProcessedImage image)
                     {
-                        // Got the download URL, now update the user's Firestore document
-                        if(newItem || newMenu) // If creating a new entity
-                        {
-                            if("Menu".equals(currentType))
-                            {
-                                if(newMenu)
-                                {
-                                    proceedWithMenuSave(downloadUri.toString());
-                                } else // This case should ideally not happen if newItem/newMenu is true
-                                {
-                                    proceedWithMenuUpdate(downloadUri.toString());
-                                }
+                        if(!isAdded()) return;
+                        bitmap = image.bitmap;
+                        processedImage = image;
 
-                            } else if("MenuItem".equals(currentType))
-                            {
-                                if(newItem)
-                                {
-                                    proceedWithItemSave(downloadUri.toString());
-                                } else // This case should ideally not happen if newItem/newMenu is true
-                                {
-                                    proceedWithItemUpdate(downloadUri.toString());
-                                }
-                            }
-                        } else // If editing an existing entity
-                        {
-                            deleteOldImage(downloadUri.toString());
-                            Log.d(TAG, "Called deleteOldImage with URL: " + downloadUri);
-                        }
-                        Log.d(TAG, "Upload successful, URL: " + downloadUri);
+                        // Update edit image
+                        updateEditImageWithCurrentImage(bitmap);
                     }
-                }).addOnFailureListener(e ->
-                {
-                    if(isAdded() && getActivity() != null && !getActivity().isFinishing())
+
+                    @Override
+                    public void onError(Exception e)
                     {
-                        Log.e(TAG, "Failed to get download URL", e);
-                        Toast.makeText(requireContext(),
-                                "Failed to get image URL: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                        if(!isAdded()) return;
+                        Log.e(TAG, "Error processing image", e);
+                        Toast.makeText(requireContext(), errorMessage, Toast.LENGTH_SHORT).show();
                     }
                 });
-            }
-        }).addOnFailureListener(e ->
-        {
-            isUploading = false;
-            currentUploadTask = null;
-
-            if(isAdded() && getActivity() != null && !getActivity().isFinishing())
-            {
-                Log.e(TAG, "Image upload failed", e);
-                Toast.makeText(requireContext(),
-                        "Upload failed: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-            }
-        }).addOnProgressListener(taskSnapshot ->
-        {
-            // Calculate and show upload progress if needed
-            double progress = (100.0 * taskSnapshot.getBytesTransferred()) / taskSnapshot.getTotalByteCount();
-            Log.d(TAG, "Upload progress: " + progress + "%");
-        });
     }
 
-
     /**
-     * Generates a unique filename for an image to be uploaded to Firebase Storage.
-     * The filename path depends on whether it's an image for a "Menu" or "MenuItem",
-     * and whether it's a new entity or an existing one.
-     * For new entities, it first generates a new Firestore document ID to use in the filename.
+     * Updates the appropriate ImageView (for menu or menu item) in the edit overlay
+     * with the newly selected/captured image.
      *
-     * @return The generated unique filename string.
+     * @param bitmap The {@link Bitmap} of the image to display.
      */
-    private String generateFileName()
+    private void updateEditImageWithCurrentImage(Bitmap bitmap)
     {
-        String filename = "";
-
         if("Menu".equals(currentType))
         {
-            if(newMenu)
-            {
-                // Create new menu
-                DocumentReference newMenuRef = db.collection("Restaurants").document(restaurantID)
-                        .collection("Menus").document();
-
-                currentMenu = new Menu(); // Ensure currentMenu is initialized
-                currentMenu.setMenuID(newMenuRef.getId());
-
-                // Generate a unique filename for the menu image
-                filename = "menu_images/" + currentMenu.getMenuID() + "/" + UUID.randomUUID().toString() + ".jpg";
-            } else
-            {
-                String menuID = currentMenu.getMenuID();
-                filename = "menu_images/" + menuID + "/" + UUID.randomUUID().toString() + ".jpg";
-            }
+            menuEditImage.setImageBitmap(bitmap);
+            imageEdited = true;
         } else if("MenuItem".equals(currentType))
         {
-            if(newItem)
-            {
-                List<String> menuIDs = (List<String>) spinnerMenuSelection.getTag();
-                String selectedMenuID = menuIDs.get(spinnerMenuSelection.getSelectedItemPosition());
-                // Create new item
-                DocumentReference newItemRef = db.collection("Restaurants").document(restaurantID)
-                        .collection("Menus").document(selectedMenuID)
-                        .collection("Items").document();
-
-                currentMenuItem = new MenuItem(); // Ensure currentMenuItem is initialized
-                currentMenuItem.setItemID(newItemRef.getId());
-                currentMenuItem.setMenuID(selectedMenuID);
-
-                filename = "menuItem_images/" + currentMenuItem.getItemID() + "/" + UUID.randomUUID().toString() + ".jpg";
-            } else
-            {
-                String itemID = currentMenuItem.getItemID();
-                filename = "menuItem_images/" + itemID + "/" + UUID.randomUUID().toString() + ".jpg";
-            }
+            itemEditImage.setImageBitmap(bitmap);
+            imageEdited = true;
         }
-
-        return filename;
     }
 
-
     /**
-     * Corrects the orientation of an image based on its EXIF data.
+     * Queues a newly picked image for upload to a saved menu or item document.
+     * The upload and its follow-up steps (pointing the document at the image and deleting the image
+     * it replaces) run in {@link ImageUploadQueue}, so they complete even if this screen is closed.
      *
-     * @param imageUri The URI of the image.
-     * @param bitmap   The {@link Bitmap} of the image.
-     * @return The orientation-corrected {@link Bitmap}.
+     * @param image       The image encoded by {@link ImageProcessor}, or null if none was picked.
+     * @param documentRef The saved menu or item document.
+     * @param folder      The storage folder for this kind of image.
      */
-    private Bitmap fixImageOrientation(Uri imageUri, Bitmap bitmap)
+    private void queueImageUpload(ImageProcessor.ProcessedImage image, DocumentReference documentRef, String folder)
     {
-        try
-        {
-            // Read EXIF data to determine orientation
-            android.media.ExifInterface exif = null;
-            try(InputStream inputStream = requireContext().getContentResolver().openInputStream(imageUri))
-            {
-                if(inputStream != null)
-                {
-                    exif = new ExifInterface(inputStream);
-                }
-            }
+        if(image == null) return;
 
-            int orientation = android.media.ExifInterface.ORIENTATION_NORMAL;
-            if(exif != null)
-            {
-                orientation = exif.getAttributeInt(
-                        android.media.ExifInterface.TAG_ORIENTATION, android.media.ExifInterface.ORIENTATION_NORMAL);
-            }
-
-            // Rotate bitmap based on orientation
-            Matrix matrix = new Matrix();
-            switch(orientation)
-            {
-                case android.media.ExifInterface.ORIENTATION_ROTATE_90:
-                    matrix.postRotate(90);
-                    break;
-                case android.media.ExifInterface.ORIENTATION_ROTATE_180:
-                    matrix.postRotate(180);
-                    break;
-                case ExifInterface.ORIENTATION_ROTATE_270: // Corrected constant
-                    matrix.postRotate(270);
-                    break;
-            }
-
-            return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
-        } catch(Exception e)
-        {
-            Log.e(TAG, "Error fixing image orientation", e);
-            return bitmap; // Return original if rotation fails
-        }
+        String filename = folder + "/" + documentRef.getId() + "/" + UUID.randomUUID().toString() + ImageProcessor.FILE_EXTENSION;
+        ImageUploadQueue.getInstance(db.getApp().getApplicationContext())
+                .enqueue(image, filename, documentRef.getPath(), "imageURL", restaurantID);
+        Log.d(TAG, "Queued image upload for " + documentRef.getPath());
     }
 
     /**
-     * Deletes the old image from Firebase Storage before updating to a new one or when deleting an entity.
+     * Returns whether a document belongs to this restaurant's menus or menu items.
      *
-     * @param newImageURL The URL of the new image. If null, it indicates the entity is being deleted,
-     *                    and the old image should be removed without proceeding to an update.
+     * @param documentPath The path of the document.
+     * @return True if the document is under the restaurant's "Menus" collection, false otherwise.
      */
-    private void deleteOldImage(String newImageURL)
+    private boolean isMenuDocument(String documentPath)
     {
-        FirebaseUser currentUser = auth.getCurrentUser();
-        if(currentUser != null)
-        {
-            DocumentReference typeRef = null;
-            if("Menu".equals(currentType))
-            {
-                typeRef = db.collection("Restaurants").document(restaurantID)
-                        .collection("Menus").document(currentMenu.getMenuID());
-            } else if("MenuItem".equals(currentType))
-            {
-                typeRef = db.collection("Restaurants").document(restaurantID)
-                        .collection("Menus").document(currentMenuItem.getMenuID())
-                        .collection("Items").document(currentMenuItem.getItemID());
-            }
-
-            Log.d(TAG, "current Type: " + currentType);
-
-            // Get the current profile image URL
-            typeRef.get().addOnSuccessListener(documentSnapshot ->
-            {
-                if(documentSnapshot.exists())
-                {
-                    String oldImageURL = documentSnapshot.getString("imageURL");
-
-                    // Only proceed if there's an old image URL
-                    if(oldImageURL != null && !oldImageURL.isEmpty())
-                    {
-                        // And it's different from the new one (or if newImageURL is null for deletion)
-                        if(newImageURL == null || !newImageURL.equals(oldImageURL))
-                        {
-                            try
-                            {
-                                // Get the path after "/o/" and before "?"
-                                String urlPath = oldImageURL.split("/o/")[1];
-                                if(urlPath.contains("?"))
-                                {
-                                    urlPath = urlPath.split("\\?")[0];
-                                }
-
-                                // Decode the URL-encoded path
-                                String decodedPath = java.net.URLDecoder.decode(urlPath, "UTF-8");
-
-                                // Create a reference to the old file and delete it
-                                StorageReference oldImageRef = storage.getReference().child(decodedPath);
-                                oldImageRef.delete().addOnSuccessListener(aVoid ->
-                                {
-                                    Log.d(TAG, "Old image deleted successfully");
-                                    if(deleteMode) // If in delete mode for the entity
-                                    {
-                                        deleteMode = false; // Reset flag
-                                    } else if(newImageURL != null) // If not deleting entity, proceed with update
-                                    {
-                                        if("Menu".equals(currentType))
-                                        {
-                                            if(newMenu) proceedWithMenuSave(newImageURL);
-                                            else proceedWithMenuUpdate(newImageURL);
-                                        } else if("MenuItem".equals(currentType))
-                                        {
-                                            if(newItem) proceedWithItemSave(newImageURL);
-                                            else proceedWithItemUpdate(newImageURL);
-                                        }
-                                    }
-                                }).addOnFailureListener(e ->
-                                {
-                                    Log.e(TAG, "Error deleting old image", e);
-                                    // Even if deletion fails, proceed with saving/updating if not in deleteMode
-                                    if(deleteMode)
-                                    {
-                                        deleteMode = false;
-                                    } else if(newImageURL != null)
-                                    {
-                                        if("Menu".equals(currentType))
-                                        {
-                                            if(newMenu) proceedWithMenuSave(newImageURL);
-                                            else proceedWithMenuUpdate(newImageURL);
-                                        } else if("MenuItem".equals(currentType))
-                                        {
-                                            if(newItem) proceedWithItemSave(newImageURL);
-                                            else proceedWithItemUpdate(newImageURL);
-                                        }
-                                    }
-                                });
-                            } catch(Exception e)
-                            {
-                                Log.e(TAG, "Error parsing old image URL: " + oldImageURL, e);
-                            }
-                        } else if(newImageURL != null)
-                        { // Old and new URLs are the same, no need to delete/re-upload
-                            if("Menu".equals(currentType)) proceedWithMenuUpdate(newImageURL);
-                            else if("MenuItem".equals(currentType))
-                                proceedWithItemUpdate(newImageURL);
-                        }
-                    } else if(newImageURL != null)
-                    { // No old image, just proceed with saving the new one
-                        if(deleteMode)
-                        {
-                            deleteMode = false;
-                        } else
-                        {
-                            if("Menu".equals(currentType))
-                            {
-                                if(newMenu) proceedWithMenuSave(newImageURL);
-                                else proceedWithMenuUpdate(newImageURL);
-                            } else if("MenuItem".equals(currentType))
-                            {
-                                if(newItem) proceedWithItemSave(newImageURL);
-                                else proceedWithItemUpdate(newImageURL);
-                            }
-                        }
-                    }
-                } else if(newImageURL != null)
-                { // Document doesn't exist (shouldn't happen for edit, but handle for new)
-                    if("Menu".equals(currentType) && newMenu) proceedWithMenuSave(newImageURL);
-                    else if("MenuItem".equals(currentType) && newItem)
-                        proceedWithItemSave(newImageURL);
-                }
-            }).addOnFailureListener(e ->
-            {
-                Log.e(TAG, "Error fetching document to delete old image", e);
-            });
-        }
+        return restaurantID != null && documentPath.startsWith("Restaurants/" + restaurantID + "/Menus/");
     }
 
     /**
@@ -3050,6 +2741,8 @@ public class ManageMenuFragment extends Fragment
                         .addOnSuccessListener(querySnapshot ->
                         {
                             List<Task<Void>> discountTasks = new ArrayList<>();
+                            WriteBatch batch = db.batch();
+                            int batchWrites = 0;
 
                             for(DocumentSnapshot doc : querySnapshot)
                             {
@@ -3065,20 +2758,40 @@ public class ManageMenuFragment extends Fragment
 
                                 Map<String, Object> discountData = new HashMap<>();
                                 discountData.put("discountID", discountID);
+                                discountData.put("restaurantID", restaurantID);     // Used by the DiscountIndex collection-group query
+                                discountData.put("menuID", selectedMenuID);
+                                discountData.put("itemID", itemID);
                                 discountData.put("discountType", discountType);      // "Percentage" or "Flat"
                                 discountData.put("amount", discountAmount);
                                 discountData.put("startTime", startTime);    // Timestamp
                                 discountData.put("endTime", endTime);        // Timestamp or null
 
-                                Task<Void> addDiscountTask = discountRef.set(discountData);
-                                discountTasks.add(addDiscountTask);
+                                // Write the discount and the item's denormalized price summary together
+                                Double itemPrice = doc.getDouble("price");
+                                Discount newDiscount = new Discount(discountType, discountAmount, startTime, endTime, discountID);
+                                batch.set(discountRef, discountData);
+                                batch.update(doc.getReference(), DiscountUtils.summaryUpdate(
+                                        buildDiscountSummary(itemID, itemPrice != null ? itemPrice : 0, newDiscount)));
+                                batchWrites += 2;
+
+                                if(batchWrites >= MAX_BATCH_WRITES)
+                                {
+                                    discountTasks.add(batch.commit());
+                                    batch = db.batch();
+                                    batchWrites = 0;
+                                }
+                            }
+                            if(batchWrites > 0)
+                            {
+                                discountTasks.add(batch.commit());
                             }
 
                             Tasks.whenAllComplete(discountTasks).addOnCompleteListener(t ->
                             {
+                                if(!isAdded()) return;
                                 showLoading(false);
                                 Toast.makeText(getContext(), "Discount scheduled for all items", Toast.LENGTH_SHORT).show();
-                                loadMenuData();
+                                reloadAfterMenuChange();
                                 toggleOverlay(discountOverlay, false);
                             });
                         })
@@ -3115,22 +2828,33 @@ public class ManageMenuFragment extends Fragment
                                 // Create discount data
                                 Map<String, Object> discountData = new HashMap<>();
                                 discountData.put("discountID", discountRef.getId());
+                                discountData.put("restaurantID", restaurantID); // Used by the DiscountIndex collection-group query
+                                discountData.put("menuID", selectedMenuID);
+                                discountData.put("itemID", itemID);
                                 discountData.put("discountType", discountType); // "Percentage" or "Flat"
                                 discountData.put("amount", discountAmount);
                                 discountData.put("startTime", startTime); // Timestamp
                                 discountData.put("endTime", endTime);     // Timestamp or null
 
-                                // Add discount to the Discounts subcollection
-                                discountRef.set(discountData)
+                                // Add discount to the Discounts subcollection and update the item's price summary in one batch
+                                Double itemPrice = doc.getDouble("price");
+                                Discount newDiscount = new Discount(discountType, discountAmount, startTime, endTime, discountRef.getId());
+                                WriteBatch batch = db.batch();
+                                batch.set(discountRef, discountData);
+                                batch.update(doc.getReference(), DiscountUtils.summaryUpdate(
+                                        buildDiscountSummary(itemID, itemPrice != null ? itemPrice : 0, newDiscount)));
+                                batch.commit()
                                         .addOnSuccessListener(ref ->
                                         {
+                                            if(!isAdded()) return;
                                             showLoading(false);
                                             Toast.makeText(getContext(), "Discount scheduled for item", Toast.LENGTH_SHORT).show();
-                                            loadMenuData();
+                                            reloadAfterMenuChange();
                                             toggleOverlay(discountOverlay, false);
                                         })
                                         .addOnFailureListener(e ->
                                         {
+                                            if(!isAdded()) return;
                                             showLoading(false);
                                             Toast.makeText(getContext(), "Failed to schedule discount: " + e.getMessage(), Toast.LENGTH_SHORT).show();
                                         });
@@ -3153,4 +2877,81 @@ public class ManageMenuFragment extends Fragment
             Toast.makeText(getContext(), "Please enter a valid discount value", Toast.LENGTH_SHORT).show();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Builds the denormalized discount summary for an item from the discounts known to the
+     * restaurant's {@link DiscountIndex}, optionally including a discount that is about to be written.
+     * Until the index is loaded and covers the restaurant's legacy discounts, the item may have
+     * discounts the index does not know of, so the summary is cleared instead and diners query the
+     * item's discounts; {@link #reconcileDiscountSummaries()} fills it in once the index is complete.
+     * Does not touch the fragment, so it is safe to call from callbacks that run after it detached.
+     *
+     * @param itemID      The ID of the item.
+     * @param price       The undiscounted price of the item.
+     * @param newDiscount A discount being added in the same write, or null.
+     * @return The summary fields produced by {@link DiscountUtils#buildSummary}, or
+     * {@link DiscountUtils#clearedSummary()}.
+     */
+    private Map<String, Object> buildDiscountSummary(String itemID, double price, Discount newDiscount)
+    {
+        DiscountIndex index = DiscountIndex.peek(restaurantID);
+        if(index == null || !index.isLoaded()) return DiscountUtils.clearedSummary();
+
+        List<Discount> discounts = index.getDiscounts(itemID);
+        if(newDiscount != null)
+        {
+            discounts.add(newDiscount);
+            discounts.sort(Comparator.comparing(Discount::getStartTime, Comparator.nullsLast(Comparator.naturalOrder())));
+        }
+
+        DiscountSchedule schedule = discounts.isEmpty() ? null : new DiscountSchedule(discounts);
+        return DiscountUtils.buildSummary(price, schedule, System.currentTimeMillis());
+    }
+
+    /**
+     * Recomputes the denormalized discount summary of every loaded item and writes the ones that
+     * changed (for example because a discount started or expired) back to Firestore in batches.
+     * Runs whenever the restaurant's {@link DiscountIndex} reports a change, which includes the
+     * tick at each discount boundary, and after the menu items have been loaded.
+     * Only runs once the index is complete, i.e. the restaurant's legacy discounts have been indexed
+     * (see {@link DiscountIndex#isLoaded()}); an incomplete index would overwrite the summaries of
+     * items whose discounts it is missing.
+     */
+    private void reconcileDiscountSummaries()
+    {
+        DiscountIndex index = DiscountIndex.peek(restaurantID);
+        if(index == null || !index.isLoaded() || menuItemList.isEmpty()) return;
+
+        long nowMillis = System.currentTimeMillis();
+        WriteBatch batch = db.batch();
+        int batchWrites = 0;
+
+        for(MenuItem item : menuItemList)
+        {
+            if(item.getItemID() == null || item.getMenuID() == null) continue;
+
+            Map<String, Object> summary = DiscountUtils.buildSummary(item.getPrice(),
+                    index.getSchedule(item.getItemID()), nowMillis);
+            if(DiscountUtils.summaryMatches(item, summary)) continue;
+
+            DocumentReference itemRef = db.collection("Restaurants").document(restaurantID)
+                    .collection("Menus").document(item.getMenuID())
+                    .collection("Items").document(item.getItemID());
+            batch.update(itemRef, DiscountUtils.summaryUpdate(summary));
+            DiscountUtils.applySummary(item, summary);
+            menuBundleDirty = true; // The bundle carries the summaries too
+
+            if(++batchWrites >= MAX_BATCH_WRITES)
+            {
+                batch.commit().addOnFailureListener(e -> Log.e(TAG, "Failed to reconcile discount summaries", e));
+                batch = db.batch();
+                batchWrites = 0;
+            }
+        }
+
+        if(batchWrites > 0)
+        {
+            batch.commit().addOnFailureListener(e -> Log.e(TAG, "Failed to reconcile discount summaries", e));
+        }
+    }
+}
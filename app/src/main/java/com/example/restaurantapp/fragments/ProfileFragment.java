@@ -6,10 +6,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
-import android.graphics.Bitmap;
-import android.graphics.Matrix;
 // import android.graphics.Paint; // Unused import
-import android.media.ExifInterface; // Used for image orientation
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
@@ -34,6 +31,8 @@ import androidx.fragment.app.Fragment;
 
 import com.bumptech.glide.Glide;
 import com.example.restaurantapp.R;
+import com.example.restaurantapp.utils.ImageProcessor;
+import com.example.restaurantapp.utils.ImageUploadQueue;
 import com.example.restaurantapp.utils.SettingsUtils;
 import com.google.android.material.bottomsheet.BottomSheetDialog;
 import com.google.firebase.auth.FirebaseAuth;
@@ -41,14 +40,9 @@ import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.messaging.FirebaseMessaging;
-import com.google.firebase.storage.FirebaseStorage;
-import com.google.firebase.storage.StorageReference;
-import com.google.firebase.storage.UploadTask;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -106,14 +100,6 @@ public class ProfileFragment extends Fragment
      * BottomSheetDialog for presenting image source options (camera/gallery) for profile picture.
      */
     private BottomSheetDialog bottomSheetDialog;
-    /**
-     * Reference to the current Firebase Storage upload task for the profile picture.
-     */
-    private UploadTask currentUploadTask;
-    /**
-     * Flag indicating whether a profile picture upload is currently in progress.
-     */
-    private boolean isUploading = false;
     /**
      * Uri of the photo taken by the camera or selected from the gallery for the profile picture.
      */
@@ -127,14 +113,6 @@ public class ProfileFragment extends Fragment
      * Instance of FirebaseAuth for user authentication.
      */
     private FirebaseAuth auth;
-    /**
-     * Instance of FirebaseStorage for image storage.
-     */
-    private FirebaseStorage storage;
-    /**
-     * Reference to the root of Firebase Storage.
-     */
-    private StorageReference storageRef;
     /**
      * DocumentReference to the user's settings document in Firestore (under "Users/{uid}/Settings/preferences").
      */
@@ -194,8 +172,6 @@ public class ProfileFragment extends Fragment
         // Initialize Firebase
         db = FirebaseFirestore.getInstance();
         auth = FirebaseAuth.getInstance();
-        storage = FirebaseStorage.getInstance();
-        storageRef = storage.getReference();
 
         FirebaseUser currentUser = auth.getCurrentUser();
         if(currentUser != null)
@@ -336,7 +312,7 @@ public class ProfileFragment extends Fragment
      * Called when the view previously created by {@link #onCreateView} has
      * been detached from the fragment.
      * Dismisses any showing {@link #bottomSheetDialog} to prevent window leaks.
-     * Cancels any ongoing Firebase Storage upload task ({@link #currentUploadTask}).
+     * A queued profile picture upload keeps running in {@link ImageUploadQueue}.
      */
     @Override
     public void onDestroyView()
@@ -348,14 +324,6 @@ public class ProfileFragment extends Fragment
             bottomSheetDialog.dismiss();
         }
         bottomSheetDialog = null; // Clear reference
-
-        if(currentUploadTask != null && isUploading) // isUploading flag is important here
-        {
-            currentUploadTask.cancel();
-            Log.d(TAG, "Cancelled ongoing image upload task.");
-        }
-        currentUploadTask = null;
-        isUploading = false;
     }
 
     /**
@@ -806,7 +774,7 @@ public class ProfileFragment extends Fragment
 
     /**
      * ActivityResultLauncher for handling camera result.
-     * If successful, loads image, fixes orientation, displays it, and calls {@link #uploadImageToFirebase(Bitmap)}.
+     * If successful, processes the image through {@link #processImage(Uri, String)}, which displays and uploads it.
      * This is similar to launchers in other fragments.
      */
     private final ActivityResultLauncher<Intent> cameraLauncher = registerForActivityResult( // Similar to launchers in other fragments
@@ -821,17 +789,7 @@ public class ProfileFragment extends Fragment
                     boolean hasStorageP = checkStoragePermission();
                     if(hasCameraP && hasStorageP && photoUri != null)
                     {
-                        try
-                        {
-                            Bitmap bitmap = MediaStore.Images.Media.getBitmap(requireActivity().getContentResolver(), photoUri);
-                            bitmap = fixImageOrientation(photoUri, bitmap); // Use correct fixImageOrientation
-                            editProfilePictureImageButton.setImageBitmap(bitmap);
-                            uploadImageToFirebase(bitmap);
-                        } catch(IOException e)
-                        {
-                            Log.e(TAG, "Error processing camera image.", e);
-                            Toast.makeText(requireContext(), "Error processing image.", Toast.LENGTH_SHORT).show();
-                        }
+                        processImage(photoUri, "Error processing image.");
                     } else
                     {
                         Toast.makeText(requireContext(), "Permissions required or photo URI null.", Toast.LENGTH_SHORT).show();
@@ -841,7 +799,7 @@ public class ProfileFragment extends Fragment
 
     /**
      * ActivityResultLauncher for handling gallery result.
-     * If successful, loads image, fixes orientation, displays it, and calls {@link #uploadImageToFirebase(Bitmap)}.
+     * If successful, processes the image through {@link #processImage(Uri, String)}, which displays and uploads it.
      * This is similar to launchers in other fragments.
      */
     private final ActivityResultLauncher<Intent> imagePickerLauncher = registerForActivityResult( // Similar to launchers in other fragments
@@ -858,17 +816,7 @@ public class ProfileFragment extends Fragment
                         Uri imageUri = result.getData().getData();
                         if(imageUri != null)
                         {
-                            try
-                            {
-                                Bitmap bitmap = MediaStore.Images.Media.getBitmap(requireActivity().getContentResolver(), imageUri);
-                                bitmap = fixImageOrientation(imageUri, bitmap); // Use correct fixImageOrientation
-                                editProfilePictureImageButton.setImageBitmap(bitmap);
-                                uploadImageToFirebase(bitmap);
-                            } catch(IOException e)
-                            {
-                                Log.e(TAG, "Error loading image from gallery.", e);
-                                Toast.makeText(requireContext(), "Failed to load image.", Toast.LENGTH_SHORT).show();
-                            }
+                            processImage(imageUri, "Failed to load image.");
                         }
                     } else
                     {
@@ -899,205 +847,59 @@ public class ProfileFragment extends Fragment
     }
 
     /**
-     * Uploads the provided bitmap image to Firebase Storage as the user's profile picture.
-     * Generates a unique filename under "profile_images/{userID}/".
-     * If successful, calls {@link #updateUserProfileWithImageUrl(String)} to save the new image URL to Firestore.
-     * This method is similar to upload methods in other fragments but specific to profile pictures.
+     * Decodes, downscales and encodes a profile picture in the background through {@link ImageProcessor},
+     * then displays it and calls {@link #queueImageUpload(ImageProcessor.ProcessedImage)}.
      *
-     * @param bitmap The {@link Bitmap} image to upload.
+     * @param imageUri     The URI of the image.
+     * @param errorMessage The message shown if the image cannot be processed.
      */
-    private void uploadImageToFirebase(Bitmap bitmap) // Similar to upload methods in other fragments
+    private void processImage(Uri imageUri, String errorMessage)
     {
-        if(bitmap == null)
-        {
-            Log.e(TAG, "Cannot upload null bitmap for profile.");
-            return;
-        }
-        if(!isAdded() || getActivity() == null || getActivity().isFinishing() || getContext() == null)
-            return;
-
-        Toast.makeText(requireContext(), "Uploading profile picture...", Toast.LENGTH_SHORT).show();
-        // Consider showing a progress bar specific to image upload
+        ImageProcessor.process(requireContext(), imageUri, ImageProcessor.PROFILE_MAX_DIMENSION, ImageProcessor.PROFILE_MAX_BYTES,
+                new ImageProcessor.OnImageProcessedListener()
+                {
+                    @Override
+                    public void onImageProcessed(ImageProcessor.ProcessedImage image)
+                    {
+                        if(!isAdded() || getContext() == null) return;
+                        editProfilePictureImageButton.setImageBitmap(image.bitmap);
+                        queueImageUpload(image);
+                    }
 
-        FirebaseUser firebaseCurrentUser = auth.getCurrentUser();
-        if(firebaseCurrentUser == null)
-        {
-            Log.e(TAG, "No user logged in for profile picture upload.");
-            Toast.makeText(requireContext(), "Login required to upload picture.", Toast.LENGTH_SHORT).show();
-            return;
-        }
-        String userId = firebaseCurrentUser.getUid();
-        String filename = "profile_images/" + userId + "/" + UUID.randomUUID().toString() + ".jpg";
-        StorageReference imageRef = storageRef.child(filename);
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        bitmap.compress(Bitmap.CompressFormat.JPEG, 80, baos);
-        byte[] imageData = baos.toByteArray();
-
-        isUploading = true;
-        currentUploadTask = imageRef.putBytes(imageData);
-        currentUploadTask.addOnSuccessListener(taskSnapshot ->
-        {
-            isUploading = false;
-            currentUploadTask = null;
-            if(!isAdded() || getActivity() == null || getActivity().isFinishing()) return;
-            imageRef.getDownloadUrl().addOnSuccessListener(downloadUri ->
-            {
-                if(!isAdded() || getActivity() == null || getActivity().isFinishing()) return;
-                Log.d(TAG, "Profile picture upload successful. URL: " + downloadUri.toString());
-                updateUserProfileWithImageUrl(downloadUri.toString()); // This will also handle deleting old image
-            }).addOnFailureListener(e ->
-            {
-                if(!isAdded() || getActivity() == null || getActivity().isFinishing()) return;
-                Log.e(TAG, "Failed to get download URL for profile picture.", e);
-                Toast.makeText(requireContext(), "Failed to get image URL: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-            });
-        }).addOnFailureListener(e ->
-        {
-            isUploading = false;
-            currentUploadTask = null;
-            if(!isAdded() || getActivity() == null || getActivity().isFinishing()) return;
-            Log.e(TAG, "Profile picture upload failed.", e);
-            Toast.makeText(requireContext(), "Upload failed: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-        }).addOnProgressListener(taskSnapshot ->
-        {
-            double progress = (100.0 * taskSnapshot.getBytesTransferred()) / taskSnapshot.getTotalByteCount();
-            Log.d(TAG, "Profile picture upload progress: " + progress + "%");
-        });
+                    @Override
+                    public void onError(Exception e)
+                    {
+                        if(!isAdded() || getContext() == null) return;
+                        Log.e(TAG, "Error processing profile picture.", e);
+                        Toast.makeText(requireContext(), errorMessage, Toast.LENGTH_SHORT).show();
+                    }
+                });
     }
 
     /**
-     * Corrects image orientation using EXIF data.
-     * This method is a duplicate of methods in other fragments, using {@code android.media.ExifInterface}.
+     * Queues the provided encoded image for upload as the user's profile picture.
+     * Generates a unique filename under "profile_images/{userID}/". The upload, the update of the
+     * "profileImageURL" field and the deletion of the previous picture run in {@link ImageUploadQueue},
+     * so they complete even if the user leaves this screen or the upload has to be retried later.
      *
-     * @param imageUri The URI of the image.
-     * @param bitmap   The original bitmap.
-     * @return The orientation-corrected bitmap, or original if an error occurs.
+     * @param image The image encoded by {@link ImageProcessor}.
      */
-    private Bitmap fixImageOrientation(Uri imageUri, Bitmap bitmap) // Uses android.media.ExifInterface
+    private void queueImageUpload(ImageProcessor.ProcessedImage image)
     {
-        if(getContext() == null || imageUri == null || bitmap == null) return bitmap;
-        try
-        {
-            ExifInterface exif = null;
-            try(InputStream inputStream = requireContext().getContentResolver().openInputStream(imageUri))
-            {
-                if(inputStream != null) exif = new ExifInterface(inputStream);
-            }
-            int orientation = ExifInterface.ORIENTATION_NORMAL;
-            if(exif != null)
-                orientation = exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
-            Matrix matrix = new Matrix();
-            switch(orientation)
-            {
-                case ExifInterface.ORIENTATION_ROTATE_90:
-                    matrix.postRotate(90);
-                    break;
-                case ExifInterface.ORIENTATION_ROTATE_180:
-                    matrix.postRotate(180);
-                    break;
-                case ExifInterface.ORIENTATION_ROTATE_270:
-                    matrix.postRotate(270);
-                    break;
-            }
-            return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
-        } catch(Exception e)
-        {
-            Log.e(TAG, "Error fixing image orientation (using android.media.ExifInterface).", e);
-            return bitmap;
-        }
-    }
+        if(!isAdded() || getContext() == null) return;
 
-    /**
-     * Updates the "profileImageURL" field in the user's Firestore document with the new image URL.
-     * Before updating, it calls {@link #deleteOldProfileImage(String)} to remove the previous profile picture
-     * from Firebase Storage if one existed and is different from the new one.
-     *
-     * @param imageUrl The new profile image URL to save.
-     */
-    private void updateUserProfileWithImageUrl(String imageUrl)
-    {
-        FirebaseUser firebaseCurrentUser = auth.getCurrentUser(); // Shadowing
-        if(firebaseCurrentUser != null && userRef != null)
-        {
-            // Call deleteOldProfileImage first. It will handle the logic of checking old URL.
-            // The actual update to Firestore with the new URL should happen *after* old image deletion (or if no old image).
-            // This method's current structure calls deleteOldProfileImage, which is good.
-            // Then it proceeds to update Firestore.
-            deleteOldProfileImage(imageUrl); // This will attempt to delete the old one.
-
-            // The update to Firestore should ideally be chained after deleteOldProfileImage completes,
-            // or deleteOldProfileImage should take a callback to then update Firestore.
-            // For now, following the existing structure:
-            Map<String, Object> updates = new HashMap<>();
-            updates.put("profileImageURL", imageUrl);
-
-            userRef.update(updates)
-                    .addOnSuccessListener(aVoid ->
-                    {
-                        if(isAdded() && getActivity() != null && !getActivity().isFinishing())
-                        {
-                            Log.d(TAG, "User profile successfully updated with new image URL in Firestore.");
-                            Toast.makeText(requireContext(), "Profile picture updated.", Toast.LENGTH_SHORT).show();
-                        }
-                    })
-                    .addOnFailureListener(e ->
-                    {
-                        if(isAdded() && getActivity() != null && !getActivity().isFinishing())
-                        {
-                            Log.e(TAG, "Error updating user profileImageURL in Firestore.", e);
-                            Toast.makeText(requireContext(), "Failed to save profile picture: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                        }
-                    });
-        } else
+        FirebaseUser firebaseCurrentUser = auth.getCurrentUser();
+        if(firebaseCurrentUser == null || userRef == null)
         {
-            Log.e(TAG, "Cannot update profile image URL: current user or userRef is null.");
+            Log.e(TAG, "No user logged in for profile picture upload.");
+            Toast.makeText(requireContext(), "Login required to upload picture.", Toast.LENGTH_SHORT).show();
+            return;
         }
-    }
+        String userId = firebaseCurrentUser.getUid();
+        String filename = "profile_images/" + userId + "/" + UUID.randomUUID().toString() + ImageProcessor.FILE_EXTENSION;
 
-    /**
-     * Deletes the user's old profile image from Firebase Storage if it exists and is different from {@code newImageUrl}.
-     * Fetches the current {@code profileImageURL} from the user's Firestore document.
-     * If an old URL is found and differs, it parses the URL to get the storage path and attempts deletion.
-     * This method is called by {@link #updateUserProfileWithImageUrl(String)} before setting the new URL.
-     *
-     * @param newImageUrl The URL of the new profile image. The old image will only be deleted if it's different.
-     */
-    private void deleteOldProfileImage(String newImageUrl)
-    {
-        FirebaseUser firebaseCurrentUser = auth.getCurrentUser(); // Shadowing
-        if(firebaseCurrentUser != null && userRef != null)
-        {
-            userRef.get().addOnSuccessListener(documentSnapshot ->
-            {
-                if(documentSnapshot.exists())
-                {
-                    String oldImageUrl = documentSnapshot.getString("profileImageURL");
-                    if(oldImageUrl != null && !oldImageUrl.isEmpty() && !oldImageUrl.equals(newImageUrl))
-                    {
-                        try
-                        {
-                            if(oldImageUrl.contains("/o/"))
-                            { // Check for typical Firebase Storage URL structure
-                                String urlPath = oldImageUrl.split("/o/")[1].split("\\?")[0];
-                                String decodedPath = java.net.URLDecoder.decode(urlPath, "UTF-8");
-                                StorageReference oldImageRef = storage.getReference().child(decodedPath);
-                                oldImageRef.delete()
-                                        .addOnSuccessListener(aVoid -> Log.d(TAG, "Old profile image deleted successfully: " + oldImageUrl))
-                                        .addOnFailureListener(e -> Log.e(TAG, "Error deleting old profile image: " + oldImageUrl, e));
-                            } else
-                            {
-                                Log.w(TAG, "Old profile image URL format not recognized for deletion: " + oldImageUrl);
-                            }
-                        } catch(Exception e)
-                        {
-                            Log.e(TAG, "Error parsing or deleting old profile image URL: " + oldImageUrl, e);
-                        }
-                    }
-                }
-            }).addOnFailureListener(e -> Log.e(TAG, "Error fetching user document to delete old profile image.", e));
-        } else
-        {
-            Log.w(TAG, "Cannot delete old profile image: current user or userRef is null.");
-        }
+        ImageUploadQueue.getInstance(requireContext())
+                .enqueue(image, filename, userRef.getPath(), "profileImageURL", null);
+        Toast.makeText(requireContext(), "Uploading profile picture...", Toast.LENGTH_SHORT).show();
     }
 }
\ No newline at end of file
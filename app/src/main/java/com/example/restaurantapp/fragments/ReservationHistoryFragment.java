@@ -19,14 +19,14 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.restaurantapp.R;
 import com.example.restaurantapp.adapters.ReservationAdapter;
 import com.example.restaurantapp.models.Reservation;
+import com.example.restaurantapp.utils.ReservationDateFilter;
+import com.example.restaurantapp.utils.ReservationPager;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.chip.Chip;
 import com.google.android.material.chip.ChipGroup;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.Query;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -37,7 +37,7 @@ import java.util.Locale;
 
 /**
  * A {@link Fragment} subclass that displays a history of past reservations.
- * It fetches reservations from Firestore, differentiating between restaurant users
+ * It pages through reservations in Firestore, differentiating between restaurant users
  * (who see reservations for their restaurant) and regular users (who see their own reservations).
  * The fragment allows filtering reservations by specific dates using a {@link DatePickerDialog}
  * and displays active date filters as {@link Chip}s in a {@link ChipGroup}.
@@ -73,19 +73,15 @@ public class ReservationHistoryFragment extends Fragment
      */
     private final List<Reservation> pastReservations = new ArrayList<>();
     /**
-     * List of all reservations fetched from Firestore before any filtering.
+     * All reservations fetched from Firestore, bucketed by day for the date filters.
      */
-    private final List<Reservation> allReservations = new ArrayList<>();
+    private final ReservationDateFilter dateFilter = new ReservationDateFilter(true);
     /**
      * List of reservations after applying date filters (used as an intermediate step).
      */
     private final List<Reservation> filteredReservations = new ArrayList<>();
     /**
-     * List of currently active date filter strings (formatted as "yyyy-MM-dd").
-     */
-    private final List<String> activeDateFilters = new ArrayList<>();
-    /**
-     * SimpleDateFormat for formatting dates to "yyyy-MM-dd" for filtering and display.
+     * SimpleDateFormat for formatting dates to "yyyy-MM-dd" for the filter chips.
      */
     private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()); // Note: Locale.getDefault() used
     /**
@@ -112,6 +108,14 @@ public class ReservationHistoryFragment extends Fragment
      * Flag indicating if the current user is a restaurant user (true) or a regular user (false).
      */
     private boolean isRestaurant;
+    /**
+     * Pager over the reservation history of the user or restaurant, null until the reservations are located.
+     */
+    private ReservationPager pager;
+    /**
+     * Number of remaining items below the last visible one at which the next page is requested.
+     */
+    private static final int PREFETCH_DISTANCE = 5;
 
     /**
      * Required empty public constructor for Fragment instantiation.
@@ -156,6 +160,21 @@ public class ReservationHistoryFragment extends Fragment
         reservationsRecyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
         reservationsRecyclerView.setAdapter(reservationAdapter);
 
+        // Fetch the next page when the user nears the end of the list
+        reservationsRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener()
+        {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy)
+            {
+                LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+                if(dy > 0 && layoutManager != null
+                        && layoutManager.findLastVisibleItemPosition() >= reservationAdapter.getItemCount() - PREFETCH_DISTANCE)
+                {
+                    loadNextPage();
+                }
+            }
+        });
+
         // Initialize Firebase components
         db = FirebaseFirestore.getInstance();
         auth = FirebaseAuth.getInstance();
@@ -180,20 +199,18 @@ public class ReservationHistoryFragment extends Fragment
     }
 
     /**
-     * Loads reservations from Firestore based on the user type.
-     * If the user is a restaurant, it fetches reservations for their associated restaurant ID.
-     * If the user is a regular user, it fetches their own reservations.
-     * Only reservations that are in the past (date before current date) or have a status of "Cancelled"
-     * are added to {@link #allReservations}.
-     * After fetching, it calls {@link #applyFilters()} to update the displayed list.
-     * Handles potential errors during Firestore operations by printing stack traces.
+     * Starts loading the reservation history from Firestore based on the user type.
+     * If the user is a restaurant, it pages through the reservations of their associated restaurant ID.
+     * If the user is a regular user, it pages through their own reservations.
+     * A {@link ReservationPager} fetches the cancelled upcoming reservations followed by the
+     * reservations dated before now, latest first, one page at a time; further pages are requested
+     * as the user scrolls through the list.
+     * Handles potential errors during Firestore operations by logging them.
      */
     private void loadReservationsFromFirestore()
     {
-        // User type is already determined by isRestaurant field, can use that directly.
-        // String userType = requireContext().getSharedPreferences("FeedMe", Context.MODE_PRIVATE).getString("userType", "");
-
-        allReservations.clear(); // Clear previous data
+        dateFilter.clear(); // Clear previous data
+        pager = null;
 
         if(currentUser == null)
         {
@@ -220,69 +237,53 @@ public class ReservationHistoryFragment extends Fragment
                             return;
                         }
 
-                        // Fetch reservations for the restaurant
-                        db.collection("Restaurants")
+                        // Page through the restaurant's reservations
+                        pager = ReservationPager.history(db.collection("Restaurants")
                                 .document(restaurantID)
-                                .collection("Reservations")
-                                .orderBy("date", Query.Direction.DESCENDING) // Order by date descending
-                                .get()
-                                .addOnSuccessListener(resSnapshots ->
-                                {
-                                    if(!isAdded()) return;
-                                    Date now = new Date();
-                                    for(QueryDocumentSnapshot doc : resSnapshots)
-                                    {
-                                        Reservation r = doc.toObject(Reservation.class);
-                                        // Add if reservation date is before now OR status is "Cancelled"
-                                        if(r.getDate() != null && (r.getDate().before(now) || "Cancelled".equalsIgnoreCase(r.getStatus())))
-                                        {
-                                            allReservations.add(r);
-                                        }
-                                    }
-                                    applyFilters(); // Apply filters and update UI
-                                })
-                                .addOnFailureListener(e ->
-                                {
-                                    Log.e("ReservationHistory", "Error fetching restaurant reservations.", e);
-                                    // e.printStackTrace(); // Original code
-                                    updateEmptyState(); // Show empty state on error
-                                });
+                                .collection("Reservations"), new Date());
+                        loadNextPage();
                     })
                     .addOnFailureListener(e ->
                     {
                         Log.e("ReservationHistory", "Error fetching user document for restaurantID.", e);
-                        // e.printStackTrace(); // Original code
                         updateEmptyState();
                     });
         } else // Regular user
         {
-            db.collection("Users")
+            pager = ReservationPager.history(db.collection("Users")
                     .document(currentUserID)
-                    .collection("Reservations")
-                    .orderBy("date", Query.Direction.DESCENDING)
-                    .get()
-                    .addOnSuccessListener(resSnapshots ->
-                    {
-                        if(!isAdded()) return;
-                        Date now = new Date();
-                        for(QueryDocumentSnapshot doc : resSnapshots)
-                        {
-                            Reservation r = doc.toObject(Reservation.class);
-                            if(r.getDate() != null && (r.getDate().before(now) || "Cancelled".equalsIgnoreCase(r.getStatus())))
-                            {
-                                allReservations.add(r);
-                            }
-                        }
-                        applyFilters();
-                    })
-                    .addOnFailureListener(e ->
-                    { // Replaced Throwable::printStackTrace with lambda for logging
-                        Log.e("ReservationHistory", "Error fetching user reservations.", e);
-                        updateEmptyState();
-                    });
+                    .collection("Reservations"), new Date());
+            loadNextPage();
         }
     }
 
+    /**
+     * Requests the next page of the reservation history from the {@link #pager}.
+     * The page is appended to the {@link #dateFilter}, after which {@link #applyFilters()}
+     * updates the displayed list.
+     */
+    private void loadNextPage()
+    {
+        if(pager == null) return;
+        pager.loadNextPage(new ReservationPager.OnPageLoadedListener()
+        {
+            @Override
+            public void onPageLoaded(List<Reservation> reservations)
+            {
+                if(!isAdded()) return;
+                dateFilter.addAll(reservations);
+                applyFilters(); // Apply filters and update UI
+            }
+
+            @Override
+            public void onError(Exception e)
+            {
+                Log.e("ReservationHistory", "Error fetching reservations.", e);
+                if(isAdded()) updateEmptyState(); // Show empty state on error
+            }
+        });
+    }
+
     /**
      * Sets up click listeners for the filter buttons.
      * The "Filter by Date" button calls {@link #showDatePickerDialog()}.
@@ -296,7 +297,7 @@ public class ReservationHistoryFragment extends Fragment
 
         clearFilterButton.setOnClickListener(v ->
         {
-            activeDateFilters.clear();
+            dateFilter.clearDays();
             filterChipGroup.removeAllViews();
             filterChipGroup.setVisibility(View.GONE);
             clearFilterButton.setVisibility(View.GONE);
@@ -332,46 +333,40 @@ public class ReservationHistoryFragment extends Fragment
 
     /**
      * Called when a date is selected from the {@link DatePickerDialog}.
-     * Formats the selected date into "yyyy-MM-dd" string format and calls
-     * {@link #addDateFilterChip(String)} to add it as a filter.
+     * Converts the selected date into its epoch day and "yyyy-MM-dd" label and calls
+     * {@link #addDateFilterChip(long, String)} to add it as a filter.
      *
      * @param date The {@link Date} object selected by the user.
      */
     private void onDateSelected(Date date)
     {
-        // Format it for display or Firestore querying
-        // SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()); // dateFormat field already exists
-        String formattedDate = dateFormat.format(date);
-
-        // Now apply filter logic
-        addDateFilterChip(formattedDate);
+        addDateFilterChip(ReservationDateFilter.epochDay(date), dateFormat.format(date));
     }
 
 
     /**
-     * Adds a new date filter {@link Chip} to the {@link #filterChipGroup} if the date is not already an active filter.
+     * Adds a new date filter {@link Chip} to the {@link #filterChipGroup} if the day is not already an active filter.
      * The chip displays the formatted date and has a close icon to remove the filter.
      * When a chip is added or its close icon is clicked, {@link #applyFilters()} is called to update the list.
      * Manages the visibility of the {@link #filterChipGroup} and {@link #clearFilterButton}.
      *
-     * @param date The date string (formatted as "yyyy-MM-dd") to add as a filter.
+     * @param day  The epoch day to add as a filter, see {@link ReservationDateFilter#epochDay(Date)}.
+     * @param date The date string (formatted as "yyyy-MM-dd") shown on the chip.
      */
-    private void addDateFilterChip(String date)
+    private void addDateFilterChip(long day, String date)
     {
         if(getContext() == null) return;
 
-        if(!activeDateFilters.contains(date))
+        if(dateFilter.addDay(day))
         {
-            activeDateFilters.add(date);
             Chip chip = new Chip(requireContext());
             chip.setText(date);
             chip.setCloseIconResource(R.drawable.baseline_clear_24); // Ensure this drawable exists
             chip.setCloseIconVisible(true);
             chip.setOnCloseIconClickListener(v ->
             {
-                activeDateFilters.remove(date);
                 filterChipGroup.removeView(chip);
-                if(activeDateFilters.isEmpty())
+                if(dateFilter.removeDay(day))
                 {
                     filterChipGroup.setVisibility(View.GONE);
                     clearFilterButton.setVisibility(View.GONE);
@@ -389,50 +384,35 @@ public class ReservationHistoryFragment extends Fragment
     }
 
     /**
-     * Applies the currently active date filters to the {@link #allReservations} list.
-     * It clears {@link #filteredReservations} and then iterates through {@link #allReservations}.
-     * A reservation is added to {@link #filteredReservations} if it's a past reservation (date before now
-     * or status is "Cancelled") AND (if activeDateFilters is not empty, its date matches one of the active filters).
-     * If no date filters are active, all past/cancelled reservations are added.
+     * Applies the currently active date filters through the {@link #dateFilter}.
+     * {@link #filteredReservations} is refilled with the past reservations (date before now or status
+     * is "Cancelled") on the selected days, or on any day if no date filter is active.
      * Finally, it updates {@link #pastReservations} with the content of {@link #filteredReservations},
-     * notifies the {@link #reservationAdapter}, and calls {@link #updateEmptyState()}.
+     * submits it to the {@link #reservationAdapter}, and calls {@link #updateEmptyState()}.
+     * If fewer than a page of reservations are shown and more can be loaded, the next page is requested.
      */
     private void applyFilters()
     {
-        filteredReservations.clear();
         Date now = new Date(); // Current date for comparison
-
-        for(Reservation r : allReservations)
-        {
-            if(r.getDate() == null) continue; // Skip reservations with null date
-
-            // Condition for being a "past" or "history" item
-            boolean isHistoryItem = r.getDate().before(now) || "Cancelled".equalsIgnoreCase(r.getStatus());
-
-            if(isHistoryItem)
-            {
-                if(activeDateFilters.isEmpty()) // No active date filters, add all history items
-                {
-                    filteredReservations.add(r);
-                } else // Active date filters exist
-                {
-                    String reservationDateStr = dateFormat.format(r.getDate());
-                    if(activeDateFilters.contains(reservationDateStr)) // Check if reservation date matches any active filter
-                    {
-                        filteredReservations.add(r);
-                    }
-                }
-            }
-        }
+        filteredReservations.clear();
+        filteredReservations.addAll(dateFilter.apply(r ->
+                r.getDate().before(now) || "Cancelled".equalsIgnoreCase(r.getStatus())));
 
         pastReservations.clear();
-        pastReservations.addAll(filteredReservations); // Update the list the adapter is observing
+        pastReservations.addAll(filteredReservations);
 
+        // The adapter diffs the new list against the displayed one
         if(reservationAdapter != null)
         {
-            reservationAdapter.notifyDataSetChanged();
+            reservationAdapter.submitList(pastReservations);
         }
         updateEmptyState(); // Update visibility of empty state message
+
+        // A short list cannot be scrolled, so fetch more until it fills a page or nothing is left
+        if(pager != null && !pager.isEndReached() && pastReservations.size() < ReservationPager.PAGE_SIZE)
+        {
+            loadNextPage();
+        }
     }
 
     /**
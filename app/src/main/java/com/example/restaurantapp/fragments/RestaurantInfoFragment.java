@@ -39,29 +39,28 @@ import com.example.restaurantapp.adapters.MenuAdapter;
 import com.example.restaurantapp.models.Menu;
 import com.example.restaurantapp.models.MenuItem;
 import com.example.restaurantapp.models.Restaurant;
+import com.example.restaurantapp.utils.MenuCache;
+import com.example.restaurantapp.utils.MenuRepository;
+import com.example.restaurantapp.utils.MenuSearchIndex;
+import com.example.restaurantapp.utils.ReservationCapacity;
+import com.example.restaurantapp.utils.ReservationRepository;
 import com.example.restaurantapp.viewmodels.MenuItemSelectionViewModel;
 import com.example.restaurantapp.viewmodels.RestaurantViewModel;
 import com.google.android.material.button.MaterialButton;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.DocumentReference;
-import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
 
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
-import java.util.UUID;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A {@link Fragment} subclass that displays detailed information about a specific restaurant.
@@ -206,10 +205,22 @@ public class RestaurantInfoFragment extends Fragment
      * List of all {@link MenuItem} objects across all menus for the current restaurant (used for search).
      */
     private List<MenuItem> menuItemList = new ArrayList<>();
+    /**
+     * Search index over {@link #menuList} and {@link #menuItemList}, rebuilt whenever a menu is displayed.
+     */
+    private MenuSearchIndex menuSearchIndex;
     /**
      * The ID of the currently displayed restaurant.
      */
     private String restaurantID;
+    /**
+     * The published menu bundle version of the displayed restaurant, 0 if it has none.
+     */
+    private long menuVersion;
+    /**
+     * The {@code lastUpdated} stamp of the displayed restaurant in milliseconds, 0 if it has none.
+     */
+    private long lastUpdated;
     /**
      * The ID of the fragment container, determined by user type.
      */
@@ -513,6 +524,9 @@ public class RestaurantInfoFragment extends Fragment
             return;
         }
 
+        menuVersion = restaurant.getMenuVersion();
+        lastUpdated = MenuCache.toMillis(restaurant.getLastUpdated());
+
         // Name & Address
         restaurantDetailName.setText(getSafeText(restaurant.getName()));
         restaurantDetailAddress.setText(getSafeText(restaurant.getAddress()));
@@ -647,10 +661,10 @@ public class RestaurantInfoFragment extends Fragment
 
 
     /**
-     * Loads all menus for the current {@link #restaurantID} from Firestore, ordered by {@code menuIndex}.
-     * Updates the local {@link #menuList} and notifies the {@link #menuAdapter}.
-     * Shows the search bar if menus exist. Calls {@link #loadAllMenuItems()} to fetch items.
-     * Manages a loading indicator.
+     * Loads all menus and menu items for the current {@link #restaurantID}.
+     * A menu stored in the on-device {@link MenuCache} is displayed immediately, then revalidated
+     * against the displayed restaurant in {@link #revalidateMenu(String, MenuCache.CachedMenu)}.
+     * Shows the search bar if menus exist. Manages a loading indicator.
      */
     private void loadMenuData()
     {
@@ -667,46 +681,111 @@ public class RestaurantInfoFragment extends Fragment
         searchBar.setVisibility(View.GONE); // Hide initially
         showLoading(true);
 
-        db.collection("Restaurants").document(restaurantID)
-                .collection("Menus")
-                .orderBy("menuIndex")
-                .get()
-                .addOnSuccessListener(snapshot ->
-                {
-                    if(!isAdded()) return; // Check fragment state
-                    List<Menu> updatedMenus = new ArrayList<>();
-                    for(QueryDocumentSnapshot doc : snapshot)
-                    {
-                        Menu menu = doc.toObject(Menu.class);
-                        menu.setMenuID(doc.getId()); // Ensure ID is set
-                        updatedMenus.add(menu);
-                    }
+        final String requestedID = restaurantID;
+        MenuCache.getInstance(requireContext()).get(requestedID, cachedMenu ->
+        {
+            if(!isAdded() || !requestedID.equals(restaurantID)) return; // Check fragment state
 
-                    menuList.clear();
-                    menuList.addAll(updatedMenus);
+            if(cachedMenu != null)
+            {
+                displayMenu(cachedMenu.menus, cachedMenu.itemsByMenu); // Render the cached copy right away
+            }
+            revalidateMenu(requestedID, cachedMenu);
+        });
+    }
 
-                    if(!menuList.isEmpty())
-                    {
-                        searchBar.setVisibility(View.VISIBLE); // Show search bar if menus exist
-                    }
+    /**
+     * Checks whether a cached menu is still current by comparing the stamps it was stored with
+     * against the {@link #lastUpdated} and {@link #menuVersion} of the restaurant document this
+     * fragment has already loaded, so revalidation costs no extra read.
+     * If it is missing or outdated, the menu is fetched through {@link #fetchMenu(String, long)}.
+     *
+     * @param restaurantID The ID of the restaurant.
+     * @param cachedMenu   The cached menu, or null if the restaurant is not cached.
+     */
+    private void revalidateMenu(String restaurantID, MenuCache.CachedMenu cachedMenu)
+    {
+        if(cachedMenu != null && cachedMenu.isCurrent(lastUpdated, menuVersion))
+        {
+            Log.d("RestaurantInfo", "Cached menu is current for restaurant: " + restaurantID);
+            return;
+        }
+        fetchMenu(restaurantID, lastUpdated);
+    }
 
-                    if(menuAdapter != null)
-                    {
-                        menuAdapter.clearFiltering(); // Will notify adapter
-                    }
+    /**
+     * Fetches the restaurant's menu from its published menu bundle through {@link MenuRepository},
+     * stores it in the {@link MenuCache} and displays it. The bundle is read once per {@link #menuVersion}
+     * and restaurants without a bundle fall back to one collection-group item query.
+     *
+     * @param restaurantID The ID of the restaurant.
+     * @param lastUpdated  The restaurant's {@code lastUpdated} in milliseconds, stored with the cached menu.
+     */
+    private void fetchMenu(String restaurantID, long lastUpdated)
+    {
+        final long fetchedVersion = menuVersion;
+        MenuRepository.loadMenuBundle(restaurantID, fetchedVersion, new MenuRepository.OnMenuLoadedListener()
+        {
+            @Override
+            public void onMenuLoaded(List<Menu> menus, Map<String, List<MenuItem>> itemsByMenu)
+            {
+                if(!isAdded()) return; // Check fragment state
 
-                    loadAllMenuItems(); // Load items after menus are loaded
-                    // showLoading(false) will be called after loadAllMenuItems completes or by its own logic
-                })
-                .addOnFailureListener(e ->
+                MenuCache.getInstance(requireContext()).put(restaurantID, lastUpdated, fetchedVersion, menus, itemsByMenu);
+                displayMenu(menus, itemsByMenu);
+            }
+
+            @Override
+            public void onError(Exception e)
+            {
+                if(isAdded())
                 {
-                    if(isAdded())
-                    {
-                        showLoading(false);
-                        Toast.makeText(getContext(), "Failed to load menus: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                        Log.e("RestaurantInfo", "Failed to load menus.", e);
-                    }
-                });
+                    showLoading(false);
+                    Toast.makeText(getContext(), "Failed to load menus: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                    Log.e("RestaurantInfo", "Failed to load menus.", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Displays a loaded menu.
+     * Updates the local {@link #menuList} and {@link #menuItemList}, stores the grouped items in the
+     * {@link #menuAdapter}, rebuilds the {@link #menuSearchIndex} and calls {@link #finalizeMenuLoading(String)}.
+     *
+     * @param menus       The restaurant's menus ordered by {@code menuIndex}.
+     * @param itemsByMenu The items of each menu keyed by menu ID.
+     */
+    private void displayMenu(List<Menu> menus, Map<String, List<MenuItem>> itemsByMenu)
+    {
+        menuList.clear();
+        menuList.addAll(menus);
+        menuItemList.clear();
+
+        if(!menuList.isEmpty())
+        {
+            searchBar.setVisibility(View.VISIBLE); // Show search bar if menus exist
+        }
+
+        if(menuAdapter == null)
+        {
+            Log.w("RestaurantInfo", "Menu loaded before adapter was set up.");
+            showLoading(false);
+            return;
+        }
+
+        menuAdapter.clearFiltering(); // Will refresh adapter
+        for(Menu menu : menuList)
+        {
+            List<MenuItem> itemsForThisMenu = itemsByMenu.get(menu.getMenuID());
+            if(itemsForThisMenu == null) continue;
+            menuAdapter.setMenuItems(menu.getMenuID(), itemsForThisMenu);
+            menuItemList.addAll(itemsForThisMenu); // Add to global list
+        }
+        menuSearchIndex = new MenuSearchIndex(menuList, menuItemList);
+
+        final String currentSearchQuery = (searchBar != null && !TextUtils.isEmpty(searchBar.getQuery())) ? searchBar.getQuery().toString() : "";
+        finalizeMenuLoading(currentSearchQuery);
     }
 
     /**
@@ -758,88 +837,10 @@ public class RestaurantInfoFragment extends Fragment
 
         recyclerViewMenus.setLayoutManager(new LinearLayoutManager(getContext()));
         recyclerViewMenus.setAdapter(menuAdapter);
+        recyclerViewMenus.addOnScrollListener(menuAdapter.createPreloader(this)); // Fetch images of the next menus
         setUpSearchBar(); // Setup search after adapter is ready
     }
 
-    /**
-     * Loads all menu items for all currently loaded menus from Firestore.
-     * For each menu in {@link #menuList}, it fetches its items (ordered by {@code orderIndex}),
-     * adds them to the global {@link #menuItemList}, and stores them in the {@link #menuAdapter} cache.
-     * Once all items for all menus are loaded (or failed to load), it reapplies any active search filter
-     * or notifies the adapter to refresh if no search is active.
-     * Manages a loading indicator.
-     */
-    private void loadAllMenuItems()
-    {
-        if(menuAdapter == null || restaurantID == null || restaurantID.isEmpty())
-        {
-            Log.w("RestaurantInfo", "Cannot load all menu items: adapter or restaurantID is null/empty.");
-            showLoading(false); // Ensure loading is hidden
-            return;
-        }
-
-        menuItemList.clear(); // Clear global list before repopulating
-        // showLoading(true) might have been called by loadMenuData
-
-        if(menuList.isEmpty())
-        {
-            Log.d("RestaurantInfo", "No menus to load items from.");
-            menuAdapter.notifyDataSetChanged(); // Refresh adapter (will show empty if no menus)
-            showLoading(false);
-            return;
-        }
-
-        AtomicInteger pendingMenuLoads = new AtomicInteger(menuList.size());
-        final String currentSearchQuery = (searchBar != null && !TextUtils.isEmpty(searchBar.getQuery())) ? searchBar.getQuery().toString() : "";
-
-        for(Menu menu : menuList)
-        {
-            if(menu.getMenuID() == null || menu.getMenuID().isEmpty())
-            {
-                Log.w("RestaurantInfo", "Skipping items load for menu with null/empty ID: " + menu.getName());
-                if(pendingMenuLoads.decrementAndGet() == 0)
-                {
-                    finalizeMenuLoading(currentSearchQuery);
-                }
-                continue;
-            }
-
-            db.collection("Restaurants").document(restaurantID)
-                    .collection("Menus").document(menu.getMenuID())
-                    .collection("Items")
-                    .orderBy("orderIndex")
-                    .get()
-                    .addOnSuccessListener(snapshot ->
-                    {
-                        if(!isAdded()) return;
-                        List<MenuItem> itemsForThisMenu = new ArrayList<>();
-                        for(QueryDocumentSnapshot doc : snapshot)
-                        {
-                            MenuItem item = doc.toObject(MenuItem.class);
-                            item.setMenuID(menu.getMenuID());
-                            item.setItemID(doc.getId());
-                            itemsForThisMenu.add(item);
-                            menuItemList.add(item); // Add to global list
-                        }
-                        menuAdapter.setMenuItems(menu.getMenuID(), itemsForThisMenu);
-
-                        if(pendingMenuLoads.decrementAndGet() == 0)
-                        {
-                            finalizeMenuLoading(currentSearchQuery);
-                        }
-                    })
-                    .addOnFailureListener(e ->
-                    {
-                        if(isAdded())
-                            Log.e("RestaurantInfo", "Error loading items for menu " + menu.getName() + ": " + e.getMessage(), e);
-                        if(pendingMenuLoads.decrementAndGet() == 0)
-                        {
-                            finalizeMenuLoading(currentSearchQuery);
-                        }
-                    });
-        }
-    }
-
     /**
      * Helper method called after all menu items (or attempts to load them) are complete.
      * It applies search filters if a query is active, or refreshes the adapter.
@@ -855,7 +856,7 @@ public class RestaurantInfoFragment extends Fragment
             filterResults(currentSearchQuery);
         } else
         {
-            menuAdapter.notifyDataSetChanged(); // Refresh display
+            menuAdapter.refresh(); // Refresh display
         }
         showLoading(false); // Hide loading indicator
     }
@@ -864,9 +865,9 @@ public class RestaurantInfoFragment extends Fragment
     /**
      * Filters the displayed menus and items based on the provided search query.
      * If the query is empty, it clears any existing filters in the {@link #menuAdapter}.
-     * Otherwise, it searches for menus whose names contain the query and items (across all menus)
-     * whose names contain the query. The results (sets of matching menu IDs) are passed to
-     * {@link MenuAdapter#setFilterData(Set, Set)}.
+     * Otherwise, it looks up menus and items (across all menus) whose names contain the query in the
+     * {@link #menuSearchIndex}, ignoring case and accents. The matches are passed to
+     * {@link MenuAdapter#setFilterData(MenuSearchIndex.Matches)}.
      * Shows or hides the "No results" TextView based on whether any matches are found.
      *
      * @param query The search query string.
@@ -881,35 +882,19 @@ public class RestaurantInfoFragment extends Fragment
 
         if(TextUtils.isEmpty(query))
         {
-            menuAdapter.clearFiltering(); // This calls notifyDataSetChanged
+            menuAdapter.clearFiltering(); // This refreshes the adapter
             noResults.setVisibility(View.GONE);
             recyclerViewMenus.setVisibility(View.VISIBLE);
         } else
         {
-            String lowerQuery = query.toLowerCase(Locale.getDefault());
-            Set<String> menuMatchIds = new HashSet<>();
-            Set<String> itemMatchMenuIds = new HashSet<>();
-
-            for(Menu menu : menuList)
+            if(menuSearchIndex == null)
             {
-                if(menu.getName() != null && menu.getName().toLowerCase(Locale.getDefault()).contains(lowerQuery))
-                {
-                    menuMatchIds.add(menu.getMenuID());
-                }
+                menuSearchIndex = new MenuSearchIndex(menuList, menuItemList); // Searched before the menu was displayed
             }
+            MenuSearchIndex.Matches matches = menuSearchIndex.search(query);
+            menuAdapter.setFilterData(matches); // This refreshes the adapter
 
-            for(MenuItem item : menuItemList) // Use global list of all items
-            {
-                if(item.getName() != null && item.getName().toLowerCase(Locale.getDefault()).contains(lowerQuery))
-                {
-                    itemMatchMenuIds.add(item.getMenuID()); // Add parent menu ID if item matches
-                }
-            }
-
-            menuAdapter.setCurrentSearchQuery(lowerQuery);
-            menuAdapter.setFilterData(menuMatchIds, itemMatchMenuIds); // This calls notifyDataSetChanged
-
-            if(menuAdapter.getItemCount() == 0) // Check after adapter updates
+            if(matches.isEmpty()) // The adapter's rows are only updated once they have been diffed
             {
                 noResults.setVisibility(View.VISIBLE);
                 recyclerViewMenus.setVisibility(View.GONE);
@@ -928,10 +913,12 @@ public class RestaurantInfoFragment extends Fragment
      * Configures the {@link #datePicker} to allow selection from tomorrow up to one year ahead.
      * Configures the {@link #hourPicker} (0-23) and {@link #minutePicker} (00, 15, 30, 45)
      * with default values based on the current time, rounded up to the next 15-minute interval.
+     * Starts loading the user's profile fields stored with the reservation while the user fills in the form.
      */
     private void setupReservationOverlay()
     {
         reservationOverlay.setVisibility(View.VISIBLE);
+        if(currentUser != null) ReservationRepository.prefetchProfile(currentUser.getUid());
 
         Restaurant currentRestaurant = (viewModel != null && viewModel.getCurrentRestaurant().getValue() != null)
                 ? viewModel.getCurrentRestaurant().getValue()
@@ -985,9 +972,8 @@ public class RestaurantInfoFragment extends Fragment
     /**
      * Validates the reservation details entered by the user and, if valid, saves the reservation.
      * Checks for guest amount (must be >= 1 and not exceed restaurant's max capacity if set).
-     * If max capacity is set, it queries existing reservations within a +/- 90-minute window
-     * of the selected time to ensure total guests (existing + new) do not exceed capacity.
-     * If all checks pass, calls {@link #saveReservation(Date, int, int, String)}.
+     * If all checks pass, calls {@link #saveReservation(Date, int, int, int, int)}, which atomically
+     * checks that the restaurant's capacity is not exceeded at any time during the reservation.
      * Manages a loading indicator.
      *
      * @param restaurant The {@link Restaurant} object for which the reservation is being made.
@@ -1051,87 +1037,30 @@ public class RestaurantInfoFragment extends Fragment
         }
 
 
-        int maxCapacity = restaurant.getMaxCapacity();
-        if(maxCapacity == 0) // If maxCapacity is 0, assume no capacity limit check needed
+        int maxCapacity = restaurant.getMaxCapacity(); // 0 means no capacity limit
+        if(maxCapacity > 0 && guestAmount > maxCapacity)
         {
-            saveReservation(reservationDateTime, selectedHour, selectedMinute, guestAmountStr);
-        } else
-        {
-            if(guestAmount > maxCapacity)
-            {
-                guestAmountEditText.setError("Exceeds restaurant's max capacity (" + maxCapacity + ").");
-                showLoading(false);
-                return;
-            }
-
-            Calendar windowStart = (Calendar) selectedDateTimeCal.clone();
-            windowStart.add(Calendar.MINUTE, -90);
-            Calendar windowEnd = (Calendar) selectedDateTimeCal.clone();
-            windowEnd.add(Calendar.MINUTE, 90);
-
-            db.collection("Restaurants").document(restaurantID).collection("Reservations")
-                    .whereGreaterThanOrEqualTo("date", windowStart.getTime())
-                    .whereLessThanOrEqualTo("date", windowEnd.getTime())
-                    .get()
-                    .addOnSuccessListener(querySnapshot ->
-                    {
-                        if(!isAdded()) return;
-                        int totalGuestsInWindow = 0;
-                        for(DocumentSnapshot doc : querySnapshot.getDocuments())
-                        {
-                            if(!"Cancelled".equalsIgnoreCase(doc.getString("status"))) // Check status field name
-                            {
-                                String existingGuestStr = doc.getString("guests");
-                                if(existingGuestStr != null)
-                                {
-                                    try
-                                    {
-                                        totalGuestsInWindow += Integer.parseInt(existingGuestStr);
-                                    } catch(NumberFormatException e)
-                                    {
-                                        Log.w("ReservationValidation", "Invalid guest number in existing reservation: " + existingGuestStr);
-                                    }
-                                }
-                            }
-                        }
-
-                        if(totalGuestsInWindow + guestAmount > maxCapacity)
-                        {
-                            guestAmountEditText.setError("Not enough capacity available at this time slot.");
-                            showLoading(false);
-                        } else
-                        {
-                            saveReservation(reservationDateTime, selectedHour, selectedMinute, guestAmountStr);
-                        }
-                    })
-                    .addOnFailureListener(e ->
-                    {
-                        if(isAdded())
-                        {
-                            Log.e("ReservationValidation", "Error fetching existing reservations.", e);
-                            Toast.makeText(getContext(), "Could not verify availability. Please try again.", Toast.LENGTH_SHORT).show();
-                            showLoading(false);
-                        }
-                    });
+            guestAmountEditText.setError("Exceeds restaurant's max capacity (" + maxCapacity + ").");
+            showLoading(false);
+            return;
         }
+
+        saveReservation(reservationDateTime, selectedHour, selectedMinute, guestAmount, maxCapacity);
     }
 
     /**
-     * Saves the reservation data to Firestore for both the user and the restaurant.
-     * Creates a unique reservation ID. Constructs a map of reservation data including date, time,
-     * guests, special requests, restaurant ID, user ID, and restaurant name.
-     * First, it saves this data to the user's "Reservations" subcollection.
-     * On success, it fetches the user's name and phone number from their main document,
-     * adds/updates these in the reservation data map (removing restaurantName as it's not needed for restaurant's copy),
-     * and then saves the modified map to the restaurant's "Reservations" subcollection.
-     * Shows toasts for success or logs errors on failure. Hides loading indicator and reservation overlay on success.
+     * Saves the reservation through {@link ReservationRepository#createReservation}, which books the guests'
+     * seats and stores the user's and the restaurant's copy of the reservation in one transaction.
+     * Hides the loading indicator and reservation overlay on success. If the time slot is full, shows an
+     * error on the guest amount field; on any other failure nothing is stored and a toast is shown.
      *
      * @param reservationDate The {@link Date} object for the reservation.
      * @param hour            The selected hour for the reservation.
      * @param minute          The selected minute for the reservation.
-     * @param guestAmountStr  The number of guests as a string.
+     * @param guestAmount     The number of guests.
+     * @param maxCapacity     The restaurant's maximum capacity, or 0 for no limit.
      */
-    private void saveReservation(Date reservationDate, int hour, int minute, String guestAmountStr)
+    private void saveReservation(Date reservationDate, int hour, int minute, int guestAmount, int maxCapacity)
     {
         if(currentUser == null || restaurantID == null || getContext() == null)
         {
@@ -1141,84 +1070,31 @@ public class RestaurantInfoFragment extends Fragment
         }
 
         String formattedTime = String.format(Locale.getDefault(), "%02d:%02d", hour, minute);
-        String newReservationID = UUID.randomUUID().toString(); // Use local var for clarity
-        String currentUserID = currentUser.getUid();
         String currentRestaurantName = (viewModel != null && viewModel.getCurrentRestaurant().getValue() != null)
                 ? viewModel.getCurrentRestaurant().getValue().getName() : "Unknown Restaurant";
 
-        Map<String, Object> reservationDataForUser = new HashMap<>();
-        reservationDataForUser.put("date", reservationDate);
-        reservationDataForUser.put("time", formattedTime);
-        reservationDataForUser.put("guests", guestAmountStr);
-        reservationDataForUser.put("specialRequests", specialRequestsEditText.getText().toString().trim());
-        reservationDataForUser.put("restaurantID", restaurantID);
-        reservationDataForUser.put("reservationID", newReservationID);
-        reservationDataForUser.put("userID", currentUserID);
-        reservationDataForUser.put("restaurantName", currentRestaurantName); // For user's copy
-        // reservationDataForUser.put("status", "Upcoming"); // Implicitly upcoming
-
-        // Save to user's reservations
-        db.collection("Users").document(currentUserID)
-                .collection("Reservations").document(newReservationID)
-                .set(reservationDataForUser)
-                .addOnSuccessListener(docRefUser ->
+        ReservationRepository.createReservation(currentUser.getUid(), restaurantID, currentRestaurantName, reservationDate,
+                        formattedTime, guestAmount, specialRequestsEditText.getText().toString().trim(), maxCapacity)
+                .addOnSuccessListener(aVoid ->
                 {
                     if(!isAdded()) return;
-                    Log.d("ReservationSave", "Reservation saved to user's collection.");
-                    // Now prepare data for restaurant's collection
-                    db.collection("Users").document(currentUserID).get()
-                            .addOnSuccessListener(userDocSnapshot ->
-                            {
-                                if(!isAdded()) return;
-                                Map<String, Object> reservationDataForRestaurant = new HashMap<>(reservationDataForUser);
-                                reservationDataForRestaurant.remove("restaurantName"); // Not needed for restaurant's copy
-
-                                if(userDocSnapshot.exists())
-                                {
-                                    String userName = userDocSnapshot.getString("name");
-                                    String userPhone = userDocSnapshot.getString("phoneNumber");
-                                    if(userName != null)
-                                        reservationDataForRestaurant.put("name", userName); // User's name for restaurant
-                                    if(userPhone != null)
-                                        reservationDataForRestaurant.put("phoneNumber", userPhone); // User's phone
-                                }
-
-                                db.collection("Restaurants").document(restaurantID)
-                                        .collection("Reservations").document(newReservationID)
-                                        .set(reservationDataForRestaurant)
-                                        .addOnSuccessListener(docRefRestaurant ->
-                                        {
-                                            if(!isAdded()) return;
-                                            Log.d("ReservationSave", "Reservation saved to restaurant's collection.");
-                                            showLoading(false);
-                                            reservationOverlay.setVisibility(View.GONE);
-                                            Toast.makeText(getContext(), "Reservation successfully created!", Toast.LENGTH_LONG).show();
-                                        })
-                                        .addOnFailureListener(eRestaurant ->
-                                        {
-                                            if(isAdded())
-                                                Log.e("ReservationSave", "Error saving reservation to restaurant's collection.", eRestaurant);
-                                            // Consider rollback or notification if this part fails
-                                            showLoading(false);
-                                        });
-                            })
-                            .addOnFailureListener(eUserDoc ->
-                            {
-                                if(isAdded())
-                                    Log.e("ReservationSave", "Failed to fetch user info for restaurant's reservation copy.", eUserDoc);
-                                // Still try to save to restaurant with available info, or handle error
-                                // For simplicity, current code doesn't explicitly handle this failure path for restaurant save.
-                                showLoading(false);
-                            });
+                    Log.d("ReservationSave", "Reservation saved.");
+                    showLoading(false);
+                    reservationOverlay.setVisibility(View.GONE);
+                    Toast.makeText(getContext(), "Reservation successfully created!", Toast.LENGTH_LONG).show();
                 })
-                .addOnFailureListener(eUser ->
+                .addOnFailureListener(e ->
                 {
-                    if(isAdded())
+                    if(!isAdded()) return;
+                    if(e instanceof ReservationCapacity.SlotFullException)
                     {
-                        Log.e("ReservationSave", "Error saving reservation to user's collection.", eUser);
+                        guestAmountEditText.setError("Not enough capacity available at this time slot.");
+                    } else
+                    {
+                        Log.e("ReservationSave", "Error saving reservation.", e);
                         Toast.makeText(getContext(), "Failed to create reservation. Please try again.", Toast.LENGTH_SHORT).show();
-                        showLoading(false);
                     }
+                    showLoading(false);
                 });
     }
 
@@ -20,6 +20,10 @@ import androidx.fragment.app.FragmentTransaction;
 
 import com.example.restaurantapp.R;
 import com.example.restaurantapp.activities.RestaurantMainActivity;
+import com.example.restaurantapp.utils.DiscountIndex;
+import com.example.restaurantapp.utils.GeoHashUtils;
+import com.example.restaurantapp.utils.MenuRepository;
+import com.example.restaurantapp.utils.RestaurantSearchIndex;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
 import com.google.firebase.auth.FirebaseAuth;
@@ -366,7 +370,8 @@ public class RestaurantSignUpFragment extends Fragment
      * Saves the new restaurant's data to Firestore and updates the user's document.
      * Generates a unique ID for the restaurant. Attempts to geocode the provided address
      * to get a {@link GeoPoint} for the location.
-     * Creates a restaurant data map including ID, name, address, phone, ownerID, creation timestamp, and location.
+     * Creates a restaurant data map including ID, name, address, search keywords, phone, ownerID, creation timestamp,
+     * location and its geohash.
      * Creates a user data map to set "userType" to "restaurant", store email, and link to the {@code restaurantId}.
      * Saves the restaurant data to the "Restaurants" collection.
      * Initializes an empty "Menus" subcollection for the new restaurant (with a temporary placeholder document that is then deleted).
@@ -399,6 +404,7 @@ public class RestaurantSignUpFragment extends Fragment
                 Address loc = locations.get(0);
                 GeoPoint location = new GeoPoint(loc.getLatitude(), loc.getLongitude());
                 restaurantData.put("location", location);
+                restaurantData.put("geohash", GeoHashUtils.encode(loc.getLatitude(), loc.getLongitude(), GeoHashUtils.STORED_PRECISION));
             }
         } catch(IOException e)
         {
@@ -408,9 +414,12 @@ public class RestaurantSignUpFragment extends Fragment
         restaurantData.put("restaurantID", restaurantId);
         restaurantData.put("name", name);
         restaurantData.put("address", address);
+        restaurantData.put(RestaurantSearchIndex.FIELD, RestaurantSearchIndex.buildKeywords(name, null, null, address, null));
         restaurantData.put("phoneNumber", phone);
         restaurantData.put("ownerID", user.getUid()); // Link owner to restaurant
         restaurantData.put("createdAt", FieldValue.serverTimestamp());
+        restaurantData.put(DiscountIndex.DISCOUNTS_INDEXED_FIELD, true); // A new restaurant has no legacy discounts
+        restaurantData.put(MenuRepository.ITEMS_INDEXED_FIELD, true); // ...nor legacy menu items
 
         // User data update (link user to restaurant)
         Map<String, Object> userData = new HashMap<>();
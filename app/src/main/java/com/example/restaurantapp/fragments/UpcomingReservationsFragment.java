@@ -19,14 +19,16 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.restaurantapp.R;
 import com.example.restaurantapp.adapters.ReservationAdapter;
 import com.example.restaurantapp.models.Reservation;
+import com.example.restaurantapp.utils.ReservationBoard;
+import com.example.restaurantapp.utils.ReservationDateFilter;
+import com.example.restaurantapp.utils.ReservationPager;
+import com.example.restaurantapp.utils.ReservationRepository;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.chip.Chip;
 import com.google.android.material.chip.ChipGroup;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.Query;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -37,9 +39,10 @@ import java.util.Locale;
 
 /**
  * A {@link Fragment} subclass that displays a list of upcoming (future) reservations.
- * It fetches reservations from Firestore, differentiating between restaurant users
+ * It loads reservations from Firestore, differentiating between restaurant users
  * (who see upcoming reservations for their restaurant) and regular users (who see their own
- * upcoming reservations). The fragment allows filtering reservations by specific dates
+ * upcoming reservations). Restaurant users see a live board that updates as reservations are
+ * made and cancelled. The fragment allows filtering reservations by specific dates
  * using a {@link DatePickerDialog} and displays active date filters as {@link Chip}s
  * in a {@link ChipGroup}. It also provides functionality to cancel an upcoming reservation,
  * which updates the reservation status in Firestore for both the restaurant and the user.
@@ -74,20 +77,16 @@ public class UpcomingReservationsFragment extends Fragment
      */
     private ReservationAdapter reservationAdapter;
     /**
-     * List of all upcoming reservations fetched from Firestore before any filtering.
+     * All upcoming reservations fetched from Firestore, bucketed by day for the date filters.
      */
-    private final List<Reservation> allReservations = new ArrayList<>();
+    private final ReservationDateFilter dateFilter = new ReservationDateFilter(false);
     /**
-     * List of upcoming reservations currently displayed to the user (after filtering). This list is passed to the adapter.
+     * List of upcoming reservations currently displayed to the user (after filtering). A copy of this list is submitted to the adapter.
      */
     private final List<Reservation> filteredReservations = new ArrayList<>();
-    /**
-     * List of currently active date filter strings (formatted as "yyyy-MM-dd").
-     */
-    private final List<String> activeDateFilters = new ArrayList<>();
 
     /**
-     * SimpleDateFormat for formatting dates to "yyyy-MM-dd" for filtering and display.
+     * SimpleDateFormat for formatting dates to "yyyy-MM-dd" for the filter chips.
      */
     private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()); // Note: Locale.getDefault() used
 
@@ -107,6 +106,18 @@ public class UpcomingReservationsFragment extends Fragment
      * Flag indicating if the current user is a restaurant user (true) or a regular user (false).
      */
     private boolean isRestaurant = false;
+    /**
+     * Pager over the upcoming reservations of the user or restaurant, null until the reservations are located.
+     */
+    private ReservationPager pager;
+    /**
+     * Live board of the restaurant's upcoming reservations, null unless the user is a restaurant.
+     */
+    private ReservationBoard board;
+    /**
+     * Number of remaining items below the last visible one at which the next page is requested.
+     */
+    private static final int PREFETCH_DISTANCE = 5;
 
     /**
      * Required empty public constructor for Fragment instantiation.
@@ -156,6 +167,21 @@ public class UpcomingReservationsFragment extends Fragment
         reservationsRecyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
         reservationsRecyclerView.setAdapter(reservationAdapter);
 
+        // Fetch the next page when the user nears the end of the list
+        reservationsRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener()
+        {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy)
+            {
+                LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+                if(dy > 0 && layoutManager != null
+                        && layoutManager.findLastVisibleItemPosition() >= reservationAdapter.getItemCount() - PREFETCH_DISTANCE)
+                {
+                    loadNextPage();
+                }
+            }
+        });
+
         db = FirebaseFirestore.getInstance();
         auth = FirebaseAuth.getInstance();
         currentUser = auth.getCurrentUser();
@@ -173,20 +199,37 @@ public class UpcomingReservationsFragment extends Fragment
     }
 
     /**
-     * Loads upcoming reservations from Firestore based on the user type.
-     * If the user is a restaurant, it fetches reservations for their associated restaurant ID.
-     * If the user is a regular user, it fetches their own reservations.
-     * Only reservations that are in the future (date after current date) and not "Cancelled"
-     * are added to {@link #allReservations}.
-     * After fetching, it calls {@link #applyFilters()} to update the displayed list.
-     * Handles potential errors during Firestore operations by printing stack traces.
+     * Called when the view previously created by {@link #onCreateView} has been detached from the fragment.
+     * Stops the live {@link ReservationBoard}, if any.
      */
-    private void loadReservationsFromFirestore()
+    @Override
+    public void onDestroyView()
     {
-        // User type is already determined by isRestaurant field.
-        // String userType = requireContext().getSharedPreferences("FeedMe", Context.MODE_PRIVATE).getString("userType", "");
+        super.onDestroyView();
+        if(board != null)
+        {
+            board.stop();
+            board = null;
+        }
+    }
 
-        allReservations.clear(); // Clear previous data
+    /**
+     * Starts loading upcoming reservations from Firestore based on the user type.
+     * If the user is a restaurant, a {@link ReservationBoard} keeps the upcoming reservations of
+     * their associated restaurant ID live, so new bookings and cancellations appear without a reload.
+     * If the user is a regular user, a {@link ReservationPager} fetches their reservations dated after
+     * now, earliest first, one page at a time; further pages are requested as the user scrolls.
+     * Handles potential errors during Firestore operations by logging them.
+     */
+    private void loadReservationsFromFirestore()
+    {
+        dateFilter.clear(); // Clear previous data
+        pager = null;
+        if(board != null)
+        {
+            board.stop();
+            board = null;
+        }
 
         if(currentUser == null)
         {
@@ -202,7 +245,7 @@ public class UpcomingReservationsFragment extends Fragment
                     .get()
                     .addOnSuccessListener(userSnapshot ->
                     {
-                        if(!isAdded()) return;
+                        if(!isAdded() || getView() == null) return; // The view may be gone by the time the user loads
                         String restaurantID = userSnapshot.getString("restaurantID");
 
                         if(restaurantID == null || restaurantID.isEmpty())
@@ -212,31 +255,14 @@ public class UpcomingReservationsFragment extends Fragment
                             return;
                         }
 
-                        db.collection("Restaurants")
-                                .document(restaurantID)
-                                .collection("Reservations")
-                                .orderBy("date", Query.Direction.ASCENDING) // Order by date ascending for upcoming
-                                .get()
-                                .addOnSuccessListener(resSnapshots ->
-                                {
-                                    if(!isAdded()) return;
-                                    Date now = new Date();
-                                    for(QueryDocumentSnapshot doc : resSnapshots)
-                                    {
-                                        Reservation r = doc.toObject(Reservation.class);
-                                        // Add if reservation date is after now AND status is not "Cancelled"
-                                        if(r.getDate() != null && r.getDate().after(now) && !"Cancelled".equalsIgnoreCase(r.getStatus()))
-                                        {
-                                            allReservations.add(r);
-                                        }
-                                    }
-                                    applyFilters(); // Apply filters and update UI
-                                })
-                                .addOnFailureListener(e ->
-                                { // Replaced Throwable::printStackTrace
-                                    Log.e("UpcomingReservations", "Error fetching restaurant reservations.", e);
-                                    updateEmptyState();
-                                });
+                        // Staff see bookings and cancellations as they happen
+                        board = new ReservationBoard(restaurantID);
+                        board.start(reservations ->
+                        {
+                            if(!isAdded() || getView() == null) return;
+                            dateFilter.setAll(reservations);
+                            applyFilters(); // Only the changed rows are updated by the adapter
+                        });
                     })
                     .addOnFailureListener(e ->
                     { // Replaced Throwable::printStackTrace
@@ -245,40 +271,61 @@ public class UpcomingReservationsFragment extends Fragment
                     });
         } else // Regular user
         {
-            db.collection("Users")
+            pager = ReservationPager.upcoming(db.collection("Users")
                     .document(currentUserID)
-                    .collection("Reservations")
-                    .orderBy("date", Query.Direction.ASCENDING)
-                    .get()
-                    .addOnSuccessListener(resSnapshots ->
-                    {
-                        if(!isAdded()) return;
-                        Date now = new Date();
-                        for(QueryDocumentSnapshot doc : resSnapshots)
-                        {
-                            Reservation r = doc.toObject(Reservation.class);
-                            if(r.getDate() != null && r.getDate().after(now) && !"Cancelled".equalsIgnoreCase(r.getStatus()))
-                            {
-                                allReservations.add(r);
-                            }
-                        }
-                        applyFilters();
-                    })
-                    .addOnFailureListener(e ->
-                    { // Replaced Throwable::printStackTrace
-                        Log.e("UpcomingReservations", "Error fetching user reservations.", e);
-                        updateEmptyState();
-                    });
+                    .collection("Reservations"), new Date());
+            loadNextPage();
         }
     }
 
     /**
-     * Cancels a given reservation by updating its status to "Cancelled" in Firestore.
-     * This update is performed in both the restaurant's reservation subcollection and the
-     * user's reservation subcollection.
+     * Requests the next page of upcoming reservations from the {@link #pager}.
+     * Reservations that are not "Cancelled" are added to the {@link #dateFilter}, after which
+     * {@link #applyFilters()} updates the displayed list.
+     * For restaurant users the {@link #board} is extended instead; its listener updates the list.
+     */
+    private void loadNextPage()
+    {
+        if(board != null)
+        {
+            board.loadMore();
+            return;
+        }
+        if(pager == null) return;
+        pager.loadNextPage(new ReservationPager.OnPageLoadedListener()
+        {
+            @Override
+            public void onPageLoaded(List<Reservation> reservations)
+            {
+                if(!isAdded()) return;
+                List<Reservation> active = new ArrayList<>();
+                for(Reservation r : reservations)
+                {
+                    if(!"Cancelled".equalsIgnoreCase(r.getStatus()))
+                    {
+                        active.add(r);
+                    }
+                }
+                dateFilter.addAll(active);
+                applyFilters(); // Apply filters and update UI
+            }
+
+            @Override
+            public void onError(Exception e)
+            {
+                Log.e("UpcomingReservations", "Error fetching reservations.", e);
+                if(isAdded()) updateEmptyState();
+            }
+        });
+    }
+
+    /**
+     * Cancels a given reservation through {@link ReservationRepository#cancelReservation(Reservation)},
+     * which marks both the restaurant's and the user's copy as "Cancelled" and releases the reservation's
+     * seats in one transaction, so a cancellation is never applied to only one side.
      * If identifiers (reservationID, userID, restaurantID) are missing, the operation is aborted.
-     * After successful updates in Firestore, the local {@link Reservation} object's status
-     * is updated, and the adapter is notified to refresh the item at the given position.
+     * On success, the local {@link Reservation} object's status is updated, and the adapter is
+     * notified to refresh the item at the given position.
      *
      * @param reservation The {@link Reservation} object to be cancelled.
      * @param position    The position of the reservation in the adapter's list.
@@ -297,54 +344,24 @@ public class UpcomingReservationsFragment extends Fragment
             return;
         }
 
-        FirebaseFirestore dbInstance = FirebaseFirestore.getInstance(); // Use local instance or class member 'db'
-
-        // Update restaurant's copy of the reservation
-        dbInstance.collection("Restaurants")
-                .document(restaurantID)
-                .collection("Reservations")
-                .document(reservationID)
-                .update("status", "Cancelled")
-                .addOnSuccessListener(aVoidRestaurant ->
+        // Both copies and the restaurant's capacity ledger are updated in one transaction
+        ReservationRepository.cancelReservation(reservation)
+                .addOnSuccessListener(aVoid ->
                 {
-                    Log.d("CancelReservation", "Restaurant's reservation status updated to Cancelled for ID: " + reservationID);
-                    // Now update user's copy
-                    dbInstance.collection("Users")
-                            .document(userID)
-                            .collection("Reservations")
-                            .document(reservationID)
-                            .update("status", "Cancelled")
-                            .addOnSuccessListener(aVoidUser ->
-                            {
-                                Log.d("CancelReservation", "User's reservation status updated to Cancelled for ID: " + reservationID);
-                                if(isAdded() && reservationAdapter != null)
-                                { // Check fragment state and adapter
-                                    reservation.setStatus("Cancelled"); // Update local object
-                                    // Consider removing from list or just updating view
-                                    // If removing:
-                                    // allReservations.remove(reservation); // Remove from master list
-                                    // filteredReservations.remove(reservation); // Remove from displayed list
-                                    // reservationAdapter.notifyItemRemoved(position);
-                                    // reservationAdapter.notifyItemRangeChanged(position, filteredReservations.size());
-                                    // For now, just update item as per original code:
-                                    reservationAdapter.notifyItemChanged(position);
-                                    updateEmptyState(); // Re-check empty state
-                                    Toast.makeText(getContext(), "Reservation cancelled.", Toast.LENGTH_SHORT).show();
-                                }
-                            })
-                            .addOnFailureListener(eUser ->
-                            {
-                                Log.e("CancelReservation", "Failed to update user's reservation status for ID: " + reservationID, eUser);
-                                // Potentially try to revert restaurant's status or notify user of partial failure
-                                if(getContext() != null)
-                                    Toast.makeText(getContext(), "Cancellation partially failed (user side).", Toast.LENGTH_SHORT).show();
-                            });
+                    Log.d("CancelReservation", "Reservation status updated to Cancelled for ID: " + reservationID);
+                    if(isAdded() && reservationAdapter != null)
+                    { // Check fragment state and adapter
+                        reservation.setStatus("Cancelled"); // Update local object
+                        reservationAdapter.notifyItemChanged(position);
+                        updateEmptyState(); // Re-check empty state
+                        Toast.makeText(getContext(), "Reservation cancelled.", Toast.LENGTH_SHORT).show();
+                    }
                 })
-                .addOnFailureListener(eRestaurant ->
+                .addOnFailureListener(e ->
                 {
-                    Log.e("CancelReservation", "Failed to update restaurant's reservation status for ID: " + reservationID, eRestaurant);
+                    Log.e("CancelReservation", "Failed to cancel reservation with ID: " + reservationID, e);
                     if(getContext() != null)
-                        Toast.makeText(getContext(), "Cancellation failed (restaurant side).", Toast.LENGTH_SHORT).show();
+                        Toast.makeText(getContext(), "Cancellation failed. Please try again.", Toast.LENGTH_SHORT).show();
                 });
     }
 
@@ -361,7 +378,7 @@ public class UpcomingReservationsFragment extends Fragment
 
         clearFilterButton.setOnClickListener(v ->
         {
-            activeDateFilters.clear();
+            dateFilter.clearDays();
             filterChipGroup.removeAllViews();
             filterChipGroup.setVisibility(View.GONE);
             clearFilterButton.setVisibility(View.GONE);
@@ -397,43 +414,40 @@ public class UpcomingReservationsFragment extends Fragment
 
     /**
      * Called when a date is selected from the {@link DatePickerDialog}.
-     * Formats the selected date into "yyyy-MM-dd" string format and calls
-     * {@link #addDateFilterChip(String)} to add it as a filter.
+     * Converts the selected date into its epoch day and "yyyy-MM-dd" label and calls
+     * {@link #addDateFilterChip(long, String)} to add it as a filter.
      *
      * @param date The {@link Date} object selected by the user.
      */
     private void onDateSelected(Date date)
     {
-        // SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()); // dateFormat field already exists
-        String formattedDate = dateFormat.format(date);
-        addDateFilterChip(formattedDate);
+        addDateFilterChip(ReservationDateFilter.epochDay(date), dateFormat.format(date));
     }
 
 
     /**
-     * Adds a new date filter {@link Chip} to the {@link #filterChipGroup} if the date is not already an active filter.
+     * Adds a new date filter {@link Chip} to the {@link #filterChipGroup} if the day is not already an active filter.
      * The chip displays the formatted date and has a close icon to remove the filter.
      * When a chip is added or its close icon is clicked, {@link #applyFilters()} is called to update the list.
      * Manages the visibility of the {@link #filterChipGroup} and {@link #clearFilterButton}.
      *
-     * @param date The date string (formatted as "yyyy-MM-dd") to add as a filter.
+     * @param day  The epoch day to add as a filter, see {@link ReservationDateFilter#epochDay(Date)}.
+     * @param date The date string (formatted as "yyyy-MM-dd") shown on the chip.
      */
-    private void addDateFilterChip(String date)
+    private void addDateFilterChip(long day, String date)
     {
         if(getContext() == null) return;
 
-        if(!activeDateFilters.contains(date))
+        if(dateFilter.addDay(day))
         {
-            activeDateFilters.add(date);
             Chip chip = new Chip(requireContext());
             chip.setText(date);
             chip.setCloseIconResource(R.drawable.baseline_clear_24);
             chip.setCloseIconVisible(true);
             chip.setOnCloseIconClickListener(v ->
             {
-                activeDateFilters.remove(date);
                 filterChipGroup.removeView(chip);
-                if(activeDateFilters.isEmpty())
+                if(dateFilter.removeDay(day))
                 {
                     filterChipGroup.setVisibility(View.GONE);
                     clearFilterButton.setVisibility(View.GONE);
@@ -451,52 +465,37 @@ public class UpcomingReservationsFragment extends Fragment
     }
 
     /**
-     * Applies the currently active date filters to the {@link #allReservations} list.
-     * It clears {@link #filteredReservations} and then iterates through {@link #allReservations}.
-     * A reservation is added to {@link #filteredReservations} if it's an upcoming reservation
-     * (date after now and not "Cancelled") AND (if activeDateFilters is not empty, its date
-     * matches one of the active filters).
-     * If no date filters are active, all upcoming, non-cancelled reservations are added.
-     * Finally, it notifies the {@link #reservationAdapter} and calls {@link #updateEmptyState()}.
+     * Applies the currently active date filters through the {@link #dateFilter}.
+     * {@link #filteredReservations} is refilled with the upcoming reservations (date after now and not
+     * "Cancelled") on the selected days, or on any day if no date filter is active.
+     * Finally, it submits the filtered list to the {@link #reservationAdapter} and calls {@link #updateEmptyState()}.
+     * If fewer than a page of reservations are shown and more can be loaded, the next page is requested.
      */
     private void applyFilters()
     {
-        filteredReservations.clear();
         Date now = new Date(); // Current date for comparison
+        filteredReservations.clear();
+        filteredReservations.addAll(dateFilter.apply(r ->
+                r.getDate().after(now) && !"Cancelled".equalsIgnoreCase(r.getStatus())));
 
-        for(Reservation r : allReservations)
+        // The adapter diffs the new list against the displayed one
+        if(reservationAdapter != null)
         {
-            if(r.getDate() == null) continue; // Skip reservations with null date
-
-            // Condition for being an "upcoming" item (not cancelled and date is after now)
-            boolean isUpcomingAndNotCancelled = r.getDate().after(now) && !"Cancelled".equalsIgnoreCase(r.getStatus());
-
-            if(!isUpcomingAndNotCancelled) continue; // Skip if not upcoming or already cancelled
-
-            if(activeDateFilters.isEmpty()) // No active date filters, add all valid upcoming reservations
-            {
-                filteredReservations.add(r);
-            } else // Active date filters exist
-            {
-                String reservationDateStr = dateFormat.format(r.getDate());
-                if(activeDateFilters.contains(reservationDateStr)) // Check if reservation date matches any active filter
-                {
-                    filteredReservations.add(r);
-                }
-            }
+            reservationAdapter.submitList(filteredReservations);
         }
+        updateEmptyState(); // Update visibility of empty state message
 
-        // The adapter is already observing filteredReservations, so just notify it.
-        if(reservationAdapter != null)
+        // A short list cannot be scrolled, so fetch more until it fills a page or nothing is left
+        boolean moreAvailable = (pager != null && !pager.isEndReached()) || (board != null && !board.isEndReached());
+        if(moreAvailable && filteredReservations.size() < ReservationPager.PAGE_SIZE)
         {
-            reservationAdapter.notifyDataSetChanged();
+            loadNextPage();
         }
-        updateEmptyState(); // Update visibility of empty state message
     }
 
     /**
      * Updates the visibility of the {@link #emptyStateContainer}.
-     * If {@link #filteredReservations} (the list displayed by the adapter) is empty,
+     * If {@link #filteredReservations} (the list last submitted to the adapter) is empty,
      * the empty state container is made visible; otherwise, it is hidden.
      */
     private void updateEmptyState()
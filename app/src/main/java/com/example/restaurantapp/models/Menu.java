@@ -19,6 +19,16 @@ public class Menu
      * The URL of an image representing the menu.
      */
     private String imageURL;
+    /**
+     * The URL of the card-sized rendition of the menu's image, shown in lists with full-width rows.
+     * Null for images uploaded before renditions were introduced; {@link #imageURL} is used instead.
+     */
+    private String cardImageURL;
+    /**
+     * The URL of the thumbnail rendition of the menu's image, shown in grids and small previews.
+     * Null for images uploaded before renditions were introduced; {@link #imageURL} is used instead.
+     */
+    private String thumbnailImageURL;
     /**
      * The {@link Timestamp} indicating when the menu was created.
      */
@@ -105,6 +115,46 @@ public class Menu
         this.imageURL = imageURL;
     }
 
+    /**
+     * Gets the URL of the card-sized rendition of the menu's image.
+     *
+     * @return The URL string, or null if the image has no renditions.
+     */
+    public String getCardImageURL()
+    {
+        return cardImageURL;
+    }
+
+    /**
+     * Sets the URL of the card-sized rendition of the menu's image.
+     *
+     * @param cardImageURL The new URL string.
+     */
+    public void setCardImageURL(String cardImageURL)
+    {
+        this.cardImageURL = cardImageURL;
+    }
+
+    /**
+     * Gets the URL of the thumbnail rendition of the menu's image.
+     *
+     * @return The URL string, or null if the image has no renditions.
+     */
+    public String getThumbnailImageURL()
+    {
+        return thumbnailImageURL;
+    }
+
+    /**
+     * Sets the URL of the thumbnail rendition of the menu's image.
+     *
+     * @param thumbnailImageURL The new URL string.
+     */
+    public void setThumbnailImageURL(String thumbnailImageURL)
+    {
+        this.thumbnailImageURL = thumbnailImageURL;
+    }
+
     /**
      * Gets the timestamp indicating when the menu was created.
      *
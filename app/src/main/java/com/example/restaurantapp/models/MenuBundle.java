@@ -0,0 +1,107 @@
+package com.example.restaurantapp.models;
+
+import java.util.List;
+
+/**
+ * Represents the precompiled menu of a restaurant, stored as a single Firestore document
+ * ({@code Restaurants/{restaurantID}/MenuBundle/current}).
+ * Holds every {@link Menu} and {@link MenuItem} the diner UI needs, together with a version
+ * number that increases each time the restaurant's menu is changed and republished.
+ */
+public class MenuBundle
+{
+    /**
+     * The monotonically increasing version of this bundle.
+     */
+    private long version;
+    /**
+     * All menus of the restaurant, ordered by menu index.
+     */
+    private List<Menu> menus;
+    /**
+     * All menu items of the restaurant. Each item references its menu through its menu ID.
+     */
+    private List<MenuItem> items;
+
+    /**
+     * Default constructor required for Firestore object mapping.
+     */
+    public MenuBundle()
+    {
+        // Default constructor
+    }
+
+    /**
+     * Constructs a new {@code MenuBundle} object with specified details.
+     *
+     * @param version The version of the bundle.
+     * @param menus   The menus of the restaurant.
+     * @param items   The menu items of the restaurant.
+     */
+    public MenuBundle(long version, List<Menu> menus, List<MenuItem> items)
+    {
+        this.version = version;
+        this.menus = menus;
+        this.items = items;
+    }
+
+    /**
+     * Gets the version of the bundle.
+     *
+     * @return The bundle version.
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Sets the version of the bundle.
+     *
+     * @param version The new bundle version.
+     */
+    public void setVersion(long version)
+    {
+        this.version = version;
+    }
+
+    /**
+     * Gets the menus contained in the bundle.
+     *
+     * @return The list of {@link Menu}s.
+     */
+    public List<Menu> getMenus()
+    {
+        return menus;
+    }
+
+    /**
+     * Sets the menus contained in the bundle.
+     *
+     * @param menus The new list of {@link Menu}s.
+     */
+    public void setMenus(List<Menu> menus)
+    {
+        this.menus = menus;
+    }
+
+    /**
+     * Gets the menu items contained in the bundle.
+     *
+     * @return The list of {@link MenuItem}s.
+     */
+    public List<MenuItem> getItems()
+    {
+        return items;
+    }
+
+    /**
+     * Sets the menu items contained in the bundle.
+     *
+     * @param items The new list of {@link MenuItem}s.
+     */
+    public void setItems(List<MenuItem> items)
+    {
+        this.items = items;
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.restaurantapp.models;
 
+import com.google.firebase.Timestamp;
+
 import java.util.List;
 
 /**
@@ -7,6 +9,8 @@ import java.util.List;
  * Contains details such as the item's name, description, price, image URL,
  * the ID of the menu and restaurant it belongs to, its category, availability status,
  * a list of allergens, an order index for sequencing, and its own unique ID.
+ * It also carries a denormalized summary of its active discounts (effective price, badge and
+ * validity limit) so lists can render prices without querying the item's discounts.
  */
 public class MenuItem
 {
@@ -27,6 +31,16 @@ public class MenuItem
      * The URL of an image representing the menu item.
      */
     private String imageURL;
+    /**
+     * The URL of the card-sized rendition of the menu item's image, shown in lists with full-width rows.
+     * Null for images uploaded before renditions were introduced; {@link #imageURL} is used instead.
+     */
+    private String cardImageURL;
+    /**
+     * The URL of the thumbnail rendition of the menu item's image, shown in grids and small previews.
+     * Null for images uploaded before renditions were introduced; {@link #imageURL} is used instead.
+     */
+    private String thumbnailImageURL;
     /**
      * The unique identifier of the menu to which this item belongs.
      */
@@ -55,6 +69,25 @@ public class MenuItem
      * The unique identifier for this menu item.
      */
     private String itemID;
+    /**
+     * Denormalized price after the discounts active when the summary was written.
+     * Null if no discount summary has been written for this item yet.
+     */
+    private Double effectivePrice;
+    /**
+     * Denormalized discount badge type ("Free", "Percentage" or "Flat"), or null if no discount is active.
+     * The badge text is formatted by the reader, in the reader's language.
+     */
+    private String discountBadgeType;
+    /**
+     * Denormalized percentage or amount shown on the discount badge, or null if the badge has none.
+     */
+    private Integer discountBadgeValue;
+    /**
+     * The {@link Timestamp} until which {@link #effectivePrice} and the badge are valid,
+     * i.e. the next time a discount of this item starts or ends. Null if no change is scheduled.
+     */
+    private Timestamp discountValidUntil;
 
     /**
      * Default constructor required for calls to DataSnapshot.getValue(MenuItem.class)
@@ -176,6 +209,46 @@ public class MenuItem
         this.imageURL = imageURL;
     }
 
+    /**
+     * Gets the URL of the card-sized rendition of the menu item's image.
+     *
+     * @return The URL string, or null if the image has no renditions.
+     */
+    public String getCardImageURL()
+    {
+        return cardImageURL;
+    }
+
+    /**
+     * Sets the URL of the card-sized rendition of the menu item's image.
+     *
+     * @param cardImageURL The new URL string.
+     */
+    public void setCardImageURL(String cardImageURL)
+    {
+        this.cardImageURL = cardImageURL;
+    }
+
+    /**
+     * Gets the URL of the thumbnail rendition of the menu item's image.
+     *
+     * @return The URL string, or null if the image has no renditions.
+     */
+    public String getThumbnailImageURL()
+    {
+        return thumbnailImageURL;
+    }
+
+    /**
+     * Sets the URL of the thumbnail rendition of the menu item's image.
+     *
+     * @param thumbnailImageURL The new URL string.
+     */
+    public void setThumbnailImageURL(String thumbnailImageURL)
+    {
+        this.thumbnailImageURL = thumbnailImageURL;
+    }
+
     /**
      * Gets the ID of the menu to which this item belongs.
      *
@@ -316,4 +389,84 @@ public class MenuItem
     {
         this.itemID = itemID;
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets the denormalized price after active discounts.
+     *
+     * @return The effective price, or null if no summary has been written.
+     */
+    public Double getEffectivePrice()
+    {
+        return effectivePrice;
+    }
+
+    /**
+     * Sets the denormalized price after active discounts.
+     *
+     * @param effectivePrice The new effective price, or null to clear the summary.
+     */
+    public void setEffectivePrice(Double effectivePrice)
+    {
+        this.effectivePrice = effectivePrice;
+    }
+
+    /**
+     * Gets the denormalized discount badge type.
+     *
+     * @return "Free", "Percentage" or "Flat", or null if no discount is active.
+     */
+    public String getDiscountBadgeType()
+    {
+        return discountBadgeType;
+    }
+
+    /**
+     * Sets the denormalized discount badge type.
+     *
+     * @param discountBadgeType The new badge type, or null.
+     */
+    public void setDiscountBadgeType(String discountBadgeType)
+    {
+        this.discountBadgeType = discountBadgeType;
+    }
+
+    /**
+     * Gets the denormalized percentage or amount shown on the discount badge.
+     *
+     * @return The badge value, or null if the badge has none.
+     */
+    public Integer getDiscountBadgeValue()
+    {
+        return discountBadgeValue;
+    }
+
+    /**
+     * Sets the denormalized percentage or amount shown on the discount badge.
+     *
+     * @param discountBadgeValue The new badge value, or null.
+     */
+    public void setDiscountBadgeValue(Integer discountBadgeValue)
+    {
+        this.discountBadgeValue = discountBadgeValue;
+    }
+
+    /**
+     * Gets the timestamp until which the discount summary is valid.
+     *
+     * @return The {@link Timestamp} of the next discount change, or null if none is scheduled.
+     */
+    public Timestamp getDiscountValidUntil()
+    {
+        return discountValidUntil;
+    }
+
+    /**
+     * Sets the timestamp until which the discount summary is valid.
+     *
+     * @param discountValidUntil The new validity limit, or null.
+     */
+    public void setDiscountValidUntil(Timestamp discountValidUntil)
+    {
+        this.discountValidUntil = discountValidUntil;
+    }
+}
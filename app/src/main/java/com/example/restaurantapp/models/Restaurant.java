@@ -1,6 +1,7 @@
 package com.example.restaurantapp.models;
 
 import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.Exclude;
 import com.google.firebase.firestore.GeoPoint;
 
 import java.util.List;
@@ -8,10 +9,10 @@ import java.util.Map;
 
 /**
  * Represents a restaurant with its various details.
- * This includes information such as name, address, geographical location, rating,
+ * This includes information such as name, address, geographical location and its geohash, rating,
  * image URL, business hours, creation timestamp, contact information, operational flags
  * (reservable, offers pickup), type/cuisine, tags, price level, description,
- * last update timestamp, and maximum capacity.
+ * last update timestamp, maximum capacity, and the version of its published menu bundle.
  */
 public class Restaurant
 {
@@ -27,6 +28,15 @@ public class Restaurant
      * The geographical location (latitude and longitude) of the restaurant.
      */
     private GeoPoint location;
+    /**
+     * The geohash of {@link #location}, used to query restaurants by area.
+     */
+    private String geohash;
+    /**
+     * Normalized word prefixes of the searchable fields, used to search restaurants by keyword.
+     * Excluded from document mapping; the field is only written through explicit maps.
+     */
+    private List<String> searchKeywords;
     /**
      * The average user rating for the restaurant.
      */
@@ -39,6 +49,16 @@ public class Restaurant
      * The URL of an image representing the restaurant (e.g., logo or storefront).
      */
     private String imageURL;
+    /**
+     * The URL of the card-sized rendition of the restaurant's image, shown in lists with full-width rows.
+     * Null for images uploaded before renditions were introduced; {@link #imageURL} is used instead.
+     */
+    private String cardImageURL;
+    /**
+     * The URL of the thumbnail rendition of the restaurant's image, shown in grids and small previews.
+     * Null for images uploaded before renditions were introduced; {@link #imageURL} is used instead.
+     */
+    private String thumbnailImageURL;
     /**
      * A string describing the business hours of the restaurant.
      */
@@ -87,6 +107,11 @@ public class Restaurant
      * The maximum seating capacity of the restaurant.
      */
     private int maxCapacity;
+    /**
+     * The version of the restaurant's published menu bundle, bumped together with the bundle
+     * whenever the menu changes. Zero if no bundle has been published.
+     */
+    private long menuVersion;
 
 
     /**
@@ -207,6 +232,48 @@ public class Restaurant
         this.location = location;
     }
 
+    /**
+     * Gets the geohash of the restaurant's location.
+     *
+     * @return The geohash, or null if the restaurant has no location.
+     */
+    public String getGeohash()
+    {
+        return geohash;
+    }
+
+    /**
+     * Sets the geohash of the restaurant's location.
+     *
+     * @param geohash The new geohash.
+     */
+    public void setGeohash(String geohash)
+    {
+        this.geohash = geohash;
+    }
+
+    /**
+     * Gets the search keywords of the restaurant.
+     *
+     * @return The keywords, or null if they were not set locally.
+     */
+    @Exclude
+    public List<String> getSearchKeywords()
+    {
+        return searchKeywords;
+    }
+
+    /**
+     * Sets the search keywords of the restaurant.
+     *
+     * @param searchKeywords The new keywords.
+     */
+    @Exclude
+    public void setSearchKeywords(List<String> searchKeywords)
+    {
+        this.searchKeywords = searchKeywords;
+    }
+
     /**
      * Gets the average user rating for the restaurant.
      *
@@ -267,6 +334,46 @@ public class Restaurant
         this.imageURL = imageURL;
     }
 
+    /**
+     * Gets the URL of the card-sized rendition of the restaurant's image.
+     *
+     * @return The URL string, or null if the image has no renditions.
+     */
+    public String getCardImageURL()
+    {
+        return cardImageURL;
+    }
+
+    /**
+     * Sets the URL of the card-sized rendition of the restaurant's image.
+     *
+     * @param cardImageURL The new URL string.
+     */
+    public void setCardImageURL(String cardImageURL)
+    {
+        this.cardImageURL = cardImageURL;
+    }
+
+    /**
+     * Gets the URL of the thumbnail rendition of the restaurant's image.
+     *
+     * @return The URL string, or null if the image has no renditions.
+     */
+    public String getThumbnailImageURL()
+    {
+        return thumbnailImageURL;
+    }
+
+    /**
+     * Sets the URL of the thumbnail rendition of the restaurant's image.
+     *
+     * @param thumbnailImageURL The new URL string.
+     */
+    public void setThumbnailImageURL(String thumbnailImageURL)
+    {
+        this.thumbnailImageURL = thumbnailImageURL;
+    }
+
     /**
      * Gets the business hours of the restaurant.
      *
@@ -510,4 +617,24 @@ public class Restaurant
     {
         this.maxCapacity = maxCapacity;
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets the version of the restaurant's published menu bundle.
+     *
+     * @return The menu version, or 0 if no bundle has been published.
+     */
+    public long getMenuVersion()
+    {
+        return menuVersion;
+    }
+
+    /**
+     * Sets the version of the restaurant's published menu bundle.
+     *
+     * @param menuVersion The new menu version.
+     */
+    public void setMenuVersion(long menuVersion)
+    {
+        this.menuVersion = menuVersion;
+    }
+}
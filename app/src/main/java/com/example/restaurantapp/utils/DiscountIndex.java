@@ -0,0 +1,492 @@
+package com.example.restaurantapp.utils;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.restaurantapp.models.Discount;
+import com.example.restaurantapp.models.MenuItem;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory index of all discounts belonging to a single restaurant.
+ * Instead of querying the "Discounts" subcollection of every {@link MenuItem} on every bind,
+ * the index loads every discount of the restaurant with one collection-group query
+ * (filtered by the "restaurantID" field written on each discount document) and keeps it
+ * up to date through a snapshot listener. The query needs the collection-group index on
+ * "Discounts.restaurantID" declared in firestore.indexes.json (deployed with
+ * {@code firebase deploy --only firestore:indexes}); without it the listener fails with
+ * FAILED_PRECONDITION and callers keep falling back to per-item queries.
+ * Each item's discounts are compiled into a {@link DiscountSchedule}, so lookups through
+ * {@link #resolve(MenuItem, Context)} are answered synchronously with a binary search.
+ * The index also keeps the sorted activation and expiry instants of all items and schedules a
+ * single tick at the next one, notifying listeners so the UI refreshes once per boundary.
+ * Discounts written before the "restaurantID" field existed are invisible to that query, so the
+ * index only answers lookups once the restaurant document is marked with {@link #DISCOUNTS_INDEXED_FIELD};
+ * {@link #indexLegacyDiscounts(String)} adds the missing fields to those discounts and sets the mark.
+ * Until then callers fall back to querying each item's "Discounts" subcollection.
+ * Indexes are shared between screens and reference counted through
+ * {@link #attach(String, OnDiscountsChangedListener)} and {@link #detach(String, OnDiscountsChangedListener)}.
+ * All methods are expected to be called on the main thread.
+ */
+public class DiscountIndex
+{
+    /**
+     * Listener notified whenever the discounts of a restaurant change.
+     */
+    public interface OnDiscountsChangedListener
+    {
+        /**
+         * Called after a new snapshot has been applied to the index, or when a discount
+         * starts or ends.
+         */
+        void onDiscountsChanged();
+    }
+
+    /**
+     * Live indexes keyed by restaurant ID.
+     */
+    private static final Map<String, DiscountIndex> INDEXES = new HashMap<>();
+    /**
+     * Tag for logging purposes.
+     */
+    private static final String TAG = "DiscountIndex";
+    /**
+     * Field on the restaurant document set to true once every discount of the restaurant carries
+     * the "restaurantID", "menuID" and "itemID" fields the collection-group query relies on.
+     */
+    public static final String DISCOUNTS_INDEXED_FIELD = "discountsIndexed";
+    /**
+     * Maximum number of writes committed in a single {@link WriteBatch} (Firestore allows 500).
+     */
+    private static final int MAX_BATCH_WRITES = 450;
+
+    /**
+     * The ID of the restaurant this index covers.
+     */
+    private final String restaurantID;
+    /**
+     * Discounts of the restaurant grouped by item ID, each list ordered by start time.
+     */
+    private final Map<String, List<Discount>> discountsByItem = new HashMap<>();
+    /**
+     * Compiled discount schedules keyed by item ID.
+     */
+    private final Map<String, DiscountSchedule> schedulesByItem = new HashMap<>();
+    /**
+     * Sorted activation and expiry instants across all items of the restaurant.
+     */
+    private long[] boundaries = new long[0];
+    /**
+     * Handler used to post the boundary tick on the main thread.
+     */
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    /**
+     * Runnable fired at the next discount boundary. Notifies listeners and schedules the following tick.
+     */
+    private final Runnable boundaryTick = () ->
+    {
+        notifyListeners();
+        scheduleNextTick();
+    };
+    /**
+     * Listeners currently attached to this index.
+     */
+    private final List<OnDiscountsChangedListener> listeners = new ArrayList<>();
+    /**
+     * Registration of the Firestore snapshot listener, null while not listening.
+     */
+    private ListenerRegistration registration;
+    /**
+     * Whether the first snapshot has been received.
+     */
+    private boolean loaded = false;
+    /**
+     * Whether the restaurant is marked with {@link #DISCOUNTS_INDEXED_FIELD}, i.e. the query sees all its discounts.
+     */
+    private boolean complete = false;
+
+    /**
+     * Constructs a new {@code DiscountIndex} for the given restaurant.
+     *
+     * @param restaurantID The ID of the restaurant.
+     */
+    private DiscountIndex(String restaurantID)
+    {
+        this.restaurantID = restaurantID;
+    }
+
+    /**
+     * Attaches a listener to the index of the given restaurant, creating the index and
+     * starting its snapshot listener if this is the first attachment.
+     *
+     * @param restaurantID The ID of the restaurant.
+     * @param listener     The listener to notify when discounts change.
+     * @return The shared index for the restaurant.
+     */
+    public static DiscountIndex attach(String restaurantID, OnDiscountsChangedListener listener)
+    {
+        DiscountIndex index = INDEXES.get(restaurantID);
+        if(index == null)
+        {
+            index = new DiscountIndex(restaurantID);
+            INDEXES.put(restaurantID, index);
+            index.startListening();
+        }
+        if(!index.listeners.contains(listener))
+        {
+            index.listeners.add(listener);
+        }
+        return index;
+    }
+
+    /**
+     * Detaches a listener from the index of the given restaurant. When the last listener is
+     * removed, the snapshot listener is stopped and the index is discarded.
+     *
+     * @param restaurantID The ID of the restaurant.
+     * @param listener     The listener previously passed to {@link #attach}.
+     */
+    public static void detach(String restaurantID, OnDiscountsChangedListener listener)
+    {
+        DiscountIndex index = INDEXES.get(restaurantID);
+        if(index == null) return;
+
+        index.listeners.remove(listener);
+        if(index.listeners.isEmpty())
+        {
+            index.stopListening();
+            INDEXES.remove(restaurantID);
+        }
+    }
+
+    /**
+     * Returns the live index for the given restaurant without attaching to it.
+     *
+     * @param restaurantID The ID of the restaurant.
+     * @return The index, or null if no screen currently holds one.
+     */
+    public static DiscountIndex peek(String restaurantID)
+    {
+        if(restaurantID == null) return null;
+        return INDEXES.get(restaurantID);
+    }
+
+    /**
+     * Returns whether the index can answer lookups: it has received its first snapshot and the
+     * restaurant's legacy discounts have been indexed, so no discount is missing from it.
+     *
+     * @return True if the index is loaded and complete, false otherwise.
+     */
+    public boolean isLoaded()
+    {
+        return loaded && complete;
+    }
+
+    /**
+     * Adds the "restaurantID", "menuID" and "itemID" fields to every discount of a restaurant
+     * that lacks them, then marks the restaurant document with {@link #DISCOUNTS_INDEXED_FIELD}.
+     * Reads each item's "Discounts" subcollection once; meant to be run by the restaurant's owner
+     * while the restaurant is not yet marked. A live index of the restaurant becomes complete
+     * once the returned task succeeds.
+     *
+     * @param restaurantID The ID of the restaurant.
+     * @return A task completing once every discount is indexed and the restaurant is marked.
+     */
+    public static Task<Void> indexLegacyDiscounts(String restaurantID)
+    {
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        DocumentReference restaurantRef = db.collection("Restaurants").document(restaurantID);
+
+        return restaurantRef.collection("Menus").get()
+                .onSuccessTask(menus ->
+                {
+                    List<Task<QuerySnapshot>> itemTasks = new ArrayList<>();
+                    for(DocumentSnapshot menu : menus)
+                    {
+                        itemTasks.add(menu.getReference().collection("Items").get());
+                    }
+                    return Tasks.<QuerySnapshot>whenAllSuccess(itemTasks);
+                })
+                .onSuccessTask(itemSnapshots ->
+                {
+                    List<Task<QuerySnapshot>> discountTasks = new ArrayList<>();
+                    for(QuerySnapshot items : itemSnapshots)
+                    {
+                        for(DocumentSnapshot item : items)
+                        {
+                            discountTasks.add(item.getReference().collection("Discounts").get());
+                        }
+                    }
+                    return Tasks.<QuerySnapshot>whenAllSuccess(discountTasks);
+                })
+                .onSuccessTask(discountSnapshots ->
+                {
+                    List<Task<Void>> commits = new ArrayList<>();
+                    WriteBatch batch = db.batch();
+                    int batchWrites = 0;
+                    for(QuerySnapshot discounts : discountSnapshots)
+                    {
+                        for(DocumentSnapshot discount : discounts)
+                        {
+                            if(restaurantID.equals(discount.getString("restaurantID"))) continue;
+
+                            // Discounts/{id} lives under Menus/{menuID}/Items/{itemID}
+                            DocumentReference itemRef = discount.getReference().getParent().getParent();
+                            DocumentReference menuRef = itemRef.getParent().getParent();
+                            batch.update(discount.getReference(), "restaurantID", restaurantID,
+                                    "menuID", menuRef.getId(), "itemID", itemRef.getId());
+                            if(++batchWrites >= MAX_BATCH_WRITES)
+                            {
+                                commits.add(batch.commit());
+                                batch = db.batch();
+                                batchWrites = 0;
+                            }
+                        }
+                    }
+                    if(batchWrites > 0)
+                    {
+                        commits.add(batch.commit());
+                    }
+                    Log.d(TAG, "Indexing legacy discounts of restaurant: " + restaurantID);
+                    return Tasks.whenAll(commits);
+                })
+                .onSuccessTask(v -> restaurantRef.update(DISCOUNTS_INDEXED_FIELD, true))
+                .addOnSuccessListener(v ->
+                {
+                    DiscountIndex index = INDEXES.get(restaurantID);
+                    if(index != null)
+                    {
+                        index.markComplete();
+                    }
+                });
+    }
+
+    /**
+     * Resolves the discounted price and badge for an item synchronously.
+     * The lookup is a binary search in the item's {@link DiscountSchedule}.
+     *
+     * @param item    The {@link MenuItem} to resolve.
+     * @param context The {@link Context} used to access string resources for badge text.
+     * @return The {@link DiscountUtils.DiscountResult} for the item.
+     */
+    public DiscountUtils.DiscountResult resolve(MenuItem item, Context context)
+    {
+        double price = item.getPrice();
+        DiscountSchedule schedule = schedulesByItem.get(item.getItemID());
+        if(schedule == null)
+        {
+            return DiscountUtils.buildResult(price, price, 0, false, context);
+        }
+
+        long nowMillis = System.currentTimeMillis();
+        return DiscountUtils.buildResult(price, schedule.priceAt(price, nowMillis),
+                schedule.flatTotalAt(nowMillis), schedule.hasPercentageAt(nowMillis), context);
+    }
+
+    /**
+     * Returns the compiled schedule of an item.
+     *
+     * @param itemID The ID of the item.
+     * @return The item's {@link DiscountSchedule}, or null if the item has no discounts.
+     */
+    public DiscountSchedule getSchedule(String itemID)
+    {
+        return schedulesByItem.get(itemID);
+    }
+
+    /**
+     * Returns the discounts currently known for an item, ordered by start time.
+     *
+     * @param itemID The ID of the item.
+     * @return A copy of the item's discounts, empty if it has none.
+     */
+    public List<Discount> getDiscounts(String itemID)
+    {
+        List<Discount> itemDiscounts = discountsByItem.get(itemID);
+        return itemDiscounts != null ? new ArrayList<>(itemDiscounts) : new ArrayList<>();
+    }
+
+    /**
+     * Marks the index as complete and, if it is loaded, notifies the listeners so they re-resolve.
+     */
+    private void markComplete()
+    {
+        if(complete) return;
+        complete = true;
+        if(loaded)
+        {
+            notifyListeners();
+        }
+    }
+
+    /**
+     * Starts the collection-group snapshot listener for this restaurant's discounts, and reads
+     * whether the restaurant's legacy discounts have been indexed.
+     */
+    private void startListening()
+    {
+        FirebaseFirestore.getInstance().collection("Restaurants").document(restaurantID).get()
+                .addOnSuccessListener(restaurant ->
+                {
+                    if(registration != null && Boolean.TRUE.equals(restaurant.getBoolean(DISCOUNTS_INDEXED_FIELD)))
+                    {
+                        markComplete();
+                    }
+                })
+                .addOnFailureListener(e -> Log.e(TAG, "Failed to read discount index state of restaurant: " + restaurantID, e));
+
+        registration = FirebaseFirestore.getInstance()
+                .collectionGroup("Discounts")
+                .whereEqualTo("restaurantID", restaurantID)
+                .addSnapshotListener((snapshot, e) ->
+                {
+                    if(e != null)
+                    {
+                        Log.e(TAG, "Discount listener failed for restaurant: " + restaurantID, e);
+                        return;
+                    }
+                    if(snapshot == null) return;
+
+                    discountsByItem.clear();
+                    for(QueryDocumentSnapshot doc : snapshot)
+                    {
+                        String itemID = doc.getString("itemID");
+                        if(itemID == null)
+                        {
+                            // Discounts/{id} lives under Items/{itemID}
+                            DocumentReference itemRef = doc.getReference().getParent().getParent();
+                            if(itemRef == null) continue;
+                            itemID = itemRef.getId();
+                        }
+
+                        List<Discount> itemDiscounts = discountsByItem.get(itemID);
+                        if(itemDiscounts == null)
+                        {
+                            itemDiscounts = new ArrayList<>();
+                            discountsByItem.put(itemID, itemDiscounts);
+                        }
+                        itemDiscounts.add(DiscountUtils.fromSnapshot(doc));
+                    }
+
+                    rebuildSchedules();
+                    loaded = true;
+
+                    notifyListeners();
+                    scheduleNextTick();
+                });
+    }
+
+    /**
+     * Compiles a {@link DiscountSchedule} for every item and merges their boundaries
+     * into the restaurant-wide {@link #boundaries} array.
+     */
+    private void rebuildSchedules()
+    {
+        schedulesByItem.clear();
+        List<Long> allBoundaries = new ArrayList<>();
+
+        for(Map.Entry<String, List<Discount>> entry : discountsByItem.entrySet())
+        {
+            List<Discount> itemDiscounts = entry.getValue();
+            // Keep the same application order as the per-item "startTime" query
+            itemDiscounts.sort((a, b) -> compareStart(a.getStartTime(), b.getStartTime()));
+
+            DiscountSchedule schedule = new DiscountSchedule(itemDiscounts);
+            schedulesByItem.put(entry.getKey(), schedule);
+
+            long boundary = schedule.nextBoundaryAfter(Long.MIN_VALUE);
+            while(boundary != Long.MAX_VALUE)
+            {
+                allBoundaries.add(boundary);
+                boundary = schedule.nextBoundaryAfter(boundary);
+            }
+        }
+
+        long[] merged = new long[allBoundaries.size()];
+        for(int i = 0; i < merged.length; i++)
+        {
+            merged[i] = allBoundaries.get(i);
+        }
+        Arrays.sort(merged);
+        boundaries = merged;
+    }
+
+    /**
+     * Posts {@link #boundaryTick} at the next discount boundary after now, replacing any pending tick.
+     */
+    private void scheduleNextTick()
+    {
+        handler.removeCallbacks(boundaryTick);
+
+        long nowMillis = System.currentTimeMillis();
+        int next = Arrays.binarySearch(boundaries, nowMillis + 1);
+        if(next < 0)
+        {
+            next = -next - 1; // Insertion point is the first boundary after now
+        }
+        if(next < boundaries.length)
+        {
+            handler.postDelayed(boundaryTick, boundaries[next] - nowMillis);
+        }
+    }
+
+    /**
+     * Notifies all attached listeners that the discounts or their active set changed.
+     */
+    private void notifyListeners()
+    {
+        for(OnDiscountsChangedListener listener : new ArrayList<>(listeners))
+        {
+            listener.onDiscountsChanged();
+        }
+    }
+
+    /**
+     * Stops the snapshot listener and clears the index.
+     */
+    private void stopListening()
+    {
+        if(registration != null)
+        {
+            registration.remove();
+            registration = null;
+        }
+        handler.removeCallbacks(boundaryTick);
+        discountsByItem.clear();
+        schedulesByItem.clear();
+        boundaries = new long[0];
+        loaded = false;
+        complete = false;
+    }
+
+    /**
+     * Compares two start times, ordering null values last.
+     *
+     * @param a The first timestamp.
+     * @param b The second timestamp.
+     * @return A negative, zero or positive value as {@code a} is before, equal to or after {@code b}.
+     */
+    private static int compareStart(Timestamp a, Timestamp b)
+    {
+        if(a == null) return b == null ? 0 : 1;
+        if(b == null) return -1;
+        return a.compareTo(b);
+    }
+}
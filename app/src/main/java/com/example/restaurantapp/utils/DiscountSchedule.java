@@ -0,0 +1,209 @@
+package com.example.restaurantapp.utils;
+
+import com.example.restaurantapp.models.Discount;
+import com.google.firebase.Timestamp;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Precomputed time schedule of the discounts attached to a single menu item.
+ * The start and end instants of all discounts split the timeline into intervals in which the
+ * set of active discounts does not change. For each interval the combined effect of its active
+ * discounts is folded into a single affine price function ({@code price * multiplier + offset}),
+ * so a price lookup is a binary search over the boundaries followed by one multiply-add.
+ * The schedule also knows the next activation or expiry instant after any point in time, which
+ * lets callers refresh once per boundary instead of re-checking on every bind.
+ * Boundaries follow {@link DiscountUtils#isActive}: a discount is active strictly after its
+ * start time and strictly before its end time.
+ */
+public class DiscountSchedule
+{
+    /**
+     * Sorted, distinct instants (in milliseconds) at which the active set changes.
+     * Interval {@code k} covers {@code [boundaries[k - 1], boundaries[k])}; interval 0 is everything
+     * before the first boundary and the last interval extends to infinity.
+     */
+    private final long[] boundaries;
+    /**
+     * Price multiplier of each interval.
+     */
+    private final double[] multipliers;
+    /**
+     * Price offset of each interval.
+     */
+    private final double[] offsets;
+    /**
+     * Sum of flat discounts active in each interval, used for badge text.
+     */
+    private final double[] flatTotals;
+    /**
+     * Whether a percentage discount is active in each interval, used for badge text.
+     */
+    private final boolean[] hasPercentage;
+
+    /**
+     * Builds a schedule from the given discounts.
+     * Active discounts are applied in list order, so the list should be ordered by start time
+     * to match the per-item Firestore query.
+     *
+     * @param discounts The discounts of a single item.
+     */
+    public DiscountSchedule(List<Discount> discounts)
+    {
+        int size = discounts.size();
+        long[] activations = new long[size];
+        long[] expiries = new long[size];
+        long[] allBoundaries = new long[size * 2];
+        int boundaryCount = 0;
+
+        for(int i = 0; i < size; i++)
+        {
+            Discount discount = discounts.get(i);
+            Timestamp start = discount.getStartTime();
+            Timestamp end = discount.getEndTime();
+            // A discount without a start time is never active
+            activations[i] = start != null ? toMillis(start) + 1 : Long.MAX_VALUE;
+            expiries[i] = end != null ? toMillis(end) : Long.MAX_VALUE;
+
+            if(activations[i] != Long.MAX_VALUE && activations[i] < expiries[i])
+            {
+                allBoundaries[boundaryCount++] = activations[i];
+                if(expiries[i] != Long.MAX_VALUE)
+                {
+                    allBoundaries[boundaryCount++] = expiries[i];
+                }
+            }
+        }
+
+        // Sort and drop duplicates, so items sharing a happy hour share one boundary
+        Arrays.sort(allBoundaries, 0, boundaryCount);
+        int distinct = 0;
+        for(int i = 0; i < boundaryCount; i++)
+        {
+            if(distinct == 0 || allBoundaries[distinct - 1] != allBoundaries[i])
+            {
+                allBoundaries[distinct++] = allBoundaries[i];
+            }
+        }
+        boundaries = Arrays.copyOf(allBoundaries, distinct);
+
+        multipliers = new double[distinct + 1];
+        offsets = new double[distinct + 1];
+        flatTotals = new double[distinct + 1];
+        hasPercentage = new boolean[distinct + 1];
+        multipliers[0] = 1; // Nothing is active before the first boundary
+
+        for(int k = 1; k <= distinct; k++)
+        {
+            long intervalStart = boundaries[k - 1];
+            double multiplier = 1;
+            double offset = 0;
+
+            for(int i = 0; i < size; i++)
+            {
+                if(activations[i] > intervalStart || expiries[i] <= intervalStart) continue;
+
+                Discount discount = discounts.get(i);
+                double amount = discount.getDiscountValue();
+                if("Flat".equals(discount.getDiscountType()))
+                {
+                    offset -= amount;
+                    flatTotals[k] += amount;
+                } else if("Percentage".equals(discount.getDiscountType()))
+                {
+                    double factor = 1 - (amount / 100.0);
+                    multiplier *= factor;
+                    offset *= factor;
+                    hasPercentage[k] = true;
+                }
+            }
+
+            multipliers[k] = multiplier;
+            offsets[k] = offset;
+        }
+    }
+
+    /**
+     * Returns the index of the interval containing the given instant.
+     *
+     * @param nowMillis The instant in milliseconds.
+     * @return The interval index, between 0 and the number of boundaries.
+     */
+    private int intervalAt(long nowMillis)
+    {
+        int low = 0;
+        int high = boundaries.length;
+        // Count the boundaries that are <= nowMillis
+        while(low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if(boundaries[mid] <= nowMillis)
+            {
+                low = mid + 1;
+            } else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the discounted price (before clamping at zero) at the given instant.
+     *
+     * @param originalPrice The undiscounted price.
+     * @param nowMillis     The instant in milliseconds.
+     * @return The discounted price, possibly negative.
+     */
+    public double priceAt(double originalPrice, long nowMillis)
+    {
+        int k = intervalAt(nowMillis);
+        return originalPrice * multipliers[k] + offsets[k];
+    }
+
+    /**
+     * Returns the sum of flat discounts active at the given instant.
+     *
+     * @param nowMillis The instant in milliseconds.
+     * @return The total flat discount.
+     */
+    public double flatTotalAt(long nowMillis)
+    {
+        return flatTotals[intervalAt(nowMillis)];
+    }
+
+    /**
+     * Returns whether a percentage discount is active at the given instant.
+     *
+     * @param nowMillis The instant in milliseconds.
+     * @return True if a percentage discount is active, false otherwise.
+     */
+    public boolean hasPercentageAt(long nowMillis)
+    {
+        return hasPercentage[intervalAt(nowMillis)];
+    }
+
+    /**
+     * Returns the next instant after {@code nowMillis} at which a discount starts or ends.
+     *
+     * @param nowMillis The instant in milliseconds.
+     * @return The next boundary in milliseconds, or {@link Long#MAX_VALUE} if there is none.
+     */
+    public long nextBoundaryAfter(long nowMillis)
+    {
+        int k = intervalAt(nowMillis);
+        return k < boundaries.length ? boundaries[k] : Long.MAX_VALUE;
+    }
+
+    /**
+     * Converts a {@link Timestamp} to milliseconds since the epoch.
+     *
+     * @param timestamp The timestamp to convert.
+     * @return The timestamp in milliseconds.
+     */
+    private static long toMillis(Timestamp timestamp)
+    {
+        return timestamp.getSeconds() * 1000 + timestamp.getNanoseconds() / 1_000_000;
+    }
+}
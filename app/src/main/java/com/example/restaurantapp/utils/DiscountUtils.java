@@ -4,24 +4,42 @@ import android.content.Context;
 import android.util.Log;
 
 import com.example.restaurantapp.R;
+import com.example.restaurantapp.models.Discount;
 import com.example.restaurantapp.models.MenuItem;
 import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Utility class for handling discount calculations and application for {@link MenuItem}s.
- * It provides a static method to fetch active discounts for a given menu item from Firestore,
- * calculate the final price after applying these discounts, and determine appropriate display
- * information such as whether a discount is active, if the item is free, and a badge text
- * for the discount.
+ * It provides a static method to fetch active discounts for a given menu item (from a loaded
+ * {@link DiscountIndex} when available, otherwise from Firestore), calculate the final price
+ * after applying these discounts, and determine appropriate display information such as
+ * whether a discount is active, if the item is free, and a badge text for the discount.
  */
 public class DiscountUtils
 {
+    /**
+     * Badge type of an item whose discounts bring its price down to zero.
+     */
+    public static final String BADGE_FREE = "Free";
+    /**
+     * Badge type of an item with at least one percentage discount; the badge value is the effective percentage.
+     */
+    public static final String BADGE_PERCENTAGE = "Percentage";
+    /**
+     * Badge type of an item with only flat discounts; the badge value is the total amount off.
+     */
+    public static final String BADGE_FLAT = "Flat";
 
     /**
      * Callback interface for receiving the result of discount calculations.
@@ -42,21 +60,14 @@ public class DiscountUtils
     }
 
     /**
-     * Fetches and applies active discounts for a given {@link MenuItem} from Firestore.
-     * It queries the "Discounts" subcollection of the specified item, ordered by "startTime".
-     * For each discount, it checks if the current time falls within its "startTime" and "endTime"
-     * (if an endTime exists).
-     * Active discounts are applied sequentially:
-     * <ul>
-     *     <li>"Flat" discounts are subtracted from the current price.</li>
-     *     <li>"Percentage" discounts are applied to the current price after any flat discounts.
-     *         If multiple percentage discounts are active, they are applied cumulatively.</li>
-     * </ul>
-     * The final price is ensured to be non-negative (Math.max(currentPrice, 0)).
-     * After calculations, it determines if any discount was applied ({@code hasDiscount}),
-     * if the item is free ({@code isFree}), and generates a {@code badgeText}
-     * (e.g., "X% OFF", "$Y OFF", or "FREE" from string resources).
-     * The results are then passed to the provided {@link DiscountResultCallback}.
+     * Fetches and applies active discounts for a given {@link MenuItem}.
+     * If a {@link DiscountIndex} for the item's restaurant is loaded and covers all of the restaurant's
+     * discounts (see {@link DiscountIndex#isLoaded()}), the result is answered synchronously from memory
+     * and no Firestore query is issued.
+     * Otherwise, if the item document carries a discount summary that is still valid
+     * (see {@link #hasValidSummary(MenuItem, long)}), the result is built from that summary.
+     * Only when neither is available does it fall back to querying the "Discounts" subcollection of the specified item,
+     * ordered by "startTime", and applies the active ones via {@link #calculate}.
      *
      * @param item     The {@link MenuItem} for which to apply discounts. Must have valid
      *                 {@code restaurantID}, {@code menuID}, and {@code itemID}.
@@ -65,6 +76,26 @@ public class DiscountUtils
      */
     public static void applyActiveDiscounts(MenuItem item, Context context, DiscountResultCallback callback)
     {
+        DiscountIndex index = DiscountIndex.peek(item.getRestaurantID());
+        if(index != null && index.isLoaded())
+        {
+            // Answer from the in-memory index, no round trip needed
+            DiscountResult result = index.resolve(item, context);
+            callback.onResult(result.originalPrice, result.finalPrice, result.hasDiscount, result.isFree, result.badgeText);
+            return;
+        }
+
+        if(hasValidSummary(item, System.currentTimeMillis()))
+        {
+            // Render from the denormalized fields written by ManageMenuFragment
+            double originalPrice = item.getPrice();
+            double finalPrice = item.getEffectivePrice();
+            boolean hasDiscount = originalPrice > finalPrice;
+            callback.onResult(originalPrice, finalPrice, hasDiscount, hasDiscount && finalPrice == 0,
+                    formatBadge(item.getDiscountBadgeType(), item.getDiscountBadgeValue(), context));
+            return;
+        }
+
         FirebaseFirestore.getInstance()
                 .collection("Restaurants")
                 .document(item.getRestaurantID())
@@ -77,76 +108,334 @@ public class DiscountUtils
                 .get()
                 .addOnSuccessListener(querySnapshot ->
                 {
-                    double originalPrice = item.getPrice();
-                    double currentPrice = originalPrice;
-                    double totalFlatDiscountApplied = 0; // Tracks sum of flat discounts for badge text
-                    boolean hasActivePercentageDiscount = false; // Tracks if any percentage discount was applied
                     Date now = new Date(); // Current time for checking discount validity
 
-                    List<QueryDocumentSnapshot> activeDiscounts = new ArrayList<>();
+                    List<Discount> activeDiscounts = new ArrayList<>();
                     // First, filter for currently active discounts
                     for(QueryDocumentSnapshot doc : querySnapshot)
                     {
-                        Timestamp start = doc.getTimestamp("startTime");
-                        Timestamp end = doc.getTimestamp("endTime");
-
-                        // Check if discount is currently active
-                        if(start != null && now.after(start.toDate()) &&
-                                (end == null || now.before(end.toDate()))) // Active if start is past and (no end OR end is future)
+                        Discount discount = fromSnapshot(doc);
+                        if(isActive(discount, now))
                         {
-                            activeDiscounts.add(doc);
+                            activeDiscounts.add(discount);
                         }
                     }
 
-                    // Apply active discounts
-                    // Note: The order of application (flat vs percentage) might matter.
-                    // This implementation applies them in the order they are fetched (ordered by startTime).
-                    // If specific order is needed (e.g., all flat then all percentage), list should be sorted or processed in passes.
-                    for(QueryDocumentSnapshot doc : activeDiscounts)
-                    {
-                        String type = doc.getString("discountType");
-                        Double amountDouble = doc.getDouble("amount"); // Use getDouble for Firestore numbers
-                        double amount = (amountDouble != null) ? amountDouble : 0.0;
-
-                        if("Flat".equals(type))
-                        {
-                            currentPrice -= amount;
-                            totalFlatDiscountApplied += amount; // Sum flat discounts for badge
-                        } else if("Percentage".equals(type))
-                        {
-                            currentPrice *= (1 - (amount / 100.0)); // Apply percentage to current price
-                            hasActivePercentageDiscount = true;
-                        }
-                    }
-
-                    currentPrice = Math.max(currentPrice, 0); // Ensure price doesn't go below zero
-
-                    boolean hasEffectiveDiscount = originalPrice > currentPrice; // A discount is effective if price changed
-                    boolean isEffectivelyFree = currentPrice == 0 && hasEffectiveDiscount; // Free only if price became 0 due to discount
-
-                    String badgeText = null;
-                    if(hasEffectiveDiscount)
-                    {
-                        if(isEffectivelyFree)
-                        {
-                            badgeText = context.getString(R.string.free);
-                        } else if(hasActivePercentageDiscount) // Prioritize showing percentage if one was applied
-                        {
-                            // Calculate effective percentage based on original and final price
-                            double effectivePercentage = ((originalPrice - currentPrice) / originalPrice) * 100.0;
-                            badgeText = context.getString(R.string.percent_off_format, (int) Math.round(effectivePercentage)); // Round percentage
-                        } else if(totalFlatDiscountApplied > 0) // If only flat discounts applied
-                        {
-                            badgeText = context.getString(R.string.amount_off_format, (int) Math.round(totalFlatDiscountApplied)); // Round flat amount
-                        }
-                        // If neither percentage nor flat discount led to a price change but hasEffectiveDiscount is true (e.g. complex scenario), badgeText remains null.
-                    }
-
-                    callback.onResult(originalPrice, currentPrice, hasEffectiveDiscount, isEffectivelyFree, badgeText);
+                    DiscountResult result = calculate(item.getPrice(), activeDiscounts, context);
+                    callback.onResult(result.originalPrice, result.finalPrice, result.hasDiscount, result.isFree, result.badgeText);
                 })
                 .addOnFailureListener(e ->
                 {
                     Log.e("DiscountUtils", "Error fetching discounts for item: " + item.getItemID(), e);
                 });
     }
-}
\ No newline at end of file
+
+    /**
+     * Checks whether an item carries a discount summary that can be trusted at the given instant.
+     *
+     * @param item      The {@link MenuItem} to check.
+     * @param nowMillis The current time in milliseconds.
+     * @return True if the item has an effective price whose validity has not expired, and a badge
+     * type if that price is discounted.
+     */
+    public static boolean hasValidSummary(MenuItem item, long nowMillis)
+    {
+        Timestamp validUntil = item.getDiscountValidUntil();
+        return item.getEffectivePrice() != null &&
+                (item.getEffectivePrice() >= item.getPrice() || item.getDiscountBadgeType() != null) &&
+                (validUntil == null || nowMillis < validUntil.toDate().getTime());
+    }
+
+    /**
+     * Builds the denormalized discount summary fields for an item.
+     * The returned map holds "effectivePrice", "discountBadgeType", "discountBadgeValue" and
+     * "discountValidUntil" and can be passed directly to a Firestore update. The badge is stored as
+     * its type and value, not as text, so every reader formats it in their own language.
+     *
+     * @param price     The undiscounted price of the item.
+     * @param schedule  The item's {@link DiscountSchedule}, or null if it has no discounts.
+     * @param nowMillis The instant to compute the summary for.
+     * @return A map of the summary fields.
+     */
+    public static Map<String, Object> buildSummary(double price, DiscountSchedule schedule, long nowMillis)
+    {
+        DiscountResult result = schedule == null
+                ? buildResult(price, price, 0, false, null)
+                : buildResult(price, schedule.priceAt(price, nowMillis),
+                schedule.flatTotalAt(nowMillis), schedule.hasPercentageAt(nowMillis), null);
+        long nextBoundary = schedule == null ? Long.MAX_VALUE : schedule.nextBoundaryAfter(nowMillis);
+
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("effectivePrice", result.finalPrice);
+        summary.put("discountBadgeType", result.badgeType);
+        summary.put("discountBadgeValue", result.badgeValue);
+        summary.put("discountValidUntil", nextBoundary == Long.MAX_VALUE ? null
+                : new Timestamp(nextBoundary / 1000, (int) (nextBoundary % 1000) * 1_000_000));
+        return summary;
+    }
+
+    /**
+     * Builds summary fields that mark an item as having no summary, so readers query its discounts
+     * instead. Used while the discounts needed to compute a summary are not all known.
+     *
+     * @return A map of the summary fields, all null.
+     */
+    public static Map<String, Object> clearedSummary()
+    {
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("effectivePrice", null);
+        summary.put("discountBadgeType", null);
+        summary.put("discountBadgeValue", null);
+        summary.put("discountValidUntil", null);
+        return summary;
+    }
+
+    /**
+     * Returns the Firestore update writing summary fields onto an item document. Also removes the
+     * "discountBadge" text field that earlier summaries stored.
+     *
+     * @param summary The summary fields.
+     * @return The fields to pass to a Firestore update.
+     */
+    public static Map<String, Object> summaryUpdate(Map<String, Object> summary)
+    {
+        Map<String, Object> update = new HashMap<>(summary);
+        update.put("discountBadge", FieldValue.delete());
+        return update;
+    }
+
+    /**
+     * Formats a discount badge in the reader's language.
+     *
+     * @param badgeType  {@link #BADGE_FREE}, {@link #BADGE_PERCENTAGE}, {@link #BADGE_FLAT}, or null.
+     * @param badgeValue The percentage or amount off, ignored for {@link #BADGE_FREE}.
+     * @param context    The {@link Context} used to access string resources, or null.
+     * @return The badge text, or null if there is no badge or no context.
+     */
+    public static String formatBadge(String badgeType, Integer badgeValue, Context context)
+    {
+        if(badgeType == null || context == null) return null;
+        switch(badgeType)
+        {
+            case BADGE_FREE:
+                return context.getString(R.string.free);
+            case BADGE_PERCENTAGE:
+                return context.getString(R.string.percent_off_format, badgeValue != null ? badgeValue : 0);
+            case BADGE_FLAT:
+                return context.getString(R.string.amount_off_format, badgeValue != null ? badgeValue : 0);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Checks whether an item's stored summary already equals the given summary fields.
+     *
+     * @param item    The {@link MenuItem} to compare.
+     * @param summary A summary built by {@link #buildSummary}.
+     * @return True if no update is needed, false otherwise.
+     */
+    public static boolean summaryMatches(MenuItem item, Map<String, Object> summary)
+    {
+        return Objects.equals(item.getEffectivePrice(), summary.get("effectivePrice")) &&
+                Objects.equals(item.getDiscountBadgeType(), summary.get("discountBadgeType")) &&
+                Objects.equals(item.getDiscountBadgeValue(), summary.get("discountBadgeValue")) &&
+                Objects.equals(item.getDiscountValidUntil(), summary.get("discountValidUntil"));
+    }
+
+    /**
+     * Copies summary fields built by {@link #buildSummary} onto a local {@link MenuItem}.
+     *
+     * @param item    The {@link MenuItem} to update.
+     * @param summary The summary fields.
+     */
+    public static void applySummary(MenuItem item, Map<String, Object> summary)
+    {
+        item.setEffectivePrice((Double) summary.get("effectivePrice"));
+        item.setDiscountBadgeType((String) summary.get("discountBadgeType"));
+        item.setDiscountBadgeValue((Integer) summary.get("discountBadgeValue"));
+        item.setDiscountValidUntil((Timestamp) summary.get("discountValidUntil"));
+    }
+
+    /**
+     * Converts a discount document into a {@link Discount} model.
+     * The amount is stored in Firestore under the "amount" field and is mapped onto
+     * {@link Discount#getDiscountValue()}.
+     *
+     * @param doc The discount document snapshot.
+     * @return The corresponding {@link Discount}.
+     */
+    public static Discount fromSnapshot(DocumentSnapshot doc)
+    {
+        Double amountDouble = doc.getDouble("amount"); // Use getDouble for Firestore numbers
+        return new Discount(doc.getString("discountType"),
+                amountDouble != null ? amountDouble : 0.0,
+                doc.getTimestamp("startTime"),
+                doc.getTimestamp("endTime"),
+                doc.getId());
+    }
+
+    /**
+     * Checks whether a discount is active at the given instant.
+     * A discount is active if its start time has passed and it either has no end time
+     * or its end time is still in the future.
+     *
+     * @param discount The discount to check.
+     * @param now      The instant to check against.
+     * @return True if the discount is active at {@code now}, false otherwise.
+     */
+    public static boolean isActive(Discount discount, Date now)
+    {
+        Timestamp start = discount.getStartTime();
+        Timestamp end = discount.getEndTime();
+        return start != null && now.after(start.toDate()) &&
+                (end == null || now.before(end.toDate())); // Active if start is past and (no end OR end is future)
+    }
+
+    /**
+     * Applies a list of active discounts to an original price.
+     * Discounts are applied sequentially in list order:
+     * <ul>
+     *     <li>"Flat" discounts are subtracted from the current price.</li>
+     *     <li>"Percentage" discounts are applied to the current price after any flat discounts.
+     *         If multiple percentage discounts are active, they are applied cumulatively.</li>
+     * </ul>
+     * The final price is ensured to be non-negative (Math.max(currentPrice, 0)).
+     * After calculations, it determines if any discount was applied ({@code hasDiscount}),
+     * if the item is free ({@code isFree}), and generates a {@code badgeText}
+     * (e.g., "X% OFF", "$Y OFF", or "FREE" from string resources).
+     *
+     * @param originalPrice   The undiscounted price of the item.
+     * @param activeDiscounts The discounts active right now, in application order.
+     * @param context         The {@link Context} used to access string resources for badge text.
+     * @return The computed {@link DiscountResult}.
+     */
+    public static DiscountResult calculate(double originalPrice, List<Discount> activeDiscounts, Context context)
+    {
+        double currentPrice = originalPrice;
+        double totalFlatDiscountApplied = 0; // Tracks sum of flat discounts for badge text
+        boolean hasActivePercentageDiscount = false; // Tracks if any percentage discount was applied
+
+        for(Discount discount : activeDiscounts)
+        {
+            String type = discount.getDiscountType();
+            double amount = discount.getDiscountValue();
+
+            if("Flat".equals(type))
+            {
+                currentPrice -= amount;
+                totalFlatDiscountApplied += amount; // Sum flat discounts for badge
+            } else if("Percentage".equals(type))
+            {
+                currentPrice *= (1 - (amount / 100.0)); // Apply percentage to current price
+                hasActivePercentageDiscount = true;
+            }
+        }
+
+        return buildResult(originalPrice, currentPrice, totalFlatDiscountApplied, hasActivePercentageDiscount, context);
+    }
+
+    /**
+     * Builds a {@link DiscountResult} from an already discounted price, clamping it at zero
+     * and deriving the flags and badge.
+     *
+     * @param originalPrice               The undiscounted price of the item.
+     * @param discountedPrice             The price after all discounts, before clamping.
+     * @param totalFlatDiscountApplied    The sum of all flat discounts that were applied.
+     * @param hasActivePercentageDiscount True if at least one percentage discount was applied.
+     * @param context                     The {@link Context} used to access string resources for badge text,
+     *                                    or null to only compute the badge type and value.
+     * @return The computed {@link DiscountResult}.
+     */
+    static DiscountResult buildResult(double originalPrice, double discountedPrice, double totalFlatDiscountApplied,
+                                      boolean hasActivePercentageDiscount, Context context)
+    {
+        double currentPrice = Math.max(discountedPrice, 0); // Ensure price doesn't go below zero
+
+        boolean hasEffectiveDiscount = originalPrice > currentPrice; // A discount is effective if price changed
+        boolean isEffectivelyFree = currentPrice == 0 && hasEffectiveDiscount; // Free only if price became 0 due to discount
+
+        String badgeType = null;
+        Integer badgeValue = null;
+        if(hasEffectiveDiscount)
+        {
+            if(isEffectivelyFree)
+            {
+                badgeType = BADGE_FREE;
+            } else if(hasActivePercentageDiscount) // Prioritize showing percentage if one was applied
+            {
+                // Calculate effective percentage based on original and final price
+                double effectivePercentage = ((originalPrice - currentPrice) / originalPrice) * 100.0;
+                badgeType = BADGE_PERCENTAGE;
+                badgeValue = (int) Math.round(effectivePercentage); // Round percentage
+            } else if(totalFlatDiscountApplied > 0) // If only flat discounts applied
+            {
+                badgeType = BADGE_FLAT;
+                badgeValue = (int) Math.round(totalFlatDiscountApplied); // Round flat amount
+            }
+        }
+
+        return new DiscountResult(originalPrice, currentPrice, hasEffectiveDiscount, isEffectivelyFree,
+                badgeType, badgeValue, formatBadge(badgeType, badgeValue, context));
+    }
+
+    /**
+     * Immutable result of a discount calculation for a single item.
+     * Mirrors the parameters of {@link DiscountResultCallback#onResult}.
+     */
+    public static class DiscountResult
+    {
+        /**
+         * The original price of the menu item.
+         */
+        public final double originalPrice;
+        /**
+         * The price of the menu item after applying all active discounts.
+         */
+        public final double finalPrice;
+        /**
+         * True if any discount changed the price.
+         */
+        public final boolean hasDiscount;
+        /**
+         * True if the discounts brought the price down to zero.
+         */
+        public final boolean isFree;
+        /**
+         * Type of the discount badge ({@link #BADGE_FREE}, {@link #BADGE_PERCENTAGE} or {@link #BADGE_FLAT}),
+         * or null if no discount is applied.
+         */
+        public final String badgeType;
+        /**
+         * The percentage or amount shown on the badge, or null for no badge or a "free" badge.
+         */
+        public final Integer badgeValue;
+        /**
+         * Text for the discount badge, or null if no discount is applied or no context was given.
+         */
+        public final String badgeText;
+
+        /**
+         * Constructs a new {@code DiscountResult}.
+         *
+         * @param originalPrice The original price.
+         * @param finalPrice    The discounted price.
+         * @param hasDiscount   Whether a discount was applied.
+         * @param isFree        Whether the item is free.
+         * @param badgeType     The badge type, or null.
+         * @param badgeValue    The badge value, or null.
+         * @param badgeText     The badge text, or null.
+         */
+        public DiscountResult(double originalPrice, double finalPrice, boolean hasDiscount, boolean isFree,
+                              String badgeType, Integer badgeValue, String badgeText)
+        {
+            this.originalPrice = originalPrice;
+            this.finalPrice = finalPrice;
+            this.hasDiscount = hasDiscount;
+            this.isFree = isFree;
+            this.badgeType = badgeType;
+            this.badgeValue = badgeValue;
+            this.badgeText = badgeText;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.restaurantapp.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Utility class for encoding locations as geohashes and covering circles with geohash ranges.
+ * A geohash interleaves the bits of longitude and latitude and writes them in base 32, so every
+ * prefix names a rectangular cell and all locations inside a cell share that prefix. Ordering
+ * documents by their stored geohash therefore lets a circle be queried as a handful of
+ * {@code [start, end)} string ranges, one per group of adjacent cells around it.
+ * Results of such range queries are a superset of the circle and must be filtered with
+ * {@link #distanceMeters(double, double, double, double)}.
+ */
+public class GeoHashUtils
+{
+    /**
+     * The geohash alphabet, in bit order.
+     */
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+    /**
+     * Number of characters stored on restaurant documents (cells of roughly 1.2 km by 0.6 km at 6,
+     * so precision 9 is about 5 m and is enough for any query radius).
+     */
+    public static final int STORED_PRECISION = 9;
+    /**
+     * Mean radius of the Earth in meters.
+     */
+    private static final double EARTH_RADIUS_METERS = 6_371_000;
+    /**
+     * Meters per degree of latitude.
+     */
+    private static final double METERS_PER_DEGREE_LATITUDE = 111_320;
+    /**
+     * Upper bound for the number of cells a query may cover before a coarser precision is used.
+     */
+    private static final int MAX_CELLS = 9;
+
+    /**
+     * Encodes a location as a geohash.
+     *
+     * @param latitude  The latitude in degrees.
+     * @param longitude The longitude in degrees.
+     * @param precision The number of characters of the geohash.
+     * @return The geohash of the location.
+     */
+    public static String encode(double latitude, double longitude, int precision)
+    {
+        double minLat = -90, maxLat = 90;
+        double minLng = -180, maxLng = 180;
+        StringBuilder hash = new StringBuilder(precision);
+        boolean evenBit = true; // Bits alternate between longitude and latitude, starting with longitude
+        int bit = 0;
+        int charIndex = 0;
+
+        while(hash.length() < precision)
+        {
+            if(evenBit)
+            {
+                double mid = (minLng + maxLng) / 2;
+                if(longitude >= mid)
+                {
+                    charIndex = (charIndex << 1) | 1;
+                    minLng = mid;
+                } else
+                {
+                    charIndex = charIndex << 1;
+                    maxLng = mid;
+                }
+            } else
+            {
+                double mid = (minLat + maxLat) / 2;
+                if(latitude >= mid)
+                {
+                    charIndex = (charIndex << 1) | 1;
+                    minLat = mid;
+                } else
+                {
+                    charIndex = charIndex << 1;
+                    maxLat = mid;
+                }
+            }
+            evenBit = !evenBit;
+
+            if(++bit == 5)
+            {
+                hash.append(BASE32.charAt(charIndex));
+                bit = 0;
+                charIndex = 0;
+            }
+        }
+        return hash.toString();
+    }
+
+    /**
+     * Computes the great-circle distance between two locations with the haversine formula.
+     *
+     * @param lat1 The latitude of the first location in degrees.
+     * @param lng1 The longitude of the first location in degrees.
+     * @param lat2 The latitude of the second location in degrees.
+     * @param lng2 The longitude of the second location in degrees.
+     * @return The distance in meters.
+     */
+    public static double distanceMeters(double lat1, double lng1, double lat2, double lng2)
+    {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Computes the geohash ranges covering a circle.
+     * The precision is the finest one for which the circle's bounding box spans at most
+     * {@link #MAX_CELLS} cells; the cells are collected, sorted, and runs of consecutive cells are
+     * merged into single ranges, so the result is the smallest set of ranges for that precision.
+     *
+     * @param latitude     The latitude of the center in degrees.
+     * @param longitude    The longitude of the center in degrees.
+     * @param radiusMeters The radius of the circle in meters.
+     * @return A list of {@code {start, end}} pairs; a geohash {@code h} is in a range if
+     * {@code start <= h < end}.
+     */
+    public static List<String[]> queryBounds(double latitude, double longitude, double radiusMeters)
+    {
+        double latDelta = radiusMeters / METERS_PER_DEGREE_LATITUDE;
+        double cosLat = Math.cos(Math.toRadians(latitude));
+        // Near the poles a small radius spans every longitude
+        double lngDelta = cosLat < 1e-6 ? 180 : Math.min(180, latDelta / cosLat);
+
+        double minLat = Math.max(-90, latitude - latDelta);
+        double maxLat = Math.min(90, latitude + latDelta);
+        double minLng = longitude - lngDelta;
+        double maxLng = longitude + lngDelta;
+
+        int precision = 1;
+        for(int p = STORED_PRECISION; p >= 1; p--)
+        {
+            if(cellCount(minLat, maxLat, minLng, maxLng, p) <= MAX_CELLS)
+            {
+                precision = p;
+                break;
+            }
+        }
+
+        TreeSet<String> cells = cellsInBox(minLat, maxLat, minLng, maxLng, precision);
+
+        List<String[]> ranges = new ArrayList<>();
+        String rangeStart = null;
+        String rangeEnd = null;
+        for(String cell : cells)
+        {
+            if(rangeEnd != null && rangeEnd.equals(cell))
+            {
+                rangeEnd = rangeEnd(cell); // Extends the current run
+                continue;
+            }
+            if(rangeStart != null)
+            {
+                ranges.add(new String[]{rangeStart, rangeEnd});
+            }
+            rangeStart = cell;
+            rangeEnd = rangeEnd(cell);
+        }
+        if(rangeStart != null)
+        {
+            ranges.add(new String[]{rangeStart, rangeEnd});
+        }
+        return ranges;
+    }
+
+    /**
+     * Returns the cells of the given precision that intersect a bounding box.
+     * The longitudes may extend past the antimeridian; they are wrapped when encoding.
+     *
+     * @param minLat    The southern edge in degrees.
+     * @param maxLat    The northern edge in degrees.
+     * @param minLng    The western edge in degrees.
+     * @param maxLng    The eastern edge in degrees.
+     * @param precision The geohash precision.
+     * @return The geohashes of the cells, sorted.
+     */
+    public static TreeSet<String> cellsInBox(double minLat, double maxLat, double minLng, double maxLng, int precision)
+    {
+        TreeSet<String> cells = new TreeSet<>();
+        double cellHeight = cellHeight(precision);
+        double cellWidth = cellWidth(precision);
+        // Step through the bounding box one cell at a time, always including the far edges
+        for(double lat = minLat; ; lat = Math.min(maxLat, lat + cellHeight))
+        {
+            for(double lng = minLng; ; lng = Math.min(maxLng, lng + cellWidth))
+            {
+                cells.add(encode(lat, wrapLongitude(lng), precision));
+                if(lng >= maxLng) break;
+            }
+            if(lat >= maxLat) break;
+        }
+        return cells;
+    }
+
+    /**
+     * Returns the number of cells of the given precision spanned by a bounding box.
+     *
+     * @param minLat    The southern edge in degrees.
+     * @param maxLat    The northern edge in degrees.
+     * @param minLng    The western edge in degrees.
+     * @param maxLng    The eastern edge in degrees.
+     * @param precision The geohash precision.
+     * @return The number of cells.
+     */
+    public static long cellCount(double minLat, double maxLat, double minLng, double maxLng, int precision)
+    {
+        long rows = (long) Math.floor((maxLat + 90) / cellHeight(precision))
+                - (long) Math.floor((minLat + 90) / cellHeight(precision)) + 1;
+        long columns = (long) Math.floor((maxLng + 180) / cellWidth(precision))
+                - (long) Math.floor((minLng + 180) / cellWidth(precision)) + 1;
+        return rows * columns;
+    }
+
+    /**
+     * Returns the height of a geohash cell in degrees of latitude.
+     *
+     * @param precision The geohash precision.
+     * @return The cell height in degrees.
+     */
+    private static double cellHeight(int precision)
+    {
+        int latBits = (precision * 5) / 2;
+        return 180 / Math.pow(2, latBits);
+    }
+
+    /**
+     * Returns the width of a geohash cell in degrees of longitude.
+     *
+     * @param precision The geohash precision.
+     * @return The cell width in degrees.
+     */
+    private static double cellWidth(int precision)
+    {
+        int lngBits = (precision * 5 + 1) / 2;
+        return 360 / Math.pow(2, lngBits);
+    }
+
+    /**
+     * Wraps a longitude into the range {@code [-180, 180)}.
+     *
+     * @param longitude The longitude in degrees.
+     * @return The wrapped longitude.
+     */
+    private static double wrapLongitude(double longitude)
+    {
+        double wrapped = (longitude + 180) % 360;
+        if(wrapped < 0) wrapped += 360;
+        return wrapped - 180;
+    }
+
+    /**
+     * Returns the smallest string greater than every geohash starting with {@code cell}.
+     * The last character is advanced to the next one of the alphabet; past the last character
+     * the increment carries into the preceding character.
+     *
+     * @param cell The geohash cell.
+     * @return The exclusive upper bound of the cell's range.
+     */
+    public static String rangeEnd(String cell)
+    {
+        int last = cell.length() - 1;
+        int index = BASE32.indexOf(cell.charAt(last));
+        if(index < BASE32.length() - 1)
+        {
+            return cell.substring(0, last) + BASE32.charAt(index + 1);
+        }
+        // "z" is the last character, so "...z" is followed by the incremented prefix
+        return last == 0 ? "~" : rangeEnd(cell.substring(0, last));
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.restaurantapp.utils;
+
+import com.example.restaurantapp.models.Restaurant;
+import com.google.firebase.firestore.GeoPoint;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Grid-based clusterer for restaurant markers.
+ * Restaurants are projected to Web Mercator world coordinates at the current zoom level and
+ * bucketed into square grid cells of a fixed on-screen size; every cell holding more than one
+ * restaurant becomes a single cluster placed at the centroid of its members.
+ * Cells are anchored to the world rather than to the viewport, so panning at a constant zoom
+ * keeps producing the same cluster keys and their markers can be kept on the map.
+ */
+public class GridClusterer
+{
+    /**
+     * Size of a map tile in density-independent pixels at zoom level 0.
+     */
+    private static final double TILE_SIZE_DP = 256;
+
+    /**
+     * A group of restaurants shown as one marker.
+     */
+    public static class Cluster
+    {
+        /**
+         * Stable key identifying the cluster; for a single restaurant it is derived from the restaurant ID.
+         */
+        public final String key;
+        /**
+         * Latitude of the cluster's centroid in degrees.
+         */
+        public final double latitude;
+        /**
+         * Longitude of the cluster's centroid in degrees.
+         */
+        public final double longitude;
+        /**
+         * The restaurants in the cluster.
+         */
+        public final List<Restaurant> restaurants;
+
+        /**
+         * Constructs a new {@code Cluster}.
+         *
+         * @param key         The cluster's key.
+         * @param latitude    The centroid's latitude.
+         * @param longitude   The centroid's longitude.
+         * @param restaurants The restaurants in the cluster.
+         */
+        Cluster(String key, double latitude, double longitude, List<Restaurant> restaurants)
+        {
+            this.key = key;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.restaurants = restaurants;
+        }
+
+        /**
+         * Returns whether the cluster holds a single restaurant.
+         *
+         * @return True if the cluster has exactly one restaurant, false otherwise.
+         */
+        public boolean isSingle()
+        {
+            return restaurants.size() == 1;
+        }
+    }
+
+    /**
+     * Groups restaurants into clusters.
+     * Restaurants without a location are skipped.
+     *
+     * @param restaurants The restaurants to cluster.
+     * @param zoom        The camera zoom level; fractional levels use the grid of the level below.
+     * @param cellSizeDp  The width of a grid cell on screen, in density-independent pixels.
+     * @return The clusters, each with at least one restaurant.
+     */
+    public static List<Cluster> cluster(Collection<Restaurant> restaurants, float zoom, double cellSizeDp)
+    {
+        int zoomLevel = (int) Math.floor(zoom);
+        double cellSize = cellSizeDp / (TILE_SIZE_DP * Math.pow(2, zoomLevel)); // In world units of [0, 1)
+
+        Map<Long, List<Restaurant>> cells = new HashMap<>();
+        for(Restaurant restaurant : restaurants)
+        {
+            GeoPoint location = restaurant.getLocation();
+            if(location == null) continue;
+
+            long column = (long) Math.floor(worldX(location.getLongitude()) / cellSize);
+            long row = (long) Math.floor(worldY(location.getLatitude()) / cellSize);
+            long cellKey = (column << 32) ^ row;
+
+            List<Restaurant> members = cells.get(cellKey);
+            if(members == null)
+            {
+                members = new ArrayList<>();
+                cells.put(cellKey, members);
+            }
+            members.add(restaurant);
+        }
+
+        List<Cluster> clusters = new ArrayList<>(cells.size());
+        for(Map.Entry<Long, List<Restaurant>> entry : cells.entrySet())
+        {
+            List<Restaurant> members = entry.getValue();
+            if(members.size() == 1)
+            {
+                Restaurant restaurant = members.get(0);
+                clusters.add(new Cluster("r:" + restaurant.getRestaurantID(),
+                        restaurant.getLocation().getLatitude(), restaurant.getLocation().getLongitude(), members));
+                continue;
+            }
+
+            double latitudeSum = 0;
+            double longitudeSum = 0;
+            for(Restaurant restaurant : members)
+            {
+                latitudeSum += restaurant.getLocation().getLatitude();
+                longitudeSum += restaurant.getLocation().getLongitude();
+            }
+            clusters.add(new Cluster("c:" + zoomLevel + ":" + entry.getKey(),
+                    latitudeSum / members.size(), longitudeSum / members.size(), members));
+        }
+        return clusters;
+    }
+
+    /**
+     * Projects a longitude to the Web Mercator x coordinate.
+     *
+     * @param longitude The longitude in degrees.
+     * @return The x coordinate in {@code [0, 1)}.
+     */
+    private static double worldX(double longitude)
+    {
+        return (longitude + 180) / 360;
+    }
+
+    /**
+     * Projects a latitude to the Web Mercator y coordinate.
+     *
+     * @param latitude The latitude in degrees.
+     * @return The y coordinate, 0 at the northern and 1 at the southern edge of the map.
+     */
+    private static double worldY(double latitude)
+    {
+        double sinLatitude = Math.sin(Math.toRadians(latitude));
+        sinLatitude = Math.max(-0.9999, Math.min(0.9999, sinLatitude)); // Mercator diverges at the poles
+        return 0.5 - Math.log((1 + sinLatitude) / (1 - sinLatitude)) / (4 * Math.PI);
+    }
+}
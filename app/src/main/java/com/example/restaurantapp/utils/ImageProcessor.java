@@ -0,0 +1,387 @@
+package com.example.restaurantapp.utils;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.ImageDecoder;
+import android.graphics.Matrix;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.exifinterface.media.ExifInterface;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Prepares images picked from the gallery or taken with the camera for upload.
+ * The image is decoded at a reduced size straight from its URI, so a full-resolution bitmap is
+ * never held in memory, rotated upright according to its EXIF orientation, scaled so that its
+ * longer edge is at most a given size and encoded as WebP within a byte budget. Menu, menu item and
+ * restaurant images additionally get smaller card and thumbnail renditions for lists, scaled from
+ * the same decoded bitmap.
+ * All work runs on a single background thread, which also bounds the memory used by concurrent
+ * requests; results are delivered on the main thread.
+ */
+public class ImageProcessor
+{
+    /**
+     * Tag for logging purposes.
+     */
+    private static final String TAG = "ImageProcessor";
+    /**
+     * Longest edge of menu, menu item and restaurant images, in pixels.
+     */
+    public static final int MAX_DIMENSION = 1600;
+    /**
+     * Upper bound for the encoded size of menu, menu item and restaurant images, in bytes.
+     */
+    public static final int MAX_BYTES = 300 * 1024;
+    /**
+     * Longest edge of profile pictures, in pixels.
+     */
+    public static final int PROFILE_MAX_DIMENSION = 640;
+    /**
+     * Longest edge of the card rendition, sized for full-width list rows, in pixels.
+     */
+    public static final int CARD_DIMENSION = 960;
+    /**
+     * Upper bound for the encoded size of the card rendition, in bytes.
+     */
+    public static final int CARD_MAX_BYTES = 120 * 1024;
+    /**
+     * Longest edge of the thumbnail rendition, sized for grid cells, in pixels.
+     */
+    public static final int THUMBNAIL_DIMENSION = 360;
+    /**
+     * Upper bound for the encoded size of the thumbnail rendition, in bytes.
+     */
+    public static final int THUMBNAIL_MAX_BYTES = 30 * 1024;
+    /**
+     * Upper bound for the encoded size of profile pictures, in bytes.
+     */
+    public static final int PROFILE_MAX_BYTES = 100 * 1024;
+    /**
+     * MIME type of the encoded images, to be set on the uploaded files.
+     */
+    public static final String CONTENT_TYPE = "image/webp";
+    /**
+     * File extension of the encoded images.
+     */
+    public static final String FILE_EXTENSION = ".webp";
+    /**
+     * Encoder qualities tried in turn until the image fits its byte budget.
+     */
+    private static final int[] QUALITIES = {85, 75, 65, 55};
+    /**
+     * Factor the image is scaled by when it does not fit its byte budget at the lowest quality.
+     */
+    private static final float DOWNSCALE_FACTOR = 0.8f;
+    /**
+     * The image is not scaled below this longest edge to meet its byte budget, in pixels.
+     */
+    private static final int MIN_DIMENSION = 320;
+
+    /**
+     * Single background thread on which all images are processed.
+     */
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+    /**
+     * Handler used to deliver results on the main thread.
+     */
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * A processed image.
+     */
+    public static class ProcessedImage
+    {
+        /**
+         * The upright, scaled image, for previews.
+         */
+        public final Bitmap bitmap;
+        /**
+         * The image encoded as WebP, ready for upload.
+         */
+        public final byte[] data;
+        /**
+         * The card rendition encoded as WebP, or null if renditions were not requested.
+         */
+        public final byte[] cardData;
+        /**
+         * The thumbnail rendition encoded as WebP, or null if renditions were not requested.
+         */
+        public final byte[] thumbnailData;
+
+        /**
+         * Constructs a new {@code ProcessedImage}.
+         *
+         * @param bitmap        The upright, scaled image.
+         * @param data          The encoded image.
+         * @param cardData      The encoded card rendition, may be null.
+         * @param thumbnailData The encoded thumbnail rendition, may be null.
+         */
+        ProcessedImage(Bitmap bitmap, byte[] data, byte[] cardData, byte[] thumbnailData)
+        {
+            this.bitmap = bitmap;
+            this.data = data;
+            this.cardData = cardData;
+            this.thumbnailData = thumbnailData;
+        }
+    }
+
+    /**
+     * Callback interface for receiving a processed image.
+     */
+    public interface OnImageProcessedListener
+    {
+        /**
+         * Called on the main thread with the processed image.
+         *
+         * @param image The processed image.
+         */
+        void onImageProcessed(ProcessedImage image);
+
+        /**
+         * Called on the main thread if the image could not be read or decoded.
+         *
+         * @param e The exception that occurred.
+         */
+        void onError(Exception e);
+    }
+
+    /**
+     * Decodes, rotates, scales and encodes an image in the background.
+     *
+     * @param context      Any context; only its content resolver is used.
+     * @param uri          The URI of the image.
+     * @param maxDimension The maximum length of the image's longer edge, in pixels.
+     * @param maxBytes     The byte budget of the encoded image.
+     * @param listener     The listener to receive the result.
+     */
+    public static void process(Context context, Uri uri, int maxDimension, int maxBytes, OnImageProcessedListener listener)
+    {
+        process(context, uri, maxDimension, maxBytes, false, listener);
+    }
+
+    /**
+     * Decodes, rotates, scales and encodes a menu, menu item or restaurant image in the background,
+     * together with its card and thumbnail renditions.
+     * The image is decoded once; the renditions are scaled down from the decoded bitmap.
+     *
+     * @param context  Any context; only its content resolver is used.
+     * @param uri      The URI of the image.
+     * @param listener The listener to receive the result.
+     */
+    public static void processWithRenditions(Context context, Uri uri, OnImageProcessedListener listener)
+    {
+        process(context, uri, MAX_DIMENSION, MAX_BYTES, true, listener);
+    }
+
+    /**
+     * Decodes, rotates, scales and encodes an image in the background, optionally with renditions.
+     *
+     * @param context        Any context; only its content resolver is used.
+     * @param uri            The URI of the image.
+     * @param maxDimension   The maximum length of the image's longer edge, in pixels.
+     * @param maxBytes       The byte budget of the encoded image.
+     * @param withRenditions Whether to also encode the card and thumbnail renditions.
+     * @param listener       The listener to receive the result.
+     */
+    private static void process(Context context, Uri uri, int maxDimension, int maxBytes, boolean withRenditions,
+                                OnImageProcessedListener listener)
+    {
+        ContentResolver resolver = context.getApplicationContext().getContentResolver();
+        executor.execute(() ->
+        {
+            try
+            {
+                Bitmap bitmap = decode(resolver, uri, maxDimension);
+                byte[] data = encode(bitmap, maxBytes);
+                byte[] cardData = withRenditions ? encodeRendition(bitmap, CARD_DIMENSION, CARD_MAX_BYTES) : null;
+                byte[] thumbnailData = withRenditions ? encodeRendition(bitmap, THUMBNAIL_DIMENSION, THUMBNAIL_MAX_BYTES) : null;
+                Log.d(TAG, "Processed " + uri + " to " + bitmap.getWidth() + "x" + bitmap.getHeight() + ", " + data.length + " bytes"
+                        + (withRenditions ? " (card " + cardData.length + ", thumbnail " + thumbnailData.length + ")" : ""));
+                mainHandler.post(() -> listener.onImageProcessed(new ProcessedImage(bitmap, data, cardData, thumbnailData)));
+            } catch(IOException | RuntimeException | OutOfMemoryError e)
+            {
+                Log.e(TAG, "Error processing image " + uri, e);
+                Exception error = e instanceof Exception ? (Exception) e : new IOException("Image too large", e);
+                mainHandler.post(() -> listener.onError(error));
+            }
+        });
+    }
+
+    /**
+     * Decodes an image upright with its longer edge at most {@code maxDimension}.
+     * From Android 9 {@link ImageDecoder} decodes directly to the target size and applies the EXIF
+     * orientation itself; before that the image is subsampled while decoding and then rotated and
+     * scaled in one step.
+     *
+     * @param resolver     The content resolver to read the image with.
+     * @param uri          The URI of the image.
+     * @param maxDimension The maximum length of the longer edge, in pixels.
+     * @return The decoded image.
+     * @throws IOException If the image cannot be read or decoded.
+     */
+    private static Bitmap decode(ContentResolver resolver, Uri uri, int maxDimension) throws IOException
+    {
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.P)
+        {
+            ImageDecoder.Source source = ImageDecoder.createSource(resolver, uri);
+            return ImageDecoder.decodeBitmap(source, (decoder, info, src) ->
+            {
+                int width = info.getSize().getWidth();
+                int height = info.getSize().getHeight();
+                float scale = Math.min(1f, (float) maxDimension / Math.max(width, height));
+                decoder.setTargetSize(Math.max(1, Math.round(width * scale)), Math.max(1, Math.round(height * scale)));
+                decoder.setAllocator(ImageDecoder.ALLOCATOR_SOFTWARE); // Keep the pixels accessible for encoding and rescaling
+            });
+        }
+
+        // Read the dimensions only
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try(InputStream inputStream = open(resolver, uri))
+        {
+            BitmapFactory.decodeStream(inputStream, null, options);
+        }
+        if(options.outWidth <= 0 || options.outHeight <= 0) throw new IOException("Not an image: " + uri);
+
+        // Largest power of two that keeps the longer edge at or above maxDimension
+        int sampleSize = 1;
+        while(Math.max(options.outWidth, options.outHeight) / (sampleSize * 2) >= maxDimension)
+        {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        Bitmap sampled;
+        try(InputStream inputStream = open(resolver, uri))
+        {
+            sampled = BitmapFactory.decodeStream(inputStream, null, options);
+        }
+        if(sampled == null) throw new IOException("Cannot decode " + uri);
+
+        int orientation;
+        try(InputStream inputStream = open(resolver, uri))
+        {
+            orientation = new ExifInterface(inputStream).getAttributeInt(
+                    ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        }
+
+        Matrix matrix = new Matrix();
+        float scale = Math.min(1f, (float) maxDimension / Math.max(sampled.getWidth(), sampled.getHeight()));
+        matrix.postScale(scale, scale);
+        switch(orientation)
+        {
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.postRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.postRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.postRotate(270);
+                break;
+        }
+        if(matrix.isIdentity()) return sampled;
+
+        Bitmap upright = Bitmap.createBitmap(sampled, 0, 0, sampled.getWidth(), sampled.getHeight(), matrix, true);
+        if(upright != sampled) sampled.recycle();
+        return upright;
+    }
+
+    /**
+     * Encodes an image as WebP within a byte budget.
+     * Lower qualities are tried first; if even the lowest one exceeds the budget, the image is scaled
+     * down and tried again, until it fits or reaches {@link #MIN_DIMENSION}.
+     *
+     * @param bitmap   The image.
+     * @param maxBytes The byte budget.
+     * @return The encoded image; over budget only if it could not be made to fit.
+     */
+    static byte[] encode(Bitmap bitmap, int maxBytes)
+    {
+        Bitmap.CompressFormat format = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                ? Bitmap.CompressFormat.WEBP_LOSSY
+                : Bitmap.CompressFormat.WEBP; // Lossy below quality 100
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Bitmap current = bitmap;
+        while(true)
+        {
+            for(int quality : QUALITIES)
+            {
+                out.reset();
+                current.compress(format, quality, out);
+                if(out.size() <= maxBytes) return finish(out, current, bitmap);
+            }
+            int longerEdge = Math.max(current.getWidth(), current.getHeight());
+            if(longerEdge * DOWNSCALE_FACTOR < MIN_DIMENSION) return finish(out, current, bitmap);
+
+            Bitmap smaller = Bitmap.createScaledBitmap(current,
+                    Math.max(1, Math.round(current.getWidth() * DOWNSCALE_FACTOR)),
+                    Math.max(1, Math.round(current.getHeight() * DOWNSCALE_FACTOR)), true);
+            if(current != bitmap) current.recycle();
+            current = smaller;
+        }
+    }
+
+    /**
+     * Scales an image down so that its longer edge is at most {@code maxDimension} and encodes it.
+     * The scaled copy is released afterwards; the caller's bitmap is kept.
+     *
+     * @param bitmap       The full-size image.
+     * @param maxDimension The maximum length of the rendition's longer edge, in pixels.
+     * @param maxBytes     The byte budget of the rendition.
+     * @return The encoded rendition.
+     */
+    private static byte[] encodeRendition(Bitmap bitmap, int maxDimension, int maxBytes)
+    {
+        float scale = (float) maxDimension / Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if(scale >= 1f) return encode(bitmap, maxBytes);
+
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap,
+                Math.max(1, Math.round(bitmap.getWidth() * scale)),
+                Math.max(1, Math.round(bitmap.getHeight() * scale)), true);
+        byte[] data = encode(scaled, maxBytes);
+        if(scaled != bitmap) scaled.recycle();
+        return data;
+    }
+
+    /**
+     * Returns the encoded bytes, releasing the downscaled copy used for encoding if there is one.
+     *
+     * @param out      The encoder output.
+     * @param current  The bitmap that was encoded last.
+     * @param original The caller's bitmap, which is kept.
+     * @return The encoded bytes.
+     */
+    private static byte[] finish(ByteArrayOutputStream out, Bitmap current, Bitmap original)
+    {
+        if(current != original) current.recycle();
+        return out.toByteArray();
+    }
+
+    /**
+     * Opens an image for reading.
+     *
+     * @param resolver The content resolver.
+     * @param uri      The URI of the image.
+     * @return The stream.
+     * @throws IOException If the image cannot be opened.
+     */
+    private static InputStream open(ContentResolver resolver, Uri uri) throws IOException
+    {
+        InputStream inputStream = resolver.openInputStream(uri);
+        if(inputStream == null) throw new IOException("Cannot open " + uri);
+        return inputStream;
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.restaurantapp.utils;
+
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.google.firebase.storage.FirebaseStorage;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+
+/**
+ * Naming and lookup of the renditions of uploaded images.
+ * Menu, menu item and restaurant images are stored in three sizes produced by
+ * {@link ImageProcessor#processWithRenditions}: the full image for detail screens, a card rendition
+ * for full-width list rows and a thumbnail for grid cells. The renditions are stored next to the
+ * full image, with their suffix inserted before the extension, and their URLs are kept in the
+ * document fields {@link #FIELD_CARD} and {@link #FIELD_THUMBNAIL}.
+ * Lists pick the rendition matching their view size through {@link #pick(String, String)}, falling
+ * back to the full image for documents written before renditions existed.
+ */
+public class ImageRenditions
+{
+    /**
+     * Tag for logging purposes.
+     */
+    private static final String TAG = "ImageRenditions";
+    /**
+     * Index of the full image in the per-rendition arrays.
+     */
+    static final int FULL = 0;
+    /**
+     * Index of the card rendition in the per-rendition arrays.
+     */
+    static final int CARD = 1;
+    /**
+     * Index of the thumbnail rendition in the per-rendition arrays.
+     */
+    static final int THUMBNAIL = 2;
+    /**
+     * Number of renditions, including the full image.
+     */
+    static final int COUNT = 3;
+    /**
+     * Name of the document field holding the card rendition's URL.
+     */
+    public static final String FIELD_CARD = "cardImageURL";
+    /**
+     * Name of the document field holding the thumbnail rendition's URL.
+     */
+    public static final String FIELD_THUMBNAIL = "thumbnailImageURL";
+    /**
+     * Suffix of each rendition's file name, indexed by rendition; the full image has none.
+     */
+    private static final String[] SUFFIXES = {"", "_card", "_thumb"};
+
+    /**
+     * Returns the URL a view should load: the rendition if the image has one, the full image otherwise.
+     *
+     * @param renditionURL The URL of the rendition matching the view's size, may be null or empty.
+     * @param fullURL      The URL of the full image, may be null.
+     * @return The URL to load, or null if there is no image.
+     */
+    public static String pick(String renditionURL, String fullURL)
+    {
+        return !TextUtils.isEmpty(renditionURL) ? renditionURL : fullURL;
+    }
+
+    /**
+     * Returns the storage path of a rendition, next to the full image.
+     *
+     * @param fullPath  The storage path of the full image.
+     * @param rendition The rendition index, {@link #FULL}, {@link #CARD} or {@link #THUMBNAIL}.
+     * @return The rendition's storage path.
+     */
+    static String renditionPath(String fullPath, int rendition)
+    {
+        int extension = fullPath.lastIndexOf('.');
+        if(extension <= fullPath.lastIndexOf('/')) return fullPath + SUFFIXES[rendition];
+        return fullPath.substring(0, extension) + SUFFIXES[rendition] + fullPath.substring(extension);
+    }
+
+    /**
+     * Deletes the files behind the given download URLs, ignoring null or unrecognized URLs.
+     * Failures are only logged, since a leftover file does not affect the app.
+     *
+     * @param storage The storage instance.
+     * @param urls    The download URLs of the files.
+     */
+    public static void deleteFiles(FirebaseStorage storage, String... urls)
+    {
+        for(String url : urls)
+        {
+            String path = storagePath(url);
+            if(path == null) continue;
+            storage.getReference().child(path).delete()
+                    .addOnSuccessListener(aVoid -> Log.d(TAG, "Old image deleted: " + path))
+                    .addOnFailureListener(e -> Log.e(TAG, "Error deleting old image: " + path, e));
+        }
+    }
+
+    /**
+     * Extracts the storage path from a Firebase Storage download URL.
+     *
+     * @param url The download URL, may be null.
+     * @return The decoded path, or null if the URL is null or not a download URL.
+     */
+    private static String storagePath(String url)
+    {
+        if(TextUtils.isEmpty(url) || !url.contains("/o/")) return null;
+        String urlPath = url.split("/o/")[1];
+        if(urlPath.contains("?"))
+        {
+            urlPath = urlPath.split("\\?")[0];
+        }
+        try
+        {
+            return URLDecoder.decode(urlPath, "UTF-8");
+        } catch(UnsupportedEncodingException e)
+        {
+            Log.e(TAG, "Error decoding storage path: " + url, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,644 @@
+package com.example.restaurantapp.utils;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.storage.FirebaseStorage;
+import com.google.firebase.storage.StorageException;
+import com.google.firebase.storage.StorageMetadata;
+import com.google.firebase.storage.StorageReference;
+import com.google.firebase.storage.UploadTask;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent queue of image uploads to Firebase Storage, run by WorkManager.
+ * An enqueued image and its renditions are written to app-private files and handed to an
+ * {@link UploadWorker} naming the Firestore document field that should point at the image, so the
+ * upload no longer depends on the screen, or the process, that started it. WorkManager runs the
+ * work once the device is online, also after the app was killed or the device restarted, and
+ * retries failed attempts with exponential backoff. The uploads of each document form one unique
+ * work to which later uploads are appended, so they run one after the other in the order they were
+ * enqueued, and an older image can neither replace a newer one nor delete its files.
+ * Every file is sent through a resumable upload session. The session URIs and the download URLs of
+ * finished renditions are the only state kept in a small SQLite database, keyed by work ID, so an
+ * interrupted attempt continues where it stopped.
+ * Once all files are uploaded, the document's image fields are updated, the files of the image they
+ * pointed at before are deleted and, for menu and menu item images, the restaurant's menu bundle is
+ * republished.
+ */
+public class ImageUploadQueue extends SQLiteOpenHelper
+{
+    /**
+     * Tag for logging purposes.
+     */
+    private static final String TAG = "ImageUploadQueue";
+    /**
+     * Name of the database file.
+     */
+    private static final String DATABASE_NAME = "image_uploads.db";
+    /**
+     * Version of the database schema.
+     */
+    private static final int DATABASE_VERSION = 2;
+    /**
+     * Name of the table holding the progress of started uploads.
+     */
+    private static final String TABLE = "uploads";
+    /**
+     * Directory under the app's files directory holding the encoded images of pending uploads.
+     */
+    private static final String DIRECTORY = "image_uploads";
+    /**
+     * Prefix of the name of each document's unique work.
+     */
+    private static final String WORK_NAME_PREFIX = "imageUpload:";
+    /**
+     * Number of failed attempts after which an upload is given up.
+     */
+    private static final int MAX_ATTEMPTS = 8;
+    /**
+     * Delay before the first retry of a failed upload, in milliseconds; doubled on every further
+     * failure. WorkManager allows no less than {@code WorkRequest.MIN_BACKOFF_MILLIS}.
+     */
+    private static final long INITIAL_BACKOFF_MS = 10_000;
+    /**
+     * Input data keys holding the local file of each rendition, indexed like {@link ImageRenditions#FULL}.
+     */
+    private static final String[] FILE_KEYS = {"fullFile", "cardFile", "thumbnailFile"};
+    /**
+     * Columns holding the upload session URI of each rendition.
+     */
+    private static final String[] SESSION_COLUMNS = {"fullSession", "cardSession", "thumbnailSession"};
+    /**
+     * Columns holding the download URL of each uploaded rendition.
+     */
+    private static final String[] URL_COLUMNS = {"fullURL", "cardURL", "thumbnailURL"};
+
+    /**
+     * The shared queue instance, created on first use.
+     */
+    private static ImageUploadQueue instance;
+
+    /**
+     * The application context, used to reach WorkManager.
+     */
+    private final Context context;
+    /**
+     * Single background thread on which files are written and upload sessions are stored.
+     */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    /**
+     * Handler used to deliver results on the main thread.
+     */
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    /**
+     * Directory holding the encoded images of pending uploads.
+     */
+    private final File directory;
+    /**
+     * Listeners notified when an upload finishes. Main thread only.
+     */
+    private final List<OnUploadFinishedListener> listeners = new ArrayList<>();
+
+    /**
+     * A pending upload, as described by its work's input data and its stored progress.
+     */
+    private static class Job
+    {
+        /**
+         * The ID of the job's work.
+         */
+        String id;
+        /**
+         * Path of the Firestore document whose image is uploaded.
+         */
+        String documentPath;
+        /**
+         * Name of the document field holding the full image's URL.
+         */
+        String imageField;
+        /**
+         * ID of the restaurant whose menu bundle is republished afterwards, or null.
+         */
+        String restaurantID;
+        /**
+         * Storage path of the full image; the renditions are stored beside it.
+         */
+        String storagePath;
+        /**
+         * Local file of each rendition, or null for renditions the image does not have.
+         */
+        final String[] files = new String[ImageRenditions.COUNT];
+        /**
+         * Upload session URI of each rendition whose upload has started but not finished.
+         */
+        final String[] sessions = new String[ImageRenditions.COUNT];
+        /**
+         * Download URL of each rendition that has been uploaded.
+         */
+        final String[] urls = new String[ImageRenditions.COUNT];
+    }
+
+    /**
+     * Callback interface for learning about finished uploads.
+     */
+    public interface OnUploadFinishedListener
+    {
+        /**
+         * Called on the main thread once an image has been uploaded and its document updated.
+         *
+         * @param documentPath The path of the updated document.
+         * @param imageURL     The URL of the uploaded full image.
+         */
+        void onUploadFinished(String documentPath, String imageURL);
+
+        /**
+         * Called on the main thread when an upload has been given up.
+         *
+         * @param documentPath The path of the document the image was meant for.
+         * @param e            The last error.
+         */
+        void onUploadFailed(String documentPath, Exception e);
+    }
+
+    /**
+     * Runs one upload: uploads the renditions that are not uploaded yet, then runs the follow-up
+     * steps. Failed attempts are retried by WorkManager until {@link #MAX_ATTEMPTS} is reached.
+     * A given-up upload still ends its work successfully, so the uploads appended after it for the
+     * same document run instead of failing with it.
+     */
+    public static class UploadWorker extends Worker
+    {
+        /**
+         * The upload currently running, cancelled when the work is stopped.
+         */
+        private volatile UploadTask currentUpload;
+
+        /**
+         * Constructs a new {@code UploadWorker}; called by WorkManager.
+         *
+         * @param context The application {@link Context}.
+         * @param params  The parameters of the work.
+         */
+        public UploadWorker(@NonNull Context context, @NonNull WorkerParameters params)
+        {
+            super(context, params);
+        }
+
+        /**
+         * Uploads the image of this work's job and points its document at it.
+         * Runs on a WorkManager background thread.
+         *
+         * @return Success once the upload finished or was given up, retry after a failed attempt.
+         */
+        @NonNull
+        @Override
+        public Result doWork()
+        {
+            ImageUploadQueue queue = getInstance(getApplicationContext());
+            Job job = queue.readJob(getId().toString(), getInputData());
+            try
+            {
+                for(int rendition = 0; rendition < ImageRenditions.COUNT; rendition++)
+                {
+                    if(job.files[rendition] == null || job.urls[rendition] != null) continue;
+                    if(!new File(job.files[rendition]).exists())
+                    {
+                        queue.giveUp(job, new FileNotFoundException(job.files[rendition]));
+                        return Result.success();
+                    }
+                    upload(queue, job, rendition);
+                }
+                return updateDocument(queue, job);
+            } catch(ExecutionException | CancellationException | InterruptedException e)
+            {
+                if(isStopped()) return Result.retry(); // WorkManager runs it again once the constraints are met
+
+                Exception cause = e instanceof ExecutionException && e.getCause() instanceof Exception
+                        ? (Exception) e.getCause() : e;
+                int attempts = getRunAttemptCount() + 1;
+                if(attempts >= MAX_ATTEMPTS)
+                {
+                    queue.giveUp(job, cause);
+                    return Result.success();
+                }
+                Log.w(TAG, "Upload for " + job.documentPath + " failed (attempt " + attempts + "), retrying", cause);
+                return Result.retry();
+            }
+        }
+
+        /**
+         * Cancels the running upload when WorkManager stops the work, e.g. because the network was lost.
+         */
+        @Override
+        public void onStopped()
+        {
+            UploadTask upload = currentUpload;
+            if(upload != null) upload.cancel();
+        }
+
+        /**
+         * Uploads one rendition, continuing its stored session if there is one, and stores its URL.
+         *
+         * @param queue     The queue storing the progress.
+         * @param job       The job.
+         * @param rendition The index of the rendition.
+         * @throws ExecutionException   If the upload or the download URL request failed.
+         * @throws InterruptedException If the worker thread was interrupted.
+         */
+        private void upload(ImageUploadQueue queue, Job job, int rendition) throws ExecutionException, InterruptedException
+        {
+            StorageReference ref = FirebaseStorage.getInstance().getReference()
+                    .child(ImageRenditions.renditionPath(job.storagePath, rendition));
+            StorageMetadata metadata = new StorageMetadata.Builder()
+                    .setContentType(ImageProcessor.CONTENT_TYPE)
+                    .build();
+            Uri file = Uri.fromFile(new File(job.files[rendition]));
+            String session = job.sessions[rendition];
+            UploadTask uploadTask = session != null
+                    ? ref.putFile(file, metadata, Uri.parse(session))
+                    : ref.putFile(file, metadata);
+            uploadTask.addOnProgressListener(queue.executor, snapshot ->
+            {
+                Uri sessionUri = snapshot.getUploadSessionUri();
+                if(sessionUri != null && !sessionUri.toString().equals(job.sessions[rendition]))
+                {
+                    job.sessions[rendition] = sessionUri.toString(); // Lets a later attempt resume this upload
+                    queue.saveProgress(job);
+                }
+            });
+
+            currentUpload = uploadTask;
+            try
+            {
+                Tasks.await(uploadTask);
+            } catch(ExecutionException | CancellationException e)
+            {
+                // A cancelled session is closed on the server, and a rejected one cannot be resumed either
+                if(e instanceof CancellationException || isSessionRejected(e.getCause()))
+                {
+                    job.sessions[rendition] = null;
+                    queue.saveProgress(job);
+                }
+                throw e;
+            } finally
+            {
+                currentUpload = null;
+            }
+
+            job.urls[rendition] = Tasks.await(ref.getDownloadUrl()).toString();
+            job.sessions[rendition] = null;
+            queue.saveProgress(job);
+        }
+
+        /**
+         * Points the job's document at the uploaded image, then deletes the files of the image it
+         * pointed at before and, for menu images, republishes the menu bundle.
+         * If the document was deleted in the meantime, the uploaded files are deleted and the job is given up.
+         *
+         * @param queue The queue notifying the listeners.
+         * @param job   The job whose renditions have all been uploaded.
+         * @return Success, since the job is over either way.
+         * @throws ExecutionException   If reading or updating the document failed.
+         * @throws InterruptedException If the worker thread was interrupted.
+         */
+        private Result updateDocument(ImageUploadQueue queue, Job job) throws ExecutionException, InterruptedException
+        {
+            String[] fields = {job.imageField, ImageRenditions.FIELD_CARD, ImageRenditions.FIELD_THUMBNAIL};
+            DocumentReference documentRef = FirebaseFirestore.getInstance().document(job.documentPath);
+            DocumentSnapshot snapshot = Tasks.await(documentRef.get());
+            if(!snapshot.exists())
+            {
+                queue.giveUp(job, new IllegalStateException("Document no longer exists: " + job.documentPath));
+                return Result.success();
+            }
+
+            List<String> oldURLs = new ArrayList<>();
+            Map<String, Object> updates = new HashMap<>();
+            for(int i = 0; i < ImageRenditions.COUNT; i++)
+            {
+                if(job.files[i] == null) continue;
+                String oldURL = snapshot.getString(fields[i]);
+                if(oldURL != null && !oldURL.equals(job.urls[i])) oldURLs.add(oldURL);
+                updates.put(fields[i], job.urls[i]);
+            }
+            Tasks.await(documentRef.update(updates));
+
+            ImageRenditions.deleteFiles(FirebaseStorage.getInstance(), oldURLs.toArray(new String[0]));
+            if(job.restaurantID != null)
+            {
+                // Republishes so that diners see the new image; failures are logged by MenuRepository
+                MenuRepository.publishMenuBundle(job.restaurantID);
+            }
+            queue.finish(job, null);
+            return Result.success();
+        }
+    }
+
+    /**
+     * Constructs a new {@code ImageUploadQueue}.
+     *
+     * @param context The application {@link Context}.
+     */
+    private ImageUploadQueue(Context context)
+    {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this.context = context;
+        directory = new File(context.getFilesDir(), DIRECTORY);
+    }
+
+    /**
+     * Returns the shared queue instance.
+     *
+     * @param context Any {@link Context}; its application context is used.
+     * @return The shared {@code ImageUploadQueue}.
+     */
+    public static synchronized ImageUploadQueue getInstance(Context context)
+    {
+        if(instance == null)
+        {
+            instance = new ImageUploadQueue(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Creates the progress table.
+     *
+     * @param db The database.
+     */
+    @Override
+    public void onCreate(SQLiteDatabase db)
+    {
+        db.execSQL("CREATE TABLE " + TABLE + " ("
+                + "workID TEXT PRIMARY KEY, "
+                + "fullSession TEXT, cardSession TEXT, thumbnailSession TEXT, "
+                + "fullURL TEXT, cardURL TEXT, thumbnailURL TEXT)");
+    }
+
+    /**
+     * Drops and recreates the progress table.
+     *
+     * @param db         The database.
+     * @param oldVersion The old schema version.
+     * @param newVersion The new schema version.
+     */
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion)
+    {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+        onCreate(db);
+    }
+
+    /**
+     * Registers a listener for finished uploads.
+     *
+     * @param listener The listener.
+     */
+    public void addListener(OnUploadFinishedListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener added with {@link #addListener(OnUploadFinishedListener)}.
+     *
+     * @param listener The listener.
+     */
+    public void removeListener(OnUploadFinishedListener listener)
+    {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Queues an image for upload. The encoded bytes are copied to app-private files, so the
+     * caller may drop the image right away.
+     *
+     * @param image        The image produced by {@link ImageProcessor}, with or without renditions.
+     * @param storagePath  The storage path of the full image.
+     * @param documentPath The path of the Firestore document to point at the image.
+     * @param imageField   The name of the document field holding the full image's URL.
+     * @param restaurantID The ID of the restaurant whose menu bundle must be republished afterwards,
+     *                     or null if the document is not part of a menu.
+     */
+    public void enqueue(ImageProcessor.ProcessedImage image, String storagePath, String documentPath,
+                        String imageField, String restaurantID)
+    {
+        byte[][] data = {image.data, image.cardData, image.thumbnailData};
+        executor.execute(() ->
+        {
+            try
+            {
+                if(!directory.isDirectory() && !directory.mkdirs())
+                {
+                    throw new IOException("Cannot create " + directory);
+                }
+
+                Data.Builder input = new Data.Builder()
+                        .putString("documentPath", documentPath)
+                        .putString("imageField", imageField)
+                        .putString("restaurantID", restaurantID)
+                        .putString("storagePath", storagePath);
+                String name = UUID.randomUUID().toString();
+                for(int i = 0; i < ImageRenditions.COUNT; i++)
+                {
+                    if(data[i] == null) continue;
+                    File file = new File(directory, ImageRenditions.renditionPath(name + ImageProcessor.FILE_EXTENSION, i));
+                    try(FileOutputStream out = new FileOutputStream(file))
+                    {
+                        out.write(data[i]);
+                    }
+                    input.putString(FILE_KEYS[i], file.getPath());
+                }
+
+                OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(UploadWorker.class)
+                        .setInputData(input.build())
+                        .setConstraints(new Constraints.Builder()
+                                .setRequiredNetworkType(NetworkType.CONNECTED)
+                                .build())
+                        .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, INITIAL_BACKOFF_MS, TimeUnit.MILLISECONDS)
+                        .build();
+                // Appended to the document's pending uploads, so it runs after them
+                WorkManager.getInstance(context).enqueueUniqueWork(WORK_NAME_PREFIX + documentPath,
+                        ExistingWorkPolicy.APPEND_OR_REPLACE, request);
+                Log.d(TAG, "Queued upload of " + storagePath + " for " + documentPath);
+            } catch(Exception e)
+            {
+                Log.e(TAG, "Failed to queue upload for " + documentPath, e);
+                mainHandler.post(() -> notifyFailed(documentPath, e));
+            }
+        });
+    }
+
+    /**
+     * Builds a job from its work's input data and its stored progress.
+     *
+     * @param workID The ID of the work.
+     * @param input  The input data of the work.
+     * @return The job.
+     */
+    private Job readJob(String workID, Data input)
+    {
+        Job job = new Job();
+        job.id = workID;
+        job.documentPath = input.getString("documentPath");
+        job.imageField = input.getString("imageField");
+        job.restaurantID = input.getString("restaurantID");
+        job.storagePath = input.getString("storagePath");
+        for(int i = 0; i < ImageRenditions.COUNT; i++)
+        {
+            job.files[i] = input.getString(FILE_KEYS[i]);
+        }
+
+        try(Cursor cursor = getWritableDatabase().query(TABLE, null, "workID = ?", new String[]{workID}, null, null, null))
+        {
+            if(cursor.moveToFirst())
+            {
+                for(int i = 0; i < ImageRenditions.COUNT; i++)
+                {
+                    job.sessions[i] = cursor.getString(cursor.getColumnIndexOrThrow(SESSION_COLUMNS[i]));
+                    job.urls[i] = cursor.getString(cursor.getColumnIndexOrThrow(URL_COLUMNS[i]));
+                }
+            }
+        } catch(Exception e)
+        {
+            Log.w(TAG, "Failed to read progress of upload " + workID + ", starting over", e);
+        }
+        return job;
+    }
+
+    /**
+     * Stores a job's sessions and URLs.
+     *
+     * @param job The job.
+     */
+    private void saveProgress(Job job)
+    {
+        ContentValues values = new ContentValues();
+        values.put("workID", job.id);
+        for(int i = 0; i < ImageRenditions.COUNT; i++)
+        {
+            values.put(SESSION_COLUMNS[i], job.sessions[i]);
+            values.put(URL_COLUMNS[i], job.urls[i]);
+        }
+        try
+        {
+            getWritableDatabase().insertWithOnConflict(TABLE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        } catch(Exception e)
+        {
+            Log.w(TAG, "Failed to store progress of upload " + job.id, e);
+        }
+    }
+
+    /**
+     * Deletes the files a job already uploaded and ends the job.
+     *
+     * @param job The job to give up.
+     * @param e   The error that caused it.
+     */
+    private void giveUp(Job job, Exception e)
+    {
+        Log.e(TAG, "Giving up upload for " + job.documentPath, e);
+        ImageRenditions.deleteFiles(FirebaseStorage.getInstance(), job.urls);
+        finish(job, e);
+    }
+
+    /**
+     * Removes a finished job's progress and local files, and notifies the listeners.
+     *
+     * @param job   The finished job.
+     * @param error The error if the job was given up, null if it succeeded.
+     */
+    private void finish(Job job, Exception error)
+    {
+        try
+        {
+            getWritableDatabase().delete(TABLE, "workID = ?", new String[]{job.id});
+        } catch(Exception e)
+        {
+            Log.w(TAG, "Failed to remove progress of upload " + job.id, e);
+        }
+        for(String path : job.files)
+        {
+            if(path != null && !new File(path).delete()) Log.w(TAG, "Failed to delete " + path);
+        }
+
+        mainHandler.post(() ->
+        {
+            if(error != null)
+            {
+                notifyFailed(job.documentPath, error);
+            } else
+            {
+                Log.d(TAG, "Uploaded " + job.storagePath + " for " + job.documentPath);
+                for(OnUploadFinishedListener listener : new ArrayList<>(listeners))
+                {
+                    listener.onUploadFinished(job.documentPath, job.urls[ImageRenditions.FULL]);
+                }
+            }
+        });
+    }
+
+    /**
+     * Notifies the listeners that an upload was given up.
+     *
+     * @param documentPath The path of the document the image was meant for.
+     * @param e            The error.
+     */
+    private void notifyFailed(String documentPath, Exception e)
+    {
+        for(OnUploadFinishedListener listener : new ArrayList<>(listeners))
+        {
+            listener.onUploadFailed(documentPath, e);
+        }
+    }
+
+    /**
+     * Returns whether an upload failed because the server no longer accepts its session.
+     *
+     * @param e The error.
+     * @return True for client errors reported by Storage, false otherwise.
+     */
+    private static boolean isSessionRejected(Throwable e)
+    {
+        if(!(e instanceof StorageException)) return false;
+        int httpResultCode = ((StorageException) e).getHttpResultCode();
+        return httpResultCode >= 400 && httpResultCode < 500;
+    }
+}
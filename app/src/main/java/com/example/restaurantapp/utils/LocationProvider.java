@@ -0,0 +1,359 @@
+package com.example.restaurantapp.utils;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.location.Location;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+
+import com.google.android.gms.location.CurrentLocationRequest;
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.Priority;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shared source of the user's location.
+ * A single fix is kept for the whole app; callers state how old a fix they accept and are answered
+ * from it when it is fresh enough. Otherwise one location request is made and every caller waiting
+ * at that time receives its result, so any number of concurrent callers costs one request. A caller
+ * that joined a request made for a laxer maximum age, and whose own maximum age the resulting fix
+ * does not meet, is carried over to one follow-up request made with its own maximum age.
+ * Screens that follow the user can also subscribe to a throttled stream of updates, which runs a
+ * single balanced-power location request while at least one subscriber is registered.
+ * All callbacks are delivered on the main thread.
+ */
+public class LocationProvider
+{
+    /**
+     * Tag for logging purposes.
+     */
+    private static final String TAG = "LocationProvider";
+    /**
+     * Default maximum age of a fix that is still accepted, in milliseconds.
+     */
+    public static final long DEFAULT_MAX_AGE_MILLIS = 2 * 60 * 1000;
+    /**
+     * How long a single location request may listen for a fix, in milliseconds.
+     */
+    private static final long REQUEST_DURATION_MILLIS = 5000;
+    /**
+     * Desired interval between updates of the location stream, in milliseconds.
+     */
+    private static final long UPDATE_INTERVAL_MILLIS = 30 * 1000;
+    /**
+     * Minimum interval between updates of the location stream, in milliseconds.
+     */
+    private static final long MIN_UPDATE_INTERVAL_MILLIS = 10 * 1000;
+    /**
+     * Minimum distance the user has to move before the location stream delivers an update, in meters.
+     */
+    private static final float MIN_UPDATE_DISTANCE_METERS = 50;
+
+    /**
+     * The shared provider instance, created on first use.
+     */
+    private static LocationProvider instance;
+
+    /**
+     * Application context used for permission checks.
+     */
+    private final Context context;
+    /**
+     * Client used for all location requests.
+     */
+    private final FusedLocationProviderClient fusedLocationClient;
+    /**
+     * The most recent fix, null until one has been obtained.
+     */
+    private Location lastFix;
+    /**
+     * Callers waiting for the location request currently in flight; empty when none is.
+     */
+    private final List<PendingCaller> pendingCallers = new ArrayList<>();
+    /**
+     * Subscribers of the location stream.
+     */
+    private final List<OnLocationListener> subscribers = new ArrayList<>();
+    /**
+     * Callback receiving the updates of the location stream.
+     */
+    private final LocationCallback updateCallback = new LocationCallback()
+    {
+        @Override
+        public void onLocationResult(@NonNull LocationResult result)
+        {
+            Location location = result.getLastLocation();
+            if(location == null) return;
+            lastFix = location;
+            for(OnLocationListener subscriber : new ArrayList<>(subscribers))
+            {
+                subscriber.onLocation(location);
+            }
+        }
+    };
+
+    /**
+     * Callback interface for receiving the user's location.
+     */
+    public interface OnLocationListener
+    {
+        /**
+         * Called with the user's location.
+         *
+         * @param location The location, or null if it is unavailable (e.g. permission denied or no fix).
+         */
+        void onLocation(Location location);
+    }
+
+    /**
+     * A caller waiting for a location request, with the maximum age of the fix it accepts.
+     */
+    private static class PendingCaller
+    {
+        /**
+         * The listener to receive the location.
+         */
+        final OnLocationListener listener;
+        /**
+         * The maximum accepted age of the fix in milliseconds.
+         */
+        final long maxAgeMillis;
+        /**
+         * Whether the caller has already been carried over to a follow-up request; such a caller
+         * receives the next fix whatever its age, so a caller never waits for more than two requests.
+         */
+        boolean carriedOver = false;
+
+        /**
+         * Constructs a new {@code PendingCaller}.
+         *
+         * @param listener     The listener to receive the location.
+         * @param maxAgeMillis The maximum accepted age of the fix in milliseconds.
+         */
+        PendingCaller(OnLocationListener listener, long maxAgeMillis)
+        {
+            this.listener = listener;
+            this.maxAgeMillis = maxAgeMillis;
+        }
+    }
+
+    /**
+     * Constructs the provider.
+     *
+     * @param context The application context.
+     */
+    private LocationProvider(Context context)
+    {
+        this.context = context;
+        this.fusedLocationClient = LocationServices.getFusedLocationProviderClient(context);
+    }
+
+    /**
+     * Returns the shared provider instance.
+     *
+     * @param context Any context; only its application context is retained.
+     * @return The shared {@code LocationProvider}.
+     */
+    public static synchronized LocationProvider getInstance(Context context)
+    {
+        if(instance == null)
+        {
+            instance = new LocationProvider(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Returns whether the app holds a location permission.
+     *
+     * @return True if fine or coarse location access is granted, false otherwise.
+     */
+    public boolean hasPermission()
+    {
+        return ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED
+                || ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_COARSE_LOCATION) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    /**
+     * Returns the most recent fix without requesting a new one.
+     *
+     * @param maxAgeMillis The maximum accepted age of the fix in milliseconds.
+     * @return The last fix if it is at most {@code maxAgeMillis} old, null otherwise.
+     */
+    public Location getLastFix(long maxAgeMillis)
+    {
+        return isFresh(lastFix, maxAgeMillis) ? lastFix : null;
+    }
+
+    /**
+     * Delivers the user's location to the listener.
+     * The shared fix is used if it is at most {@code maxAgeMillis} old; otherwise the listener joins the
+     * location request in flight, or starts one if there is none. If the fix of a joined request turns
+     * out to be older than {@code maxAgeMillis}, one follow-up request is made for the listener.
+     *
+     * @param maxAgeMillis The maximum accepted age of the fix in milliseconds.
+     * @param listener     The listener to receive the location.
+     */
+    public void getLocation(long maxAgeMillis, OnLocationListener listener)
+    {
+        if(isFresh(lastFix, maxAgeMillis))
+        {
+            listener.onLocation(lastFix);
+            return;
+        }
+        if(!hasPermission())
+        {
+            listener.onLocation(null);
+            return;
+        }
+
+        pendingCallers.add(new PendingCaller(listener, maxAgeMillis));
+        if(pendingCallers.size() > 1) return; // A request is already in flight
+        requestFix(maxAgeMillis);
+    }
+
+    /**
+     * Starts a single location request on behalf of the pending callers.
+     *
+     * @param maxAgeMillis The maximum age of a fix the platform may answer with, in milliseconds.
+     */
+    private void requestFix(long maxAgeMillis)
+    {
+        CurrentLocationRequest request = new CurrentLocationRequest.Builder()
+                .setDurationMillis(REQUEST_DURATION_MILLIS)
+                .setMaxUpdateAgeMillis(maxAgeMillis) // Lets the platform answer from its own recent fix
+                .setPriority(Priority.PRIORITY_HIGH_ACCURACY)
+                .build();
+        try
+        {
+            fusedLocationClient.getCurrentLocation(request, null)
+                    .addOnCompleteListener(task ->
+                    {
+                        Location location = task.isSuccessful() ? task.getResult() : null;
+                        if(location != null)
+                        {
+                            lastFix = location;
+                        } else
+                        {
+                            Log.w(TAG, "No location fix available", task.getException());
+                        }
+                        deliverPending(location);
+                    });
+        } catch(SecurityException e)
+        {
+            Log.e(TAG, "Location permission revoked", e);
+            for(PendingCaller caller : pendingCallers)
+            {
+                caller.carriedOver = true; // Do not retry without permission
+            }
+            deliverPending(null);
+        }
+    }
+
+    /**
+     * Subscribes a listener to the throttled location stream.
+     * Updates arrive at most every {@link #MIN_UPDATE_INTERVAL_MILLIS} and only after the user has moved
+     * {@link #MIN_UPDATE_DISTANCE_METERS}. The shared fix, if any, is delivered immediately.
+     *
+     * @param listener The listener to receive updates.
+     */
+    public void requestUpdates(OnLocationListener listener)
+    {
+        if(subscribers.contains(listener)) return;
+        subscribers.add(listener);
+        if(lastFix != null)
+        {
+            listener.onLocation(lastFix);
+        }
+        if(subscribers.size() > 1 || !hasPermission()) return;
+
+        LocationRequest request = new LocationRequest.Builder(Priority.PRIORITY_BALANCED_POWER_ACCURACY, UPDATE_INTERVAL_MILLIS)
+                .setMinUpdateIntervalMillis(MIN_UPDATE_INTERVAL_MILLIS)
+                .setMinUpdateDistanceMeters(MIN_UPDATE_DISTANCE_METERS)
+                .build();
+        try
+        {
+            fusedLocationClient.requestLocationUpdates(request, updateCallback, Looper.getMainLooper());
+        } catch(SecurityException e)
+        {
+            Log.e(TAG, "Location permission revoked", e);
+        }
+    }
+
+    /**
+     * Unsubscribes a listener from the location stream, stopping the stream when no subscriber is left.
+     *
+     * @param listener The listener to remove.
+     */
+    public void removeUpdates(OnLocationListener listener)
+    {
+        if(subscribers.remove(listener) && subscribers.isEmpty())
+        {
+            fusedLocationClient.removeLocationUpdates(updateCallback);
+        }
+    }
+
+    /**
+     * Delivers the result of the request in flight to every caller that accepts it. Callers whose
+     * maximum age the fix exceeds are kept pending and a follow-up request is made for them, with
+     * the smallest of their maximum ages.
+     *
+     * @param location The location, or null if none was obtained.
+     */
+    private void deliverPending(Location location)
+    {
+        List<PendingCaller> callers = new ArrayList<>(pendingCallers);
+        pendingCallers.clear();
+
+        List<OnLocationListener> answered = new ArrayList<>();
+        long followUpMaxAgeMillis = Long.MAX_VALUE;
+        for(PendingCaller caller : callers)
+        {
+            if(location == null || caller.carriedOver || isFresh(location, caller.maxAgeMillis))
+            {
+                answered.add(caller.listener);
+            } else
+            {
+                caller.carriedOver = true;
+                pendingCallers.add(caller);
+                followUpMaxAgeMillis = Math.min(followUpMaxAgeMillis, caller.maxAgeMillis);
+            }
+        }
+
+        // Callers kept pending make listeners calling again during delivery join the follow-up
+        for(OnLocationListener listener : answered)
+        {
+            listener.onLocation(location);
+        }
+        if(followUpMaxAgeMillis != Long.MAX_VALUE)
+        {
+            Log.d(TAG, "Fix too old for " + pendingCallers.size() + " joined callers, requesting a fresher one");
+            requestFix(followUpMaxAgeMillis);
+        }
+    }
+
+    /**
+     * Returns whether a fix is at most the given age.
+     *
+     * @param location     The fix, may be null.
+     * @param maxAgeMillis The maximum accepted age in milliseconds.
+     * @return True if the fix exists and is recent enough, false otherwise.
+     */
+    private static boolean isFresh(Location location, long maxAgeMillis)
+    {
+        if(location == null) return false;
+        long ageMillis = (SystemClock.elapsedRealtimeNanos() - location.getElapsedRealtimeNanos()) / 1_000_000;
+        return ageMillis <= maxAgeMillis;
+    }
+}
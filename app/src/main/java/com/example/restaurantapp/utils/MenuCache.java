@@ -0,0 +1,498 @@
+package com.example.restaurantapp.utils;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.restaurantapp.models.Menu;
+import com.example.restaurantapp.models.MenuItem;
+import com.google.firebase.Timestamp;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Persistent on-device cache of restaurant menus, backed by a small SQLite database.
+ * Each row holds the complete menu of one restaurant (its {@link Menu}s and {@link MenuItem}s
+ * serialized as JSON) together with the restaurant's {@code lastUpdated} and {@code menuVersion}
+ * at the time it was stored, so callers can render a cached menu immediately and decide whether
+ * it is still current by comparing those two stamps with the restaurant document.
+ * The cache is bounded by the total byte size of the stored menus; when it grows beyond
+ * {@link #MAX_CACHE_BYTES}, the least recently read restaurants are evicted first.
+ * Database work runs on a single background thread and results are delivered on the main thread.
+ */
+public class MenuCache extends SQLiteOpenHelper
+{
+    /**
+     * Tag for logging purposes.
+     */
+    private static final String TAG = "MenuCache";
+    /**
+     * Name of the database file.
+     */
+    private static final String DATABASE_NAME = "menu_cache.db";
+    /**
+     * Version of the database schema.
+     */
+    private static final int DATABASE_VERSION = 1;
+    /**
+     * Name of the table holding the cached menus.
+     */
+    private static final String TABLE = "menus";
+    /**
+     * Upper bound for the total size of all cached menus, in bytes.
+     */
+    private static final long MAX_CACHE_BYTES = 2L * 1024 * 1024;
+
+    /**
+     * The shared cache instance, created on first use.
+     */
+    private static MenuCache instance;
+
+    /**
+     * Single background thread on which all database work runs.
+     */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    /**
+     * Handler used to deliver results on the main thread.
+     */
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * A menu read from the cache, together with the stamps it was stored with.
+     */
+    public static class CachedMenu
+    {
+        /**
+         * The restaurant's menus ordered by {@code menuIndex}.
+         */
+        public final List<Menu> menus;
+        /**
+         * The items of each menu keyed by menu ID.
+         */
+        public final Map<String, List<MenuItem>> itemsByMenu;
+        /**
+         * The restaurant's {@code lastUpdated} in milliseconds when the menu was stored, 0 if unknown.
+         */
+        public final long lastUpdated;
+        /**
+         * The restaurant's {@code menuVersion} when the menu was stored.
+         */
+        public final long menuVersion;
+
+        /**
+         * Constructs a new {@code CachedMenu}.
+         *
+         * @param menus       The restaurant's menus.
+         * @param itemsByMenu The items of each menu keyed by menu ID.
+         * @param lastUpdated The stored {@code lastUpdated} in milliseconds.
+         * @param menuVersion The stored {@code menuVersion}.
+         */
+        CachedMenu(List<Menu> menus, Map<String, List<MenuItem>> itemsByMenu, long lastUpdated, long menuVersion)
+        {
+            this.menus = menus;
+            this.itemsByMenu = itemsByMenu;
+            this.lastUpdated = lastUpdated;
+            this.menuVersion = menuVersion;
+        }
+
+        /**
+         * Returns whether this cached menu matches the given restaurant stamps.
+         *
+         * @param lastUpdated The restaurant's current {@code lastUpdated} in milliseconds.
+         * @param menuVersion The restaurant's current {@code menuVersion}.
+         * @return True if the cached menu is still current, false otherwise.
+         */
+        public boolean isCurrent(long lastUpdated, long menuVersion)
+        {
+            return this.lastUpdated == lastUpdated && this.menuVersion == menuVersion;
+        }
+    }
+
+    /**
+     * Callback interface for receiving a cached menu.
+     */
+    public interface OnCachedMenuListener
+    {
+        /**
+         * Called on the main thread with the cached menu.
+         *
+         * @param cachedMenu The cached menu, or null if the restaurant is not cached.
+         */
+        void onCachedMenu(CachedMenu cachedMenu);
+    }
+
+    /**
+     * Constructs a new {@code MenuCache}.
+     *
+     * @param context The application {@link Context}.
+     */
+    private MenuCache(Context context)
+    {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    /**
+     * Returns the shared cache instance.
+     *
+     * @param context Any {@link Context}; its application context is used.
+     * @return The shared {@code MenuCache}.
+     */
+    public static synchronized MenuCache getInstance(Context context)
+    {
+        if(instance == null)
+        {
+            instance = new MenuCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Creates the cache table.
+     *
+     * @param db The database.
+     */
+    @Override
+    public void onCreate(SQLiteDatabase db)
+    {
+        db.execSQL("CREATE TABLE " + TABLE + " ("
+                + "restaurantID TEXT PRIMARY KEY, "
+                + "lastUpdated INTEGER NOT NULL, "
+                + "menuVersion INTEGER NOT NULL, "
+                + "payload TEXT NOT NULL, "
+                + "byteSize INTEGER NOT NULL, "
+                + "lastAccess INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX idx_" + TABLE + "_lastAccess ON " + TABLE + " (lastAccess)");
+    }
+
+    /**
+     * Drops and recreates the cache table; cached menus can always be fetched again.
+     *
+     * @param db         The database.
+     * @param oldVersion The old schema version.
+     * @param newVersion The new schema version.
+     */
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion)
+    {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+        onCreate(db);
+    }
+
+    /**
+     * Reads the cached menu of a restaurant and marks it as recently used.
+     *
+     * @param restaurantID The ID of the restaurant.
+     * @param listener     The listener to receive the cached menu, or null if there is none.
+     */
+    public void get(String restaurantID, OnCachedMenuListener listener)
+    {
+        executor.execute(() ->
+        {
+            CachedMenu cachedMenu = null;
+            try
+            {
+                SQLiteDatabase db = getWritableDatabase();
+                try(Cursor cursor = db.query(TABLE, new String[]{"lastUpdated", "menuVersion", "payload"},
+                        "restaurantID = ?", new String[]{restaurantID}, null, null, null))
+                {
+                    if(cursor.moveToFirst())
+                    {
+                        cachedMenu = fromJson(new JSONObject(cursor.getString(2)), cursor.getLong(0), cursor.getLong(1));
+                    }
+                }
+
+                if(cachedMenu != null)
+                {
+                    ContentValues access = new ContentValues();
+                    access.put("lastAccess", System.currentTimeMillis());
+                    db.update(TABLE, access, "restaurantID = ?", new String[]{restaurantID});
+                }
+            } catch(Exception e)
+            {
+                // A corrupt or unreadable row is treated as a miss and overwritten on the next put
+                Log.w(TAG, "Failed to read cached menu for restaurant: " + restaurantID, e);
+                cachedMenu = null;
+            }
+
+            final CachedMenu result = cachedMenu;
+            mainHandler.post(() -> listener.onCachedMenu(result));
+        });
+    }
+
+    /**
+     * Stores the menu of a restaurant, replacing any previous entry, and evicts the least recently
+     * used restaurants while the cache exceeds {@link #MAX_CACHE_BYTES}.
+     * The lists are copied before returning, so callers may keep modifying them.
+     *
+     * @param restaurantID The ID of the restaurant.
+     * @param lastUpdated  The restaurant's {@code lastUpdated} in milliseconds, 0 if unknown.
+     * @param menuVersion  The restaurant's {@code menuVersion}.
+     * @param menus        The restaurant's menus.
+     * @param itemsByMenu  The items of each menu keyed by menu ID.
+     */
+    public void put(String restaurantID, long lastUpdated, long menuVersion,
+                    List<Menu> menus, Map<String, List<MenuItem>> itemsByMenu)
+    {
+        final String payload;
+        try
+        {
+            payload = toJson(menus, itemsByMenu).toString();
+        } catch(JSONException e)
+        {
+            Log.w(TAG, "Failed to serialize menu for restaurant: " + restaurantID, e);
+            return;
+        }
+
+        executor.execute(() ->
+        {
+            try
+            {
+                long byteSize = payload.getBytes(StandardCharsets.UTF_8).length;
+                if(byteSize > MAX_CACHE_BYTES) return; // Would evict everything else
+
+                ContentValues values = new ContentValues();
+                values.put("restaurantID", restaurantID);
+                values.put("lastUpdated", lastUpdated);
+                values.put("menuVersion", menuVersion);
+                values.put("payload", payload);
+                values.put("byteSize", byteSize);
+                values.put("lastAccess", System.currentTimeMillis());
+
+                SQLiteDatabase db = getWritableDatabase();
+                db.insertWithOnConflict(TABLE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+                evictIfNeeded(db);
+            } catch(Exception e)
+            {
+                Log.w(TAG, "Failed to cache menu for restaurant: " + restaurantID, e);
+            }
+        });
+    }
+
+    /**
+     * Removes the least recently used rows until the total cached size fits {@link #MAX_CACHE_BYTES}.
+     * Runs on the background thread.
+     *
+     * @param db The writable database.
+     */
+    private void evictIfNeeded(SQLiteDatabase db)
+    {
+        long totalBytes;
+        try(Cursor cursor = db.rawQuery("SELECT SUM(byteSize) FROM " + TABLE, null))
+        {
+            totalBytes = cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+        if(totalBytes <= MAX_CACHE_BYTES) return;
+
+        List<String> evicted = new ArrayList<>();
+        try(Cursor cursor = db.query(TABLE, new String[]{"restaurantID", "byteSize"},
+                null, null, null, null, "lastAccess ASC"))
+        {
+            while(totalBytes > MAX_CACHE_BYTES && cursor.moveToNext())
+            {
+                evicted.add(cursor.getString(0));
+                totalBytes -= cursor.getLong(1);
+            }
+        }
+
+        for(String restaurantID : evicted)
+        {
+            db.delete(TABLE, "restaurantID = ?", new String[]{restaurantID});
+        }
+        Log.d(TAG, "Evicted " + evicted.size() + " cached menus");
+    }
+
+    /**
+     * Serializes a restaurant's menu to JSON.
+     *
+     * @param menus       The restaurant's menus.
+     * @param itemsByMenu The items of each menu keyed by menu ID.
+     * @return The JSON representation.
+     * @throws JSONException If a value cannot be serialized.
+     */
+    private static JSONObject toJson(List<Menu> menus, Map<String, List<MenuItem>> itemsByMenu) throws JSONException
+    {
+        JSONArray menusJson = new JSONArray();
+        for(Menu menu : menus)
+        {
+            JSONObject menuJson = new JSONObject();
+            menuJson.put("name", menu.getName());
+            menuJson.put("imageURL", menu.getImageURL());
+            menuJson.put("cardImageURL", menu.getCardImageURL());
+            menuJson.put("thumbnailImageURL", menu.getThumbnailImageURL());
+            menuJson.put("timeCreated", toMillis(menu.getTimeCreated()));
+            menuJson.put("restaurantID", menu.getRestaurantID());
+            menuJson.put("menuID", menu.getMenuID());
+            menuJson.put("menuIndex", menu.getMenuIndex());
+
+            JSONArray itemsJson = new JSONArray();
+            List<MenuItem> menuItems = itemsByMenu.get(menu.getMenuID());
+            if(menuItems != null)
+            {
+                for(MenuItem item : menuItems)
+                {
+                    itemsJson.put(itemToJson(item));
+                }
+            }
+            menuJson.put("items", itemsJson);
+            menusJson.put(menuJson);
+        }
+
+        JSONObject json = new JSONObject();
+        json.put("menus", menusJson);
+        return json;
+    }
+
+    /**
+     * Serializes a single menu item to JSON.
+     *
+     * @param item The item to serialize.
+     * @return The JSON representation.
+     * @throws JSONException If a value cannot be serialized.
+     */
+    private static JSONObject itemToJson(MenuItem item) throws JSONException
+    {
+        JSONObject itemJson = new JSONObject();
+        itemJson.put("name", item.getName());
+        itemJson.put("description", item.getDescription());
+        itemJson.put("price", item.getPrice());
+        itemJson.put("imageURL", item.getImageURL());
+        itemJson.put("cardImageURL", item.getCardImageURL());
+        itemJson.put("thumbnailImageURL", item.getThumbnailImageURL());
+        itemJson.put("menuID", item.getMenuID());
+        itemJson.put("restaurantID", item.getRestaurantID());
+        itemJson.put("category", item.getCategory());
+        itemJson.put("availability", item.getAvailability());
+        if(item.getAllergens() != null)
+        {
+            itemJson.put("allergens", new JSONArray(item.getAllergens()));
+        }
+        itemJson.put("orderIndex", item.getOrderIndex());
+        itemJson.put("itemID", item.getItemID());
+        itemJson.put("effectivePrice", item.getEffectivePrice());
+        itemJson.put("discountBadgeType", item.getDiscountBadgeType());
+        itemJson.put("discountBadgeValue", item.getDiscountBadgeValue());
+        itemJson.put("discountValidUntil", toMillis(item.getDiscountValidUntil()));
+        return itemJson;
+    }
+
+    /**
+     * Deserializes a restaurant's menu from JSON.
+     *
+     * @param json        The JSON representation produced by {@link #toJson}.
+     * @param lastUpdated The stored {@code lastUpdated} in milliseconds.
+     * @param menuVersion The stored {@code menuVersion}.
+     * @return The cached menu.
+     * @throws JSONException If the JSON is malformed.
+     */
+    private static CachedMenu fromJson(JSONObject json, long lastUpdated, long menuVersion) throws JSONException
+    {
+        List<Menu> menus = new ArrayList<>();
+        Map<String, List<MenuItem>> itemsByMenu = new HashMap<>();
+
+        JSONArray menusJson = json.getJSONArray("menus");
+        for(int i = 0; i < menusJson.length(); i++)
+        {
+            JSONObject menuJson = menusJson.getJSONObject(i);
+            Menu menu = new Menu();
+            menu.setName(menuJson.optString("name", null));
+            menu.setImageURL(menuJson.optString("imageURL", null));
+            menu.setCardImageURL(menuJson.optString("cardImageURL", null));
+            menu.setThumbnailImageURL(menuJson.optString("thumbnailImageURL", null));
+            menu.setTimeCreated(toTimestamp(menuJson.optLong("timeCreated", 0)));
+            menu.setRestaurantID(menuJson.optString("restaurantID", null));
+            menu.setMenuID(menuJson.getString("menuID"));
+            menu.setMenuIndex(menuJson.optInt("menuIndex"));
+            menus.add(menu);
+
+            List<MenuItem> menuItems = new ArrayList<>();
+            JSONArray itemsJson = menuJson.getJSONArray("items");
+            for(int j = 0; j < itemsJson.length(); j++)
+            {
+                menuItems.add(itemFromJson(itemsJson.getJSONObject(j)));
+            }
+            itemsByMenu.put(menu.getMenuID(), menuItems);
+        }
+
+        return new CachedMenu(menus, itemsByMenu, lastUpdated, menuVersion);
+    }
+
+    /**
+     * Deserializes a single menu item from JSON.
+     *
+     * @param itemJson The JSON representation produced by {@link #itemToJson(MenuItem)}.
+     * @return The menu item.
+     * @throws JSONException If the JSON is malformed.
+     */
+    private static MenuItem itemFromJson(JSONObject itemJson) throws JSONException
+    {
+        MenuItem item = new MenuItem();
+        item.setName(itemJson.optString("name", null));
+        item.setDescription(itemJson.optString("description", null));
+        item.setPrice(itemJson.optDouble("price", 0));
+        item.setImageURL(itemJson.optString("imageURL", null));
+        item.setCardImageURL(itemJson.optString("cardImageURL", null));
+        item.setThumbnailImageURL(itemJson.optString("thumbnailImageURL", null));
+        item.setMenuID(itemJson.optString("menuID", null));
+        item.setRestaurantID(itemJson.optString("restaurantID", null));
+        item.setCategory(itemJson.optString("category", null));
+        item.setAvailability(itemJson.has("availability") ? itemJson.getBoolean("availability") : null);
+
+        JSONArray allergensJson = itemJson.optJSONArray("allergens");
+        if(allergensJson != null)
+        {
+            List<String> allergens = new ArrayList<>();
+            for(int i = 0; i < allergensJson.length(); i++)
+            {
+                allergens.add(allergensJson.getString(i));
+            }
+            item.setAllergens(allergens);
+        }
+
+        item.setOrderIndex(itemJson.optInt("orderIndex"));
+        item.setItemID(itemJson.optString("itemID", null));
+        item.setEffectivePrice(itemJson.has("effectivePrice") ? itemJson.getDouble("effectivePrice") : null);
+        item.setDiscountBadgeType(itemJson.optString("discountBadgeType", null));
+        item.setDiscountBadgeValue(itemJson.has("discountBadgeValue") ? itemJson.getInt("discountBadgeValue") : null);
+        item.setDiscountValidUntil(toTimestamp(itemJson.optLong("discountValidUntil", 0)));
+        return item;
+    }
+
+    /**
+     * Converts a {@link Timestamp} to milliseconds since the epoch.
+     *
+     * @param timestamp The timestamp to convert, may be null.
+     * @return The timestamp in milliseconds, or 0 if it is null.
+     */
+    public static long toMillis(Timestamp timestamp)
+    {
+        if(timestamp == null) return 0;
+        return timestamp.getSeconds() * 1000 + timestamp.getNanoseconds() / 1_000_000;
+    }
+
+    /**
+     * Converts milliseconds since the epoch to a {@link Timestamp}.
+     *
+     * @param millis The milliseconds, 0 meaning no timestamp.
+     * @return The timestamp, or null if {@code millis} is 0.
+     */
+    private static Timestamp toTimestamp(long millis)
+    {
+        if(millis == 0) return null;
+        return new Timestamp(millis / 1000, (int) ((millis % 1000) * 1_000_000));
+    }
+}
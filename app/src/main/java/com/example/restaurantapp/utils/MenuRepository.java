@@ -0,0 +1,508 @@
+package com.example.restaurantapp.utils;
+
+import android.util.Log;
+
+import com.example.restaurantapp.models.Menu;
+import com.example.restaurantapp.models.MenuBundle;
+import com.example.restaurantapp.models.MenuItem;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Transaction;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shared loader for a restaurant's complete menu.
+ * Instead of issuing one "Items" query per {@link Menu}, it fetches the restaurant's menus and
+ * every {@link MenuItem} of the restaurant (through a collection-group query on the item's
+ * "restaurantID" field) in parallel, then groups the items by menu ID in memory. The query needs
+ * the collection-group index on "Items.restaurantID" declared in firestore.indexes.json.
+ * Items written before the "restaurantID" field existed are invisible to that query, so it is only
+ * trusted once the restaurant document is marked with {@link #ITEMS_INDEXED_FIELD};
+ * {@link #indexLegacyItems(String)} adds the missing fields and sets the mark. Until then each
+ * menu's "Items" subcollection is queried instead.
+ * The result is handed to callers as an ordered list of menus plus a {@code menuID -> items} map.
+ * It also publishes and reads the restaurant's precompiled {@link MenuBundle}, a single document
+ * holding the whole menu plus a version number equal to the restaurant document's
+ * {@code menuVersion}, so diners can display a menu with one read, or none when the version
+ * they already hold is current.
+ * Publishes of the same restaurant run one at a time, each from a fresh read of the menu, so a
+ * publish never overwrites the bundle with an older menu than the one before it.
+ */
+public class MenuRepository
+{
+    /**
+     * Tag for logging purposes.
+     */
+    private static final String TAG = "MenuRepository";
+    /**
+     * Field on the restaurant document set to true once every menu item of the restaurant carries
+     * the "restaurantID" field the collection-group query relies on.
+     */
+    public static final String ITEMS_INDEXED_FIELD = "menuItemsIndexed";
+    /**
+     * Maximum number of writes committed in a single {@link WriteBatch} (Firestore allows 500).
+     */
+    private static final int MAX_BATCH_WRITES = 450;
+    /**
+     * Bundles already read during this process, keyed by restaurant ID.
+     */
+    private static final Map<String, MenuBundle> BUNDLE_CACHE = new HashMap<>();
+    /**
+     * The last publish started for each restaurant, until it completes; later publishes wait for it.
+     */
+    private static final Map<String, Task<Void>> PUBLISHES = new HashMap<>();
+    /**
+     * Largest estimated size of a bundle document that is still published. Firestore rejects
+     * documents over 1 MiB; the headroom covers the document name and the estimate's rounding.
+     */
+    static final long MAX_BUNDLE_BYTES = 1_048_576 - 32_768;
+    /**
+     * Upper bound on the size of a menu's or item's field names and non-string values.
+     */
+    private static final int ENTRY_OVERHEAD_BYTES = 512;
+
+    /**
+     * Thrown, and passed to the failure listeners of {@link #publishMenuBundle}, when the menu is
+     * too large to fit into a single bundle document. The stale bundle has been removed by then,
+     * so diners load the menu with {@link #loadMenu(String, OnMenuLoadedListener)} instead.
+     */
+    public static class BundleTooLargeException extends RuntimeException
+    {
+        /**
+         * Constructs a new {@code BundleTooLargeException}.
+         *
+         * @param restaurantID   The ID of the restaurant.
+         * @param estimatedBytes The estimated size of the bundle.
+         */
+        BundleTooLargeException(String restaurantID, long estimatedBytes)
+        {
+            super("Menu bundle of restaurant " + restaurantID + " would take about "
+                    + estimatedBytes + " bytes, more than " + MAX_BUNDLE_BYTES);
+        }
+    }
+
+    /**
+     * Callback interface for receiving a fully assembled restaurant menu.
+     */
+    public interface OnMenuLoadedListener
+    {
+        /**
+         * Called when the menus and their items have been loaded.
+         *
+         * @param menus       The restaurant's menus ordered by {@code menuIndex}.
+         * @param itemsByMenu The items of each menu keyed by menu ID, each list ordered by {@code orderIndex}.
+         *                    Menus without items map to an empty list.
+         */
+        void onMenuLoaded(List<Menu> menus, Map<String, List<MenuItem>> itemsByMenu);
+
+        /**
+         * Called when loading failed.
+         *
+         * @param e The exception that caused the failure.
+         */
+        void onError(Exception e);
+    }
+
+    /**
+     * Loads every menu and menu item of a restaurant with two parallel queries, plus a read of the
+     * restaurant document telling whether the item query sees every item.
+     * For restaurants not yet marked with {@link #ITEMS_INDEXED_FIELD}, the items are read from each
+     * menu's "Items" subcollection instead.
+     * Each loaded {@link Menu} and {@link MenuItem} has its ID fields set from the document path,
+     * so callers do not depend on the stored fields being present.
+     *
+     * @param restaurantID The ID of the restaurant.
+     * @param listener     The listener to receive the assembled menu.
+     */
+    public static void loadMenu(String restaurantID, OnMenuLoadedListener listener)
+    {
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        DocumentReference restaurantRef = db.collection("Restaurants").document(restaurantID);
+
+        Task<DocumentSnapshot> restaurantTask = restaurantRef.get();
+        Task<QuerySnapshot> menusTask = restaurantRef
+                .collection("Menus")
+                .orderBy("menuIndex")
+                .get();
+        Task<QuerySnapshot> itemsTask = db.collectionGroup("Items")
+                .whereEqualTo("restaurantID", restaurantID)
+                .get();
+
+        Tasks.whenAllSuccess(restaurantTask, menusTask, itemsTask)
+                .onSuccessTask(results ->
+                {
+                    if(Boolean.TRUE.equals(restaurantTask.getResult().getBoolean(ITEMS_INDEXED_FIELD)))
+                    {
+                        return Tasks.forResult(Collections.singletonList(itemsTask.getResult()));
+                    }
+
+                    // Legacy items lack "restaurantID", so read each menu's items directly
+                    List<Task<QuerySnapshot>> menuItemTasks = new ArrayList<>();
+                    for(QueryDocumentSnapshot menu : menusTask.getResult())
+                    {
+                        menuItemTasks.add(menu.getReference().collection("Items").get());
+                    }
+                    return Tasks.<QuerySnapshot>whenAllSuccess(menuItemTasks);
+                })
+                .addOnSuccessListener(itemSnapshots ->
+                {
+                    List<Menu> menus = new ArrayList<>();
+                    Map<String, List<MenuItem>> itemsByMenu = new HashMap<>();
+
+                    for(QueryDocumentSnapshot doc : menusTask.getResult())
+                    {
+                        Menu menu = doc.toObject(Menu.class);
+                        menu.setMenuID(doc.getId()); // Ensure ID is set
+                        menus.add(menu);
+                        itemsByMenu.put(menu.getMenuID(), new ArrayList<>());
+                    }
+
+                    for(QuerySnapshot items : itemSnapshots)
+                    {
+                        for(QueryDocumentSnapshot doc : items)
+                        {
+                            // Items/{itemID} lives under Menus/{menuID}
+                            DocumentReference menuRef = doc.getReference().getParent().getParent();
+                            if(menuRef == null) continue;
+
+                            List<MenuItem> menuItems = itemsByMenu.get(menuRef.getId());
+                            if(menuItems == null)
+                            {
+                                Log.w(TAG, "Skipping item " + doc.getId() + " of unknown menu " + menuRef.getId());
+                                continue;
+                            }
+
+                            MenuItem item = doc.toObject(MenuItem.class);
+                            item.setRestaurantID(restaurantID); // Saving a legacy item then indexes it
+                            item.setMenuID(menuRef.getId());
+                            item.setItemID(doc.getId());
+                            menuItems.add(item);
+                        }
+                    }
+
+                    for(List<MenuItem> menuItems : itemsByMenu.values())
+                    {
+                        menuItems.sort((a, b) -> Integer.compare(a.getOrderIndex(), b.getOrderIndex()));
+                    }
+
+                    listener.onMenuLoaded(menus, itemsByMenu);
+                })
+                .addOnFailureListener(e ->
+                {
+                    Log.e(TAG, "Failed to load menu for restaurant: " + restaurantID, e);
+                    listener.onError(e);
+                });
+    }
+
+    /**
+     * Adds the "restaurantID", "menuID" and "itemID" fields to every menu item of a restaurant that
+     * lacks them, then marks the restaurant document with {@link #ITEMS_INDEXED_FIELD}.
+     * Reads each menu's "Items" subcollection once; meant to be run by the restaurant's owner while
+     * the restaurant is not yet marked.
+     *
+     * @param restaurantID The ID of the restaurant.
+     * @return A task completing once every item is indexed and the restaurant is marked.
+     */
+    public static Task<Void> indexLegacyItems(String restaurantID)
+    {
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        DocumentReference restaurantRef = db.collection("Restaurants").document(restaurantID);
+
+        return restaurantRef.collection("Menus").get()
+                .onSuccessTask(menus ->
+                {
+                    List<Task<QuerySnapshot>> itemTasks = new ArrayList<>();
+                    for(DocumentSnapshot menu : menus)
+                    {
+                        itemTasks.add(menu.getReference().collection("Items").get());
+                    }
+                    return Tasks.<QuerySnapshot>whenAllSuccess(itemTasks);
+                })
+                .onSuccessTask(itemSnapshots ->
+                {
+                    List<Task<Void>> commits = new ArrayList<>();
+                    WriteBatch batch = db.batch();
+                    int batchWrites = 0;
+                    for(QuerySnapshot items : itemSnapshots)
+                    {
+                        for(DocumentSnapshot item : items)
+                        {
+                            if(restaurantID.equals(item.getString("restaurantID"))) continue;
+
+                            // Items/{itemID} lives under Menus/{menuID}
+                            DocumentReference menuRef = item.getReference().getParent().getParent();
+                            batch.update(item.getReference(), "restaurantID", restaurantID,
+                                    "menuID", menuRef.getId(), "itemID", item.getId());
+                            if(++batchWrites >= MAX_BATCH_WRITES)
+                            {
+                                commits.add(batch.commit());
+                                batch = db.batch();
+                                batchWrites = 0;
+                            }
+                        }
+                    }
+                    if(batchWrites > 0)
+                    {
+                        commits.add(batch.commit());
+                    }
+                    Log.d(TAG, "Indexing legacy menu items of restaurant: " + restaurantID);
+                    return Tasks.whenAll(commits);
+                })
+                .onSuccessTask(v -> restaurantRef.update(ITEMS_INDEXED_FIELD, true));
+    }
+
+    /**
+     * Loads a restaurant's menu from its published {@link MenuBundle}.
+     * If a bundle with {@code knownVersion} has already been read, it is delivered without any
+     * network access. Otherwise the bundle document is read once; restaurants that have never
+     * published a bundle fall back to {@link #loadMenu(String, OnMenuLoadedListener)}.
+     *
+     * @param restaurantID The ID of the restaurant.
+     * @param knownVersion The current {@code menuVersion} of the restaurant document, or 0 if unknown.
+     * @param listener     The listener to receive the assembled menu.
+     */
+    public static void loadMenuBundle(String restaurantID, long knownVersion, OnMenuLoadedListener listener)
+    {
+        MenuBundle cached = BUNDLE_CACHE.get(restaurantID);
+        if(cached != null && knownVersion > 0 && cached.getVersion() == knownVersion)
+        {
+            deliverBundle(cached, listener);
+            return;
+        }
+
+        bundleRef(restaurantID).get()
+                .addOnSuccessListener(doc ->
+                {
+                    MenuBundle bundle = doc.exists() ? doc.toObject(MenuBundle.class) : null;
+                    if(bundle == null || bundle.getMenus() == null)
+                    {
+                        loadMenu(restaurantID, listener); // Nothing published yet
+                        return;
+                    }
+                    BUNDLE_CACHE.put(restaurantID, bundle);
+                    deliverBundle(bundle, listener);
+                })
+                .addOnFailureListener(e ->
+                {
+                    Log.w(TAG, "Failed to read menu bundle, loading menu directly: " + restaurantID, e);
+                    loadMenu(restaurantID, listener);
+                });
+    }
+
+    /**
+     * Publishes a new version of a restaurant's {@link MenuBundle}.
+     * The publish waits for any earlier publish of the same restaurant, then reads the current menus
+     * and items with {@link #loadMenu(String, OnMenuLoadedListener)} and writes them in a transaction
+     * that reads the restaurant's {@code menuVersion} and sets both it and the bundle's version to the
+     * next value. Callers therefore only signal that the menu changed; the bundle always reflects the
+     * menu as stored when the publish ran.
+     * If the bundle would exceed Firestore's document size limit, the old bundle is deleted instead,
+     * so diners fall back to loading the menu directly, and the task fails with a
+     * {@link BundleTooLargeException}.
+     *
+     * @param restaurantID The ID of the restaurant.
+     * @return A {@link Task} completing once this publish has been committed.
+     */
+    public static synchronized Task<Void> publishMenuBundle(String restaurantID)
+    {
+        Task<Void> previous = PUBLISHES.get(restaurantID);
+        Task<Void> publish = (previous != null ? previous : Tasks.<Void>forResult(null))
+                .continueWithTask(done -> loadAndPublish(restaurantID));
+        PUBLISHES.put(restaurantID, publish);
+        publish.addOnCompleteListener(task ->
+        {
+            synchronized(MenuRepository.class)
+            {
+                if(PUBLISHES.get(restaurantID) == publish) PUBLISHES.remove(restaurantID);
+            }
+        });
+        return publish;
+    }
+
+    /**
+     * Reads a restaurant's current menu and writes it as its bundle.
+     *
+     * @param restaurantID The ID of the restaurant.
+     * @return A {@link Task} completing once the bundle has been written.
+     */
+    private static Task<Void> loadAndPublish(String restaurantID)
+    {
+        TaskCompletionSource<Void> published = new TaskCompletionSource<>();
+        loadMenu(restaurantID, new OnMenuLoadedListener()
+        {
+            @Override
+            public void onMenuLoaded(List<Menu> menus, Map<String, List<MenuItem>> itemsByMenu)
+            {
+                List<MenuItem> items = new ArrayList<>();
+                for(Menu menu : menus)
+                {
+                    items.addAll(itemsByMenu.get(menu.getMenuID()));
+                }
+                writeBundle(restaurantID, menus, items).addOnCompleteListener(task ->
+                {
+                    if(task.isSuccessful())
+                    {
+                        published.setResult(null);
+                    } else
+                    {
+                        published.setException(task.getException());
+                    }
+                });
+            }
+
+            @Override
+            public void onError(Exception e)
+            {
+                published.setException(e);
+            }
+        });
+        return published.getTask();
+    }
+
+    /**
+     * Writes a restaurant's bundle, or deletes it if it is too large, and advances {@code menuVersion}
+     * in one transaction, so the bundle's version and the restaurant's {@code menuVersion} stay equal.
+     *
+     * @param restaurantID The ID of the restaurant.
+     * @param menus        All menus of the restaurant, ordered by menu index.
+     * @param items        All menu items of the restaurant, ordered by menu and order index.
+     * @return The {@link Task} of the transaction.
+     */
+    private static Task<Void> writeBundle(String restaurantID, List<Menu> menus, List<MenuItem> items)
+    {
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        DocumentReference restaurantRef = db.collection("Restaurants").document(restaurantID);
+        long estimatedBytes = estimateBundleBytes(menus, items);
+        boolean tooLarge = estimatedBytes > MAX_BUNDLE_BYTES;
+
+        Map<String, Object> bundleData = new HashMap<>();
+        bundleData.put("menus", new ArrayList<>(menus));
+        bundleData.put("items", new ArrayList<>(items));
+
+        return db.runTransaction((Transaction.Function<Void>) transaction ->
+        {
+            Long current = transaction.get(restaurantRef).getLong("menuVersion");
+            long version = (current != null ? current : 0) + 1;
+            if(tooLarge)
+            {
+                // Advancing the version makes diners holding the old bundle read again and find none
+                transaction.delete(bundleRef(restaurantID));
+            } else
+            {
+                bundleData.put("version", version);
+                transaction.set(bundleRef(restaurantID), bundleData);
+            }
+            transaction.update(restaurantRef, "menuVersion", version);
+            return null;
+        }).continueWithTask(task ->
+        {
+            if(!task.isSuccessful() || !tooLarge) return task;
+            Log.w(TAG, "Menu bundle too large (" + estimatedBytes + " bytes), removed it for restaurant: " + restaurantID);
+            return Tasks.<Void>forException(new BundleTooLargeException(restaurantID, estimatedBytes));
+        }).addOnFailureListener(e -> Log.e(TAG, "Failed to publish menu bundle for restaurant: " + restaurantID, e));
+    }
+
+    /**
+     * Estimates the stored size of a bundle from Firestore's storage size rules: each string takes
+     * its UTF-8 length plus one byte, and each menu or item is charged {@link #ENTRY_OVERHEAD_BYTES}
+     * for its field names, numbers, booleans and timestamps. Strings dominate the size of a menu,
+     * so the estimate errs on the large side.
+     *
+     * @param menus The menus of the bundle.
+     * @param items The items of the bundle.
+     * @return The estimated size in bytes.
+     */
+    static long estimateBundleBytes(List<Menu> menus, List<MenuItem> items)
+    {
+        long bytes = 0;
+        for(Menu menu : menus)
+        {
+            bytes += ENTRY_OVERHEAD_BYTES + stringBytes(menu.getName()) + stringBytes(menu.getImageURL())
+                    + stringBytes(menu.getCardImageURL()) + stringBytes(menu.getThumbnailImageURL())
+                    + stringBytes(menu.getRestaurantID()) + stringBytes(menu.getMenuID());
+        }
+        for(MenuItem item : items)
+        {
+            bytes += ENTRY_OVERHEAD_BYTES + stringBytes(item.getName()) + stringBytes(item.getDescription())
+                    + stringBytes(item.getImageURL()) + stringBytes(item.getCardImageURL())
+                    + stringBytes(item.getThumbnailImageURL()) + stringBytes(item.getMenuID())
+                    + stringBytes(item.getRestaurantID()) + stringBytes(item.getCategory())
+                    + stringBytes(item.getItemID()) + stringBytes(item.getDiscountBadgeType());
+            if(item.getAllergens() != null)
+            {
+                for(String allergen : item.getAllergens())
+                {
+                    bytes += stringBytes(allergen);
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the stored size of a string value.
+     *
+     * @param value The string, or null.
+     * @return Its UTF-8 length plus one byte, or one byte for null.
+     */
+    private static long stringBytes(String value)
+    {
+        return value == null ? 1 : value.getBytes(StandardCharsets.UTF_8).length + 1;
+    }
+
+    /**
+     * Returns the reference of a restaurant's menu bundle document.
+     *
+     * @param restaurantID The ID of the restaurant.
+     * @return The {@link DocumentReference} of the bundle.
+     */
+    private static DocumentReference bundleRef(String restaurantID)
+    {
+        return FirebaseFirestore.getInstance()
+                .collection("Restaurants").document(restaurantID)
+                .collection("MenuBundle").document("current");
+    }
+
+    /**
+     * Groups a bundle's items by menu ID and hands copies of its contents to the listener.
+     *
+     * @param bundle   The bundle to deliver.
+     * @param listener The listener to receive the assembled menu.
+     */
+    private static void deliverBundle(MenuBundle bundle, OnMenuLoadedListener listener)
+    {
+        List<Menu> menus = new ArrayList<>(bundle.getMenus());
+        Map<String, List<MenuItem>> itemsByMenu = new HashMap<>();
+        for(Menu menu : menus)
+        {
+            itemsByMenu.put(menu.getMenuID(), new ArrayList<>());
+        }
+
+        if(bundle.getItems() != null)
+        {
+            for(MenuItem item : bundle.getItems())
+            {
+                List<MenuItem> menuItems = itemsByMenu.get(item.getMenuID());
+                if(menuItems != null)
+                {
+                    menuItems.add(item);
+                }
+            }
+        }
+
+        listener.onMenuLoaded(menus, itemsByMenu);
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.restaurantapp.utils;
+
+import com.example.restaurantapp.models.Menu;
+import com.example.restaurantapp.models.MenuItem;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Substring search index over the names of a restaurant's menus and items.
+ * Built once whenever the menu is loaded: every name is normalized (lower case, accents removed)
+ * a single time, and every trigram of a normalized name gets a sorted posting list of the names
+ * containing it. A query of three or more characters is answered by intersecting the posting
+ * lists of its trigrams and checking the few remaining candidates; shorter queries scan the
+ * precomputed keys. Queries reuse the index's buffers and only allocate the result sets.
+ * The index is not thread-safe and is meant to be used on the main thread.
+ */
+public class MenuSearchIndex
+{
+    /**
+     * Names shorter than this have no trigrams and are found by scanning.
+     */
+    private static final int GRAM_LENGTH = 3;
+
+    /**
+     * The indexed menus; document {@code i < menus.size()} is menu {@code i}.
+     */
+    private final List<Menu> menus;
+    /**
+     * The indexed items; document {@code menus.size() + i} is item {@code i}.
+     */
+    private final List<MenuItem> items;
+    /**
+     * Normalized name of every document.
+     */
+    private final String[] keys;
+    /**
+     * Open-addressing table of trigram keys; 0 marks an empty slot.
+     */
+    private final long[] gramKeys;
+    /**
+     * Sorted document IDs for the trigram in the same slot of {@link #gramKeys}.
+     */
+    private final int[][] gramPostings;
+    /**
+     * Buffer holding the current intersection of posting lists.
+     */
+    private final int[] candidates;
+
+    /**
+     * The result of a query.
+     */
+    public static class Matches
+    {
+        /**
+         * IDs of the menus whose names contain the query.
+         */
+        public final Set<String> menuMatchIds = new HashSet<>();
+        /**
+         * IDs of the menus containing at least one item whose name contains the query.
+         */
+        public final Set<String> itemMatchMenuIds = new HashSet<>();
+        /**
+         * The items whose names contain the query.
+         */
+        public final Set<MenuItem> matchedItems = new HashSet<>();
+
+        /**
+         * Returns whether nothing matched.
+         *
+         * @return True if no menu or item matched, false otherwise.
+         */
+        public boolean isEmpty()
+        {
+            return menuMatchIds.isEmpty() && itemMatchMenuIds.isEmpty();
+        }
+    }
+
+    /**
+     * Builds the index.
+     *
+     * @param menus The restaurant's menus.
+     * @param items The items of all menus.
+     */
+    public MenuSearchIndex(List<Menu> menus, List<MenuItem> items)
+    {
+        this.menus = new ArrayList<>(menus);
+        this.items = new ArrayList<>(items);
+
+        int documentCount = this.menus.size() + this.items.size();
+        keys = new String[documentCount];
+        for(int i = 0; i < this.menus.size(); i++)
+        {
+            keys[i] = RestaurantSearchIndex.normalize(this.menus.get(i).getName());
+        }
+        for(int i = 0; i < this.items.size(); i++)
+        {
+            keys[this.menus.size() + i] = RestaurantSearchIndex.normalize(this.items.get(i).getName());
+        }
+
+        // Documents are visited in ascending order, so every posting list comes out sorted
+        Map<Long, List<Integer>> postings = new HashMap<>();
+        for(int document = 0; document < documentCount; document++)
+        {
+            String key = keys[document];
+            for(int i = 0; i + GRAM_LENGTH <= key.length(); i++)
+            {
+                List<Integer> posting = postings.get(gram(key, i));
+                if(posting == null)
+                {
+                    posting = new ArrayList<>();
+                    postings.put(gram(key, i), posting);
+                }
+                if(posting.isEmpty() || posting.get(posting.size() - 1) != document)
+                {
+                    posting.add(document); // A trigram repeated within one name is posted once
+                }
+            }
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(postings.size(), 1) * 2) * 2; // Load factor below 1/2
+        gramKeys = new long[capacity];
+        gramPostings = new int[capacity][];
+        for(Map.Entry<Long, List<Integer>> entry : postings.entrySet())
+        {
+            List<Integer> posting = entry.getValue();
+            int[] documents = new int[posting.size()];
+            for(int i = 0; i < documents.length; i++)
+            {
+                documents[i] = posting.get(i);
+            }
+            int slot = slot(entry.getKey());
+            while(gramKeys[slot] != 0)
+            {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            gramKeys[slot] = entry.getKey();
+            gramPostings[slot] = documents;
+        }
+        candidates = new int[documentCount];
+    }
+
+    /**
+     * Finds the menus and items whose names contain the query, ignoring case and accents.
+     *
+     * @param query The raw query.
+     * @return The matches; empty if the query is blank.
+     */
+    public Matches search(String query)
+    {
+        Matches matches = new Matches();
+        String normalized = RestaurantSearchIndex.normalize(query).trim();
+        if(normalized.isEmpty()) return matches;
+
+        if(normalized.length() < GRAM_LENGTH)
+        {
+            for(int document = 0; document < keys.length; document++)
+            {
+                if(keys[document].contains(normalized)) addMatch(matches, document);
+            }
+            return matches;
+        }
+
+        // Start from the shortest posting list, then intersect with every other one
+        int[] shortest = null;
+        for(int i = 0; i + GRAM_LENGTH <= normalized.length(); i++)
+        {
+            int[] posting = posting(gram(normalized, i));
+            if(posting == null) return matches; // Some trigram occurs in no name
+            if(shortest == null || posting.length < shortest.length) shortest = posting;
+        }
+        int count = shortest.length;
+        System.arraycopy(shortest, 0, candidates, 0, count);
+        for(int i = 0; i + GRAM_LENGTH <= normalized.length() && count > 0; i++)
+        {
+            int[] posting = posting(gram(normalized, i));
+            if(posting != shortest) count = intersect(count, posting);
+        }
+
+        // Trigrams can co-occur without forming the query, so confirm each candidate
+        for(int i = 0; i < count; i++)
+        {
+            int document = candidates[i];
+            if(keys[document].contains(normalized)) addMatch(matches, document);
+        }
+        return matches;
+    }
+
+    /**
+     * Records a matching document in the result.
+     *
+     * @param matches  The result being built.
+     * @param document The matching document ID.
+     */
+    private void addMatch(Matches matches, int document)
+    {
+        if(document < menus.size())
+        {
+            matches.menuMatchIds.add(menus.get(document).getMenuID());
+        } else
+        {
+            MenuItem item = items.get(document - menus.size());
+            matches.itemMatchMenuIds.add(item.getMenuID());
+            matches.matchedItems.add(item);
+        }
+    }
+
+    /**
+     * Intersects the first {@code count} entries of {@link #candidates} with a sorted posting list, in place.
+     *
+     * @param count   The number of current candidates.
+     * @param posting The sorted posting list.
+     * @return The number of candidates left.
+     */
+    private int intersect(int count, int[] posting)
+    {
+        int kept = 0;
+        int j = 0;
+        for(int i = 0; i < count && j < posting.length; i++)
+        {
+            int document = candidates[i];
+            while(j < posting.length && posting[j] < document) j++;
+            if(j < posting.length && posting[j] == document)
+            {
+                candidates[kept++] = document;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Looks up the posting list of a trigram.
+     *
+     * @param gram The packed trigram.
+     * @return The sorted document IDs, or null if no name contains the trigram.
+     */
+    private int[] posting(long gram)
+    {
+        int slot = slot(gram);
+        while(gramKeys[slot] != 0)
+        {
+            if(gramKeys[slot] == gram) return gramPostings[slot];
+            slot = (slot + 1) & (gramKeys.length - 1);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the home slot of a trigram in the table.
+     *
+     * @param gram The packed trigram.
+     * @return The slot index.
+     */
+    private int slot(long gram)
+    {
+        long hash = gram * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 40) & (gramKeys.length - 1);
+    }
+
+    /**
+     * Packs the three characters starting at an index into a non-zero key.
+     *
+     * @param text  The normalized text.
+     * @param index The index of the first character.
+     * @return The packed trigram.
+     */
+    private static long gram(String text, int index)
+    {
+        return (1L << 48) | ((long) text.charAt(index) << 32) | ((long) text.charAt(index + 1) << 16) | text.charAt(index + 2);
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.restaurantapp.utils;
+
+import android.util.Log;
+
+import com.example.restaurantapp.models.Restaurant;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.GeoPoint;
+import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Radius query engine for restaurants.
+ * The circle is covered with geohash ranges from {@link GeoHashUtils#queryBounds(double, double, double)};
+ * one "geohash" range query per range runs in parallel, the results are merged by document ID and
+ * filtered by their exact haversine distance to the center. Only restaurants whose documents carry
+ * a "geohash" field can be found; it is written on sign-up and on edit, and added to older documents
+ * by {@link RestaurantBackfill} when their owner next opens the app.
+ */
+public class NearbyRestaurantQuery
+{
+    /**
+     * Tag for logging purposes.
+     */
+    private static final String TAG = "NearbyRestaurantQuery";
+
+    /**
+     * Callback interface for receiving the restaurants within a radius.
+     */
+    public interface OnNearbyRestaurantsListener
+    {
+        /**
+         * Called when the query has completed.
+         *
+         * @param restaurants The restaurants within the radius, ordered by distance from the center.
+         */
+        void onNearbyRestaurants(List<Restaurant> restaurants);
+
+        /**
+         * Called when one of the range queries failed.
+         *
+         * @param e The exception that caused the failure.
+         */
+        void onError(Exception e);
+    }
+
+    /**
+     * Finds every restaurant within a radius of a location.
+     *
+     * @param latitude     The latitude of the center in degrees.
+     * @param longitude    The longitude of the center in degrees.
+     * @param radiusMeters The radius in meters.
+     * @param listener     The listener to receive the restaurants.
+     */
+    public static void queryRadius(double latitude, double longitude, double radiusMeters,
+                                   OnNearbyRestaurantsListener listener)
+    {
+        List<Task<QuerySnapshot>> tasks = queryRanges(GeoHashUtils.queryBounds(latitude, longitude, radiusMeters));
+
+        Tasks.whenAllSuccess(tasks)
+                .addOnSuccessListener(results ->
+                {
+                    Map<String, Restaurant> restaurantsByID = new HashMap<>();
+                    Map<String, Double> distances = new HashMap<>();
+
+                    for(Task<QuerySnapshot> task : tasks)
+                    {
+                        for(QueryDocumentSnapshot doc : task.getResult())
+                        {
+                            if(restaurantsByID.containsKey(doc.getId())) continue; // Ranges can overlap at the edges
+
+                            GeoPoint location = doc.getGeoPoint("location");
+                            if(location == null) continue;
+
+                            double distance = GeoHashUtils.distanceMeters(latitude, longitude,
+                                    location.getLatitude(), location.getLongitude());
+                            if(distance > radiusMeters) continue; // Cells extend past the circle
+
+                            Restaurant restaurant = doc.toObject(Restaurant.class);
+                            restaurant.setRestaurantID(doc.getId()); // Ensure ID is set
+                            restaurantsByID.put(doc.getId(), restaurant);
+                            distances.put(doc.getId(), distance);
+                        }
+                    }
+
+                    List<Restaurant> restaurants = new ArrayList<>(restaurantsByID.values());
+                    restaurants.sort((a, b) -> Double.compare(distances.get(a.getRestaurantID()),
+                            distances.get(b.getRestaurantID())));
+                    Log.d(TAG, "Found " + restaurants.size() + " restaurants in " + tasks.size() + " ranges");
+                    listener.onNearbyRestaurants(restaurants);
+                })
+                .addOnFailureListener(e ->
+                {
+                    Log.e(TAG, "Nearby restaurant query failed", e);
+                    listener.onError(e);
+                });
+    }
+
+    /**
+     * Finds every restaurant located in the given geohash cells, in no particular order.
+     *
+     * @param cells    The geohashes of the cells.
+     * @param listener The listener to receive the restaurants.
+     */
+    public static void queryCells(Collection<String> cells, OnNearbyRestaurantsListener listener)
+    {
+        List<String[]> ranges = new ArrayList<>();
+        for(String cell : cells)
+        {
+            ranges.add(new String[]{cell, GeoHashUtils.rangeEnd(cell)});
+        }
+        List<Task<QuerySnapshot>> tasks = queryRanges(ranges);
+
+        Tasks.whenAllSuccess(tasks)
+                .addOnSuccessListener(results ->
+                {
+                    List<Restaurant> restaurants = new ArrayList<>();
+                    for(Task<QuerySnapshot> task : tasks)
+                    {
+                        for(QueryDocumentSnapshot doc : task.getResult())
+                        {
+                            if(doc.getGeoPoint("location") == null) continue;
+
+                            Restaurant restaurant = doc.toObject(Restaurant.class);
+                            restaurant.setRestaurantID(doc.getId()); // Ensure ID is set
+                            restaurants.add(restaurant);
+                        }
+                    }
+                    listener.onNearbyRestaurants(restaurants);
+                })
+                .addOnFailureListener(e ->
+                {
+                    Log.e(TAG, "Geohash cell query failed", e);
+                    listener.onError(e);
+                });
+    }
+
+    /**
+     * Starts one "geohash" range query per range.
+     *
+     * @param ranges The {@code {start, end}} geohash ranges.
+     * @return The started query tasks, in range order.
+     */
+    private static List<Task<QuerySnapshot>> queryRanges(List<String[]> ranges)
+    {
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+
+        List<Task<QuerySnapshot>> tasks = new ArrayList<>();
+        for(String[] range : ranges)
+        {
+            tasks.add(db.collection("Restaurants")
+                    .orderBy("geohash")
+                    .startAt(range[0])
+                    .endBefore(range[1])
+                    .get());
+        }
+        return tasks;
+    }
+}
@@ -0,0 +1,359 @@
+package com.example.restaurantapp.utils;
+
+import android.util.Log;
+
+import com.example.restaurantapp.models.Reservation;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Live board of a restaurant's upcoming reservations, earliest first.
+ * The board starts with one snapshot listener over the first {@link #BOARD_LIMIT} reservations
+ * dated after the moment it was started. Only the {@link DocumentChange}s of each snapshot are
+ * applied to the board's sorted set, so a new booking or a cancellation costs one document read and
+ * an insertion or removal, instead of reloading the whole list.
+ * {@link #loadMore()} adds a page: a listener over the next {@link #BOARD_LIMIT} reservations,
+ * starting after the last reservation of the previous page. The previous page, whose end was given
+ * by its limit, is re-registered once with that reservation as its end instead, so a booking
+ * inserted into it can no longer push a reservation out of it and into neither page. Each extension
+ * therefore reads at most two pages, however many pages are already on the board.
+ * Cancelled reservations are not kept on the board, but they count towards the pages, so a page
+ * full of cancellations still reports that more can be loaded. Reservations whose date passes while
+ * the board is running stay on it; callers filter them by date.
+ * All methods are expected to be called on the main thread.
+ */
+public class ReservationBoard
+{
+    /**
+     * Listener notified whenever the reservations on the board change.
+     */
+    public interface OnBoardChangedListener
+    {
+        /**
+         * Called after a snapshot has been applied to the board.
+         *
+         * @param reservations The reservations on the board, earliest first.
+         */
+        void onBoardChanged(List<Reservation> reservations);
+    }
+
+    /**
+     * One listener over a contiguous range of the restaurant's upcoming reservations.
+     */
+    private static class Page
+    {
+        /**
+         * The last reservation of the previous page, or null for the first page.
+         */
+        final DocumentSnapshot after;
+        /**
+         * The last reservation of this page if its end is fixed, or null if the page ends at
+         * {@link #BOARD_LIMIT} reservations.
+         */
+        final DocumentSnapshot until;
+        /**
+         * The page this page replaces; released once this page's first snapshot has arrived.
+         */
+        Page replaced;
+        /**
+         * Registration of the page's snapshot listener, null once removed.
+         */
+        ListenerRegistration registration;
+        /**
+         * IDs of the reservations, cancelled ones included, in the page's latest snapshot.
+         */
+        final Set<String> ids = new HashSet<>();
+        /**
+         * The last reservation in the page's latest snapshot, or null if it is empty.
+         */
+        DocumentSnapshot last;
+        /**
+         * The number of reservations in the page's latest snapshot.
+         */
+        int size;
+        /**
+         * Whether the page's first snapshot has arrived.
+         */
+        boolean loaded = false;
+
+        /**
+         * Constructs a new {@code Page}.
+         *
+         * @param after The last reservation of the previous page, or null for the first page.
+         * @param until The last reservation of this page, or null to end it at {@link #BOARD_LIMIT} reservations.
+         */
+        Page(DocumentSnapshot after, DocumentSnapshot until)
+        {
+            this.after = after;
+            this.until = until;
+        }
+    }
+
+    /**
+     * Tag for logging purposes.
+     */
+    private static final String TAG = "ReservationBoard";
+    /**
+     * Number of upcoming reservations per page.
+     */
+    private static final int BOARD_LIMIT = 200;
+    /**
+     * Orders reservations by date, then by ID so that reservations at the same time stay distinct.
+     */
+    private static final Comparator<Reservation> ORDER = (a, b) ->
+    {
+        int byDate = a.getDate().compareTo(b.getDate());
+        return byDate != 0 ? byDate : a.getReservationID().compareTo(b.getReservationID());
+    };
+
+    /**
+     * The ID of the restaurant whose reservations are shown.
+     */
+    private final String restaurantID;
+    /**
+     * The reservations on the board, in {@link #ORDER}.
+     */
+    private final TreeSet<Reservation> reservations = new TreeSet<>(ORDER);
+    /**
+     * The reservations on the board keyed by reservation ID, used to find the entry a change replaces.
+     */
+    private final Map<String, Reservation> reservationsByID = new HashMap<>();
+    /**
+     * The number of pages holding each reservation. A reservation moving between pages is briefly
+     * held by both, and only leaves the board once no page holds it.
+     */
+    private final Map<String, Integer> pageCounts = new HashMap<>();
+    /**
+     * The pages of the board, earliest first.
+     */
+    private final List<Page> pages = new ArrayList<>();
+    /**
+     * The listener notified when the board changes, null while not listening.
+     */
+    private OnBoardChangedListener listener;
+    /**
+     * The moment the board was started; the board holds the reservations dated after it.
+     */
+    private Date since;
+
+    /**
+     * Constructs a new {@code ReservationBoard} for the given restaurant.
+     *
+     * @param restaurantID The ID of the restaurant.
+     */
+    public ReservationBoard(String restaurantID)
+    {
+        this.restaurantID = restaurantID;
+    }
+
+    /**
+     * Starts listening to the restaurant's reservations dated after now.
+     * The listener receives the full board once the first snapshot arrives and again after every change.
+     * Does nothing if the board is already running.
+     *
+     * @param listener The listener to notify when the board changes.
+     */
+    public void start(OnBoardChangedListener listener)
+    {
+        if(this.listener != null) return;
+
+        this.listener = listener;
+        since = new Date();
+        Page first = new Page(null, null);
+        pages.add(first);
+        listen(first);
+    }
+
+    /**
+     * Adds a page of {@link #BOARD_LIMIT} reservations after the last one on the board.
+     * Does nothing while the board is stopped, while a page has not delivered its first snapshot, or
+     * once every upcoming reservation is on the board, so it can safely be called on every scroll event.
+     */
+    public void loadMore()
+    {
+        if(listener == null || isEndReached()) return;
+        for(Page page : pages)
+        {
+            if(!page.loaded) return;
+        }
+
+        int lastIndex = pages.size() - 1;
+        Page last = pages.get(lastIndex);
+        DocumentSnapshot cursor = last.last;
+
+        // Fix the end of the last page at its last reservation, then page on from there
+        Page bounded = new Page(last.after, cursor);
+        bounded.replaced = last;
+        pages.set(lastIndex, bounded);
+        listen(bounded);
+
+        Page next = new Page(cursor, null);
+        pages.add(next);
+        listen(next);
+    }
+
+    /**
+     * Returns whether every upcoming reservation is on the board.
+     *
+     * @return True if there are no more reservations to load, false otherwise.
+     */
+    public boolean isEndReached()
+    {
+        if(pages.isEmpty()) return false;
+        Page last = pages.get(pages.size() - 1);
+        return last.loaded && last.size < BOARD_LIMIT;
+    }
+
+    /**
+     * Registers a page's snapshot listener.
+     *
+     * @param page The page.
+     */
+    private void listen(Page page)
+    {
+        Query query = FirebaseFirestore.getInstance()
+                .collection("Restaurants")
+                .document(restaurantID)
+                .collection("Reservations")
+                .whereGreaterThan("date", since)
+                .orderBy("date", Query.Direction.ASCENDING);
+        if(page.after != null)
+        {
+            query = query.startAfter(page.after);
+        }
+        query = page.until != null ? query.endAt(page.until) : query.limit(BOARD_LIMIT);
+
+        page.registration = query.addSnapshotListener((snapshot, e) ->
+        {
+            if(e != null)
+            {
+                Log.e(TAG, "Reservation listener failed for restaurant: " + restaurantID, e);
+                return;
+            }
+            if(snapshot == null || page.registration == null) return;
+
+            for(DocumentChange change : snapshot.getDocumentChanges())
+            {
+                String id = change.getDocument().getId();
+                if(change.getType() == DocumentChange.Type.REMOVED)
+                {
+                    if(page.ids.remove(id)) release(id);
+                    continue;
+                }
+
+                if(page.ids.add(id)) pageCounts.put(id, pageCounts.getOrDefault(id, 0) + 1);
+                Reservation reservation = change.getDocument().toObject(Reservation.class);
+                reservation.setReservationID(id);
+                remove(id); // A modified reservation is re-inserted at its new position
+                add(reservation);
+            }
+            page.size = snapshot.size();
+            page.last = snapshot.isEmpty() ? null : snapshot.getDocuments().get(snapshot.size() - 1);
+            page.loaded = true;
+
+            if(page.replaced != null)
+            {
+                // The replaced page's reservations are now held by this page
+                removePage(page.replaced);
+                page.replaced = null;
+            }
+
+            Log.d(TAG, "Applied " + snapshot.getDocumentChanges().size() + " changes, "
+                    + reservations.size() + " reservations on board");
+            listener.onBoardChanged(new ArrayList<>(reservations));
+        });
+    }
+
+    /**
+     * Stops listening and clears the board.
+     */
+    public void stop()
+    {
+        for(Page page : pages)
+        {
+            if(page.replaced != null) removePage(page.replaced);
+            removePage(page);
+        }
+        pages.clear();
+        listener = null;
+        reservations.clear();
+        reservationsByID.clear();
+        pageCounts.clear();
+    }
+
+    /**
+     * Removes a page's listener and releases its reservations.
+     *
+     * @param page The page.
+     */
+    private void removePage(Page page)
+    {
+        if(page.registration != null)
+        {
+            page.registration.remove();
+            page.registration = null;
+        }
+        for(String id : page.ids)
+        {
+            release(id);
+        }
+        page.ids.clear();
+    }
+
+    /**
+     * Drops one page's hold on a reservation, and removes it from the board once no page holds it.
+     *
+     * @param reservationID The ID of the reservation.
+     */
+    private void release(String reservationID)
+    {
+        Integer count = pageCounts.get(reservationID);
+        if(count == null || count <= 1)
+        {
+            pageCounts.remove(reservationID);
+            remove(reservationID);
+        } else
+        {
+            pageCounts.put(reservationID, count - 1);
+        }
+    }
+
+    /**
+     * Adds a reservation to the board unless it is cancelled or has no date.
+     *
+     * @param reservation The reservation, with its ID set.
+     */
+    private void add(Reservation reservation)
+    {
+        if(reservation.getDate() == null || "Cancelled".equalsIgnoreCase(reservation.getStatus())) return;
+        reservations.add(reservation);
+        reservationsByID.put(reservation.getReservationID(), reservation);
+    }
+
+    /**
+     * Removes a reservation from the board if it is on it.
+     *
+     * @param reservationID The ID of the reservation.
+     */
+    private void remove(String reservationID)
+    {
+        Reservation previous = reservationsByID.remove(reservationID);
+        if(previous != null)
+        {
+            reservations.remove(previous);
+        }
+    }
+}
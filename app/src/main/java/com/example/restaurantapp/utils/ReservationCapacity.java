@@ -0,0 +1,405 @@
+package com.example.restaurantapp.utils;
+
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.Transaction;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ledger of the seats booked at a restaurant, used to admit or reject reservations atomically.
+ * Time is divided into {@link #SLOT_MINUTES}-minute slots, and a reservation occupies the
+ * {@link #SEATING_SLOTS} slots from its start, i.e. its table for {@link #SEATING_MINUTES} minutes.
+ * The number of guests seated in each slot is kept in one counter document per restaurant and day
+ * ("Restaurants/{restaurantID}/Capacity/{epochDay}", a map "slots" from slot-of-day to guests),
+ * so admitting a reservation reads one document (two when its seating crosses midnight, UTC) and
+ * increments the counters of its slots inside a Firestore transaction; two diners booking the
+ * same slot at the same moment cannot both pass the check.
+ * Days are counted in UTC so that every device buckets a reservation into the same document.
+ * A day's document is created from the restaurant's reservations the first time a reservation
+ * touches that day, so reservations made before the ledger existed are counted too.
+ * Bookings and releases run inside the transactions of {@link ReservationRepository}, which also
+ * write the reservation itself, so the ledger only changes together with its reservations.
+ */
+public class ReservationCapacity
+{
+    /**
+     * Tag for logging purposes.
+     */
+    private static final String TAG = "ReservationCapacity";
+    /**
+     * Name of the subcollection of a restaurant holding its ledger documents.
+     */
+    private static final String COLLECTION = "Capacity";
+    /**
+     * Name of the ledger document field mapping each slot of the day to its seated guests.
+     */
+    private static final String FIELD_SLOTS = "slots";
+    /**
+     * Length of a slot, in minutes; reservation times are picked in steps of this length.
+     */
+    private static final int SLOT_MINUTES = 15;
+    /**
+     * How long a reservation occupies its table, in minutes.
+     */
+    private static final int SEATING_MINUTES = 90;
+    /**
+     * Number of slots occupied by a reservation.
+     */
+    static final long SEATING_SLOTS = SEATING_MINUTES / SLOT_MINUTES;
+    /**
+     * Length of a slot, in milliseconds.
+     */
+    static final long SLOT_MILLIS = SLOT_MINUTES * 60 * 1000L;
+    /**
+     * Number of slots in a day.
+     */
+    static final long SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+
+    /**
+     * Thrown, and passed to the failure listeners of a reservation's creation, when the reservation
+     * does not fit into one of its slots.
+     */
+    public static class SlotFullException extends RuntimeException
+    {
+        /**
+         * Constructs a new {@code SlotFullException}.
+         *
+         * @param slot   The slot that is full, counted from the epoch.
+         * @param booked The guests already seated in the slot.
+         */
+        SlotFullException(long slot, long booked)
+        {
+            super("Slot " + slot + " already seats " + booked + " guests");
+        }
+    }
+
+    /**
+     * Thrown inside a transaction when a day touched by a reservation has no ledger document yet.
+     */
+    private static class UnseededDayException extends RuntimeException
+    {
+        /**
+         * The day without a ledger document, counted from the epoch.
+         */
+        final long day;
+
+        /**
+         * Constructs a new {@code UnseededDayException}.
+         *
+         * @param day The day without a ledger document, counted from the epoch.
+         */
+        UnseededDayException(long day)
+        {
+            super("No capacity ledger for day " + day);
+            this.day = day;
+        }
+    }
+
+    /**
+     * Runs a transaction that books seats for a reservation if every slot it occupies has room for
+     * its guests, and applies the given writes in the same transaction.
+     * The ledger documents of days not booked before are created first.
+     * The returned task fails with a {@link SlotFullException} if the reservation does not fit.
+     *
+     * @param restaurantID The ID of the restaurant.
+     * @param date         The start of the reservation.
+     * @param guests       The number of guests.
+     * @param maxCapacity  The maximum number of guests seated at once, or 0 for no limit.
+     * @param writes       The writes committed together with the booking; they must not read.
+     * @return A task completing once the transaction is committed.
+     */
+    static Task<Void> reserve(String restaurantID, Date date, int guests, int maxCapacity, Transaction.Function<Void> writes)
+    {
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        return db.runTransaction((Transaction.Function<Void>) transaction ->
+        {
+            reserve(transaction, restaurantID, date, guests, maxCapacity);
+            return writes.apply(transaction);
+        }).continueWithTask(task ->
+        {
+            if(!(task.getException() instanceof UnseededDayException)) return task;
+            long day = ((UnseededDayException) task.getException()).day;
+            return seed(db, restaurantID, day).continueWithTask(seeded -> seeded.isSuccessful()
+                    ? reserve(restaurantID, date, guests, maxCapacity, writes)
+                    : Tasks.<Void>forException(seeded.getException()));
+        });
+    }
+
+    /**
+     * Releases the seats of a cancelled reservation within a transaction.
+     * Days without a ledger document are left alone; they are seeded from the reservations'
+     * statuses, which no longer count the cancelled reservation.
+     * Reads the ledger documents of the reservation's days, so it must run before the transaction's writes.
+     *
+     * @param transaction  The transaction.
+     * @param restaurantID The ID of the restaurant.
+     * @param date         The start of the reservation.
+     * @param guests       The number of guests.
+     * @throws FirebaseFirestoreException If reading a ledger document fails.
+     */
+    static void release(Transaction transaction, String restaurantID, Date date, int guests)
+            throws FirebaseFirestoreException
+    {
+        Map<Long, DocumentSnapshot> days = readDays(transaction, restaurantID, date);
+        Map<Long, Map<String, Object>> updates = new HashMap<>();
+        long firstSlot = firstSlot(date);
+        for(long slot = firstSlot; slot < firstSlot + SEATING_SLOTS; slot++)
+        {
+            DocumentSnapshot day = days.get(dayOf(slot));
+            if(!day.exists()) continue;
+            long booked = booked(day, slot);
+            addUpdate(updates, slot, Math.max(0, booked - guests));
+        }
+        for(Map.Entry<Long, Map<String, Object>> entry : updates.entrySet())
+        {
+            transaction.update(dayRef(restaurantID, entry.getKey()), entry.getValue());
+        }
+    }
+
+    /**
+     * Parses the number of guests of a reservation, which is stored as a string.
+     *
+     * @param guests The stored number of guests.
+     * @return The number of guests, or 0 if it is missing or invalid.
+     */
+    public static int parseGuests(String guests)
+    {
+        if(guests == null) return 0;
+        try
+        {
+            return Integer.parseInt(guests.trim());
+        } catch(NumberFormatException e)
+        {
+            Log.w(TAG, "Invalid guest number in reservation: " + guests);
+            return 0;
+        }
+    }
+
+    /**
+     * Books the seats of a reservation within a transaction.
+     * Reads the ledger documents of the reservation's days, so it must run before the transaction's writes.
+     *
+     * @param transaction  The transaction.
+     * @param restaurantID The ID of the restaurant.
+     * @param date         The start of the reservation.
+     * @param guests       The number of guests.
+     * @param maxCapacity  The maximum number of guests seated at once, or 0 for no limit.
+     * @throws FirebaseFirestoreException If reading a ledger document fails.
+     * @throws SlotFullException          If one of the reservation's slots has no room for its guests.
+     * @throws UnseededDayException       If one of the reservation's days has no ledger document yet.
+     */
+    private static void reserve(Transaction transaction, String restaurantID, Date date, int guests, int maxCapacity)
+            throws FirebaseFirestoreException
+    {
+        Map<Long, DocumentSnapshot> days = readDays(transaction, restaurantID, date);
+        for(Map.Entry<Long, DocumentSnapshot> day : days.entrySet())
+        {
+            if(!day.getValue().exists()) throw new UnseededDayException(day.getKey());
+        }
+
+        Map<Long, Map<String, Object>> updates = new HashMap<>();
+        long firstSlot = firstSlot(date);
+        for(long slot = firstSlot; slot < firstSlot + SEATING_SLOTS; slot++)
+        {
+            long booked = booked(days.get(dayOf(slot)), slot);
+            if(maxCapacity > 0 && booked + guests > maxCapacity) throw new SlotFullException(slot, booked);
+            addUpdate(updates, slot, booked + guests);
+        }
+        for(Map.Entry<Long, Map<String, Object>> entry : updates.entrySet())
+        {
+            transaction.update(dayRef(restaurantID, entry.getKey()), entry.getValue());
+        }
+    }
+
+    /**
+     * Creates a day's ledger document from the restaurant's reservations that are seated on that day,
+     * unless another booking created it in the meantime.
+     *
+     * @param db           The Firestore instance.
+     * @param restaurantID The ID of the restaurant.
+     * @param day          The day, counted from the epoch.
+     * @return A task completing once the document exists.
+     */
+    private static Task<Void> seed(FirebaseFirestore db, String restaurantID, long day)
+    {
+        return db.collection("Restaurants").document(restaurantID).collection("Reservations")
+                .whereGreaterThan("date", seedWindowStart(day))
+                .whereLessThan("date", seedWindowEnd(day))
+                .get()
+                .continueWithTask(query ->
+                {
+                    if(!query.isSuccessful()) return Tasks.<Void>forException(query.getException());
+
+                    Map<String, Long> slots = new HashMap<>();
+                    for(DocumentSnapshot doc : query.getResult().getDocuments())
+                    {
+                        Date date = doc.getDate("date");
+                        if(date == null || "Cancelled".equalsIgnoreCase(doc.getString("status"))) continue;
+                        addSeating(slots, day, date, parseGuests(doc.getString("guests")));
+                    }
+
+                    Map<String, Object> data = new HashMap<>();
+                    data.put(FIELD_SLOTS, slots);
+                    DocumentReference ref = dayRef(restaurantID, day);
+                    Log.d(TAG, "Seeding capacity ledger of day " + day + " for restaurant " + restaurantID);
+                    return db.runTransaction((Transaction.Function<Void>) transaction ->
+                    {
+                        if(!transaction.get(ref).exists()) transaction.set(ref, data);
+                        return null;
+                    });
+                });
+    }
+
+    /**
+     * Returns the exclusive lower bound of the start of the reservations seated on a day: a
+     * reservation starting at this instant or earlier has left its table by the day's start.
+     *
+     * @param day The day, counted from the epoch.
+     * @return The lower bound.
+     */
+    static Date seedWindowStart(long day)
+    {
+        return new Date((day * SLOTS_PER_DAY - SEATING_SLOTS) * SLOT_MILLIS);
+    }
+
+    /**
+     * Returns the exclusive upper bound of the start of the reservations seated on a day, i.e. the
+     * start of the next day.
+     *
+     * @param day The day, counted from the epoch.
+     * @return The upper bound.
+     */
+    static Date seedWindowEnd(long day)
+    {
+        return new Date((day + 1) * SLOTS_PER_DAY * SLOT_MILLIS);
+    }
+
+    /**
+     * Adds the guests of a reservation to the counters of its slots that lie on the given day.
+     *
+     * @param slots  The guests seated per slot of the day, keyed by {@link #slotKey(long)}.
+     * @param day    The day, counted from the epoch.
+     * @param date   The start of the reservation.
+     * @param guests The number of guests.
+     */
+    static void addSeating(Map<String, Long> slots, long day, Date date, int guests)
+    {
+        long firstSlot = firstSlot(date);
+        for(long slot = firstSlot; slot < firstSlot + SEATING_SLOTS; slot++)
+        {
+            if(dayOf(slot) != day) continue;
+            String key = slotKey(slot);
+            Long booked = slots.get(key);
+            slots.put(key, (booked != null ? booked : 0) + guests);
+        }
+    }
+
+    /**
+     * Reads the ledger documents of the days a reservation is seated on.
+     *
+     * @param transaction  The transaction.
+     * @param restaurantID The ID of the restaurant.
+     * @param date         The start of the reservation.
+     * @return The snapshots by day, counted from the epoch; a snapshot may not exist.
+     * @throws FirebaseFirestoreException If reading a document fails.
+     */
+    private static Map<Long, DocumentSnapshot> readDays(Transaction transaction, String restaurantID, Date date)
+            throws FirebaseFirestoreException
+    {
+        Map<Long, DocumentSnapshot> days = new LinkedHashMap<>();
+        long firstSlot = firstSlot(date);
+        for(long slot = firstSlot; slot < firstSlot + SEATING_SLOTS; slot++)
+        {
+            long day = dayOf(slot);
+            if(!days.containsKey(day)) days.put(day, transaction.get(dayRef(restaurantID, day)));
+        }
+        return days;
+    }
+
+    /**
+     * Returns the guests seated in a slot according to its day's ledger document.
+     *
+     * @param day  The snapshot of the slot's day.
+     * @param slot The slot, counted from the epoch.
+     * @return The seated guests, 0 if the slot has none.
+     */
+    private static long booked(DocumentSnapshot day, long slot)
+    {
+        Long booked = day.getLong(FIELD_SLOTS + "." + slotKey(slot));
+        return booked != null ? booked : 0;
+    }
+
+    /**
+     * Adds the new counter of a slot to the update of its day's ledger document.
+     *
+     * @param updates The updates by day.
+     * @param slot    The slot, counted from the epoch.
+     * @param booked  The new number of seated guests.
+     */
+    private static void addUpdate(Map<Long, Map<String, Object>> updates, long slot, long booked)
+    {
+        Map<String, Object> update = updates.get(dayOf(slot));
+        if(update == null)
+        {
+            update = new HashMap<>();
+            updates.put(dayOf(slot), update);
+        }
+        update.put(FIELD_SLOTS + "." + slotKey(slot), booked);
+    }
+
+    /**
+     * Returns the ledger document of a restaurant's day.
+     *
+     * @param restaurantID The ID of the restaurant.
+     * @param day          The day, counted from the epoch.
+     * @return The document reference.
+     */
+    private static DocumentReference dayRef(String restaurantID, long day)
+    {
+        return FirebaseFirestore.getInstance().collection("Restaurants").document(restaurantID)
+                .collection(COLLECTION).document(String.valueOf(day));
+    }
+
+    /**
+     * Returns the first slot occupied by a reservation.
+     *
+     * @param date The start of the reservation.
+     * @return The slot, counted from the epoch.
+     */
+    static long firstSlot(Date date)
+    {
+        return Math.floorDiv(date.getTime(), SLOT_MILLIS);
+    }
+
+    /**
+     * Returns the day a slot belongs to.
+     *
+     * @param slot The slot, counted from the epoch.
+     * @return The day, counted from the epoch.
+     */
+    static long dayOf(long slot)
+    {
+        return Math.floorDiv(slot, SLOTS_PER_DAY);
+    }
+
+    /**
+     * Returns the key of a slot within its day's "slots" map.
+     *
+     * @param slot The slot, counted from the epoch.
+     * @return The slot of the day, as a string.
+     */
+    static String slotKey(long slot)
+    {
+        return String.valueOf(Math.floorMod(slot, SLOTS_PER_DAY));
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.restaurantapp.utils;
+
+import com.example.restaurantapp.models.Reservation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/**
+ * Date filter shared by the reservation lists.
+ * Reservations are bucketed once, as they are loaded, by the local epoch day of their date, and the
+ * active date filters are a set of epoch days. Applying the filters concatenates the buckets of the
+ * selected days, so toggling a date chip touches only the reservations on the selected days instead
+ * of formatting and comparing the date of every reservation loaded so far.
+ * Within a day, reservations keep the order in which they were added.
+ */
+public class ReservationDateFilter
+{
+    /**
+     * Number of milliseconds in a day.
+     */
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    /**
+     * Every reservation added, in the order in which it was added.
+     */
+    private final List<Reservation> reservations = new ArrayList<>();
+    /**
+     * Reservations keyed by local epoch day.
+     */
+    private final Map<Long, List<Reservation>> reservationsByDay = new HashMap<>();
+    /**
+     * The epoch days currently selected as filters, in list order; empty if no filter is active.
+     */
+    private final TreeSet<Long> activeDays;
+
+    /**
+     * Constructs a new, empty {@code ReservationDateFilter}.
+     *
+     * @param latestFirst True if the list shows later days first, false for earlier days first.
+     */
+    public ReservationDateFilter(boolean latestFirst)
+    {
+        Comparator<Long> dayOrder = latestFirst ? Collections.reverseOrder() : Comparator.naturalOrder();
+        activeDays = new TreeSet<>(dayOrder);
+    }
+
+    /**
+     * Returns the local epoch day of a date, i.e. the number of days between 1970-01-01 and the
+     * date's calendar day in the device's time zone.
+     *
+     * @param date The date.
+     * @return The epoch day.
+     */
+    public static long epochDay(Date date)
+    {
+        long millis = date.getTime();
+        return Math.floorDiv(millis + TimeZone.getDefault().getOffset(millis), DAY_MILLIS);
+    }
+
+    /**
+     * Appends reservations, e.g. a newly loaded page, to the filter.
+     * Reservations without a date are skipped.
+     *
+     * @param loaded The reservations, in list order.
+     */
+    public void addAll(List<Reservation> loaded)
+    {
+        for(Reservation reservation : loaded)
+        {
+            if(reservation.getDate() == null) continue;
+            reservations.add(reservation);
+
+            long day = epochDay(reservation.getDate());
+            List<Reservation> bucket = reservationsByDay.get(day);
+            if(bucket == null)
+            {
+                bucket = new ArrayList<>();
+                reservationsByDay.put(day, bucket);
+            }
+            bucket.add(reservation);
+        }
+    }
+
+    /**
+     * Replaces every reservation in the filter. The active days are kept.
+     *
+     * @param loaded The reservations, in list order.
+     */
+    public void setAll(List<Reservation> loaded)
+    {
+        clear();
+        addAll(loaded);
+    }
+
+    /**
+     * Removes every reservation from the filter. The active days are kept.
+     */
+    public void clear()
+    {
+        reservations.clear();
+        reservationsByDay.clear();
+    }
+
+    /**
+     * Selects a day as a filter.
+     *
+     * @param day The epoch day.
+     * @return True if the day was added, false if it was already selected.
+     */
+    public boolean addDay(long day)
+    {
+        return activeDays.add(day);
+    }
+
+    /**
+     * Deselects a day.
+     *
+     * @param day The epoch day.
+     * @return True if no day is selected anymore.
+     */
+    public boolean removeDay(long day)
+    {
+        activeDays.remove(day);
+        return activeDays.isEmpty();
+    }
+
+    /**
+     * Deselects every day.
+     */
+    public void clearDays()
+    {
+        activeDays.clear();
+    }
+
+    /**
+     * Returns the reservations to display: those on the selected days, or every reservation if no
+     * day is selected, that also match the given condition.
+     *
+     * @param include The condition a reservation must meet to be displayed.
+     * @return The matching reservations, in list order.
+     */
+    public List<Reservation> apply(Predicate<Reservation> include)
+    {
+        List<Reservation> result = new ArrayList<>();
+        if(activeDays.isEmpty())
+        {
+            for(Reservation reservation : reservations)
+            {
+                if(include.test(reservation)) result.add(reservation);
+            }
+            return result;
+        }
+
+        for(long day : activeDays)
+        {
+            List<Reservation> bucket = reservationsByDay.get(day);
+            if(bucket == null) continue;
+            for(Reservation reservation : bucket)
+            {
+                if(include.test(reservation)) result.add(reservation);
+            }
+        }
+        return result;
+    }
+}
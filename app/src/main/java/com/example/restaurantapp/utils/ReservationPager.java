@@ -0,0 +1,205 @@
+package com.example.restaurantapp.utils;
+
+import android.util.Log;
+
+import com.example.restaurantapp.models.Reservation;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Pages through a "Reservations" subcollection, either forward from now (upcoming reservations)
+ * or backward from now (reservation history).
+ * The date predicate is evaluated by Firestore and reservations are fetched {@link #PAGE_SIZE} at a
+ * time, each page starting after the last document of the previous one, so opening a reservation
+ * list costs a constant number of reads no matter how many reservations have accumulated.
+ * The history also lists upcoming reservations that were cancelled; since they are dated after
+ * every past reservation, they are fetched once, ahead of the first page. If that fetch fails, the
+ * page is shown without them.
+ * Must be used from the main thread.
+ */
+public class ReservationPager
+{
+    /**
+     * Tag for logging purposes.
+     */
+    private static final String TAG = "ReservationPager";
+    /**
+     * Number of reservations fetched per page.
+     */
+    public static final int PAGE_SIZE = 20;
+
+    /**
+     * Callback interface for receiving pages of reservations.
+     */
+    public interface OnPageLoadedListener
+    {
+        /**
+         * Called when a page has been loaded.
+         *
+         * @param reservations The reservations of the page, in list order.
+         */
+        void onPageLoaded(List<Reservation> reservations);
+
+        /**
+         * Called when loading a page failed. The same page is requested again by the next call
+         * to {@link #loadNextPage(OnPageLoadedListener)}.
+         *
+         * @param e The exception that caused the failure.
+         */
+        void onError(Exception e);
+    }
+
+    /**
+     * The paged query, with its date predicate, order and page size applied.
+     */
+    private final Query query;
+    /**
+     * Query loaded once ahead of the first page, or null if there is none.
+     */
+    private final Query head;
+    /**
+     * The last document of the most recently loaded page, used as the cursor for the next page.
+     */
+    private DocumentSnapshot lastDocument;
+    /**
+     * Whether a page request is currently in flight.
+     */
+    private boolean loading = false;
+    /**
+     * Whether the last page has been loaded.
+     */
+    private boolean endReached = false;
+
+    /**
+     * Creates a pager.
+     *
+     * @param query The paged query, ordered by a field of the reservations.
+     * @param head  Query loaded once ahead of the first page, or null if there is none.
+     */
+    private ReservationPager(Query query, Query head)
+    {
+        this.query = query.limit(PAGE_SIZE);
+        this.head = head;
+    }
+
+    /**
+     * Creates a pager over the reservations dated after a point in time, earliest first.
+     * Cancelled reservations are included and have to be skipped by the caller.
+     *
+     * @param reservations The "Reservations" subcollection of a user or a restaurant.
+     * @param now          The point in time separating upcoming from past reservations.
+     * @return The pager.
+     */
+    public static ReservationPager upcoming(CollectionReference reservations, Date now)
+    {
+        return new ReservationPager(reservations
+                .whereGreaterThan("date", now)
+                .orderBy("date", Query.Direction.ASCENDING), null);
+    }
+
+    /**
+     * Creates a pager over the reservation history: the reservations dated before a point in time,
+     * latest first, preceded by the cancelled reservations dated after it.
+     * The cancelled reservations are found with an equality filter on "status" and a range filter
+     * on "date", which requires a composite index on the "Reservations" collection:
+     * {@code status} ascending, {@code date} descending. Without it that query fails and the history
+     * is shown without them.
+     *
+     * @param reservations The "Reservations" subcollection of a user or a restaurant.
+     * @param now          The point in time separating upcoming from past reservations.
+     * @return The pager.
+     */
+    public static ReservationPager history(CollectionReference reservations, Date now)
+    {
+        return new ReservationPager(reservations
+                .whereLessThan("date", now)
+                .orderBy("date", Query.Direction.DESCENDING),
+                reservations
+                        .whereEqualTo("status", "Cancelled")
+                        .whereGreaterThanOrEqualTo("date", now)
+                        .orderBy("date", Query.Direction.DESCENDING));
+    }
+
+    /**
+     * Returns whether the last page has been loaded.
+     *
+     * @return True if there are no more reservations to load, false otherwise.
+     */
+    public boolean isEndReached()
+    {
+        return endReached;
+    }
+
+    /**
+     * Fetches the next page of reservations.
+     * Does nothing while a page is already loading or once the last page has been reached,
+     * so it can safely be called on every scroll event.
+     *
+     * @param listener The listener to receive the page.
+     */
+    public void loadNextPage(OnPageLoadedListener listener)
+    {
+        if(loading || endReached) return;
+        loading = true;
+
+        boolean first = lastDocument == null;
+        Task<QuerySnapshot> pageTask = first ? query.get() : query.startAfter(lastDocument).get();
+        Task<QuerySnapshot> headTask = first && head != null
+                ? head.get().continueWith(task ->
+                {
+                    if(task.isSuccessful()) return task.getResult();
+                    Log.e(TAG, "Failed to fetch the reservations ahead of the first page", task.getException());
+                    return null; // Show the page without them
+                })
+                : Tasks.<QuerySnapshot>forResult(null);
+
+        Tasks.whenAllSuccess(headTask, pageTask)
+                .addOnSuccessListener(results ->
+                {
+                    QuerySnapshot page = pageTask.getResult();
+                    List<Reservation> reservations = new ArrayList<>();
+                    if(headTask.getResult() != null)
+                    {
+                        addAll(headTask.getResult(), reservations);
+                    }
+                    addAll(page, reservations);
+                    Log.d(TAG, "Fetched page of " + reservations.size() + " reservations");
+
+                    if(!page.isEmpty())
+                    {
+                        lastDocument = page.getDocuments().get(page.size() - 1);
+                    }
+                    endReached = page.size() < PAGE_SIZE;
+                    loading = false;
+                    listener.onPageLoaded(reservations);
+                })
+                .addOnFailureListener(e ->
+                {
+                    loading = false; // Allow the next call to retry
+                    listener.onError(e);
+                });
+    }
+
+    /**
+     * Converts the documents of a query result and appends them to a list.
+     *
+     * @param snapshot     The query result.
+     * @param reservations The list to append the reservations to.
+     */
+    private static void addAll(QuerySnapshot snapshot, List<Reservation> reservations)
+    {
+        for(QueryDocumentSnapshot doc : snapshot)
+        {
+            reservations.add(doc.toObject(Reservation.class));
+        }
+    }
+}
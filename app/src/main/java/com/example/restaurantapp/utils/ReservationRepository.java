@@ -0,0 +1,180 @@
+package com.example.restaurantapp.utils;
+
+import android.util.Log;
+
+import com.example.restaurantapp.models.Reservation;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Transaction;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Creates and cancels reservations.
+ * Every reservation is stored twice, in the user's and in the restaurant's "Reservations"
+ * subcollection, and its seats are booked in the restaurant's {@link ReservationCapacity} ledger.
+ * Both copies and the ledger are written in one Firestore transaction, so a reservation is either
+ * created or cancelled completely or not at all.
+ * The restaurant's copy also holds the user's name and phone number; these profile fields are
+ * fetched once per user and kept in memory, and {@link #prefetchProfile(String)} loads them ahead
+ * of time so that creating a reservation does not wait for them.
+ * Must be used from the main thread.
+ */
+public class ReservationRepository
+{
+    /**
+     * Tag for logging purposes.
+     */
+    private static final String TAG = "ReservationRepository";
+    /**
+     * Status of a cancelled reservation.
+     */
+    private static final String STATUS_CANCELLED = "Cancelled";
+    /**
+     * The profile fields copied onto the restaurant's copy of a reservation, by user ID.
+     */
+    private static final Map<String, Map<String, Object>> profiles = new HashMap<>();
+
+    /**
+     * Loads a user's profile fields into memory unless they are already loaded.
+     *
+     * @param userID The ID of the user.
+     */
+    public static void prefetchProfile(String userID)
+    {
+        profile(userID);
+    }
+
+    /**
+     * Drops a user's cached profile fields, e.g. after the user changed their name or phone number.
+     *
+     * @param userID The ID of the user.
+     */
+    public static void forgetProfile(String userID)
+    {
+        profiles.remove(userID);
+    }
+
+    /**
+     * Creates a reservation: books its seats and stores the user's and the restaurant's copy in one transaction.
+     * The returned task fails with a {@link ReservationCapacity.SlotFullException} if the restaurant
+     * has no room for the guests at that time.
+     *
+     * @param userID          The ID of the user making the reservation.
+     * @param restaurantID    The ID of the restaurant.
+     * @param restaurantName  The name of the restaurant, stored in the user's copy.
+     * @param date            The date and time of the reservation.
+     * @param time            The time of the reservation, formatted as "HH:mm".
+     * @param guests          The number of guests.
+     * @param specialRequests The special requests of the user.
+     * @param maxCapacity     The maximum number of guests the restaurant seats at once, or 0 for no limit.
+     * @return A task completing once the reservation is stored.
+     */
+    public static Task<Void> createReservation(String userID, String restaurantID, String restaurantName, Date date,
+                                               String time, int guests, String specialRequests, int maxCapacity)
+    {
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        String reservationID = UUID.randomUUID().toString();
+
+        Map<String, Object> userCopy = new HashMap<>();
+        userCopy.put("date", date);
+        userCopy.put("time", time);
+        userCopy.put("guests", String.valueOf(guests));
+        userCopy.put("specialRequests", specialRequests);
+        userCopy.put("restaurantID", restaurantID);
+        userCopy.put("reservationID", reservationID);
+        userCopy.put("userID", userID);
+        userCopy.put("restaurantName", restaurantName);
+
+        DocumentReference userRef = db.collection("Users").document(userID)
+                .collection("Reservations").document(reservationID);
+        DocumentReference restaurantRef = db.collection("Restaurants").document(restaurantID)
+                .collection("Reservations").document(reservationID);
+
+        return profile(userID).continueWithTask(profileTask ->
+        {
+            Map<String, Object> restaurantCopy = new HashMap<>(userCopy);
+            restaurantCopy.remove("restaurantName"); // Not needed for restaurant's copy
+            restaurantCopy.putAll(profileTask.getResult());
+
+            return ReservationCapacity.reserve(restaurantID, date, guests, maxCapacity, transaction ->
+            {
+                transaction.set(userRef, userCopy);
+                transaction.set(restaurantRef, restaurantCopy);
+                return null;
+            });
+        });
+    }
+
+    /**
+     * Cancels a reservation: marks the user's and the restaurant's copy as cancelled and releases its
+     * seats in one transaction. Seats are released only once, even if the reservation is cancelled twice.
+     *
+     * @param reservation The reservation, with its reservation, user and restaurant IDs set.
+     * @return A task completing once the reservation is cancelled.
+     */
+    public static Task<Void> cancelReservation(Reservation reservation)
+    {
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        String restaurantID = reservation.getRestaurantID();
+        DocumentReference userRef = db.collection("Users").document(reservation.getUserID())
+                .collection("Reservations").document(reservation.getReservationID());
+        DocumentReference restaurantRef = db.collection("Restaurants").document(restaurantID)
+                .collection("Reservations").document(reservation.getReservationID());
+
+        return db.runTransaction((Transaction.Function<Void>) transaction ->
+        {
+            DocumentSnapshot restaurantCopy = transaction.get(restaurantRef);
+            if(restaurantCopy.exists())
+            {
+                Date date = restaurantCopy.getDate("date");
+                if(date != null && !STATUS_CANCELLED.equalsIgnoreCase(restaurantCopy.getString("status")))
+                {
+                    ReservationCapacity.release(transaction, restaurantID, date,
+                            ReservationCapacity.parseGuests(restaurantCopy.getString("guests")));
+                }
+                transaction.update(restaurantRef, "status", STATUS_CANCELLED);
+            } else
+            {
+                Log.w(TAG, "Restaurant's copy of reservation " + reservation.getReservationID() + " not found");
+            }
+            transaction.update(userRef, "status", STATUS_CANCELLED);
+            return null;
+        });
+    }
+
+    /**
+     * Returns a user's profile fields for the restaurant's copy of a reservation, loading them if needed.
+     * If they cannot be loaded, the reservation is stored without them and they are loaded again next time.
+     *
+     * @param userID The ID of the user.
+     * @return A task resolving to the "name" and "phoneNumber" fields the user has; never fails.
+     */
+    private static Task<Map<String, Object>> profile(String userID)
+    {
+        Map<String, Object> cached = profiles.get(userID);
+        if(cached != null) return Tasks.forResult(cached);
+
+        return FirebaseFirestore.getInstance().collection("Users").document(userID).get()
+                .continueWith(task ->
+                {
+                    Map<String, Object> profile = new HashMap<>();
+                    if(!task.isSuccessful())
+                    {
+                        Log.w(TAG, "Failed to fetch user info for restaurant's reservation copy.", task.getException());
+                        return profile;
+                    }
+                    DocumentSnapshot user = task.getResult();
+                    if(user.getString("name") != null) profile.put("name", user.getString("name"));
+                    if(user.getString("phoneNumber") != null) profile.put("phoneNumber", user.getString("phoneNumber"));
+                    profiles.put(userID, profile);
+                    return profile;
+                });
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.restaurantapp.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.GeoPoint;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Backfill of the derived fields that queries over the "Restaurants" collection rely on, run by a
+ * restaurant's owner for their own restaurant only.
+ * Restaurant documents written before such a field was introduced lack it, and Firestore cannot
+ * query for a missing field, so the owner's app adds the field where it is missing or stale the
+ * next time they open it. Currently it covers:
+ * <ul>
+ *     <li>"geohash", derived from "location" and used by {@link NearbyRestaurantQuery} and
+ *     {@link RestaurantMapLayer}.</li>
+ *     <li>"searchKeywords", derived from the name, type, tags, address and description and used by
+ *     the map search (see {@link RestaurantSearchIndex}); only added where missing, since edits
+ *     rewrite it.</li>
+ * </ul>
+ * Sign-up and the profile editor write both fields whenever the location or the searchable fields
+ * change, so only documents older than those fields need this. A restaurant whose owner does not
+ * open the app again stays out of the area and keyword queries until it is migrated server-side.
+ * Completion is recorded with {@link #VERSION} in the local preferences, per restaurant, so each
+ * owner pays two document reads once per version.
+ */
+public class RestaurantBackfill
+{
+    /**
+     * Tag for logging purposes.
+     */
+    private static final String TAG = "RestaurantBackfill";
+    /**
+     * Version of the backfill; increased whenever a field is added to it, which makes it run again.
+     */
+    static final int VERSION = 2;
+    /**
+     * Name of the SharedPreferences file used by the app.
+     */
+    private static final String PREF_NAME = "FeedMe";
+    /**
+     * Prefix of the preference key holding, per restaurant, the version of the last completed backfill.
+     */
+    private static final String VERSION_KEY_PREFIX = "restaurantBackfillVersion_";
+    /**
+     * Whether a backfill has been started by this process.
+     */
+    private static boolean started = false;
+
+    /**
+     * Backfills the restaurant owned by the signed-in user unless it is already known to be up to
+     * date, at most once per process. Does nothing for users without a restaurant.
+     * Failures are logged; the backfill is attempted again on the next start of the app.
+     *
+     * @param context The {@link Context} used to access SharedPreferences.
+     */
+    public static synchronized void runForOwnRestaurant(Context context)
+    {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if(started || user == null) return;
+        started = true;
+
+        SharedPreferences prefs = context.getApplicationContext().getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        db.collection("Users").document(user.getUid()).get()
+                .onSuccessTask(userSnapshot ->
+                {
+                    String restaurantID = userSnapshot.getString("restaurantID");
+                    if(restaurantID == null || restaurantID.isEmpty()
+                            || prefs.getInt(VERSION_KEY_PREFIX + restaurantID, 0) >= VERSION)
+                    {
+                        return Tasks.<Void>forResult(null);
+                    }
+
+                    DocumentReference restaurantRef = db.collection("Restaurants").document(restaurantID);
+                    return restaurantRef.get()
+                            .onSuccessTask(restaurant -> backfill(restaurant))
+                            .addOnSuccessListener(done -> prefs.edit().putInt(VERSION_KEY_PREFIX + restaurantID, VERSION).apply());
+                })
+                .addOnSuccessListener(done -> Log.d(TAG, "Restaurant backfill complete"))
+                .addOnFailureListener(e -> Log.e(TAG, "Restaurant backfill failed", e));
+    }
+
+    /**
+     * Writes the derived fields a restaurant document lacks, if any.
+     *
+     * @param restaurant The restaurant document.
+     * @return A {@link Task} that completes once the document is up to date.
+     */
+    private static Task<Void> backfill(DocumentSnapshot restaurant)
+    {
+        if(!restaurant.exists()) return Tasks.forResult(null);
+
+        Map<String, Object> updates = missingFields(restaurant);
+        if(updates.isEmpty()) return Tasks.forResult(null);
+
+        Log.d(TAG, "Backfilling " + updates.keySet() + " of restaurant " + restaurant.getId());
+        return restaurant.getReference().update(updates);
+    }
+
+    /**
+     * Computes the derived fields a restaurant document lacks or holds stale values for.
+     *
+     * @param doc The restaurant document.
+     * @return The fields to update, empty if the document is up to date.
+     */
+    private static Map<String, Object> missingFields(DocumentSnapshot doc)
+    {
+        Map<String, Object> updates = new HashMap<>();
+
+        GeoPoint location = doc.getGeoPoint("location");
+        if(location != null)
+        {
+            String geohash = GeoHashUtils.encode(location.getLatitude(), location.getLongitude(), GeoHashUtils.STORED_PRECISION);
+            if(!geohash.equals(doc.getString("geohash")))
+            {
+                updates.put("geohash", geohash);
+            }
+        }
+
+        if(doc.get(RestaurantSearchIndex.FIELD) == null)
+        {
+            @SuppressWarnings("unchecked")
+            List<String> tags = (List<String>) doc.get("tags");
+            updates.put(RestaurantSearchIndex.FIELD, RestaurantSearchIndex.buildKeywords(doc.getString("name"),
+                    doc.getString("type"), tags, doc.getString("address"), doc.getString("description")));
+        }
+        return updates;
+    }
+}
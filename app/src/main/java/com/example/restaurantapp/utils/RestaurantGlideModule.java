@@ -0,0 +1,75 @@
+package com.example.restaurantapp.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool;
+import com.bumptech.glide.load.engine.cache.InternalCacheDiskCacheFactory;
+import com.bumptech.glide.load.engine.cache.LruResourceCache;
+import com.bumptech.glide.load.engine.cache.MemorySizeCalculator;
+import com.bumptech.glide.module.AppGlideModule;
+
+/**
+ * Glide configuration of the app, picked up by Glide's annotation processor.
+ * The discovery, search and menu lists show many small images of the same few sizes and are
+ * scrolled back and forth, so the memory cache and bitmap pool are sized for a few screens more
+ * than Glide's defaults, and the disk cache is large enough to keep the card and thumbnail
+ * renditions of every restaurant and menu a user browses. Uploaded images are never overwritten
+ * (each upload gets a new file name), so cached entries never go stale.
+ */
+@GlideModule
+public class RestaurantGlideModule extends AppGlideModule
+{
+    /**
+     * Number of screens' worth of decoded images kept in the memory cache.
+     */
+    private static final float MEMORY_CACHE_SCREENS = 3;
+    /**
+     * Number of screens' worth of bitmaps kept in the bitmap pool for reuse.
+     */
+    private static final float BITMAP_POOL_SCREENS = 3;
+    /**
+     * Name of the disk cache directory inside the app's cache directory.
+     */
+    private static final String DISK_CACHE_NAME = "image_cache";
+    /**
+     * Upper bound for the size of the disk cache, in bytes.
+     */
+    private static final long DISK_CACHE_BYTES = 512L * 1024 * 1024;
+
+    /**
+     * Sizes the memory cache, bitmap pool and disk cache.
+     * The memory sizes are computed by {@link MemorySizeCalculator} from the screen size, so they
+     * still shrink on low-memory devices.
+     *
+     * @param context The application context.
+     * @param builder The builder of the Glide singleton.
+     */
+    @Override
+    public void applyOptions(@NonNull Context context, @NonNull GlideBuilder builder)
+    {
+        MemorySizeCalculator calculator = new MemorySizeCalculator.Builder(context)
+                .setMemoryCacheScreens(MEMORY_CACHE_SCREENS)
+                .setBitmapPoolScreens(BITMAP_POOL_SCREENS)
+                .build();
+        builder.setMemoryCache(new LruResourceCache(calculator.getMemoryCacheSize()));
+        builder.setBitmapPool(new LruBitmapPool(calculator.getBitmapPoolSize()));
+        builder.setDiskCache(new InternalCacheDiskCacheFactory(context, DISK_CACHE_NAME, DISK_CACHE_BYTES));
+        builder.setLogLevel(Log.ERROR);
+    }
+
+    /**
+     * Disables parsing of Glide modules declared in the manifest; this app declares none.
+     *
+     * @return False.
+     */
+    @Override
+    public boolean isManifestParsingEnabled()
+    {
+        return false;
+    }
+}
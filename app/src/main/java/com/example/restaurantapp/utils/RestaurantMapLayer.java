@@ -0,0 +1,415 @@
+package com.example.restaurantapp.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import com.example.restaurantapp.R;
+import com.example.restaurantapp.models.Restaurant;
+import com.google.android.gms.maps.CameraUpdateFactory;
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.BitmapDescriptor;
+import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.maps.model.Marker;
+import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.firebase.firestore.GeoPoint;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Map layer that shows restaurants as clustered markers on a {@link GoogleMap}.
+ * When the camera stops, the visible area is split into geohash tiles and only tiles that have not
+ * been loaded yet are fetched through {@link NearbyRestaurantQuery#queryCells}; loaded restaurants are
+ * kept for the lifetime of the layer. The restaurants in and around the viewport are then grouped by
+ * {@link GridClusterer} and diffed against the markers already on the map by cluster key, so unchanged
+ * markers stay untouched. Markers that leave the viewport are hidden and pooled, and reused for the
+ * next clusters that appear instead of being removed and recreated.
+ * All methods are expected to be called on the main thread.
+ */
+public class RestaurantMapLayer
+{
+    /**
+     * Tag for logging purposes.
+     */
+    private static final String TAG = "RestaurantMapLayer";
+    /**
+     * Finest geohash precision used for tiles (cells of roughly 1.2 km by 0.6 km).
+     */
+    private static final int FINEST_TILE_PRECISION = 6;
+    /**
+     * Coarsest geohash precision used for tiles (cells of roughly 39 km by 19.5 km); if the viewport
+     * needs more than {@link #MAX_TILES} tiles even at this precision, nothing new is loaded.
+     */
+    private static final int COARSEST_TILE_PRECISION = 4;
+    /**
+     * Maximum number of tiles requested for one camera position.
+     */
+    private static final int MAX_TILES = 16;
+    /**
+     * On-screen size of a cluster grid cell in density-independent pixels.
+     */
+    private static final double CLUSTER_CELL_DP = 72;
+    /**
+     * Fraction of the viewport added on each side when choosing which markers to show,
+     * so short pans do not reveal empty map.
+     */
+    private static final double VIEWPORT_PADDING = 0.25;
+    /**
+     * Maximum number of hidden markers kept for reuse.
+     */
+    private static final int MAX_POOLED_MARKERS = 100;
+    /**
+     * Cluster sizes from which cluster icons show a rounded "n+" label instead of the exact count.
+     */
+    private static final int[] CLUSTER_COUNT_BUCKETS = {10, 20, 50, 100, 200, 500, 1000};
+
+    /**
+     * The context used to draw cluster icons.
+     */
+    private final Context context;
+    /**
+     * The map the markers are shown on.
+     */
+    private final GoogleMap map;
+    /**
+     * Every restaurant loaded so far, keyed by restaurant ID.
+     */
+    private final Map<String, Restaurant> restaurants = new HashMap<>();
+    /**
+     * Geohash tiles whose restaurants have been loaded.
+     */
+    private final Set<String> loadedTiles = new HashSet<>();
+    /**
+     * Geohash tiles currently being loaded.
+     */
+    private final Set<String> loadingTiles = new HashSet<>();
+    /**
+     * Markers currently shown, keyed by {@link GridClusterer.Cluster#key}.
+     */
+    private Map<String, Marker> markersByKey = new HashMap<>();
+    /**
+     * Hidden markers available for reuse.
+     */
+    private final ArrayDeque<Marker> markerPool = new ArrayDeque<>();
+    /**
+     * Cluster icons keyed by the count bucket they display.
+     */
+    private final Map<Integer, BitmapDescriptor> clusterIcons = new HashMap<>();
+    /**
+     * Whether {@link #release()} has been called; late query results are ignored afterwards.
+     */
+    private boolean released = false;
+
+    /**
+     * Constructs a new {@code RestaurantMapLayer}.
+     *
+     * @param context The {@link Context} used to draw cluster icons.
+     * @param map     The {@link GoogleMap} to show the markers on.
+     */
+    public RestaurantMapLayer(Context context, GoogleMap map)
+    {
+        this.context = context.getApplicationContext();
+        this.map = map;
+    }
+
+    /**
+     * Loads the tiles of the visible area that are not loaded yet and re-renders the markers.
+     * Intended to be registered as the map's camera idle listener.
+     */
+    public void onCameraIdle()
+    {
+        if(released) return;
+
+        LatLngBounds bounds = map.getProjection().getVisibleRegion().latLngBounds;
+        loadMissingTiles(bounds);
+        render();
+    }
+
+    /**
+     * Handles a marker click. Clicking a cluster zooms in on its restaurants.
+     * Intended to be registered as the map's marker click listener.
+     *
+     * @param marker The clicked marker.
+     * @return True if the click was consumed, false to let the map show the info window.
+     */
+    public boolean onMarkerClick(Marker marker)
+    {
+        if(!(marker.getTag() instanceof GridClusterer.Cluster)) return false;
+
+        GridClusterer.Cluster cluster = (GridClusterer.Cluster) marker.getTag();
+        LatLngBounds.Builder builder = LatLngBounds.builder();
+        for(Restaurant restaurant : cluster.restaurants)
+        {
+            builder.include(new LatLng(restaurant.getLocation().getLatitude(), restaurant.getLocation().getLongitude()));
+        }
+        int padding = Math.round(48 * context.getResources().getDisplayMetrics().density);
+        map.animateCamera(CameraUpdateFactory.newLatLngBounds(builder.build(), padding));
+        return true;
+    }
+
+    /**
+     * Stops the layer from reacting to pending query results. Markers are owned by the map
+     * and disappear with it.
+     */
+    public void release()
+    {
+        released = true;
+        markersByKey.clear();
+        markerPool.clear();
+    }
+
+    /**
+     * Requests the geohash tiles covering the given bounds that are neither loaded nor loading.
+     * The tile precision is the finest one for which the bounds span at most {@link #MAX_TILES} tiles.
+     *
+     * @param bounds The visible bounds.
+     */
+    private void loadMissingTiles(LatLngBounds bounds)
+    {
+        double minLng = bounds.southwest.longitude;
+        double maxLng = bounds.northeast.longitude;
+        if(maxLng < minLng) maxLng += 360; // The viewport crosses the antimeridian
+
+        int precision = -1;
+        for(int p = FINEST_TILE_PRECISION; p >= COARSEST_TILE_PRECISION; p--)
+        {
+            if(GeoHashUtils.cellCount(bounds.southwest.latitude, bounds.northeast.latitude, minLng, maxLng, p) <= MAX_TILES)
+            {
+                precision = p;
+                break;
+            }
+        }
+        if(precision == -1)
+        {
+            Log.d(TAG, "Viewport too large to load restaurants");
+            return;
+        }
+
+        List<String> missingTiles = new ArrayList<>();
+        for(String tile : GeoHashUtils.cellsInBox(bounds.southwest.latitude, bounds.northeast.latitude, minLng, maxLng, precision))
+        {
+            if(!isCovered(tile, loadedTiles) && !isCovered(tile, loadingTiles))
+            {
+                missingTiles.add(tile);
+            }
+        }
+        if(missingTiles.isEmpty()) return;
+
+        loadingTiles.addAll(missingTiles);
+        NearbyRestaurantQuery.queryCells(missingTiles, new NearbyRestaurantQuery.OnNearbyRestaurantsListener()
+        {
+            @Override
+            public void onNearbyRestaurants(List<Restaurant> loaded)
+            {
+                if(released) return;
+
+                for(Restaurant restaurant : loaded)
+                {
+                    restaurants.put(restaurant.getRestaurantID(), restaurant);
+                }
+                loadingTiles.removeAll(missingTiles);
+                loadedTiles.addAll(missingTiles);
+                Log.d(TAG, "Loaded " + loaded.size() + " restaurants from " + missingTiles.size() + " tiles");
+                render();
+            }
+
+            @Override
+            public void onError(Exception e)
+            {
+                loadingTiles.removeAll(missingTiles); // Retried on the next camera idle
+            }
+        });
+    }
+
+    /**
+     * Returns whether a tile or one of its enclosing tiles is in the given set.
+     *
+     * @param tile  The geohash of the tile.
+     * @param tiles The set of tiles to check.
+     * @return True if the tile is covered, false otherwise.
+     */
+    private static boolean isCovered(String tile, Set<String> tiles)
+    {
+        for(int length = COARSEST_TILE_PRECISION; length <= tile.length(); length++)
+        {
+            if(tiles.contains(tile.substring(0, length))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Clusters the loaded restaurants in and around the viewport and updates the markers.
+     * Markers whose cluster key is still present are kept as they are, new clusters take a marker
+     * from the pool (or add one if the pool is empty), and markers of vanished clusters are hidden
+     * and returned to the pool.
+     */
+    private void render()
+    {
+        LatLngBounds bounds = map.getProjection().getVisibleRegion().latLngBounds;
+        double latPadding = (bounds.northeast.latitude - bounds.southwest.latitude) * VIEWPORT_PADDING;
+        double minLat = bounds.southwest.latitude - latPadding;
+        double maxLat = bounds.northeast.latitude + latPadding;
+        double minLng = bounds.southwest.longitude;
+        double maxLng = bounds.northeast.longitude;
+        if(maxLng < minLng) maxLng += 360; // The viewport crosses the antimeridian
+        double lngPadding = (maxLng - minLng) * VIEWPORT_PADDING;
+        minLng -= lngPadding;
+        maxLng += lngPadding;
+
+        List<Restaurant> nearby = new ArrayList<>();
+        for(Restaurant restaurant : restaurants.values())
+        {
+            GeoPoint location = restaurant.getLocation();
+            if(location == null) continue;
+
+            double latitude = location.getLatitude();
+            double longitude = location.getLongitude();
+            if(longitude < minLng) longitude += 360;
+            if(latitude >= minLat && latitude <= maxLat && longitude <= maxLng)
+            {
+                nearby.add(restaurant);
+            }
+        }
+
+        Map<String, Marker> shown = new HashMap<>();
+        for(GridClusterer.Cluster cluster : GridClusterer.cluster(nearby, map.getCameraPosition().zoom, CLUSTER_CELL_DP))
+        {
+            Marker marker = markersByKey.remove(cluster.key);
+            if(marker == null)
+            {
+                marker = obtainMarker(cluster);
+            } else if(!cluster.isSingle() && marker.getTag() instanceof GridClusterer.Cluster
+                    && ((GridClusterer.Cluster) marker.getTag()).restaurants.size() != cluster.restaurants.size())
+            {
+                // The same cell gained members after a tile loaded
+                marker.setPosition(new LatLng(cluster.latitude, cluster.longitude));
+                marker.setIcon(clusterIcon(cluster.restaurants.size()));
+                marker.setTitle(cluster.restaurants.size() + " restaurants");
+            }
+            if(marker == null) continue;
+
+            marker.setTag(cluster.isSingle() ? cluster.restaurants.get(0) : cluster);
+            shown.put(cluster.key, marker);
+        }
+
+        for(Marker marker : markersByKey.values())
+        {
+            recycleMarker(marker);
+        }
+        markersByKey = shown;
+    }
+
+    /**
+     * Returns a visible marker set up for the given cluster, reusing a pooled marker if possible.
+     *
+     * @param cluster The cluster to show.
+     * @return The marker, or null if the map could not add one.
+     */
+    private Marker obtainMarker(GridClusterer.Cluster cluster)
+    {
+        LatLng position = new LatLng(cluster.latitude, cluster.longitude);
+        Restaurant single = cluster.isSingle() ? cluster.restaurants.get(0) : null;
+        BitmapDescriptor icon = single != null ? BitmapDescriptorFactory.defaultMarker() : clusterIcon(cluster.restaurants.size());
+        float anchorY = single != null ? 1f : 0.5f; // Pins point at their bottom, cluster circles are centered
+        String title = single != null ? single.getName() : cluster.restaurants.size() + " restaurants";
+        String snippet = single != null ? single.getAddress() : null;
+
+        Marker marker = markerPool.poll();
+        if(marker == null)
+        {
+            return map.addMarker(new MarkerOptions()
+                    .position(position)
+                    .icon(icon)
+                    .anchor(0.5f, anchorY)
+                    .title(title)
+                    .snippet(snippet));
+        }
+
+        marker.setPosition(position);
+        marker.setIcon(icon);
+        marker.setAnchor(0.5f, anchorY);
+        marker.setTitle(title);
+        marker.setSnippet(snippet);
+        marker.setVisible(true);
+        return marker;
+    }
+
+    /**
+     * Hides a marker and keeps it for reuse, or removes it if the pool is full.
+     *
+     * @param marker The marker that is no longer needed.
+     */
+    private void recycleMarker(Marker marker)
+    {
+        marker.hideInfoWindow();
+        marker.setTag(null);
+        if(markerPool.size() < MAX_POOLED_MARKERS)
+        {
+            marker.setVisible(false);
+            markerPool.push(marker);
+        } else
+        {
+            marker.remove();
+        }
+    }
+
+    /**
+     * Returns the icon of a cluster: a filled circle with the number of restaurants.
+     * Counts from 10 upwards are bucketed by {@link #CLUSTER_COUNT_BUCKETS}, so only a handful of
+     * bitmaps are ever drawn.
+     *
+     * @param count The number of restaurants in the cluster.
+     * @return The cluster icon.
+     */
+    private BitmapDescriptor clusterIcon(int count)
+    {
+        int bucket = count;
+        for(int step : CLUSTER_COUNT_BUCKETS)
+        {
+            if(count >= step) bucket = step;
+        }
+
+        BitmapDescriptor icon = clusterIcons.get(bucket);
+        if(icon != null) return icon;
+
+        float density = context.getResources().getDisplayMetrics().density;
+        int size = Math.round((bucket < 10 ? 36 : 44) * density);
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+
+        Paint fill = new Paint(Paint.ANTI_ALIAS_FLAG);
+        fill.setColor(ContextCompat.getColor(context, R.color.primary));
+        canvas.drawCircle(size / 2f, size / 2f, size / 2f, fill);
+
+        Paint border = new Paint(Paint.ANTI_ALIAS_FLAG);
+        border.setStyle(Paint.Style.STROKE);
+        border.setStrokeWidth(2 * density);
+        border.setColor(ContextCompat.getColor(context, R.color.white));
+        canvas.drawCircle(size / 2f, size / 2f, size / 2f - density, border);
+
+        Paint text = new Paint(Paint.ANTI_ALIAS_FLAG);
+        text.setColor(ContextCompat.getColor(context, R.color.white));
+        text.setTextSize(14 * density);
+        text.setTypeface(Typeface.DEFAULT_BOLD);
+        text.setTextAlign(Paint.Align.CENTER);
+        String label = bucket < 10 ? String.valueOf(bucket) : bucket + "+";
+        canvas.drawText(label, size / 2f, size / 2f - (text.descent() + text.ascent()) / 2, text);
+
+        icon = BitmapDescriptorFactory.fromBitmap(bitmap);
+        clusterIcons.put(bucket, icon);
+        return icon;
+    }
+}
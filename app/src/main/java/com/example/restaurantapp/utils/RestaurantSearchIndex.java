@@ -0,0 +1,279 @@
+package com.example.restaurantapp.utils;
+
+import com.example.restaurantapp.models.Restaurant;
+import com.google.firebase.firestore.GeoPoint;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Keyword search index for restaurants.
+ * At write time every word of a restaurant's name, type, tags, address and description is
+ * normalized (lower case, accents removed) and expanded into its prefixes; the resulting
+ * keywords are stored on the restaurant document as {@link #FIELD}. A search then needs a single
+ * {@code whereArrayContains} query on one query word, and the returned candidates are filtered
+ * by the remaining words and ranked locally by {@link #rank(List, String)}.
+ * Any word of any indexed field can match, so "pizz" finds "Luigi's Pizzeria" and "cafe" finds
+ * "Café Central".
+ */
+public class RestaurantSearchIndex
+{
+    /**
+     * Name of the document field holding the keywords.
+     */
+    public static final String FIELD = "searchKeywords";
+    /**
+     * Longest prefix stored per word; longer query words are truncated to it for the query.
+     */
+    private static final int MAX_PREFIX_LENGTH = 15;
+    /**
+     * Upper bound for the number of keywords stored per restaurant, keeping the document small.
+     */
+    private static final int MAX_KEYWORDS = 1500;
+    /**
+     * Score weight of a match in the name.
+     */
+    private static final int NAME_WEIGHT = 8;
+    /**
+     * Score weight of a match in the type or tags.
+     */
+    private static final int CATEGORY_WEIGHT = 4;
+    /**
+     * Score weight of a match in the address.
+     */
+    private static final int ADDRESS_WEIGHT = 2;
+    /**
+     * Score weight of a match in the description.
+     */
+    private static final int DESCRIPTION_WEIGHT = 1;
+    /**
+     * Matches combining marks left over after Unicode decomposition.
+     */
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    /**
+     * Matches the separators between words.
+     */
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /**
+     * Builds the keywords stored on a restaurant document.
+     * Fields are indexed in order of importance so that, if {@link #MAX_KEYWORDS} is reached,
+     * only the tail of the description is dropped.
+     *
+     * @param name        The restaurant's name, may be null.
+     * @param type        The restaurant's type, may be null.
+     * @param tags        The restaurant's tags, may be null.
+     * @param address     The restaurant's address, may be null.
+     * @param description The restaurant's description, may be null.
+     * @return The distinct keywords.
+     */
+    public static List<String> buildKeywords(String name, String type, List<String> tags,
+                                             String address, String description)
+    {
+        Set<String> keywords = new LinkedHashSet<>();
+        addPrefixes(keywords, name);
+        addPrefixes(keywords, type);
+        if(tags != null)
+        {
+            for(String tag : tags)
+            {
+                addPrefixes(keywords, tag);
+            }
+        }
+        addPrefixes(keywords, address);
+        addPrefixes(keywords, description);
+        return new ArrayList<>(keywords);
+    }
+
+    /**
+     * Returns the keyword a query is sent to Firestore with: the longest query word, since it is
+     * the most selective one.
+     *
+     * @param query The raw query.
+     * @return The keyword, or null if the query contains no words.
+     */
+    public static String queryKeyword(String query)
+    {
+        String longest = null;
+        for(String word : tokenize(query))
+        {
+            if(longest == null || word.length() > longest.length())
+            {
+                longest = word;
+            }
+        }
+        if(longest == null) return null;
+        return longest.length() > MAX_PREFIX_LENGTH ? longest.substring(0, MAX_PREFIX_LENGTH) : longest;
+    }
+
+    /**
+     * Filters candidates down to the restaurants matching every query word and orders them by relevance.
+     * Ties are ordered by name.
+     *
+     * @param candidates The restaurants returned by the keyword query.
+     * @param query      The raw query.
+     * @return The matching restaurants, most relevant first.
+     * @see #rank(List, String, double, double)
+     */
+    public static List<Restaurant> rank(List<Restaurant> candidates, String query)
+    {
+        return rank(candidates, query, Double.NaN, Double.NaN);
+    }
+
+    /**
+     * Filters candidates down to the restaurants matching every query word and orders them by relevance.
+     * A query word matches a restaurant if some word of an indexed field starts with it; each match
+     * scores the weight of the best field it occurs in, doubled when it is the whole word, with a
+     * bonus when the name starts with the query. Ties are ordered by distance from the given location,
+     * restaurants without a location last, and then by name.
+     *
+     * @param candidates The restaurants returned by the keyword query.
+     * @param query      The raw query.
+     * @param latitude   The user's latitude in degrees, or NaN if unknown.
+     * @param longitude  The user's longitude in degrees, or NaN if unknown.
+     * @return The matching restaurants, most relevant first.
+     */
+    public static List<Restaurant> rank(List<Restaurant> candidates, String query, double latitude, double longitude)
+    {
+        List<String> queryWords = tokenize(query);
+        if(queryWords.isEmpty()) return Collections.emptyList();
+        String normalizedQuery = String.join(" ", queryWords);
+
+        Map<Restaurant, Integer> scores = new HashMap<>();
+        Map<Restaurant, Double> distances = new HashMap<>();
+        List<Restaurant> matches = new ArrayList<>();
+        for(Restaurant restaurant : candidates)
+        {
+            int score = score(restaurant, queryWords);
+            if(score == 0) continue;
+            if(String.join(" ", tokenize(restaurant.getName())).startsWith(normalizedQuery))
+            {
+                score += NAME_WEIGHT * 4;
+            }
+            scores.put(restaurant, score);
+            GeoPoint location = restaurant.getLocation();
+            distances.put(restaurant, location == null || Double.isNaN(latitude) ? Double.MAX_VALUE
+                    : GeoHashUtils.distanceMeters(latitude, longitude, location.getLatitude(), location.getLongitude()));
+            matches.add(restaurant);
+        }
+
+        matches.sort((a, b) ->
+        {
+            int byScore = Integer.compare(scores.get(b), scores.get(a));
+            if(byScore != 0) return byScore;
+            int byDistance = Double.compare(distances.get(a), distances.get(b));
+            if(byDistance != 0) return byDistance;
+            return normalize(a.getName()).compareTo(normalize(b.getName()));
+        });
+        return matches;
+    }
+
+    /**
+     * Scores a restaurant against the query words.
+     *
+     * @param restaurant The restaurant.
+     * @param queryWords The normalized query words.
+     * @return The score, or 0 if some query word does not match.
+     */
+    private static int score(Restaurant restaurant, List<String> queryWords)
+    {
+        List<String> nameWords = tokenize(restaurant.getName());
+        List<String> categoryWords = tokenize(restaurant.getType());
+        if(restaurant.getTags() != null)
+        {
+            for(String tag : restaurant.getTags())
+            {
+                categoryWords.addAll(tokenize(tag));
+            }
+        }
+        List<String> addressWords = tokenize(restaurant.getAddress());
+        List<String> descriptionWords = tokenize(restaurant.getDescription());
+
+        int total = 0;
+        for(String queryWord : queryWords)
+        {
+            int best = Math.max(
+                    Math.max(fieldScore(nameWords, queryWord, NAME_WEIGHT), fieldScore(categoryWords, queryWord, CATEGORY_WEIGHT)),
+                    Math.max(fieldScore(addressWords, queryWord, ADDRESS_WEIGHT), fieldScore(descriptionWords, queryWord, DESCRIPTION_WEIGHT)));
+            if(best == 0) return 0;
+            total += best;
+        }
+        return total;
+    }
+
+    /**
+     * Scores one query word against the words of one field.
+     *
+     * @param fieldWords The normalized words of the field.
+     * @param queryWord  The normalized query word.
+     * @param weight     The field's weight.
+     * @return Twice the weight for a whole-word match, the weight for a prefix match, 0 otherwise.
+     */
+    private static int fieldScore(List<String> fieldWords, String queryWord, int weight)
+    {
+        int score = 0;
+        for(String word : fieldWords)
+        {
+            if(word.equals(queryWord)) return weight * 2;
+            if(word.startsWith(queryWord)) score = weight;
+        }
+        return score;
+    }
+
+    /**
+     * Adds the prefixes of every word of a text to the keywords, up to {@link #MAX_KEYWORDS}.
+     *
+     * @param keywords The keywords collected so far.
+     * @param text     The text, may be null.
+     */
+    private static void addPrefixes(Set<String> keywords, String text)
+    {
+        for(String word : tokenize(text))
+        {
+            int end = Math.min(word.length(), MAX_PREFIX_LENGTH);
+            for(int length = 1; length <= end; length++)
+            {
+                if(keywords.size() >= MAX_KEYWORDS) return;
+                keywords.add(word.substring(0, length));
+            }
+        }
+    }
+
+    /**
+     * Splits a text into normalized words.
+     *
+     * @param text The text, may be null.
+     * @return The words in order; empty if there are none.
+     */
+    static List<String> tokenize(String text)
+    {
+        List<String> words = new ArrayList<>();
+        if(text == null) return words;
+        for(String word : SEPARATORS.split(normalize(text)))
+        {
+            if(!word.isEmpty()) words.add(word);
+        }
+        return words;
+    }
+
+    /**
+     * Lower-cases a text and removes its accents.
+     *
+     * @param text The text, may be null.
+     * @return The normalized text; empty for null.
+     */
+    static String normalize(String text)
+    {
+        if(text == null) return "";
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+}
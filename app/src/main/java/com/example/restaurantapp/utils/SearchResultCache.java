@@ -0,0 +1,143 @@
+package com.example.restaurantapp.utils;
+
+import android.os.SystemClock;
+
+import com.example.restaurantapp.models.Restaurant;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory LRU cache of keyword search results, shared for the app session.
+ * Entries are keyed by the keyword sent to Firestore (see {@link RestaurantSearchIndex#queryKeyword(String)})
+ * and hold the candidate restaurants it returned. Since every indexed word is stored with all of its
+ * prefixes, the restaurants matching a keyword are a subset of those matching any of its prefixes;
+ * a complete result for "piz" therefore also answers "pizz" by filtering locally.
+ * Entries expire after {@link #MAX_AGE_MILLIS} so edits to restaurants eventually show up.
+ */
+public class SearchResultCache
+{
+    /**
+     * Maximum number of cached keywords.
+     */
+    private static final int MAX_ENTRIES = 32;
+    /**
+     * Maximum age of a cached result, in milliseconds.
+     */
+    private static final long MAX_AGE_MILLIS = 5 * 60 * 1000;
+
+    /**
+     * The shared cache instance, created on first use.
+     */
+    private static SearchResultCache instance;
+
+    /**
+     * Cached results by keyword, in access order.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest)
+        {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * The result of one keyword query.
+     */
+    private static class Entry
+    {
+        /**
+         * The restaurants returned for the keyword.
+         */
+        final List<Restaurant> candidates;
+        /**
+         * Whether the query returned every matching restaurant rather than hitting its limit.
+         */
+        final boolean complete;
+        /**
+         * {@link SystemClock#elapsedRealtime()} at which the result was stored.
+         */
+        final long storedAt;
+
+        /**
+         * Constructs a new {@code Entry}.
+         *
+         * @param candidates The restaurants returned for the keyword.
+         * @param complete   Whether the result is complete.
+         */
+        Entry(List<Restaurant> candidates, boolean complete)
+        {
+            this.candidates = candidates;
+            this.complete = complete;
+            this.storedAt = SystemClock.elapsedRealtime();
+        }
+    }
+
+    /**
+     * Returns the shared cache instance.
+     *
+     * @return The shared {@code SearchResultCache}.
+     */
+    public static synchronized SearchResultCache getInstance()
+    {
+        if(instance == null)
+        {
+            instance = new SearchResultCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns cached candidates that contain every restaurant matching a keyword.
+     * An entry for the keyword itself is used if present; otherwise the longest cached prefix
+     * whose result is complete.
+     *
+     * @param keyword The keyword about to be queried.
+     * @return The candidates to filter locally, or null if the keyword must be queried.
+     */
+    public List<Restaurant> get(String keyword)
+    {
+        Entry exact = fresh(keyword);
+        if(exact != null) return exact.candidates;
+
+        for(int length = keyword.length() - 1; length > 0; length--)
+        {
+            Entry entry = fresh(keyword.substring(0, length));
+            if(entry != null && entry.complete) return entry.candidates;
+        }
+        return null;
+    }
+
+    /**
+     * Stores the result of a keyword query.
+     *
+     * @param keyword    The queried keyword.
+     * @param candidates The restaurants returned.
+     * @param complete   True if the query returned fewer restaurants than its limit.
+     */
+    public void put(String keyword, List<Restaurant> candidates, boolean complete)
+    {
+        entries.put(keyword, new Entry(candidates, complete));
+    }
+
+    /**
+     * Returns the entry for a keyword if it has not expired, dropping it if it has.
+     *
+     * @param keyword The keyword.
+     * @return The entry, or null if none is cached or it has expired.
+     */
+    private Entry fresh(String keyword)
+    {
+        Entry entry = entries.get(keyword);
+        if(entry == null) return null;
+        if(SystemClock.elapsedRealtime() - entry.storedAt > MAX_AGE_MILLIS)
+        {
+            entries.remove(keyword);
+            return null;
+        }
+        return entry;
+    }
+}
@@ -252,6 +252,7 @@ public class SettingsUtils
 
             if(!updatedData.isEmpty())
             {
+                ReservationRepository.forgetProfile(currentUser.getUid()); // Copied onto new reservations
                 updateFirestore(context, userRef, updatedData);
             }
         } else {
@@ -0,0 +1,498 @@
+package com.example.restaurantapp.utils;
+
+import com.example.restaurantapp.models.Restaurant;
+import com.google.firebase.firestore.GeoPoint;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable in-memory k-d tree over the locations of a set of restaurants.
+ * Each location is stored as a point on the unit sphere in 3D, where the straight-line (chord)
+ * distance between two points grows monotonically with their great-circle distance. Nearest-neighbour
+ * and radius searches therefore work on plain squared Euclidean distances, without trigonometry per
+ * node and without special cases at the antimeridian or the poles.
+ * The tree is stored implicitly in arrays ordered so that every range {@code [lo, hi)} has its
+ * splitting point at the middle index. Queries traverse it with preallocated stacks and a
+ * preallocated result heap, so a search allocates nothing beyond the returned list.
+ * Queries reuse these buffers, so an index must only be used from one thread at a time.
+ */
+public class SpatialIndex
+{
+    /**
+     * Maximum depth of the traversal stack; enough for far more points than fit in memory.
+     */
+    private static final int MAX_STACK = 128;
+    /**
+     * Mean radius of the Earth in meters.
+     */
+    private static final double EARTH_RADIUS_METERS = 6_371_000;
+
+    /**
+     * The indexed restaurants, in tree order.
+     */
+    private final Restaurant[] restaurants;
+    /**
+     * Point coordinates in tree order, interleaved as {@code x, y, z}.
+     */
+    private final double[] points;
+    /**
+     * Splitting axis (0, 1 or 2) of the node at each index.
+     */
+    private final byte[] axes;
+
+    /**
+     * Pending ranges of the traversal: start index of each range.
+     */
+    private final int[] stackLo = new int[MAX_STACK];
+    /**
+     * Pending ranges of the traversal: end index (exclusive) of each range.
+     */
+    private final int[] stackHi = new int[MAX_STACK];
+    /**
+     * Pending ranges of the traversal: lower bound of the squared distance to any point in the range.
+     */
+    private final double[] stackBound = new double[MAX_STACK];
+    /**
+     * Unit vector of the current query location.
+     */
+    private final double[] query = new double[3];
+    /**
+     * Result heap of the current k-nearest search: point indexes, a max-heap on {@link #heapDistances}.
+     */
+    private int[] heapIndexes = new int[0];
+    /**
+     * Result heap of the current k-nearest search: squared chord distances.
+     */
+    private double[] heapDistances = new double[0];
+
+    /**
+     * Builds an index over the given restaurants. Restaurants without a location are skipped.
+     *
+     * @param restaurants The restaurants to index.
+     */
+    public SpatialIndex(Collection<Restaurant> restaurants)
+    {
+        List<Restaurant> located = new ArrayList<>(restaurants.size());
+        for(Restaurant restaurant : restaurants)
+        {
+            if(restaurant.getLocation() != null)
+            {
+                located.add(restaurant);
+            }
+        }
+
+        int size = located.size();
+        this.restaurants = located.toArray(new Restaurant[0]);
+        this.points = new double[size * 3];
+        this.axes = new byte[size];
+        for(int i = 0; i < size; i++)
+        {
+            GeoPoint location = this.restaurants[i].getLocation();
+            toUnitVector(location.getLatitude(), location.getLongitude(), points, i * 3);
+        }
+        build(0, size);
+    }
+
+    /**
+     * Returns the number of indexed restaurants.
+     *
+     * @return The number of restaurants with a location.
+     */
+    public int size()
+    {
+        return restaurants.length;
+    }
+
+    /**
+     * Finds the {@code k} restaurants closest to a location.
+     *
+     * @param latitude  The latitude of the location in degrees.
+     * @param longitude The longitude of the location in degrees.
+     * @param k         The maximum number of restaurants to return.
+     * @return Up to {@code k} restaurants, ordered from nearest to farthest.
+     */
+    public List<Restaurant> nearest(double latitude, double longitude, int k)
+    {
+        k = Math.min(k, restaurants.length);
+        if(k <= 0) return new ArrayList<>();
+
+        if(heapIndexes.length < k)
+        {
+            heapIndexes = new int[k];
+            heapDistances = new double[k];
+        }
+        toUnitVector(latitude, longitude, query, 0);
+        double qx = query[0];
+        double qy = query[1];
+        double qz = query[2];
+
+        int heapSize = 0;
+        int top = push(0, 0, restaurants.length, 0);
+
+        while(top > 0)
+        {
+            top--;
+            int lo = stackLo[top];
+            int hi = stackHi[top];
+            double bound = stackBound[top];
+            // Skip ranges that cannot contain anything closer than the current k-th result
+            if(heapSize == k && bound >= heapDistances[0]) continue;
+
+            int mid = (lo + hi) >>> 1;
+            double distance = squaredDistance(mid, qx, qy, qz);
+            if(heapSize < k)
+            {
+                heapSize = heapPush(heapSize, mid, distance);
+            } else if(distance < heapDistances[0])
+            {
+                heapReplaceTop(heapSize, mid, distance);
+            }
+
+            int axis = axes[mid];
+            double diff = (axis == 0 ? qx : axis == 1 ? qy : qz) - points[mid * 3 + axis];
+            double farBound = Math.max(bound, diff * diff);
+            // Push the far side first so the near side is explored first
+            if(diff < 0)
+            {
+                top = push(top, mid + 1, hi, farBound);
+                top = push(top, lo, mid, bound);
+            } else
+            {
+                top = push(top, lo, mid, farBound);
+                top = push(top, mid + 1, hi, bound);
+            }
+        }
+
+        // Pop the heap from the farthest result down to fill the list in ascending order
+        Restaurant[] ordered = new Restaurant[heapSize];
+        for(int i = heapSize - 1; i >= 0; i--)
+        {
+            ordered[i] = restaurants[heapIndexes[0]];
+            heapSize = heapPop(heapSize);
+        }
+        List<Restaurant> result = new ArrayList<>(ordered.length);
+        for(Restaurant restaurant : ordered)
+        {
+            result.add(restaurant);
+        }
+        return result;
+    }
+
+    /**
+     * Orders restaurants by distance from a location using a temporary index.
+     * Restaurants without a location keep their relative order and are placed last.
+     *
+     * @param restaurants The restaurants to order.
+     * @param latitude    The latitude of the location in degrees.
+     * @param longitude   The longitude of the location in degrees.
+     * @return A new list with the same restaurants, nearest first.
+     */
+    public static List<Restaurant> sortByDistance(List<Restaurant> restaurants, double latitude, double longitude)
+    {
+        SpatialIndex index = new SpatialIndex(restaurants);
+        List<Restaurant> sorted = index.nearest(latitude, longitude, index.size());
+        for(Restaurant restaurant : restaurants)
+        {
+            if(restaurant.getLocation() == null)
+            {
+                sorted.add(restaurant);
+            }
+        }
+        return sorted;
+    }
+
+    /**
+     * Finds every restaurant within a radius of a location, in no particular order.
+     *
+     * @param latitude     The latitude of the location in degrees.
+     * @param longitude    The longitude of the location in degrees.
+     * @param radiusMeters The radius in meters.
+     * @return The restaurants within the radius.
+     */
+    public List<Restaurant> withinRadius(double latitude, double longitude, double radiusMeters)
+    {
+        List<Restaurant> result = new ArrayList<>();
+        if(restaurants.length == 0) return result;
+
+        double angle = Math.min(Math.PI, radiusMeters / EARTH_RADIUS_METERS);
+        double chord = 2 * Math.sin(angle / 2);
+        double maxDistance = chord * chord;
+        toUnitVector(latitude, longitude, query, 0);
+        double qx = query[0];
+        double qy = query[1];
+        double qz = query[2];
+
+        int top = push(0, 0, restaurants.length, 0);
+        while(top > 0)
+        {
+            top--;
+            int lo = stackLo[top];
+            int hi = stackHi[top];
+            int mid = (lo + hi) >>> 1;
+
+            if(squaredDistance(mid, qx, qy, qz) <= maxDistance)
+            {
+                result.add(restaurants[mid]);
+            }
+
+            int axis = axes[mid];
+            double diff = (axis == 0 ? qx : axis == 1 ? qy : qz) - points[mid * 3 + axis];
+            boolean crossesSplit = diff * diff <= maxDistance;
+            if(diff < 0 || crossesSplit)
+            {
+                top = push(top, lo, mid, 0);
+            }
+            if(diff >= 0 || crossesSplit)
+            {
+                top = push(top, mid + 1, hi, 0);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Pushes a non-empty range onto the traversal stack.
+     *
+     * @param top   The current stack size.
+     * @param lo    The start index of the range.
+     * @param hi    The end index (exclusive) of the range.
+     * @param bound The lower bound of the squared distance to any point in the range.
+     * @return The new stack size.
+     */
+    private int push(int top, int lo, int hi, double bound)
+    {
+        if(lo >= hi) return top;
+        stackLo[top] = lo;
+        stackHi[top] = hi;
+        stackBound[top] = bound;
+        return top + 1;
+    }
+
+    /**
+     * Returns the squared chord distance between an indexed point and a query point.
+     *
+     * @param index The index of the point.
+     * @param qx    The x coordinate of the query point.
+     * @param qy    The y coordinate of the query point.
+     * @param qz    The z coordinate of the query point.
+     * @return The squared distance.
+     */
+    private double squaredDistance(int index, double qx, double qy, double qz)
+    {
+        double dx = points[index * 3] - qx;
+        double dy = points[index * 3 + 1] - qy;
+        double dz = points[index * 3 + 2] - qz;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Adds an entry to the result heap.
+     *
+     * @param size     The current heap size.
+     * @param index    The point index.
+     * @param distance The squared distance of the point.
+     * @return The new heap size.
+     */
+    private int heapPush(int size, int index, double distance)
+    {
+        int child = size;
+        while(child > 0)
+        {
+            int parent = (child - 1) / 2;
+            if(heapDistances[parent] >= distance) break;
+            heapIndexes[child] = heapIndexes[parent];
+            heapDistances[child] = heapDistances[parent];
+            child = parent;
+        }
+        heapIndexes[child] = index;
+        heapDistances[child] = distance;
+        return size + 1;
+    }
+
+    /**
+     * Replaces the farthest entry of a full result heap.
+     *
+     * @param size     The heap size.
+     * @param index    The point index.
+     * @param distance The squared distance of the point.
+     */
+    private void heapReplaceTop(int size, int index, double distance)
+    {
+        int parent = 0;
+        while(true)
+        {
+            int child = parent * 2 + 1;
+            if(child >= size) break;
+            if(child + 1 < size && heapDistances[child + 1] > heapDistances[child]) child++;
+            if(heapDistances[child] <= distance) break;
+            heapIndexes[parent] = heapIndexes[child];
+            heapDistances[parent] = heapDistances[child];
+            parent = child;
+        }
+        heapIndexes[parent] = index;
+        heapDistances[parent] = distance;
+    }
+
+    /**
+     * Removes the farthest entry of the result heap.
+     *
+     * @param size The current heap size.
+     * @return The new heap size.
+     */
+    private int heapPop(int size)
+    {
+        size--;
+        if(size > 0)
+        {
+            heapReplaceTop(size, heapIndexes[size], heapDistances[size]);
+        }
+        return size;
+    }
+
+    /**
+     * Arranges the range {@code [lo, hi)} into a k-d subtree: the point with the median coordinate on
+     * the axis of largest spread is moved to the middle index, smaller coordinates before it and
+     * larger ones after it, then both halves are built recursively.
+     *
+     * @param lo The start index of the range.
+     * @param hi The end index (exclusive) of the range.
+     */
+    private void build(int lo, int hi)
+    {
+        if(hi - lo <= 0) return;
+
+        int mid = (lo + hi) >>> 1;
+        int axis = widestAxis(lo, hi);
+        select(lo, hi - 1, mid, axis);
+        axes[mid] = (byte) axis;
+
+        build(lo, mid);
+        build(mid + 1, hi);
+    }
+
+    /**
+     * Returns the axis along which the points of a range are spread the most.
+     *
+     * @param lo The start index of the range.
+     * @param hi The end index (exclusive) of the range.
+     * @return The axis, 0 for x, 1 for y or 2 for z.
+     */
+    private int widestAxis(int lo, int hi)
+    {
+        double[] min = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        double[] max = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        for(int i = lo; i < hi; i++)
+        {
+            for(int axis = 0; axis < 3; axis++)
+            {
+                double value = points[i * 3 + axis];
+                if(value < min[axis]) min[axis] = value;
+                if(value > max[axis]) max[axis] = value;
+            }
+        }
+
+        int widest = 0;
+        for(int axis = 1; axis < 3; axis++)
+        {
+            if(max[axis] - min[axis] > max[widest] - min[widest]) widest = axis;
+        }
+        return widest;
+    }
+
+    /**
+     * Partially sorts {@code [left, right]} so the element at {@code k} has its final sorted position on
+     * the given axis (quickselect with median-of-three pivots).
+     *
+     * @param left  The first index of the range.
+     * @param right The last index of the range (inclusive).
+     * @param k     The index to place.
+     * @param axis  The axis to compare on.
+     */
+    private void select(int left, int right, int k, int axis)
+    {
+        while(right > left)
+        {
+            int middle = (left + right) >>> 1;
+            // Median of three keeps already-sorted input from degrading to quadratic time
+            if(coordinate(middle, axis) < coordinate(left, axis)) swap(middle, left);
+            if(coordinate(right, axis) < coordinate(left, axis)) swap(right, left);
+            if(coordinate(right, axis) < coordinate(middle, axis)) swap(right, middle);
+            double pivot = coordinate(middle, axis);
+
+            int i = left;
+            int j = right;
+            while(i <= j)
+            {
+                while(coordinate(i, axis) < pivot) i++;
+                while(coordinate(j, axis) > pivot) j--;
+                if(i <= j)
+                {
+                    swap(i, j);
+                    i++;
+                    j--;
+                }
+            }
+
+            if(k <= j)
+            {
+                right = j;
+            } else if(k >= i)
+            {
+                left = i;
+            } else
+            {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns a coordinate of an indexed point.
+     *
+     * @param index The index of the point.
+     * @param axis  The axis.
+     * @return The coordinate.
+     */
+    private double coordinate(int index, int axis)
+    {
+        return points[index * 3 + axis];
+    }
+
+    /**
+     * Swaps two points together with their restaurants.
+     *
+     * @param a The index of the first point.
+     * @param b The index of the second point.
+     */
+    private void swap(int a, int b)
+    {
+        Restaurant restaurant = restaurants[a];
+        restaurants[a] = restaurants[b];
+        restaurants[b] = restaurant;
+        for(int axis = 0; axis < 3; axis++)
+        {
+            double value = points[a * 3 + axis];
+            points[a * 3 + axis] = points[b * 3 + axis];
+            points[b * 3 + axis] = value;
+        }
+    }
+
+    /**
+     * Writes the unit vector of a location into an array.
+     *
+     * @param latitude  The latitude in degrees.
+     * @param longitude The longitude in degrees.
+     * @param out       The array to write to.
+     * @param offset    The index of the x coordinate in {@code out}.
+     */
+    private static void toUnitVector(double latitude, double longitude, double[] out, int offset)
+    {
+        double lat = Math.toRadians(latitude);
+        double lng = Math.toRadians(longitude);
+        out[offset] = Math.cos(lat) * Math.cos(lng);
+        out[offset + 1] = Math.cos(lat) * Math.sin(lng);
+        out[offset + 2] = Math.sin(lat);
+    }
+}
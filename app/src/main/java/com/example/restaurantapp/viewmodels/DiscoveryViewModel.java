@@ -0,0 +1,213 @@
+package com.example.restaurantapp.viewmodels;
+
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.ViewModel;
+
+import com.example.restaurantapp.models.Restaurant;
+import com.example.restaurantapp.utils.GeoHashUtils;
+import com.example.restaurantapp.utils.NearbyRestaurantQuery;
+import com.example.restaurantapp.utils.SpatialIndex;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QueryDocumentSnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link ViewModel} subclass that pages through the "Restaurants" collection for the discovery feed.
+ * Restaurants are ordered by name and fetched {@link #PAGE_SIZE} at a time, each page starting
+ * after the last document of the previous one. The pages loaded so far are retained across
+ * fragment recreation, so returning to the discovery tab shows them again without refetching.
+ * In "near me" mode the feed instead shows the restaurants closest to the user, taken from a
+ * {@link SpatialIndex} built over the restaurants within {@link #NEAR_ME_RADIUS_METERS}; small
+ * location changes are answered from the index without another query.
+ */
+public class DiscoveryViewModel extends ViewModel
+{
+    /**
+     * Number of restaurants fetched per page.
+     */
+    public static final int PAGE_SIZE = 20;
+    /**
+     * Radius around the user within which restaurants are loaded for "near me" mode.
+     */
+    private static final double NEAR_ME_RADIUS_METERS = 25_000;
+    /**
+     * Maximum number of restaurants shown in "near me" mode.
+     */
+    private static final int NEAR_ME_LIMIT = 50;
+
+    /**
+     * {@link MutableLiveData} holding every restaurant loaded so far, in feed order.
+     */
+    private final MutableLiveData<List<Restaurant>> restaurants = new MutableLiveData<>(new ArrayList<>());
+    /**
+     * The last document of the most recently loaded page, used as the cursor for the next page.
+     */
+    private DocumentSnapshot lastDocument;
+    /**
+     * Whether a page request is currently in flight.
+     */
+    private boolean loading = false;
+    /**
+     * Whether the last page has been loaded.
+     */
+    private boolean endReached = false;
+    /**
+     * {@link MutableLiveData} holding the restaurants nearest to the user, nearest first.
+     */
+    private final MutableLiveData<List<Restaurant>> nearbyRestaurants = new MutableLiveData<>();
+    /**
+     * Whether the feed is in "near me" mode.
+     */
+    private boolean nearMe = false;
+    /**
+     * Index over the restaurants around {@link #indexLatitude}, {@link #indexLongitude}, null until loaded.
+     */
+    private SpatialIndex nearbyIndex;
+    /**
+     * Latitude of the location the {@link #nearbyIndex} was loaded around.
+     */
+    private double indexLatitude;
+    /**
+     * Longitude of the location the {@link #nearbyIndex} was loaded around.
+     */
+    private double indexLongitude;
+
+    /**
+     * Returns a {@link LiveData} object holding every restaurant loaded so far.
+     *
+     * @return A {@link LiveData} instance containing the loaded restaurants.
+     */
+    public LiveData<List<Restaurant>> getRestaurants()
+    {
+        return restaurants;
+    }
+
+    /**
+     * Returns whether at least one page has been requested and loaded.
+     *
+     * @return True if the feed holds data or is known to be empty, false otherwise.
+     */
+    public boolean hasLoaded()
+    {
+        return lastDocument != null || endReached;
+    }
+
+    /**
+     * Fetches the next page of restaurants and appends it to {@link #getRestaurants()}.
+     * Does nothing while a page is already loading or once the last page has been reached,
+     * so it can safely be called on every scroll event.
+     */
+    public void loadNextPage()
+    {
+        if(loading || endReached) return;
+        loading = true;
+
+        Query query = FirebaseFirestore.getInstance()
+                .collection("Restaurants")
+                .orderBy("name") // Order restaurants by name
+                .limit(PAGE_SIZE);
+        if(lastDocument != null)
+        {
+            query = query.startAfter(lastDocument);
+        }
+
+        query.get()
+                .addOnSuccessListener(querySnapshot ->
+                {
+                    List<Restaurant> loaded = new ArrayList<>(restaurants.getValue());
+                    for(QueryDocumentSnapshot document : querySnapshot)
+                    {
+                        Restaurant restaurant = document.toObject(Restaurant.class);
+                        restaurant.setRestaurantID(document.getId()); // Ensure ID is set
+                        loaded.add(restaurant);
+                    }
+                    Log.d("DiscoveryViewModel", "Fetched page of " + querySnapshot.size() + " restaurants");
+
+                    if(!querySnapshot.isEmpty())
+                    {
+                        lastDocument = querySnapshot.getDocuments().get(querySnapshot.size() - 1);
+                    }
+                    endReached = querySnapshot.size() < PAGE_SIZE;
+                    loading = false;
+                    restaurants.setValue(loaded);
+                })
+                .addOnFailureListener(e ->
+                {
+                    Log.e("Firestore", "Error fetching restaurants: ", e);
+                    loading = false; // Allow the next scroll to retry
+                });
+    }
+
+    /**
+     * Returns a {@link LiveData} object holding the restaurants nearest to the user.
+     *
+     * @return A {@link LiveData} instance containing the nearby restaurants, nearest first.
+     */
+    public LiveData<List<Restaurant>> getNearbyRestaurants()
+    {
+        return nearbyRestaurants;
+    }
+
+    /**
+     * Returns whether the feed is in "near me" mode.
+     *
+     * @return True if nearby restaurants are shown, false for the paged feed.
+     */
+    public boolean isNearMe()
+    {
+        return nearMe;
+    }
+
+    /**
+     * Leaves "near me" mode. The nearby index is kept for the next time the mode is entered.
+     */
+    public void clearNearMe()
+    {
+        nearMe = false;
+    }
+
+    /**
+     * Enters "near me" mode and publishes the restaurants nearest to the given location.
+     * If the current index was loaded close enough to the location it is queried directly;
+     * otherwise the restaurants around the location are loaded first through {@link NearbyRestaurantQuery}.
+     *
+     * @param latitude  The user's latitude in degrees.
+     * @param longitude The user's longitude in degrees.
+     */
+    public void loadNearby(double latitude, double longitude)
+    {
+        nearMe = true;
+        if(nearbyIndex != null && GeoHashUtils.distanceMeters(indexLatitude, indexLongitude,
+                latitude, longitude) < NEAR_ME_RADIUS_METERS / 4)
+        {
+            nearbyRestaurants.setValue(nearbyIndex.nearest(latitude, longitude, NEAR_ME_LIMIT));
+            return;
+        }
+
+        NearbyRestaurantQuery.queryRadius(latitude, longitude, NEAR_ME_RADIUS_METERS,
+                new NearbyRestaurantQuery.OnNearbyRestaurantsListener()
+                {
+                    @Override
+                    public void onNearbyRestaurants(List<Restaurant> restaurants)
+                    {
+                        nearbyIndex = new SpatialIndex(restaurants);
+                        indexLatitude = latitude;
+                        indexLongitude = longitude;
+                        nearbyRestaurants.setValue(nearbyIndex.nearest(latitude, longitude, NEAR_ME_LIMIT));
+                    }
+
+                    @Override
+                    public void onError(Exception e)
+                    {
+                        Log.e("DiscoveryViewModel", "Error fetching nearby restaurants: ", e);
+                    }
+                });
+    }
+}
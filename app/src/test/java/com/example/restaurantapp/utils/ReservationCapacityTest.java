@@ -0,0 +1,156 @@
+package com.example.restaurantapp.utils;
+
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the slot and day arithmetic of {@link ReservationCapacity}: which slots a reservation
+ * occupies, which ledger day and key each slot maps to, and which reservations seeding a day reads.
+ */
+public class ReservationCapacityTest
+{
+    /**
+     * Length of a day, in milliseconds.
+     */
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+    /**
+     * An arbitrary day, counted from the epoch (2026-10-18, UTC).
+     */
+    private static final long DAY = 20_744;
+    /**
+     * The start of {@link #DAY}, in milliseconds since the epoch.
+     */
+    private static final long DAY_START = DAY * DAY_MILLIS;
+
+    /**
+     * A reservation's first slot is the slot its start falls into, also before the epoch.
+     */
+    @Test
+    public void firstSlotRoundsDown()
+    {
+        long slot = ReservationCapacity.SLOT_MILLIS;
+        assertEquals(0, ReservationCapacity.firstSlot(new Date(0)));
+        assertEquals(0, ReservationCapacity.firstSlot(new Date(slot - 1)));
+        assertEquals(1, ReservationCapacity.firstSlot(new Date(slot)));
+        assertEquals(-1, ReservationCapacity.firstSlot(new Date(-1)));
+        assertEquals(-1, ReservationCapacity.firstSlot(new Date(-slot)));
+        assertEquals(-2, ReservationCapacity.firstSlot(new Date(-slot - 1)));
+    }
+
+    /**
+     * Slots map to the UTC day they lie in and to their index within that day.
+     */
+    @Test
+    public void slotsMapToTheirDayAndKey()
+    {
+        long perDay = ReservationCapacity.SLOTS_PER_DAY;
+        assertEquals(96, perDay);
+
+        assertEquals(0, ReservationCapacity.dayOf(0));
+        assertEquals(0, ReservationCapacity.dayOf(perDay - 1));
+        assertEquals(1, ReservationCapacity.dayOf(perDay));
+        assertEquals(-1, ReservationCapacity.dayOf(-1));
+        assertEquals(DAY, ReservationCapacity.dayOf(ReservationCapacity.firstSlot(new Date(DAY_START))));
+        assertEquals(DAY - 1, ReservationCapacity.dayOf(ReservationCapacity.firstSlot(new Date(DAY_START - 1))));
+
+        assertEquals("0", ReservationCapacity.slotKey(0));
+        assertEquals("95", ReservationCapacity.slotKey(perDay - 1));
+        assertEquals("0", ReservationCapacity.slotKey(perDay));
+        assertEquals("95", ReservationCapacity.slotKey(-1));
+        assertEquals("48", ReservationCapacity.slotKey(DAY * perDay + 48));
+    }
+
+    /**
+     * A reservation occupies {@link ReservationCapacity#SEATING_SLOTS} slots from its start.
+     */
+    @Test
+    public void reservationOccupiesItsSeating()
+    {
+        Map<String, Long> slots = new HashMap<>();
+        ReservationCapacity.addSeating(slots, DAY, new Date(DAY_START + 12 * 60 * 60 * 1000L), 4);
+
+        assertEquals(ReservationCapacity.SEATING_SLOTS, slots.size());
+        for(int key = 48; key < 48 + ReservationCapacity.SEATING_SLOTS; key++)
+        {
+            assertEquals(Long.valueOf(4), slots.get(String.valueOf(key)));
+        }
+
+        ReservationCapacity.addSeating(slots, DAY, new Date(DAY_START + 13 * 60 * 60 * 1000L), 2);
+        assertEquals(Long.valueOf(4), slots.get("48"));
+        assertEquals(Long.valueOf(6), slots.get("52"));
+        assertEquals(Long.valueOf(2), slots.get("57"));
+    }
+
+    /**
+     * A seating that crosses midnight is split between the ledgers of both days.
+     */
+    @Test
+    public void seatingCrossingMidnightIsSplitBetweenDays()
+    {
+        Date lateEvening = new Date(DAY_START + DAY_MILLIS - 60 * 60 * 1000L); // 23:00 UTC
+        long firstSlot = ReservationCapacity.firstSlot(lateEvening);
+        assertEquals(DAY, ReservationCapacity.dayOf(firstSlot));
+        assertEquals(DAY + 1, ReservationCapacity.dayOf(firstSlot + ReservationCapacity.SEATING_SLOTS - 1));
+
+        Map<String, Long> today = new HashMap<>();
+        ReservationCapacity.addSeating(today, DAY, lateEvening, 3);
+        assertEquals(4, today.size());
+        for(String key : new String[]{"92", "93", "94", "95"})
+        {
+            assertEquals(Long.valueOf(3), today.get(key));
+        }
+
+        Map<String, Long> tomorrow = new HashMap<>();
+        ReservationCapacity.addSeating(tomorrow, DAY + 1, lateEvening, 3);
+        assertEquals(2, tomorrow.size());
+        assertEquals(Long.valueOf(3), tomorrow.get("0"));
+        assertEquals(Long.valueOf(3), tomorrow.get("1"));
+    }
+
+    /**
+     * The seed window holds exactly the reservations seated on the day: every start whose seating
+     * touches the day lies strictly inside it, and the starts at its bounds do not touch the day.
+     */
+    @Test
+    public void seedWindowCoversTheDay()
+    {
+        long windowStart = ReservationCapacity.seedWindowStart(DAY).getTime();
+        long windowEnd = ReservationCapacity.seedWindowEnd(DAY).getTime();
+        assertEquals(DAY_START - ReservationCapacity.SEATING_SLOTS * ReservationCapacity.SLOT_MILLIS, windowStart);
+        assertEquals(DAY_START + DAY_MILLIS, windowEnd);
+
+        assertFalse(touches(windowStart));
+        assertTrue(touches(windowStart + ReservationCapacity.SLOT_MILLIS));
+        assertTrue(touches(windowEnd - 1));
+        assertFalse(touches(windowEnd));
+
+        long step = 60 * 1000L;
+        for(long start = windowStart - DAY_MILLIS; start < windowEnd + DAY_MILLIS; start += step)
+        {
+            if(touches(start))
+            {
+                assertTrue("Start " + start + " is outside the seed window", start > windowStart && start < windowEnd);
+            }
+        }
+    }
+
+    /**
+     * Returns whether a reservation starting at the given instant is seated on {@link #DAY}.
+     *
+     * @param start The start of the reservation, in milliseconds since the epoch.
+     * @return True if it occupies a slot of the day.
+     */
+    private static boolean touches(long start)
+    {
+        Map<String, Long> slots = new HashMap<>();
+        ReservationCapacity.addSeating(slots, DAY, new Date(start), 1);
+        return !slots.isEmpty();
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.restaurantapp.utils;
+
+import com.example.restaurantapp.models.Restaurant;
+import com.google.firebase.firestore.GeoPoint;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks {@link SpatialIndex} against brute-force haversine searches and reports its timings
+ * for 1k, 10k and 100k restaurants. The timings are printed, not asserted, so the test does not
+ * depend on the speed of the machine running it.
+ */
+public class SpatialIndexTest
+{
+    /**
+     * Number of restaurants returned by each nearest-neighbour query.
+     */
+    private static final int K = 10;
+    /**
+     * Radii of the radius queries, in meters.
+     */
+    private static final double[] RADII = {500, 5_000, 50_000};
+    /**
+     * Tolerance when comparing distances computed along different paths, in meters.
+     */
+    private static final double EPSILON_METERS = 1e-3;
+
+    /**
+     * Compares nearest-neighbour and radius queries with brute force at each size.
+     */
+    @Test
+    public void queriesMatchBruteForce()
+    {
+        for(int size : new int[]{1_000, 10_000, 100_000})
+        {
+            Random random = new Random(size);
+            List<Restaurant> restaurants = randomRestaurants(size, random);
+            SpatialIndex index = new SpatialIndex(restaurants);
+            assertEquals(size, index.size());
+
+            for(double[] query : queries(random, 20))
+            {
+                assertNearest(restaurants, index, query[0], query[1]);
+                for(double radius : RADII)
+                {
+                    assertWithinRadius(restaurants, index, query[0], query[1], radius);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks that restaurants without a location are skipped by the index and placed last,
+     * in their original order, by {@link SpatialIndex#sortByDistance(List, double, double)}.
+     */
+    @Test
+    public void sortByDistancePlacesUnlocatedLast()
+    {
+        Restaurant far = restaurant("far", 10, 10);
+        Restaurant unlocatedA = restaurant("unlocatedA", Double.NaN, Double.NaN);
+        Restaurant near = restaurant("near", 0.001, 0.001);
+        Restaurant unlocatedB = restaurant("unlocatedB", Double.NaN, Double.NaN);
+        List<Restaurant> restaurants = Arrays.asList(far, unlocatedA, near, unlocatedB);
+
+        assertEquals(2, new SpatialIndex(restaurants).size());
+        assertEquals(Arrays.asList(near, far, unlocatedA, unlocatedB), SpatialIndex.sortByDistance(restaurants, 0, 0));
+    }
+
+    /**
+     * Checks queries across the antimeridian and at a pole, where latitude and longitude wrap.
+     */
+    @Test
+    public void queriesWrapAroundTheSphere()
+    {
+        Restaurant east = restaurant("east", 0, 179.999);
+        Restaurant west = restaurant("west", 0, -179.999);
+        Restaurant pole = restaurant("pole", 89.999, 45);
+        Restaurant origin = restaurant("origin", 0, 0);
+        SpatialIndex index = new SpatialIndex(Arrays.asList(east, west, pole, origin));
+
+        assertEquals(Arrays.asList(east, west), index.nearest(0, 179.9995, 2));
+        assertEquals(new HashSet<>(Arrays.asList(east, west)), new HashSet<>(index.withinRadius(0, 180, 1_000)));
+        assertEquals(Arrays.asList(pole), index.withinRadius(90, -135, 1_000));
+    }
+
+    /**
+     * Times building the index, nearest-neighbour and radius queries against a full haversine sort.
+     */
+    @Test
+    public void benchmark()
+    {
+        for(int size : new int[]{1_000, 10_000, 100_000})
+        {
+            Random random = new Random(size);
+            List<Restaurant> restaurants = randomRestaurants(size, random);
+            List<double[]> queries = queries(random, 1_000);
+
+            long start = System.nanoTime();
+            SpatialIndex index = new SpatialIndex(restaurants);
+            long buildNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for(double[] query : queries)
+            {
+                index.nearest(query[0], query[1], K);
+            }
+            long nearestNanos = (System.nanoTime() - start) / queries.size();
+
+            start = System.nanoTime();
+            for(double[] query : queries)
+            {
+                index.withinRadius(query[0], query[1], 1_000);
+            }
+            long radiusNanos = (System.nanoTime() - start) / queries.size();
+
+            start = System.nanoTime();
+            List<Restaurant> sorted = new ArrayList<>(restaurants);
+            double[] query = queries.get(0);
+            sorted.sort((a, b) -> Double.compare(distance(a, query[0], query[1]), distance(b, query[0], query[1])));
+            long sortNanos = System.nanoTime() - start;
+
+            System.out.printf("n=%d: build %.1f ms, kNN-%d %.1f us, 1 km radius %.1f us, full sort %.1f ms%n",
+                    size, buildNanos / 1e6, K, nearestNanos / 1e3, radiusNanos / 1e3, sortNanos / 1e6);
+        }
+    }
+
+    /**
+     * Asserts that a nearest-neighbour query returns the {@link #K} smallest distances, nearest first.
+     *
+     * @param restaurants The indexed restaurants.
+     * @param index       The index.
+     * @param latitude    The latitude of the query.
+     * @param longitude   The longitude of the query.
+     */
+    private static void assertNearest(List<Restaurant> restaurants, SpatialIndex index, double latitude, double longitude)
+    {
+        double[] expected = new double[restaurants.size()];
+        for(int i = 0; i < expected.length; i++)
+        {
+            expected[i] = distance(restaurants.get(i), latitude, longitude);
+        }
+        Arrays.sort(expected);
+
+        List<Restaurant> nearest = index.nearest(latitude, longitude, K);
+        assertEquals(K, nearest.size());
+        for(int i = 0; i < K; i++)
+        {
+            assertEquals(expected[i], distance(nearest.get(i), latitude, longitude), EPSILON_METERS);
+        }
+    }
+
+    /**
+     * Asserts that a radius query returns exactly the restaurants within the radius. Restaurants
+     * lying on the circle, within rounding error, may be reported either way.
+     *
+     * @param restaurants The indexed restaurants.
+     * @param index       The index.
+     * @param latitude    The latitude of the query.
+     * @param longitude   The longitude of the query.
+     * @param radius      The radius in meters.
+     */
+    private static void assertWithinRadius(List<Restaurant> restaurants, SpatialIndex index,
+                                           double latitude, double longitude, double radius)
+    {
+        Set<Restaurant> found = new HashSet<>(index.withinRadius(latitude, longitude, radius));
+        for(Restaurant restaurant : restaurants)
+        {
+            double distance = distance(restaurant, latitude, longitude);
+            if(Math.abs(distance - radius) < EPSILON_METERS) continue;
+            assertEquals(restaurant.getRestaurantID() + " at " + distance + " m", distance < radius, found.contains(restaurant));
+        }
+        assertTrue(found.size() <= restaurants.size());
+    }
+
+    /**
+     * Creates restaurants spread like real ones: half clustered around a few cities, half scattered
+     * uniformly over the globe.
+     *
+     * @param size   The number of restaurants.
+     * @param random The source of randomness.
+     * @return The restaurants, each with an ID and a location.
+     */
+    private static List<Restaurant> randomRestaurants(int size, Random random)
+    {
+        double[][] cities = {{32.08, 34.78}, {51.51, -0.13}, {40.71, -74.01}, {-33.87, 151.21}, {35.68, 139.69}};
+        List<Restaurant> restaurants = new ArrayList<>(size);
+        for(int i = 0; i < size; i++)
+        {
+            double latitude;
+            double longitude;
+            if(i % 2 == 0)
+            {
+                double[] city = cities[random.nextInt(cities.length)];
+                latitude = Math.max(-90, Math.min(90, city[0] + random.nextGaussian() * 0.2));
+                longitude = city[1] + random.nextGaussian() * 0.2;
+            } else
+            {
+                latitude = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+                longitude = random.nextDouble() * 360 - 180;
+            }
+            restaurants.add(restaurant("r" + i, latitude, longitude));
+        }
+        return restaurants;
+    }
+
+    /**
+     * Creates query locations, half of them near the first city and half anywhere on the globe.
+     *
+     * @param random The source of randomness.
+     * @param count  The number of queries.
+     * @return The queries as {@code {latitude, longitude}} pairs.
+     */
+    private static List<double[]> queries(Random random, int count)
+    {
+        List<double[]> queries = new ArrayList<>(count);
+        for(int i = 0; i < count; i++)
+        {
+            if(i % 2 == 0)
+            {
+                queries.add(new double[]{32.08 + random.nextGaussian() * 0.1, 34.78 + random.nextGaussian() * 0.1});
+            } else
+            {
+                queries.add(new double[]{Math.toDegrees(Math.asin(2 * random.nextDouble() - 1)), random.nextDouble() * 360 - 180});
+            }
+        }
+        return queries;
+    }
+
+    /**
+     * Creates a restaurant with an ID and a location.
+     *
+     * @param id        The restaurant ID.
+     * @param latitude  The latitude, or NaN for no location.
+     * @param longitude The longitude, or NaN for no location.
+     * @return The restaurant.
+     */
+    private static Restaurant restaurant(String id, double latitude, double longitude)
+    {
+        Restaurant restaurant = new Restaurant();
+        restaurant.setRestaurantID(id);
+        if(!Double.isNaN(latitude))
+        {
+            restaurant.setLocation(new GeoPoint(latitude, longitude));
+        }
+        return restaurant;
+    }
+
+    /**
+     * Returns the haversine distance between a restaurant and a location.
+     *
+     * @param restaurant The restaurant.
+     * @param latitude   The latitude of the location.
+     * @param longitude  The longitude of the location.
+     * @return The distance in meters.
+     */
+    private static double distance(Restaurant restaurant, double latitude, double longitude)
+    {
+        GeoPoint location = restaurant.getLocation();
+        return GeoHashUtils.distanceMeters(latitude, longitude, location.getLatitude(), location.getLongitude());
+    }
+}